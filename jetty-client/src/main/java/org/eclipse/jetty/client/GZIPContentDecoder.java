@@ -16,6 +16,7 @@ package org.eclipse.jetty.client;
 import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
 
 /**
  * {@link ContentDecoder} for the "gzip" encoding.
@@ -39,6 +40,11 @@ public class GZIPContentDecoder extends org.eclipse.jetty.http.GZIPContentDecode
         super(byteBufferPool, bufferSize);
     }
 
+    public GZIPContentDecoder(InflaterPool inflaterPool, ByteBufferPool byteBufferPool, int bufferSize)
+    {
+        super(inflaterPool, byteBufferPool, bufferSize);
+    }
+
     @Override
     protected boolean decodedChunk(ByteBuffer chunk)
     {
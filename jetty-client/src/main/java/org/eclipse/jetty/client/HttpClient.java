@@ -130,6 +130,7 @@ public class HttpClient extends ContainerLifeCycle
     private AuthenticationStore authenticationStore = new HttpAuthenticationStore();
     private CookieManager cookieManager;
     private CookieStore cookieStore;
+    private HttpResponseCache responseCache;
     private SocketAddressResolver resolver;
     private HttpField agentField = new HttpField(HttpHeader.USER_AGENT, USER_AGENT);
     private boolean followRedirects = true;
@@ -279,6 +280,26 @@ public class HttpClient extends ContainerLifeCycle
         this.cookieManager = newCookieManager();
     }
 
+    /**
+     * @return the response cache used by this instance, or null if responses are not cached
+     */
+    public HttpResponseCache getResponseCache()
+    {
+        return responseCache;
+    }
+
+    /**
+     * <p>Sets the response cache used by this instance.</p>
+     * <p>By default there is no response cache, so that every request is sent to the server.</p>
+     *
+     * @param responseCache the response cache used by this instance, or null to not cache responses
+     */
+    public void setResponseCache(HttpResponseCache responseCache)
+    {
+        updateBean(this.responseCache, responseCache, true);
+        this.responseCache = responseCache;
+    }
+
     /**
      * Keep this method package-private because its interface is so ugly
      * that we really don't want to expose it more than strictly needed.
@@ -555,6 +576,12 @@ public class HttpClient extends ContainerLifeCycle
 
     protected void send(HttpRequest request, List<Response.ResponseListener> listeners)
     {
+        HttpResponseCache responseCache = this.responseCache;
+        if (responseCache != null)
+        {
+            responseCache.send(request, listeners);
+            return;
+        }
         HttpDestination destination = (HttpDestination)resolveDestination(request);
         destination.send(request, listeners);
     }
@@ -0,0 +1,938 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An in-memory, private, HTTP response cache for {@link HttpClient}.</p>
+ * <p>The cache is opt-in, see {@link HttpClient#setResponseCache(HttpResponseCache)},
+ * and only applies to {@code GET} requests that have no content and no conditional
+ * or {@code Range} headers; other requests are sent to the server as usual,
+ * and those with unsafe methods invalidate the cached response for their URI.</p>
+ * <p>Responses are stored if their status code is cacheable by default,
+ * they are not marked {@code no-store}, their content is not larger than
+ * {@link #getMaxEntrySize()}, and they are either fresh or carry a validator.
+ * The freshness lifetime is derived from the {@code Cache-Control max-age}
+ * directive, or from the {@code Expires} header, or heuristically from the
+ * {@code Last-Modified} header, as specified by RFC 7234.</p>
+ * <p>Fresh responses are served from the cache without contacting the server.
+ * Stale responses, and responses to requests with {@code Cache-Control: no-cache},
+ * are revalidated with a conditional request using their {@code ETag} or
+ * {@code Last-Modified} header; if the server replies {@code 304 Not Modified}
+ * the cached response is served and its freshness is renewed.</p>
+ * <p>Concurrent requests for the same URI are coalesced: only the first request
+ * is sent to the server, and the response is then served to all the requests.
+ * If the response turns out to be not cacheable, or the first request fails,
+ * the other requests are sent to the server independently.</p>
+ * <p>The response content is stored in buffers acquired from the
+ * {@link HttpClient#getByteBufferPool() ByteBufferPool}, and the total
+ * content size is bounded by {@link #getMaxCacheSize()}, evicting the
+ * least recently used responses when the bound is exceeded.</p>
+ * <p>The response listeners of requests served from the cache are notified
+ * of the response events, but the request listeners are not, since the
+ * request is not sent; likewise, the request timeout is only enforced
+ * for the request that is sent to the server.</p>
+ */
+@ManagedObject("The HTTP response cache")
+public class HttpResponseCache extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpResponseCache.class);
+    private static final HttpHeader[] CONDITIONAL_HEADERS =
+        {
+            HttpHeader.IF_MATCH, HttpHeader.IF_NONE_MATCH, HttpHeader.IF_MODIFIED_SINCE,
+            HttpHeader.IF_UNMODIFIED_SINCE, HttpHeader.IF_RANGE, HttpHeader.RANGE
+        };
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, Flight> flights = new HashMap<>();
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final HttpClient client;
+    private long size;
+    private long maxCacheSize = 32 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private boolean useDirectByteBuffers = true;
+
+    public HttpResponseCache(HttpClient client)
+    {
+        this.client = Objects.requireNonNull(client);
+    }
+
+    /**
+     * @return the max total size in bytes of the cached response content
+     */
+    @ManagedAttribute("The max total size in bytes of the cached response content")
+    public long getMaxCacheSize()
+    {
+        return maxCacheSize;
+    }
+
+    /**
+     * @param maxCacheSize the max total size in bytes of the cached response content
+     */
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * @return the max size in bytes of the content of a cacheable response
+     */
+    @ManagedAttribute("The max size in bytes of the content of a cacheable response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    /**
+     * @param maxEntrySize the max size in bytes of the content of a cacheable response
+     */
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @return whether the response content is stored in direct (off-heap) buffers
+     */
+    @ManagedAttribute("Whether the response content is stored in direct buffers")
+    public boolean isUseDirectByteBuffers()
+    {
+        return useDirectByteBuffers;
+    }
+
+    /**
+     * @param useDirectByteBuffers whether the response content is stored in direct (off-heap) buffers
+     */
+    public void setUseDirectByteBuffers(boolean useDirectByteBuffers)
+    {
+        this.useDirectByteBuffers = useDirectByteBuffers;
+    }
+
+    @ManagedAttribute(value = "The number of cached responses", readonly = true)
+    public int getEntryCount()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute(value = "The total size in bytes of the cached response content", readonly = true)
+    public long getCacheSize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return size;
+        }
+    }
+
+    @ManagedAttribute(value = "The number of requests served from the cache without contacting the server", readonly = true)
+    public long getHitCount()
+    {
+        return hits.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of requests sent to the server because the response was not cached", readonly = true)
+    public long getMissCount()
+    {
+        return misses.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of conditional requests sent to the server to revalidate a cached response", readonly = true)
+    public long getRevalidationCount()
+    {
+        return revalidations.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of requests that waited for the response of an identical request", readonly = true)
+    public long getCoalescedCount()
+    {
+        return coalesced.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of cached responses evicted to make space for others", readonly = true)
+    public long getEvictionCount()
+    {
+        return evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        hits.reset();
+        misses.reset();
+        revalidations.reset();
+        coalesced.reset();
+        evictions.reset();
+    }
+
+    /**
+     * <p>Removes all the cached responses.</p>
+     */
+    @ManagedOperation(value = "Removes all the cached responses", impact = "ACTION")
+    public void clear()
+    {
+        List<Entry> removed;
+        try (AutoLock l = lock.lock())
+        {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            size = 0;
+        }
+        removed.forEach(Entry::release);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        clear();
+        super.doStop();
+    }
+
+    /**
+     * <p>Sends the given request, or serves it from this cache.</p>
+     *
+     * @param request the request to send
+     * @param listeners the response listeners to notify
+     */
+    protected void send(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method != HttpMethod.GET)
+        {
+            // Unsafe methods invalidate the cached response, see RFC 7234, section 4.4.
+            // Invalidating before the response arrives is simpler and never serves stale content.
+            if (method == null || !method.isSafe())
+                invalidate(request);
+            forward(request, listeners);
+            return;
+        }
+
+        CacheControl cacheControl = CacheControl.from(request.getHeaders());
+        if (cacheControl.noStore || request.getBody() != null || hasConditions(request))
+        {
+            forward(request, listeners);
+            return;
+        }
+
+        String key = key(request);
+        long now = System.nanoTime();
+        Entry hit = null;
+        Flight flight;
+        try (AutoLock l = lock.lock())
+        {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.matches(request))
+                entry = null;
+            if (entry != null && !cacheControl.noCache && entry.isFresh(now) && entry.retain())
+            {
+                hit = entry;
+                flight = null;
+            }
+            else
+            {
+                flight = flights.get(key);
+                if (flight == null)
+                {
+                    // Retain the stale entry while it is being revalidated.
+                    Entry stale = entry != null && entry.isValidatable() && entry.retain() ? entry : null;
+                    flight = new Flight(key, request, listeners, stale);
+                    flights.put(key, flight);
+                }
+                else
+                {
+                    flight.waiters.add(new Waiter(request, listeners));
+                    coalesced.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Coalesced {} with {}", request, flight);
+                    return;
+                }
+            }
+        }
+
+        if (hit != null)
+        {
+            hits.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Serving {} from {}", request, hit);
+            replay(hit, request, listeners);
+        }
+        else
+        {
+            flight.send();
+        }
+    }
+
+    private void forward(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HttpDestination destination = (HttpDestination)client.resolveDestination(request);
+        destination.send(request, listeners);
+    }
+
+    private boolean hasConditions(HttpRequest request)
+    {
+        HttpFields headers = request.getHeaders();
+        for (HttpHeader header : CONDITIONAL_HEADERS)
+        {
+            if (headers.contains(header))
+                return true;
+        }
+        return false;
+    }
+
+    private String key(HttpRequest request)
+    {
+        // Normalize the empty path, so that http://host and http://host/ are the same resource.
+        String path = request.getPath();
+        if (path == null || path.isEmpty())
+            path = "/";
+        String query = request.getQuery();
+        String key = request.getScheme() + "://" + request.getHost() + ":" + request.getPort() + path;
+        return query == null ? key : key + "?" + query;
+    }
+
+    private void invalidate(HttpRequest request)
+    {
+        Entry removed;
+        try (AutoLock l = lock.lock())
+        {
+            removed = entries.remove(key(request));
+            if (removed != null)
+                size -= removed.size();
+        }
+        if (removed != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Invalidated {} by {}", removed, request);
+            removed.release();
+        }
+    }
+
+    private void store(Entry entry)
+    {
+        if (entry.size() > getMaxEntrySize())
+            return;
+
+        List<Entry> removed = new ArrayList<>();
+        try (AutoLock l = lock.lock())
+        {
+            if (!entry.retain())
+                return;
+            Entry old = entries.put(entry.key, entry);
+            if (old != null)
+            {
+                size -= old.size();
+                removed.add(old);
+            }
+            size += entry.size();
+            // The iteration order is from the least to the most recently used.
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > getMaxCacheSize() && iterator.hasNext())
+            {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                size -= eldest.size();
+                removed.add(eldest);
+                if (eldest != entry)
+                    evictions.increment();
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stored {}, removed {}", entry, removed);
+        removed.forEach(Entry::release);
+    }
+
+    private void replay(Entry entry, HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        HttpResponse response = new HttpResponse(request, listeners)
+            .version(entry.version)
+            .status(entry.status)
+            .reason(entry.reason);
+        long age = TimeUnit.NANOSECONDS.toSeconds(entry.age(System.nanoTime()));
+        response.headers(headers ->
+        {
+            headers.add(entry.headers);
+            headers.putLongField(HttpHeader.AGE, age);
+        });
+
+        notifier.notifyBegin(listeners, response);
+        for (HttpField field : response.getHeaders())
+        {
+            notifier.notifyHeader(listeners, response, field);
+        }
+        notifier.notifyHeaders(listeners, response);
+
+        Callback callback = Callback.from(() ->
+        {
+            entry.release();
+            notifier.notifySuccess(listeners, response);
+            notifier.notifyComplete(listeners, new Result(request, response));
+        }, x ->
+        {
+            entry.release();
+            notifier.notifyFailure(listeners, response, x);
+            notifier.notifyComplete(listeners, new Result(request, null, response, x));
+        });
+
+        List<Response.DemandedContentListener> contentListeners = listeners.stream()
+            .filter(Response.DemandedContentListener.class::isInstance)
+            .map(Response.DemandedContentListener.class::cast)
+            .collect(Collectors.toList());
+        if (entry.content.hasRemaining() && !contentListeners.isEmpty())
+        {
+            // The whole content is available, so there is no need to wait for demand.
+            ObjLongConsumer<Object> demand = (context, value) -> {};
+            notifier.notifyBeforeContent(response, demand, contentListeners);
+            notifier.notifyContent(response, demand, entry.content.asReadOnlyBuffer(), callback, contentListeners);
+        }
+        else
+        {
+            callback.succeeded();
+        }
+    }
+
+    private static boolean isCacheableStatus(int status)
+    {
+        switch (status)
+        {
+            case HttpStatus.OK_200:
+            case HttpStatus.NON_AUTHORITATIVE_INFORMATION_203:
+            case HttpStatus.MULTIPLE_CHOICES_300:
+            case HttpStatus.MOVED_PERMANENTLY_301:
+            case HttpStatus.NOT_FOUND_404:
+            case HttpStatus.GONE_410:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the freshness lifetime in nanoseconds, see RFC 7234, section 4.2.1
+     */
+    private static long freshness(HttpFields headers, CacheControl cacheControl)
+    {
+        if (cacheControl.noCache)
+            return 0;
+        if (cacheControl.maxAge >= 0)
+            return TimeUnit.SECONDS.toNanos(cacheControl.maxAge);
+        long date = date(headers, HttpHeader.DATE);
+        long expires = date(headers, HttpHeader.EXPIRES);
+        if (headers.contains(HttpHeader.EXPIRES))
+            return expires > 0 && date > 0 ? TimeUnit.MILLISECONDS.toNanos(Math.max(0, expires - date)) : 0;
+        // Heuristic freshness, 10% of the time since the last modification.
+        long lastModified = date(headers, HttpHeader.LAST_MODIFIED);
+        if (lastModified > 0 && date > lastModified)
+            return TimeUnit.MILLISECONDS.toNanos(Math.min((date - lastModified) / 10, TimeUnit.DAYS.toMillis(1)));
+        return 0;
+    }
+
+    private static long date(HttpFields headers, HttpHeader header)
+    {
+        String value = headers.get(header);
+        return value == null ? -1 : DateParser.parseDate(value);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Entry> cached;
+        List<Flight> pending;
+        try (AutoLock l = lock.lock())
+        {
+            cached = new ArrayList<>(entries.values());
+            pending = new ArrayList<>(flights.values());
+        }
+        dumpObjects(out, indent, new DumpableCollection("entries", cached), new DumpableCollection("flights", pending));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[entries=%d,size=%d/%d]", getClass().getSimpleName(), hashCode(), getEntryCount(), getCacheSize(), getMaxCacheSize());
+    }
+
+    private static class CacheControl
+    {
+        private boolean noStore;
+        private boolean noCache;
+        private long maxAge = -1;
+
+        private static CacheControl from(HttpFields headers)
+        {
+            CacheControl result = new CacheControl();
+            QuotedCSV values = new QuotedCSV(false, headers.getValuesList(HttpHeader.CACHE_CONTROL).toArray(new String[0]));
+            for (String value : values)
+            {
+                String directive = value.trim().toLowerCase();
+                if ("no-store".equals(directive))
+                {
+                    result.noStore = true;
+                }
+                else if (directive.startsWith("no-cache"))
+                {
+                    result.noCache = true;
+                }
+                else if (directive.startsWith("max-age="))
+                {
+                    try
+                    {
+                        result.maxAge = Long.parseLong(directive.substring("max-age=".length()).trim());
+                    }
+                    catch (NumberFormatException x)
+                    {
+                        // An invalid max-age means that the response is stale.
+                        result.maxAge = 0;
+                    }
+                }
+            }
+            // Pragma is only used when Cache-Control is absent, see RFC 7234, section 5.4.
+            if (values.isEmpty() && headers.contains(HttpHeader.PRAGMA, "no-cache"))
+                result.noCache = true;
+            return result;
+        }
+    }
+
+    private class Entry
+    {
+        private final AtomicInteger references = new AtomicInteger(1);
+        private final String key;
+        private final HttpVersion version;
+        private final int status;
+        private final String reason;
+        private final Map<String, String> vary;
+        private final ByteBuffer content;
+        private volatile HttpFields headers;
+        private volatile long responseNanoTime;
+        private volatile long initialAge;
+        private volatile long freshness;
+
+        private Entry(String key, Request request, Response response, long responseNanoTime, ByteBuffer content)
+        {
+            this.key = key;
+            this.version = response.getVersion();
+            this.status = response.getStatus();
+            this.reason = response.getReason();
+            this.vary = new HashMap<>();
+            for (String name : new QuotedCSV(false, response.getHeaders().getValuesList(HttpHeader.VARY).toArray(new String[0])))
+            {
+                vary.put(name, request.getHeaders().get(name));
+            }
+            this.content = content;
+            update(response.getHeaders(), responseNanoTime);
+        }
+
+        private void update(HttpFields headers, long responseNanoTime)
+        {
+            this.headers = headers.asImmutable();
+            this.responseNanoTime = responseNanoTime;
+            long age = headers.getLongField(HttpHeader.AGE);
+            this.initialAge = age > 0 ? TimeUnit.SECONDS.toNanos(age) : 0;
+            this.freshness = freshness(headers, CacheControl.from(headers));
+        }
+
+        /**
+         * <p>Updates this entry with the headers of a {@code 304 Not Modified} response,
+         * see RFC 7234, section 4.3.4.</p>
+         */
+        private void revalidated(HttpFields notModified, long responseNanoTime)
+        {
+            HttpFields.Mutable merged = HttpFields.build(headers);
+            for (HttpField field : notModified)
+            {
+                HttpHeader header = field.getHeader();
+                if (header == HttpHeader.CONTENT_LENGTH || header == HttpHeader.CONTENT_ENCODING || header == HttpHeader.TRANSFER_ENCODING)
+                    continue;
+                merged.remove(field.getName());
+            }
+            for (HttpField field : notModified)
+            {
+                HttpHeader header = field.getHeader();
+                if (header == HttpHeader.CONTENT_LENGTH || header == HttpHeader.CONTENT_ENCODING || header == HttpHeader.TRANSFER_ENCODING)
+                    continue;
+                merged.add(field);
+            }
+            update(merged, responseNanoTime);
+        }
+
+        private boolean matches(Request request)
+        {
+            for (Map.Entry<String, String> entry : vary.entrySet())
+            {
+                if (!Objects.equals(entry.getValue(), request.getHeaders().get(entry.getKey())))
+                    return false;
+            }
+            return true;
+        }
+
+        private long age(long now)
+        {
+            return initialAge + now - responseNanoTime;
+        }
+
+        private boolean isFresh(long now)
+        {
+            return age(now) < freshness;
+        }
+
+        private boolean isValidatable()
+        {
+            HttpFields headers = this.headers;
+            return headers.contains(HttpHeader.ETAG) || headers.contains(HttpHeader.LAST_MODIFIED);
+        }
+
+        private int size()
+        {
+            return content.remaining();
+        }
+
+        private boolean retain()
+        {
+            while (true)
+            {
+                int refs = references.get();
+                if (refs == 0)
+                    return false;
+                if (references.compareAndSet(refs, refs + 1))
+                    return true;
+            }
+        }
+
+        private void release()
+        {
+            if (references.decrementAndGet() == 0)
+                client.getByteBufferPool().release(content);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,status=%d,size=%d,fresh=%b,refs=%d]",
+                getClass().getSimpleName(),
+                hashCode(),
+                key,
+                status,
+                size(),
+                isFresh(System.nanoTime()),
+                references.get());
+        }
+    }
+
+    private static class Waiter
+    {
+        private final HttpRequest request;
+        private final List<Response.ResponseListener> listeners;
+
+        private Waiter(HttpRequest request, List<Response.ResponseListener> listeners)
+        {
+            this.request = request;
+            this.listeners = listeners;
+        }
+    }
+
+    /**
+     * <p>The request sent to the server on behalf of all the identical
+     * requests that arrive while the response is pending.</p>
+     * <p>When there is no cached response, the first request is sent with its
+     * own listeners plus this listener, that captures the response content.
+     * When a cached response is revalidated, a copy of the first request is
+     * sent instead with just this listener, and the first request waits for
+     * the response like the other requests, since the response may be a
+     * {@code 304} that must be replaced by the cached response.</p>
+     */
+    private class Flight implements Response.Listener
+    {
+        private final List<Waiter> waiters = new ArrayList<>();
+        private final String key;
+        private final HttpRequest request;
+        private final List<Response.ResponseListener> listeners;
+        private final Entry stale;
+        private HttpRequest sent;
+        private boolean notModified;
+        private boolean detached;
+        private long responseNanoTime;
+        private ByteBuffer buffer;
+
+        private Flight(String key, HttpRequest request, List<Response.ResponseListener> listeners, Entry stale)
+        {
+            this.key = key;
+            this.request = request;
+            this.listeners = listeners;
+            this.stale = stale;
+        }
+
+        private void send()
+        {
+            if (stale == null)
+            {
+                misses.increment();
+                sent = request;
+                // This listener is notified first, so that the response is
+                // stored before the application is notified of its completion.
+                List<Response.ResponseListener> all = new ArrayList<>(listeners.size() + 1);
+                all.add(this);
+                all.addAll(listeners);
+                forward(sent, all);
+            }
+            else
+            {
+                revalidations.increment();
+                try (AutoLock l = lock.lock())
+                {
+                    waiters.add(0, new Waiter(request, listeners));
+                }
+                sent = copy(request);
+                HttpFields headers = stale.headers;
+                String etag = headers.get(HttpHeader.ETAG);
+                String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+                sent.headers(fields ->
+                {
+                    if (etag != null)
+                        fields.put(HttpHeader.IF_NONE_MATCH, etag);
+                    if (lastModified != null)
+                        fields.put(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+                });
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Revalidating {} with {}", stale, sent);
+                forward(sent, List.of(this));
+            }
+        }
+
+        private HttpRequest copy(HttpRequest request)
+        {
+            HttpRequest copy = client.newHttpRequest(new HttpConversation(), request.getURI());
+            copy.method(request.getMethod())
+                .version(request.getVersion())
+                .idleTimeout(request.getIdleTimeout(), TimeUnit.MILLISECONDS)
+                .timeout(request.getTimeout(), TimeUnit.MILLISECONDS)
+                .followRedirects(request.isFollowRedirects())
+                .headers(fields ->
+                {
+                    for (HttpField field : request.getHeaders())
+                    {
+                        if (field.getHeader() != HttpHeader.HOST)
+                            fields.add(field);
+                    }
+                });
+            copy.sent();
+            return copy;
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            responseNanoTime = System.nanoTime();
+            if (stale != null && response.getStatus() == HttpStatus.NOT_MODIFIED_304)
+            {
+                notModified = true;
+                return;
+            }
+
+            HttpFields headers = response.getHeaders();
+            CacheControl cacheControl = CacheControl.from(headers);
+            long contentLength = headers.getLongField(HttpHeader.CONTENT_LENGTH);
+            boolean cacheable = isCacheableStatus(response.getStatus()) &&
+                !cacheControl.noStore &&
+                !headers.contains(HttpHeader.VARY, "*") &&
+                contentLength <= getMaxEntrySize() &&
+                (freshness(headers, cacheControl) > 0 || headers.contains(HttpHeader.ETAG) || headers.contains(HttpHeader.LAST_MODIFIED));
+            if (cacheable)
+            {
+                int capacity = contentLength >= 0 ? (int)contentLength : Math.min(getMaxEntrySize(), 4096);
+                buffer = acquire(capacity);
+            }
+            else
+            {
+                detach(response);
+            }
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer content)
+        {
+            if (buffer == null)
+                return;
+            int length = content.remaining();
+            if (buffer.remaining() + length > getMaxEntrySize())
+            {
+                detach(response);
+                return;
+            }
+            if (BufferUtil.space(buffer) < length)
+            {
+                // Grow the buffer, at least doubling its capacity.
+                int capacity = Math.min(getMaxEntrySize(), Math.max(buffer.capacity() * 2, buffer.remaining() + length));
+                ByteBuffer bigger = acquire(capacity);
+                BufferUtil.append(bigger, buffer);
+                release(buffer);
+                buffer = bigger;
+            }
+            BufferUtil.append(buffer, content.slice());
+        }
+
+        private ByteBuffer acquire(int capacity)
+        {
+            ByteBuffer result = client.getByteBufferPool().acquire(capacity, isUseDirectByteBuffers());
+            BufferUtil.clear(result);
+            return result;
+        }
+
+        private void release(ByteBuffer buffer)
+        {
+            ByteBufferPool byteBufferPool = client.getByteBufferPool();
+            byteBufferPool.release(buffer);
+        }
+
+        /**
+         * <p>Gives up caching the response, and sends the waiting
+         * requests to the server independently.</p>
+         */
+        private void detach(Response response)
+        {
+            if (buffer != null)
+            {
+                release(buffer);
+                buffer = null;
+            }
+            List<Waiter> detached = removeWaiters();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Not caching {} for {}, sending {} waiting requests", response, this, detached.size());
+            // If revalidating, the first request is among the waiters.
+            if (sent != request)
+                response.abort(new IOException("Response not cacheable"));
+            detached.forEach(waiter -> forward(waiter.request, waiter.listeners));
+        }
+
+        private List<Waiter> removeWaiters()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                if (detached)
+                    return List.of();
+                detached = true;
+                flights.remove(key, this);
+                List<Waiter> result = new ArrayList<>(waiters);
+                waiters.clear();
+                return result;
+            }
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            List<Waiter> waiting = removeWaiters();
+            try
+            {
+                if (result.isFailed())
+                {
+                    if (buffer != null)
+                    {
+                        release(buffer);
+                        buffer = null;
+                    }
+                    // The failure may be specific to the request that was sent,
+                    // for example if it was aborted or timed out, so the waiting
+                    // requests are sent to the server independently.
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Failed {} for {}, sending {} waiting requests", result, this, waiting.size(), result.getFailure());
+                    waiting.forEach(waiter -> forward(waiter.request, waiter.listeners));
+                    return;
+                }
+
+                Entry entry;
+                if (notModified)
+                {
+                    entry = stale;
+                    entry.revalidated(result.getResponse().getHeaders(), responseNanoTime);
+                    // The entry may have been evicted while it was revalidated.
+                    store(entry);
+                }
+                else if (buffer != null)
+                {
+                    entry = new Entry(key, sent, result.getResponse(), responseNanoTime, buffer);
+                    buffer = null;
+                    store(entry);
+                }
+                else
+                {
+                    return;
+                }
+
+                for (Waiter waiter : waiting)
+                {
+                    if (entry.matches(waiter.request) && entry.retain())
+                        replay(entry, waiter.request, waiter.listeners);
+                    else
+                        forward(waiter.request, waiter.listeners);
+                }
+                if (entry != stale)
+                    entry.release();
+            }
+            finally
+            {
+                if (stale != null)
+                    stale.release();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,revalidating=%b]", getClass().getSimpleName(), hashCode(), key, stale != null);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link ConnectionPool} that provides the connection with the least load.</p>
+ * <p>For each connection, this pool tracks the number of active exchanges and
+ * an exponentially weighted moving average (EWMA) of the exchange latency.
+ * The load of a connection is its latency multiplied by the number of active
+ * exchanges plus one, so that a connection to a slow server is avoided even
+ * when it is not busy. Connections that have not completed an exchange yet
+ * are assumed to have the average latency of the pool, so that new connections
+ * are not preferred to all the others, and connections with the same load are
+ * compared by their number of active exchanges.</p>
+ * <p>Comparing the load of all the connections on every acquisition would be
+ * expensive, and would direct all the concurrent requests to the same connection,
+ * so this pool picks two connections at random and provides the one with the
+ * least load (see {@link Pool#acquire(java.util.Comparator)}).</p>
+ * <p>The latency is derived from the time connections spend with active exchanges
+ * divided by the number of exchanges, so that it is also accurate for multiplexed
+ * connections, where exchanges do not complete in the order they started.</p>
+ * <p>Connections that are persistently slower than the other connections, for
+ * example because they landed on a slow server behind a load balancer, are
+ * retired: they are not provided anymore, and they are closed when their last
+ * active exchange completes, so that a new connection may be opened in their place.
+ * A connection is slow if its latency exceeds the average latency of the
+ * other connections by {@link #getRetireLatencyRatio() a ratio}, once it has
+ * completed {@link #getRetireMinSamples() a minimum number of exchanges}.</p>
+ */
+@ManagedObject
+public class LeastLoadedConnectionPool extends AbstractConnectionPool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LeastLoadedConnectionPool.class);
+
+    private final LongAdder retired = new LongAdder();
+    private final LoadPool pool;
+    private double retireLatencyRatio = 3.0D;
+    private int retireMinSamples = 32;
+
+    public LeastLoadedConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, 1);
+    }
+
+    public LeastLoadedConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        this(destination, new LoadPool(maxConnections), requester, maxMultiplex);
+    }
+
+    private LeastLoadedConnectionPool(HttpDestination destination, LoadPool pool, Callback requester, int maxMultiplex)
+    {
+        super(destination, pool, requester);
+        this.pool = pool;
+        setMaxMultiplex(maxMultiplex);
+    }
+
+    @Override
+    @ManagedAttribute(value = "The multiplexing factor of connections")
+    public int getMaxMultiplex()
+    {
+        return super.getMaxMultiplex();
+    }
+
+    @Override
+    public void setMaxMultiplex(int maxMultiplex)
+    {
+        super.setMaxMultiplex(maxMultiplex);
+    }
+
+    @Override
+    @ManagedAttribute(value = "The maximum amount of times a connection is used before it gets closed")
+    public int getMaxUsageCount()
+    {
+        return super.getMaxUsageCount();
+    }
+
+    @Override
+    public void setMaxUsageCount(int maxUsageCount)
+    {
+        super.setMaxUsageCount(maxUsageCount);
+    }
+
+    /**
+     * @return the ratio between the latency of a connection and the average
+     * latency of the other connections above which the connection is retired
+     */
+    @ManagedAttribute("The ratio to the average latency of the other connections above which a connection is retired")
+    public double getRetireLatencyRatio()
+    {
+        return retireLatencyRatio;
+    }
+
+    /**
+     * @param retireLatencyRatio the ratio between the latency of a connection and the
+     * average latency of the other connections above which the connection is retired,
+     * or a non-positive value to never retire connections
+     */
+    public void setRetireLatencyRatio(double retireLatencyRatio)
+    {
+        this.retireLatencyRatio = retireLatencyRatio;
+    }
+
+    /**
+     * @return the minimum number of exchanges a connection must complete
+     * before its latency is compared to the latency of the other connections
+     */
+    @ManagedAttribute("The minimum number of exchanges before the latency of a connection is evaluated")
+    public int getRetireMinSamples()
+    {
+        return retireMinSamples;
+    }
+
+    /**
+     * @param retireMinSamples the minimum number of exchanges a connection must complete
+     * before its latency is compared to the latency of the other connections
+     */
+    public void setRetireMinSamples(int retireMinSamples)
+    {
+        this.retireMinSamples = Math.max(1, retireMinSamples);
+    }
+
+    @ManagedAttribute(value = "The number of connections retired because slow", readonly = true)
+    public long getRetiredConnectionCount()
+    {
+        return retired.longValue();
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        pool.loads.put(connection, new Load(pool, connection));
+        super.onCreated(connection);
+    }
+
+    @Override
+    protected void acquired(Connection connection)
+    {
+        Load load = pool.loads.get(connection);
+        if (load != null)
+            load.acquired();
+        super.acquired(connection);
+    }
+
+    @Override
+    protected boolean deactivate(Connection connection)
+    {
+        Load load = pool.loads.get(connection);
+        if (load != null && load.released() && isSlow(load))
+        {
+            retired.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Retiring slow {} from {}", load, this);
+            // Like for expired connections, the connection is removed
+            // and closed when its last active exchange completes.
+            return !remove(connection);
+        }
+        return super.deactivate(connection);
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        pool.loads.remove(connection);
+        super.removed(connection);
+    }
+
+    private boolean isSlow(Load load)
+    {
+        double ratio = getRetireLatencyRatio();
+        int minSamples = getRetireMinSamples();
+        // Evaluate a connection only every minSamples exchanges,
+        // to avoid iterating over all connections every release.
+        long samples = load.samples;
+        if (ratio <= 0 || samples < minSamples || samples % minSamples != 0)
+            return false;
+
+        double total = 0;
+        int count = 0;
+        for (Load other : pool.loads.values())
+        {
+            if (other == load || other.retired || other.samples < minSamples)
+                continue;
+            total += other.latency;
+            ++count;
+        }
+        if (count == 0)
+            return false;
+        return load.retire(ratio * total / count);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, new DumpableCollection("loads", pool.loads.values()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[r=%d]", super.toString(), getRetiredConnectionCount());
+    }
+
+    private static class LoadPool extends Pool<Connection>
+    {
+        private final Map<Connection, Load> loads;
+        // The moving average of the latency of all the connections.
+        private volatile double latency;
+
+        private LoadPool(int maxConnections)
+        {
+            super(StrategyType.RANDOM, maxConnections, false);
+            this.loads = new ConcurrentHashMap<>(maxConnections);
+        }
+
+        @Override
+        protected int getMaxMultiplex(Connection connection)
+        {
+            int multiplex = (connection instanceof Multiplexable)
+                ? ((Multiplexable)connection).getMaxMultiplex()
+                : super.getMaxMultiplex(connection);
+            return multiplex > 0 ? multiplex : 1;
+        }
+
+        @Override
+        public Entry acquire()
+        {
+            return acquire(this::compare);
+        }
+
+        private int compare(Connection c1, Connection c2)
+        {
+            Load load1 = loads.get(c1);
+            Load load2 = loads.get(c2);
+            int result = Double.compare(load(load1), load(load2));
+            if (result != 0)
+                return result;
+            // Before any latency is known, the least active connection has the least load.
+            return Integer.compare(active(load1), active(load2));
+        }
+
+        private double load(Load load)
+        {
+            if (load == null)
+                return 0;
+            // Connections without latency samples yet have the average latency,
+            // so that the concurrent requests are not all directed to them.
+            double latency = load.samples == 0 ? this.latency : load.latency;
+            return latency * (load.active + 1);
+        }
+
+        private int active(Load load)
+        {
+            return load == null ? 0 : load.active;
+        }
+
+        private void sample(double sample)
+        {
+            // Concurrent updates may lose a sample, which is fine for an average.
+            double average = latency;
+            latency = average == 0 ? sample : average + Load.ALPHA * (sample - average);
+        }
+    }
+
+    private static class Load
+    {
+        // The weight of a new sample in the latency moving average.
+        private static final double ALPHA = 0.2D;
+
+        private final AutoLock lock = new AutoLock();
+        private final LoadPool pool;
+        private final Connection connection;
+        private volatile int active;
+        private volatile double latency;
+        private volatile long samples;
+        private volatile boolean retired;
+        private long busyNanos;
+        private long lastNanoTime;
+
+        private Load(LoadPool pool, Connection connection)
+        {
+            this.pool = pool;
+            this.connection = connection;
+        }
+
+        private void acquired()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                accumulate();
+                ++active;
+            }
+        }
+
+        private boolean released()
+        {
+            try (AutoLock l = lock.lock())
+            {
+                // A connection may be released without being acquired,
+                // for example when it is removed while idle.
+                if (active == 0)
+                    return false;
+                accumulate();
+                --active;
+                // By Little's law, the time spent with active exchanges
+                // since the previous release is an estimate of the latency.
+                double sample = busyNanos;
+                busyNanos = 0;
+                long count = samples;
+                latency = count == 0 ? sample : latency + ALPHA * (sample - latency);
+                samples = count + 1;
+                pool.sample(sample);
+                return !retired;
+            }
+        }
+
+        private void accumulate()
+        {
+            long now = System.nanoTime();
+            if (active > 0)
+                busyNanos += active * (now - lastNanoTime);
+            lastNanoTime = now;
+        }
+
+        private boolean retire(double maxLatency)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                if (retired || latency <= maxLatency)
+                    return false;
+                retired = true;
+                return true;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[active=%d,latency=%dus,samples=%d,retired=%b]",
+                connection,
+                active,
+                TimeUnit.NANOSECONDS.toMicros((long)latency),
+                samples,
+                retired);
+        }
+    }
+}
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -21,6 +22,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -53,6 +55,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -69,20 +72,21 @@ public class ConnectionPoolTest
         return pool;
     });
     private static final ConnectionPoolFactory ROUND_ROBIN = new ConnectionPoolFactory("round-robin", destination -> new RoundRobinConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination));
+    private static final ConnectionPoolFactory LEAST_LOADED = new ConnectionPoolFactory("least-loaded", destination -> new LeastLoadedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination));
 
     public static Stream<ConnectionPoolFactory> pools()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN, LEAST_LOADED);
     }
 
     public static Stream<ConnectionPoolFactory> poolsNoMaxDuration()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, ROUND_ROBIN);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, ROUND_ROBIN, LEAST_LOADED);
     }
 
     public static Stream<ConnectionPoolFactory> poolsNoRoundRobin()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, LEAST_LOADED);
     }
 
     private Server server;
@@ -633,6 +637,88 @@ public class ConnectionPoolTest
         assertEquals(0, connectionPool.getConnectionCount());
     }
 
+    @Test
+    public void testLeastLoadedRetiresSlowConnection() throws Exception
+    {
+        // The server is slow to respond to requests on the first connection.
+        AtomicInteger slowPort = new AtomicInteger();
+        startServer(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                slowPort.compareAndSet(0, request.getRemotePort());
+                try
+                {
+                    if (request.getRemotePort() == slowPort.get())
+                        Thread.sleep(20);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new InterruptedIOException();
+                }
+            }
+        });
+        int maxConnections = 2;
+        startClient(destination ->
+        {
+            LeastLoadedConnectionPool connectionPool = new LeastLoadedConnectionPool(destination, maxConnections, destination);
+            connectionPool.setRetireMinSamples(4);
+            return connectionPool;
+        });
+        client.setMaxConnectionsPerDestination(maxConnections);
+
+        // The first request opens the slow connection.
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        HttpDestination destination = (HttpDestination)client.getDestinations().get(0);
+        LeastLoadedConnectionPool connectionPool = (LeastLoadedConnectionPool)destination.getConnectionPool();
+
+        // Send concurrent requests, so that the slow connection is used
+        // when the other is busy, until the slow connection is retired.
+        int parallelism = maxConnections;
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch latch = new CountDownLatch(parallelism);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < parallelism; ++i)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    while (running.get())
+                    {
+                        ContentResponse threadResponse = client.newRequest("localhost", connector.getLocalPort())
+                            .timeout(5, TimeUnit.SECONDS)
+                            .send();
+                        assertEquals(HttpStatus.OK_200, threadResponse.getStatus());
+                    }
+                }
+                catch (Throwable x)
+                {
+                    failures.add(x);
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        await().atMost(30, TimeUnit.SECONDS).until(connectionPool::getRetiredConnectionCount, Matchers.greaterThan(0L));
+        running.set(false);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty(), failures.toString());
+
+        // Requests keep working after the slow connection has been closed.
+        response = client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertThat(connectionPool.getConnectionCount(), Matchers.lessThanOrEqualTo(maxConnections));
+    }
+
     private static class ConnectionPoolFactory
     {
         private final String name;
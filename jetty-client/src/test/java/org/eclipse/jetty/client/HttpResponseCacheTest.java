@@ -0,0 +1,335 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpResponseCacheTest extends AbstractHttpClientServerTest
+{
+    private HttpResponseCache cache;
+
+    private void start(Scenario scenario, EmptyServerHandler handler, int maxCacheSize) throws Exception
+    {
+        startServer(scenario, handler);
+        startClient(scenario, httpClient ->
+        {
+            cache = new HttpResponseCache(httpClient);
+            cache.setMaxCacheSize(maxCacheSize);
+            httpClient.setResponseCache(cache);
+        });
+    }
+
+    private ContentResponse get(Scenario scenario, String path) throws Exception
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path(path)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFreshResponseIsServedFromCache(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("content-" + requests.incrementAndGet());
+            }
+        }, 1024 * 1024);
+
+        ContentResponse response1 = get(scenario, "/fresh");
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("content-1", response1.getContentAsString());
+
+        ContentResponse response2 = get(scenario, "/fresh");
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("content-1", response2.getContentAsString());
+        assertNotNull(response2.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+
+        // A request with no-cache goes to the server.
+        ContentResponse response3 = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/fresh")
+            .headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "no-cache"))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals("content-2", response3.getContentAsString());
+        assertEquals(2, requests.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testStaleResponseIsRevalidated(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=0");
+                response.setHeader(HttpHeader.ETAG.asString(), "\"v1\"");
+                if ("\"v1\"".equals(request.getHeader(HttpHeader.IF_NONE_MATCH.asString())))
+                {
+                    notModified.incrementAndGet();
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    return;
+                }
+                response.getOutputStream().print("content");
+            }
+        }, 1024 * 1024);
+
+        assertEquals("content", get(scenario, "/stale").getContentAsString());
+
+        ContentResponse response = get(scenario, "/stale");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals("\"v1\"", response.getHeaders().get(HttpHeader.ETAG));
+
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testNoStoreResponseIsNotCached(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "no-store");
+                response.getOutputStream().print("content-" + requests.incrementAndGet());
+            }
+        }, 1024 * 1024);
+
+        assertEquals("content-1", get(scenario, "/").getContentAsString());
+        assertEquals("content-2", get(scenario, "/").getContentAsString());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testUnsafeRequestInvalidatesCachedResponse(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("content-" + requests.incrementAndGet());
+            }
+        }, 1024 * 1024);
+
+        assertEquals("content-1", get(scenario, "/").getContentAsString());
+        assertEquals(1, cache.getEntryCount());
+
+        client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .method(HttpMethod.POST)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(0, cache.getEntryCount());
+
+        assertEquals("content-3", get(scenario, "/").getContentAsString());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConcurrentRequestsAreCoalesced(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                try
+                {
+                    assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException x)
+                {
+                    throw new IOException(x);
+                }
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("content");
+            }
+        }, 1024 * 1024);
+
+        int count = 8;
+        FutureResponseListener[] listeners = new FutureResponseListener[count];
+        for (int i = 0; i < count; ++i)
+        {
+            org.eclipse.jetty.client.api.Request request = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .path("/coalesced")
+                .timeout(5, TimeUnit.SECONDS);
+            listeners[i] = new FutureResponseListener(request);
+            request.send(listeners[i]);
+        }
+
+        assertEquals(count - 1, cache.getCoalescedCount());
+        serverLatch.countDown();
+
+        for (FutureResponseListener listener : listeners)
+        {
+            ContentResponse response = listener.get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("content", response.getContentAsString());
+        }
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testWaitingRequestsAreSentWhenCoalescedRequestFails(Scenario scenario) throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch requestLatch = new CountDownLatch(1);
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                requestLatch.countDown();
+                try
+                {
+                    assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException x)
+                {
+                    throw new IOException(x);
+                }
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("content");
+            }
+        }, 1024 * 1024);
+
+        int count = 4;
+        FutureResponseListener[] listeners = new FutureResponseListener[count];
+        org.eclipse.jetty.client.api.Request[] requestsSent = new org.eclipse.jetty.client.api.Request[count];
+        for (int i = 0; i < count; ++i)
+        {
+            requestsSent[i] = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .path("/aborted")
+                .timeout(5, TimeUnit.SECONDS);
+            listeners[i] = new FutureResponseListener(requestsSent[i]);
+            requestsSent[i].send(listeners[i]);
+            if (i == 0)
+                assertTrue(requestLatch.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(count - 1, cache.getCoalescedCount());
+
+        // Abort the request that was sent on behalf of the others.
+        assertTrue(requestsSent[0].abort(new IOException("explicitly_aborted_by_test")));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> listeners[0].get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause().getMessage(), containsString("explicitly_aborted_by_test"));
+        serverLatch.countDown();
+
+        // The waiting requests are not failed, but sent independently.
+        for (int i = 1; i < count; ++i)
+        {
+            ContentResponse response = listeners[i].get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("content", response.getContentAsString());
+        }
+        assertEquals(count, requests.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testLeastRecentlyUsedResponseIsEvicted(Scenario scenario) throws Exception
+    {
+        int length = 1024;
+        AtomicInteger requests = new AtomicInteger();
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().write(new byte[length]);
+            }
+        }, 2 * length + length / 2);
+
+        get(scenario, "/a");
+        get(scenario, "/b");
+        // Access /a so that /b becomes the least recently used.
+        get(scenario, "/a");
+        assertEquals(2, requests.get());
+
+        get(scenario, "/c");
+        assertEquals(3, requests.get());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(2 * length, cache.getCacheSize());
+
+        get(scenario, "/a");
+        assertEquals(3, requests.get());
+        get(scenario, "/b");
+        assertEquals(4, requests.get());
+
+        client.stop();
+        assertEquals(0, cache.getEntryCount());
+    }
+}
@@ -17,6 +17,10 @@ import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,6 +28,7 @@ import org.eclipse.jetty.http.HttpTokens.EndOfContent;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Index;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,6 +106,9 @@ public class HttpGenerator
 
     // data
     private boolean _needCRLF = false;
+    private HeaderCache _headerCache;
+    private int _cacheableFrom = -1;
+    private int _cacheableTo = -1;
 
     public HttpGenerator()
     {
@@ -112,6 +120,23 @@ public class HttpGenerator
         _send = (sendServerVersion ? SEND_SERVER : 0) | (sendXPoweredBy ? SEND_XPOWEREDBY : 0);
     }
 
+    /**
+     * @return the cache of encoded header blocks, or null if header blocks are not cached
+     */
+    public HeaderCache getHeaderCache()
+    {
+        return _headerCache;
+    }
+
+    /**
+     * @param headerCache the cache of encoded header blocks, possibly shared
+     * with other generators, or null to not cache header blocks
+     */
+    public void setHeaderCache(HeaderCache headerCache)
+    {
+        _headerCache = headerCache;
+    }
+
     public void reset()
     {
         _state = State.START;
@@ -594,13 +619,16 @@ public class HttpGenerator
         HttpFields fields = _info.getFields();
         if (fields != null)
         {
+            _cacheableFrom = -1;
             int n = fields.size();
             for (int f = 0; f < n; f++)
             {
                 HttpField field = fields.getField(f);
                 HttpHeader h = field.getHeader();
+                if (_headerCache != null && !HeaderCache.isCacheable(field))
+                    putCacheable(fields, header);
                 if (h == null)
-                    putTo(field, header);
+                    putField(fields, f, field, header);
                 else
                 {
                     switch (h)
@@ -617,7 +645,7 @@ public class HttpGenerator
                         {
                             // write the field to the header
                             contentType = true;
-                            putTo(field, header);
+                            putField(fields, f, field, header);
                             break;
                         }
 
@@ -658,15 +686,16 @@ public class HttpGenerator
                         case SERVER:
                         {
                             send = send & ~SEND_SERVER;
-                            putTo(field, header);
+                            putField(fields, f, field, header);
                             break;
                         }
 
                         default:
-                            putTo(field, header);
+                            putField(fields, f, field, header);
                     }
                 }
             }
+            putCacheable(fields, header);
         }
 
         // Can we work out the content length?
@@ -787,6 +816,33 @@ public class HttpGenerator
         header.put(HttpTokens.CRLF);
     }
 
+    private void putField(HttpFields fields, int index, HttpField field, ByteBuffer header)
+    {
+        if (_headerCache != null && HeaderCache.isCacheable(field))
+        {
+            // Defer the cacheable fields to encode them as a block.
+            if (_cacheableFrom < 0)
+                _cacheableFrom = index;
+            _cacheableTo = index + 1;
+        }
+        else
+        {
+            putTo(field, header);
+        }
+    }
+
+    private void putCacheable(HttpFields fields, ByteBuffer header)
+    {
+        int from = _cacheableFrom;
+        int to = _cacheableTo;
+        if (from < 0)
+            return;
+        _cacheableFrom = -1;
+        _cacheableTo = -1;
+
+        _headerCache.putTo(fields, from, to, header);
+    }
+
     private static void putContentLength(ByteBuffer header, long contentLength)
     {
         if (contentLength == 0)
@@ -933,4 +989,264 @@ public class HttpGenerator
         }
         BufferUtil.putCRLF(bufferInFillMode);
     }
+
+    /**
+     * <p>A cache of encoded blocks of response header fields.</p>
+     * <p>Responses of the same resource or of the same API typically have
+     * the same header fields, that are encoded once in a block that is then
+     * copied in the header of each response.
+     * The fields whose value is specific to each response, such as
+     * {@code Date}, {@code Content-Length} and {@code Set-Cookie}, are
+     * not cached, but are encoded in between the cached blocks, in order.</p>
+     * <p>The cache is thread safe and may be shared by many generators.
+     * Blocks are looked up without locking and without allocating, by comparing
+     * the fields of the response in place.
+     * When the cache reaches its max number of blocks, a block that was not
+     * recently used is evicted to make room for the new one, using the CLOCK
+     * approximation of LRU.</p>
+     */
+    public static class HeaderCache
+    {
+        private static final EnumSet<HttpHeader> UNCACHEABLE = EnumSet.of(
+            HttpHeader.CONTENT_LENGTH,
+            HttpHeader.TRANSFER_ENCODING,
+            HttpHeader.CONNECTION,
+            HttpHeader.DATE,
+            HttpHeader.SET_COOKIE,
+            HttpHeader.SET_COOKIE2,
+            HttpHeader.AGE,
+            HttpHeader.CONTENT_RANGE);
+
+        private final AutoLock _lock = new AutoLock();
+        private final LongAdder _hits = new LongAdder();
+        private final LongAdder _misses = new LongAdder();
+        private final AtomicReferenceArray<Block> _buckets;
+        private final int _maxBlocks;
+        // The blocks in insertion order for the CLOCK eviction, guarded by _lock.
+        private final Block[] _clock;
+        private int _hand;
+        private volatile int _size;
+
+        /**
+         * @param maxBlocks the max number of encoded blocks to cache
+         */
+        public HeaderCache(int maxBlocks)
+        {
+            if (maxBlocks <= 0)
+                throw new IllegalArgumentException("Invalid max blocks " + maxBlocks);
+            _maxBlocks = maxBlocks;
+            _clock = new Block[maxBlocks];
+            _buckets = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, maxBlocks - 1)) << 1);
+        }
+
+        /**
+         * @return the max number of encoded blocks to cache
+         */
+        public int getMaxBlocks()
+        {
+            return _maxBlocks;
+        }
+
+        /**
+         * @return the number of cached blocks
+         */
+        public int size()
+        {
+            return _size;
+        }
+
+        /**
+         * @return the number of blocks copied from the cache
+         */
+        public long getHits()
+        {
+            return _hits.sum();
+        }
+
+        /**
+         * @return the number of blocks that were not cached, and were encoded
+         */
+        public long getMisses()
+        {
+            return _misses.sum();
+        }
+
+        public void clear()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                for (int i = 0; i < _buckets.length(); i++)
+                {
+                    _buckets.set(i, null);
+                }
+                Arrays.fill(_clock, null);
+                _hand = 0;
+                _size = 0;
+            }
+        }
+
+        /**
+         * @param field the field to test
+         * @return whether the field can be part of a cached block
+         */
+        public static boolean isCacheable(HttpField field)
+        {
+            HttpHeader header = field.getHeader();
+            return header == null || !UNCACHEABLE.contains(header);
+        }
+
+        private void putTo(HttpFields fields, int from, int to, ByteBuffer header)
+        {
+            int hash = 1;
+            for (int i = from; i < to; i++)
+            {
+                hash = 31 * hash + fields.getField(i).hashCode();
+            }
+            int index = hash & (_buckets.length() - 1);
+
+            Block block = find(_buckets.get(index), hash, fields, from, to);
+            if (block != null)
+            {
+                _hits.increment();
+                // Avoid writing to the shared block when not needed.
+                if (!block._used)
+                    block._used = true;
+                header.put(block._bytes);
+                return;
+            }
+            _misses.increment();
+
+            int position = header.position();
+            HttpField[] blockFields = new HttpField[to - from];
+            for (int i = from; i < to; i++)
+            {
+                HttpField field = fields.getField(i);
+                HttpGenerator.putTo(field, header);
+                blockFields[i - from] = field;
+            }
+            byte[] bytes = new byte[header.position() - position];
+            header.duplicate().position(position).get(bytes);
+
+            try (AutoLock l = _lock.lock())
+            {
+                Block head = _buckets.get(index);
+                // Another generator may have cached the same block.
+                if (find(head, hash, fields, from, to) != null)
+                    return;
+
+                int slot;
+                if (_size < _maxBlocks)
+                {
+                    slot = _size;
+                    _size = slot + 1;
+                }
+                else
+                {
+                    slot = evict();
+                    head = _buckets.get(index);
+                }
+                block = new Block(hash, blockFields, bytes, head);
+                _clock[slot] = block;
+                _buckets.set(index, block);
+            }
+        }
+
+        /**
+         * <p>Evicts the first block, from the clock hand, that was not used since
+         * the hand last passed it, clearing the usage of the blocks it passes.</p>
+         *
+         * @return the clock slot of the evicted block
+         */
+        private int evict()
+        {
+            assert _lock.isHeldByCurrentThread();
+            while (true)
+            {
+                int slot = _hand;
+                _hand = (slot + 1) % _maxBlocks;
+                Block block = _clock[slot];
+                if (block._used)
+                {
+                    block._used = false;
+                    continue;
+                }
+                unlink(block);
+                _clock[slot] = null;
+                return slot;
+            }
+        }
+
+        /**
+         * <p>Unlinks the block from its chain, leaving its own link
+         * unchanged for the concurrent lookups that reached it.</p>
+         */
+        private void unlink(Block block)
+        {
+            int index = block._hash & (_buckets.length() - 1);
+            Block head = _buckets.get(index);
+            if (head == block)
+            {
+                _buckets.set(index, block._next);
+                return;
+            }
+            for (Block previous = head; previous != null; previous = previous._next)
+            {
+                if (previous._next == block)
+                {
+                    previous._next = block._next;
+                    return;
+                }
+            }
+        }
+
+        private static Block find(Block chain, int hash, HttpFields fields, int from, int to)
+        {
+            for (Block block = chain; block != null; block = block._next)
+            {
+                if (block.matches(hash, fields, from, to))
+                    return block;
+            }
+            return null;
+        }
+
+        private static class Block
+        {
+            private final int _hash;
+            private final HttpField[] _fields;
+            private final byte[] _bytes;
+            // Guarded by _lock for writes, read without locking.
+            private volatile Block _next;
+            private volatile boolean _used;
+
+            private Block(int hash, HttpField[] fields, byte[] bytes, Block next)
+            {
+                _hash = hash;
+                _fields = fields;
+                _bytes = bytes;
+                _next = next;
+            }
+
+            private boolean matches(int hash, HttpFields fields, int from, int to)
+            {
+                if (_hash != hash || _fields.length != to - from)
+                    return false;
+                for (int i = 0; i < _fields.length; i++)
+                {
+                    if (!isSameEncoding(_fields[i], fields.getField(from + i)))
+                        return false;
+                }
+                return true;
+            }
+
+            private static boolean isSameEncoding(HttpField f1, HttpField f2)
+            {
+                if (f1 == f2)
+                    return true;
+                return f1.getHeader() == f2.getHeader() &&
+                    f1.getName().equals(f2.getName()) &&
+                    Objects.equals(f1.getValue(), f2.getValue()) &&
+                    (f1 instanceof PreEncodedHttpField) == (f2 instanceof PreEncodedHttpField);
+            }
+        }
+    }
 }
@@ -16,11 +16,16 @@ package org.eclipse.jetty.http;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.jetty.http.HttpTokens.EndOfContent;
 import org.eclipse.jetty.util.BufferUtil;
@@ -207,6 +212,8 @@ public class HttpParser
         CLOSED  // The associated stream/endpoint is at EOF
     }
 
+    private static final long SWAR_ONES = 0x0101010101010101L;
+    private static final long SWAR_HIGHS = 0x8080808080808080L;
     private static final EnumSet<State> __idleStates = EnumSet.of(State.START, State.END, State.CLOSE, State.CLOSED);
     private static final EnumSet<State> __completeStates = EnumSet.of(State.END, State.CLOSE, State.CLOSED);
     private static final EnumSet<State> __terminatedStates = EnumSet.of(State.CLOSE, State.CLOSED);
@@ -220,7 +227,9 @@ public class HttpParser
     private final HttpCompliance _complianceMode;
     private final Utf8StringBuilder _uri = new Utf8StringBuilder(INITIAL_URI_LENGTH);
     private final FieldCache _fieldCache = new FieldCache();
+    private SharedFieldCache _sharedFieldCache;
     private HttpField _field;
+    private boolean _fieldCached;
     private HttpHeader _header;
     private String _headerString;
     private String _valueString;
@@ -322,6 +331,23 @@ public class HttpParser
         _fieldCache.setCaseSensitive(headerCacheCaseSensitive);
     }
 
+    /**
+     * @return the cache of header fields shared with other parsers, or null
+     */
+    public SharedFieldCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    /**
+     * @param sharedFieldCache the cache of header fields shared with other parsers,
+     * or null to only use the cache of this parser
+     */
+    public void setSharedFieldCache(SharedFieldCache sharedFieldCache)
+    {
+        _sharedFieldCache = sharedFieldCache;
+    }
+
     protected void checkViolation(Violation violation) throws BadMessageException
     {
         if (violation.isAllowedBy(_complianceMode))
@@ -705,30 +731,29 @@ public class HttpParser
                                 _uri.reset();
                                 setState(State.URI);
                                 // quick scan for space or EoBuffer
+                                int p = buffer.position();
+                                int i = scanUri(buffer, p, buffer.limit());
+                                int len = i - p;
+                                _headerBytes += len;
+
+                                if (_maxHeaderBytes > 0 && ++_headerBytes > _maxHeaderBytes)
+                                {
+                                    LOG.warn("URI is too large >{}", _maxHeaderBytes);
+                                    throw new BadMessageException(HttpStatus.URI_TOO_LONG_414);
+                                }
                                 if (buffer.hasArray())
                                 {
-                                    byte[] array = buffer.array();
-                                    int p = buffer.arrayOffset() + buffer.position();
-                                    int l = buffer.arrayOffset() + buffer.limit();
-                                    int i = p;
-                                    while (i < l && array[i] > HttpTokens.SPACE)
-                                    {
-                                        i++;
-                                    }
-
-                                    int len = i - p;
-                                    _headerBytes += len;
-
-                                    if (_maxHeaderBytes > 0 && ++_headerBytes > _maxHeaderBytes)
-                                    {
-                                        LOG.warn("URI is too large >{}", _maxHeaderBytes);
-                                        throw new BadMessageException(HttpStatus.URI_TOO_LONG_414);
-                                    }
-                                    _uri.append(array, p - 1, len + 1);
-                                    buffer.position(i - buffer.arrayOffset());
+                                    _uri.append(buffer.array(), buffer.arrayOffset() + p - 1, len + 1);
                                 }
                                 else
+                                {
                                     _uri.append(t.getByte());
+                                    for (int j = p; j < i; j++)
+                                    {
+                                        _uri.append(buffer.get(j));
+                                    }
+                                }
+                                buffer.position(i);
                             }
                             break;
 
@@ -1070,12 +1095,17 @@ public class HttpParser
                     _fieldCache.add(_field);
                 }
             }
-            _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
+
+            HttpField field = _field != null ? _field : new HttpField(_header, _headerString, _valueString);
+            if (_sharedFieldCache != null && !_fieldCached)
+                _sharedFieldCache.learn(field);
+            _handler.parsedHeader(field);
         }
 
         _headerString = _valueString = null;
         _header = null;
         _field = null;
+        _fieldCached = false;
     }
 
     private void parsedTrailer()
@@ -1247,6 +1277,8 @@ public class HttpParser
                             {
                                 // Try a look ahead for the known header name and value.
                                 HttpField cachedField = _fieldCache.getBest(buffer, -1, buffer.remaining());
+                                if (cachedField == null && _sharedFieldCache != null)
+                                    cachedField = _sharedFieldCache.getBest(buffer, -1, buffer.remaining());
                                 if (cachedField == null)
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
 
@@ -1296,6 +1328,7 @@ public class HttpParser
                                     if (peek == HttpTokens.CARRIAGE_RETURN || peek == HttpTokens.LINE_FEED)
                                     {
                                         _field = cachedField;
+                                        _fieldCached = true;
                                         _valueString = v;
                                         setState(FieldState.IN_VALUE);
 
@@ -1371,6 +1404,7 @@ public class HttpParser
                         case DIGIT:
                         case TCHAR:
                             _string.append(t.getChar());
+                            appendFieldName(buffer);
                             _length = _string.length();
                             break;
 
@@ -1429,6 +1463,7 @@ public class HttpParser
                             _string.append(t.getChar());
                             _length = _string.length();
                             setState(FieldState.IN_VALUE);
+                            appendFieldValue(buffer);
                             break;
 
                         default:
@@ -1451,6 +1486,7 @@ public class HttpParser
                         case SPACE:
                         case HTAB:
                             _string.append(t.getChar());
+                            appendFieldValue(buffer);
                             break;
 
                         case ALPHA:
@@ -1461,6 +1497,7 @@ public class HttpParser
                         case OTEXT: // TODO review? should this be a utf8 string?
                             _string.append(t.getChar());
                             _length = _string.length();
+                            appendFieldValue(buffer);
                             break;
 
                         default:
@@ -1476,6 +1513,159 @@ public class HttpParser
         return false;
     }
 
+    /**
+     * <p>Appends to the field name the token characters that follow in the buffer,
+     * without going through the per byte state machine.</p>
+     *
+     * @param buffer the buffer positioned after a field name character
+     */
+    private void appendFieldName(ByteBuffer buffer)
+    {
+        int from = buffer.position();
+        int end = scanFieldName(buffer, from, scanLimit(from, buffer.limit()));
+        for (int i = from; i < end; i++)
+        {
+            _string.append((char)(0xff & buffer.get(i)));
+        }
+        if (_maxHeaderBytes > 0)
+            _headerBytes += end - from;
+        buffer.position(end);
+    }
+
+    /**
+     * <p>Appends to the field value the visible characters and spaces that follow
+     * in the buffer, without going through the per byte state machine.</p>
+     * <p>As in the state machine, trailing spaces are appended to the value
+     * but are not included in its length.</p>
+     *
+     * @param buffer the buffer positioned after a field value character
+     */
+    private void appendFieldValue(ByteBuffer buffer)
+    {
+        int from = buffer.position();
+        int end = scanFieldValue(buffer, from, scanLimit(from, buffer.limit()));
+        if (end == from)
+            return;
+        int last = -1;
+        for (int i = from; i < end; i++)
+        {
+            byte b = buffer.get(i);
+            _string.append((char)(0xff & b));
+            if (b != HttpTokens.SPACE)
+                last = i;
+        }
+        if (last >= 0)
+            _length = _string.length() - (end - 1 - last);
+        if (_maxHeaderBytes > 0)
+            _headerBytes += end - from;
+        buffer.position(end);
+    }
+
+    /**
+     * @return the limit of a quick scan, so that the state machine
+     * still detects the header byte that is over the max header bytes
+     */
+    private int scanLimit(int from, int limit)
+    {
+        if (_maxHeaderBytes > 0)
+            return Math.min(limit, from + Math.max(0, _maxHeaderBytes - _headerBytes));
+        return limit;
+    }
+
+    /**
+     * @return whether any of the bytes of the word, that are below 0x80, is less than {@code n}
+     */
+    private static boolean hasLess(long word, int n)
+    {
+        return ((word - SWAR_ONES * n) & ~word & SWAR_HIGHS) != 0;
+    }
+
+    /**
+     * @return whether any of the bytes of the word is equal to {@code b}
+     */
+    private static boolean hasByte(long word, int b)
+    {
+        long x = word ^ (SWAR_ONES * b);
+        return ((x - SWAR_ONES) & ~x & SWAR_HIGHS) != 0;
+    }
+
+    /**
+     * <p>Scans, 8 bytes at a time, for the end of a request target,
+     * that is the first byte that is either a control character,
+     * a space or obs-text.</p>
+     *
+     * @return the index of the first byte after {@code from} that ends the request target
+     */
+    static int scanUri(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        while (i + 8 <= to)
+        {
+            long word = buffer.getLong(i);
+            if ((word & SWAR_HIGHS) != 0 || hasLess(word, HttpTokens.SPACE + 1))
+                break;
+            i += 8;
+        }
+        while (i < to && buffer.get(i) > HttpTokens.SPACE)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * <p>Scans, 8 bytes at a time, for the end of a run of field value
+     * characters, that are visible characters, spaces and obs-text.</p>
+     *
+     * @return the index of the first byte after {@code from} that is not a visible character, a space or obs-text
+     */
+    static int scanFieldValue(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        while (i + 8 <= to)
+        {
+            long word = buffer.getLong(i);
+            if (hasLess(word, HttpTokens.SPACE) || hasByte(word, 0x7F))
+                break;
+            i += 8;
+        }
+        while (i < to)
+        {
+            int b = 0xff & buffer.get(i);
+            if (b < HttpTokens.SPACE || b == 0x7F)
+                break;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * <p>Scans for the end of a run of token characters. A field name is
+     * typically short, and the scan stops on the first colon, whitespace
+     * or any other delimiter, so the bytes are checked one at a time.</p>
+     *
+     * @return the index of the first byte after {@code from} that is not a token character
+     */
+    static int scanFieldName(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        while (i < to)
+        {
+            switch (HttpTokens.TOKENS[0xff & buffer.get(i)].getType())
+            {
+                case ALPHA:
+                case DIGIT:
+                case TCHAR:
+                    i++;
+                    break;
+
+                default:
+                    return i;
+            }
+        }
+        return i;
+    }
+
     /**
      * Parse until next Event.
      *
@@ -2093,4 +2283,247 @@ public class HttpParser
             }
         }
     }
+
+    /**
+     * <p>A cache of header fields that is learned from the requests of many connections.</p>
+     * <p>Unlike the cache of each parser, that only holds the fields of a few well known
+     * headers seen on one connection, this cache holds the most frequent name and value
+     * pairs of any header, such as client identifiers or tenants, and the parsers that
+     * share it return the same {@link HttpField} instances for them.</p>
+     * <p>Parsed fields are candidates that are admitted in the cache once they have been
+     * seen {@link #getAdmissionThreshold()} times. The cache is a case sensitive index
+     * of at most {@link #getMaxFields()} of the most frequent fields, that is rebuilt
+     * when fields are admitted, at most once per second once the cache is full.
+     * The frequencies are halved every second, so that the fields that are no longer
+     * frequent are evicted by the fields that are admitted. The candidates are bounded,
+     * and the least frequent ones are evicted when they are full, so that new fields
+     * can still be learned.</p>
+     * <p>The lookups only read the current index, so that they do not contend.
+     * Fields with credentials, as well as long values, are never cached.</p>
+     */
+    public static class SharedFieldCache
+    {
+        private static final EnumSet<HttpHeader> UNCACHEABLE = EnumSet.of(
+            HttpHeader.AUTHORIZATION,
+            HttpHeader.PROXY_AUTHORIZATION,
+            HttpHeader.COOKIE,
+            HttpHeader.CONTENT_LENGTH);
+        private static final int MAX_VALUE_LENGTH = 256;
+        private static final long REBUILD_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+        private final ReentrantLock _lock = new ReentrantLock();
+        private final Map<HttpField, Entry> _candidates = new ConcurrentHashMap<>();
+        private final int _maxFields;
+        private final int _admissionThreshold;
+        private volatile Index<Entry> _index = new Index.Builder<Entry>().caseSensitive(true).build();
+        private volatile boolean _pending;
+        private volatile long _lastRebuild;
+        private long _lastDecay;
+
+        /**
+         * @param maxFields the max number of cached fields
+         */
+        public SharedFieldCache(int maxFields)
+        {
+            this(maxFields, 8);
+        }
+
+        /**
+         * @param maxFields the max number of cached fields
+         * @param admissionThreshold the number of times a field must be seen before it is cached
+         */
+        public SharedFieldCache(int maxFields, int admissionThreshold)
+        {
+            if (maxFields <= 0)
+                throw new IllegalArgumentException("Invalid max fields " + maxFields);
+            if (admissionThreshold <= 0)
+                throw new IllegalArgumentException("Invalid admission threshold " + admissionThreshold);
+            _maxFields = maxFields;
+            _admissionThreshold = admissionThreshold;
+            _lastRebuild = _lastDecay = System.nanoTime();
+        }
+
+        /**
+         * @return the max number of cached fields
+         */
+        public int getMaxFields()
+        {
+            return _maxFields;
+        }
+
+        /**
+         * @return the number of times a field must be seen before it is cached
+         */
+        public int getAdmissionThreshold()
+        {
+            return _admissionThreshold;
+        }
+
+        /**
+         * @return the number of cached fields
+         */
+        public int size()
+        {
+            return _index.size();
+        }
+
+        public void clear()
+        {
+            _lock.lock();
+            try
+            {
+                _candidates.clear();
+                _index = new Index.Builder<Entry>().caseSensitive(true).build();
+                _pending = false;
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+
+        /**
+         * @param field the field to test
+         * @return whether the field may be cached
+         */
+        public static boolean isCacheable(HttpField field)
+        {
+            String value = field.getValue();
+            return value != null && value.length() <= MAX_VALUE_LENGTH && !UNCACHEABLE.contains(field.getHeader());
+        }
+
+        private HttpField getBest(ByteBuffer buffer, int offset, int length)
+        {
+            Entry entry = _index.getBest(buffer, offset, length);
+            if (entry == null)
+                return null;
+
+            // Only a match of the whole field is a hit, not a field that has a longer value.
+            int end = buffer.position() + offset + entry._length;
+            if (end >= buffer.limit())
+                return null;
+            byte next = buffer.get(end);
+            if (next != HttpTokens.CARRIAGE_RETURN && next != HttpTokens.LINE_FEED)
+                return null;
+
+            entry._frequency.increment();
+            return entry._field;
+        }
+
+        private void learn(HttpField field)
+        {
+            if (!isCacheable(field))
+                return;
+
+            Entry entry = _candidates.get(field);
+            if (entry == null)
+            {
+                // Bound the candidates, evicting the infrequent ones when they are full.
+                if (isFull())
+                {
+                    _pending = true;
+                    rebuild();
+                    if (isFull())
+                        return;
+                }
+                entry = _candidates.computeIfAbsent(field, Entry::new);
+            }
+            entry._frequency.increment();
+
+            if (!entry._cached && entry._frequency.sum() >= _admissionThreshold)
+            {
+                _pending = true;
+                rebuild();
+            }
+        }
+
+        private void rebuild()
+        {
+            // While the cache is not full, admitted fields are added immediately.
+            long now = System.nanoTime();
+            if (isThrottled(now) || !_lock.tryLock())
+                return;
+            try
+            {
+                if (!_pending || isThrottled(now))
+                    return;
+                _pending = false;
+                _lastRebuild = now;
+
+                // Halve the frequencies, so that the old ones are eventually forgotten.
+                boolean decay = now - _lastDecay >= REBUILD_INTERVAL;
+                if (decay)
+                    _lastDecay = now;
+
+                List<Entry> entries = new ArrayList<>(_candidates.values());
+                for (Entry entry : entries)
+                {
+                    long frequency = decay ? entry._frequency.sumThenReset() : entry._frequency.sum();
+                    if (decay)
+                        entry._frequency.add(frequency / 2);
+                    entry._sortFrequency = frequency;
+                    entry._cached = false;
+                }
+                entries.sort(Comparator.comparingLong((Entry e) -> e._sortFrequency).reversed());
+
+                Map<String, Entry> cached = new LinkedHashMap<>();
+                for (Entry entry : entries)
+                {
+                    if (cached.size() == _maxFields || entry._sortFrequency < _admissionThreshold)
+                        break;
+                    cached.put(entry._field.toString(), entry);
+                    entry._cached = true;
+                }
+                _index = new Index.Builder<Entry>().caseSensitive(true).withAll(() -> cached).build();
+
+                if (decay)
+                    _candidates.values().removeIf(entry -> !entry._cached && entry._frequency.sum() == 0);
+
+                // Evict the least frequent half of the candidates, to make room for new fields.
+                if (isFull())
+                {
+                    for (Entry entry : entries.subList(Math.min(2 * _maxFields, entries.size()), entries.size()))
+                    {
+                        if (!entry._cached)
+                            _candidates.remove(entry._field, entry);
+                    }
+                }
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+
+        private boolean isFull()
+        {
+            return _candidates.size() >= 4 * _maxFields;
+        }
+
+        private boolean isThrottled(long now)
+        {
+            return _index.size() >= _maxFields && now - _lastRebuild < REBUILD_INTERVAL;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{size=%d/%d,candidates=%d}", getClass().getSimpleName(), hashCode(), size(), _maxFields, _candidates.size());
+        }
+
+        private static class Entry
+        {
+            private final LongAdder _frequency = new LongAdder();
+            private final HttpField _field;
+            private final int _length;
+            private volatile boolean _cached;
+            private long _sortFrequency;
+
+            private Entry(HttpField field)
+            {
+                _field = field;
+                _length = field.toString().length();
+            }
+        }
+    }
 }
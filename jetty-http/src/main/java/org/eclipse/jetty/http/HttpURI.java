@@ -255,8 +255,14 @@ public interface HttpURI
         private final int _port;
         private final String _path;
         private final String _param;
-        private final String _query;
-        private final String _fragment;
+        private final String _querySource;
+        private final int _queryStart;
+        private final int _queryEnd;
+        private final String _fragmentSource;
+        private final int _fragmentStart;
+        private final int _fragmentEnd;
+        private String _query;
+        private String _fragment;
         private String _uri;
         private String _decodedPath;
         private final EnumSet<Violation> _violations = EnumSet.noneOf(Violation.class);
@@ -269,6 +275,13 @@ public interface HttpURI
             _port = builder._port;
             _path = builder._path;
             _param = builder._param;
+            // The query and fragment may still be offsets into the parsed URI string.
+            _querySource = builder._querySource;
+            _queryStart = builder._queryStart;
+            _queryEnd = builder._queryEnd;
+            _fragmentSource = builder._fragmentSource;
+            _fragmentStart = builder._fragmentStart;
+            _fragmentEnd = builder._fragmentEnd;
             _query = builder._query;
             _fragment = builder._fragment;
             _uri = builder._uri;
@@ -284,6 +297,12 @@ public interface HttpURI
             _port = -1;
             _path = uri;
             _param = null;
+            _querySource = null;
+            _queryStart = -1;
+            _queryEnd = -1;
+            _fragmentSource = null;
+            _fragmentStart = -1;
+            _fragmentEnd = -1;
             _query = null;
             _fragment = null;
             _uri = uri;
@@ -320,11 +339,13 @@ public interface HttpURI
                 if (_path != null)
                     out.append(_path);
 
-                if (_query != null)
-                    out.append('?').append(_query);
+                String query = getQuery();
+                if (query != null)
+                    out.append('?').append(query);
 
-                if (_fragment != null)
-                    out.append('#').append(_fragment);
+                String fragment = getFragment();
+                if (fragment != null)
+                    out.append('#').append(fragment);
 
                 if (out.length() > 0)
                     _uri = out.toString();
@@ -363,6 +384,8 @@ public interface HttpURI
         @Override
         public String getFragment()
         {
+            if (_fragment == null && _fragmentStart >= 0)
+                _fragment = _fragmentSource.substring(_fragmentStart, _fragmentEnd);
             return _fragment;
         }
 
@@ -390,9 +413,10 @@ public interface HttpURI
         @Override
         public String getPathQuery()
         {
-            if (_query == null)
+            String query = getQuery();
+            if (query == null)
                 return _path;
-            return _path + "?" + _query;
+            return _path + "?" + query;
         }
 
         @Override
@@ -404,6 +428,8 @@ public interface HttpURI
         @Override
         public String getQuery()
         {
+            if (_query == null && _queryStart >= 0)
+                _query = _querySource.substring(_queryStart, _queryEnd);
             return _query;
         }
 
@@ -472,7 +498,7 @@ public interface HttpURI
         {
             try
             {
-                return new URI(_scheme, null, _host, _port, _path, _query == null ? null : UrlEncoded.decodeString(_query), _fragment);
+                return new URI(_scheme, null, _host, _port, _path, getQuery() == null ? null : UrlEncoded.decodeString(getQuery()), getFragment());
             }
             catch (URISyntaxException x)
             {
@@ -534,6 +560,13 @@ public interface HttpURI
         private String _param;
         private String _query;
         private String _fragment;
+        // The parsed URI strings and the offsets of the query and fragment not yet extracted from them.
+        private String _querySource;
+        private int _queryStart = -1;
+        private int _queryEnd;
+        private String _fragmentSource;
+        private int _fragmentStart = -1;
+        private int _fragmentEnd;
         private String _uri;
         private String _decodedPath;
         private final EnumSet<Violation> _violations = EnumSet.noneOf(Violation.class);
@@ -571,7 +604,7 @@ public interface HttpURI
             if (param != null)
                 _param = param;
             if (query != null)
-                _query = query;
+                setQuery(query);
         }
 
         private Mutable(String uri)
@@ -593,8 +626,8 @@ public interface HttpURI
             String path = uri.getRawPath();
             if (path != null)
                 parse(State.PATH, path);
-            _query = uri.getRawQuery();
-            _fragment = uri.getRawFragment();
+            setQuery(uri.getRawQuery());
+            setFragment(uri.getRawFragment());
         }
 
         private Mutable(String scheme, String host, int port, String pathQuery)
@@ -657,8 +690,8 @@ public interface HttpURI
             _port = -1;
             _path = null;
             _param = null;
-            _query = null;
-            _fragment = null;
+            setQuery(null);
+            setFragment(null);
             _uri = null;
             _decodedPath = null;
             _emptySegment = false;
@@ -686,7 +719,7 @@ public interface HttpURI
 
         public Mutable fragment(String fragment)
         {
-            _fragment = fragment;
+            setFragment(fragment);
             return this;
         }
 
@@ -709,6 +742,8 @@ public interface HttpURI
         @Override
         public String getFragment()
         {
+            if (_fragment == null && _fragmentStart >= 0)
+                _fragment = _fragmentSource.substring(_fragmentStart, _fragmentEnd);
             return _fragment;
         }
 
@@ -733,9 +768,10 @@ public interface HttpURI
         @Override
         public String getPathQuery()
         {
-            if (_query == null)
+            String query = getQuery();
+            if (query == null)
                 return _path;
-            return _path + "?" + _query;
+            return _path + "?" + query;
         }
 
         @Override
@@ -747,6 +783,8 @@ public interface HttpURI
         @Override
         public String getQuery()
         {
+            if (_query == null && _queryStart >= 0)
+                _query = _querySource.substring(_queryStart, _queryEnd);
             return _query;
         }
 
@@ -850,7 +888,7 @@ public interface HttpURI
             _path = null;
             _decodedPath = null;
             _param = null;
-            _query = null;
+            setQuery(null);
             if (pathQuery != null)
                 parse(State.PATH, pathQuery);
             return this;
@@ -865,7 +903,7 @@ public interface HttpURI
 
         public Mutable query(String query)
         {
-            _query = query;
+            setQuery(query);
             _uri = null;
             return this;
         }
@@ -892,7 +930,7 @@ public interface HttpURI
         {
             try
             {
-                return new URI(_scheme, null, _host, _port, _path, _query == null ? null : UrlEncoded.decodeString(_query), null);
+                return new URI(_scheme, null, _host, _port, _path, getQuery() == null ? null : UrlEncoded.decodeString(getQuery()), null);
             }
             catch (URISyntaxException x)
             {
@@ -908,7 +946,19 @@ public interface HttpURI
             _port = uri.getPort();
             _path = uri.getPath();
             _param = uri.getParam();
-            _query = uri.getQuery();
+            if (uri instanceof Immutable)
+            {
+                // Copy the query offsets rather than extracting the query.
+                Immutable immutable = (Immutable)uri;
+                _querySource = immutable._querySource;
+                _query = immutable._query;
+                _queryStart = immutable._queryStart;
+                _queryEnd = immutable._queryEnd;
+            }
+            else
+            {
+                setQuery(uri.getQuery());
+            }
             _uri = null;
             _decodedPath = uri.getDecodedPath();
             if (uri.hasAmbiguousSeparator())
@@ -960,6 +1010,36 @@ public interface HttpURI
             return this;
         }
 
+        private void setQuery(String query)
+        {
+            _query = query;
+            _querySource = null;
+            _queryStart = -1;
+        }
+
+        private void setFragment(String fragment)
+        {
+            _fragment = fragment;
+            _fragmentSource = null;
+            _fragmentStart = -1;
+        }
+
+        private void parseQuery(String uri, int start, int end)
+        {
+            _querySource = uri;
+            _query = null;
+            _queryStart = start;
+            _queryEnd = end;
+        }
+
+        private void parseFragment(String uri, int start, int end)
+        {
+            _fragmentSource = uri;
+            _fragment = null;
+            _fragmentStart = start;
+            _fragmentEnd = end;
+        }
+
         private void parse(State state, final String uri)
         {
             int mark = 0; // the start of the current section being parsed
@@ -1291,7 +1371,7 @@ public interface HttpURI
                     {
                         if (c == '#')
                         {
-                            _query = uri.substring(mark, i);
+                            parseQuery(uri, mark, i);
                             mark = i + 1;
                             state = State.FRAGMENT;
                         }
@@ -1303,7 +1383,7 @@ public interface HttpURI
                     }
                     case FRAGMENT:
                     {
-                        _fragment = uri.substring(mark, end);
+                        parseFragment(uri, mark, end);
                         i = end;
                         break;
                     }
@@ -1344,10 +1424,10 @@ public interface HttpURI
                     _path = uri.substring(pathMark, end);
                     break;
                 case QUERY:
-                    _query = uri.substring(mark, end);
+                    parseQuery(uri, mark, end);
                     break;
                 case FRAGMENT:
-                    _fragment = uri.substring(mark, end);
+                    parseFragment(uri, mark, end);
                     break;
                 default:
                     throw new IllegalStateException(state.toString());
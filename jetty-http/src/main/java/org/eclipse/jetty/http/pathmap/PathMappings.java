@@ -16,17 +16,24 @@ package org.eclipse.jetty.http.pathmap;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.eclipse.jetty.util.Index;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +41,10 @@ import org.slf4j.LoggerFactory;
  * Path Mappings of PathSpec to Resource.
  * <p>
  * Sorted into search order upon entry into the Set
+ * <p>
+ * {@link UriTemplatePathSpec} and {@link RegexPathSpec} mappings are not matched one by one:
+ * after a mutation, they are compiled into a tree of literal and variable path segments and
+ * into a single combined regular expression, that return the first match in search order.
  *
  * @param <E> the type of mapping endpoint
  */
@@ -55,6 +66,10 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
         .caseSensitive(true)
         .mutable()
         .build();
+    // Guards the mutations and the compilation of the routes, so that routes
+    // compiled before a mutation are never published after it.
+    private final AutoLock _lock = new AutoLock();
+    private volatile Routes<E> _routes;
 
     @Override
     public String dump()
@@ -81,14 +96,22 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
 
     public void reset()
     {
-        _mappings.clear();
-        _prefixMap.clear();
-        _suffixMap.clear();
+        try (AutoLock l = _lock.lock())
+        {
+            _mappings.clear();
+            _prefixMap.clear();
+            _suffixMap.clear();
+            _routes = null;
+        }
     }
 
     public void removeIf(Predicate<MappedResource<E>> predicate)
     {
-        _mappings.removeIf(predicate);
+        try (AutoLock l = _lock.lock())
+        {
+            _mappings.removeIf(predicate);
+            _routes = null;
+        }
     }
 
     /**
@@ -125,11 +148,22 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
 
     public MappedResource<E> getMatch(String path)
     {
+        Routes<E> routes = getRoutes();
+
+        // The first compiled mapping that matches, if any.
+        Route<E> routed = routes.match(path);
+        int routedRank = routed == null ? Integer.MAX_VALUE : routed._rank;
+
         PathSpecGroup lastGroup = null;
 
-        // Search all the mappings
-        for (MappedResource<E> mr : _mappings)
+        // Search the mappings that precede the routed one, skipping the compiled ones
+        // unless they are the first of their group, as the group optimizations must still apply.
+        for (Route<E> route : routes._checkpoints)
         {
+            if (route._rank > routedRank)
+                break;
+
+            MappedResource<E> mr = route._resource;
             PathSpecGroup group = mr.getPathSpec().getGroup();
             if (group != lastGroup)
             {
@@ -182,13 +216,31 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                 }
             }
 
-            if (mr.getPathSpec().matches(path))
+            if (route._rank == routedRank)
+                return mr;
+
+            if (!route._compiled && mr.getPathSpec().matches(path))
                 return mr;
 
             lastGroup = group;
         }
 
-        return null;
+        return routed == null ? null : routed._resource;
+    }
+
+    private Routes<E> getRoutes()
+    {
+        // The routes are compiled lazily after a mutation.
+        Routes<E> routes = _routes;
+        if (routes != null)
+            return routes;
+        try (AutoLock l = _lock.lock())
+        {
+            routes = _routes;
+            if (routes == null)
+                _routes = routes = new Routes<>(_mappings);
+            return routes;
+        }
     }
 
     @Override
@@ -226,27 +278,32 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
     public boolean put(PathSpec pathSpec, E resource)
     {
         MappedResource<E> entry = new MappedResource<>(pathSpec, resource);
-        switch (pathSpec.getGroup())
+        boolean added;
+        try (AutoLock l = _lock.lock())
         {
-            case EXACT:
-                String exact = pathSpec.getPrefix();
-                if (exact != null)
-                    _exactMap.put(exact, entry);
-                break;
-            case PREFIX_GLOB:
-                String prefix = pathSpec.getPrefix();
-                if (prefix != null)
-                    _prefixMap.put(prefix, entry);
-                break;
-            case SUFFIX_GLOB:
-                String suffix = pathSpec.getSuffix();
-                if (suffix != null)
-                    _suffixMap.put(suffix, entry);
-                break;
-            default:
-        }
+            switch (pathSpec.getGroup())
+            {
+                case EXACT:
+                    String exact = pathSpec.getPrefix();
+                    if (exact != null)
+                        _exactMap.put(exact, entry);
+                    break;
+                case PREFIX_GLOB:
+                    String prefix = pathSpec.getPrefix();
+                    if (prefix != null)
+                        _prefixMap.put(prefix, entry);
+                    break;
+                case SUFFIX_GLOB:
+                    String suffix = pathSpec.getSuffix();
+                    if (suffix != null)
+                        _suffixMap.put(suffix, entry);
+                    break;
+                default:
+            }
 
-        boolean added = _mappings.add(entry);
+            added = _mappings.add(entry);
+            _routes = null;
+        }
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} to {}", added ? "Added" : "Ignored", entry, this);
         return added;
@@ -257,34 +314,38 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
     {
         String prefix = pathSpec.getPrefix();
         String suffix = pathSpec.getSuffix();
-        switch (pathSpec.getGroup())
-        {
-            case EXACT:
-                if (prefix != null)
-                    _exactMap.remove(prefix);
-                break;
-            case PREFIX_GLOB:
-                if (prefix != null)
-                    _prefixMap.remove(prefix);
-                break;
-            case SUFFIX_GLOB:
-                if (suffix != null)
-                    _suffixMap.remove(suffix);
-                break;
-            default:
-                break;
-        }
-
-        Iterator<MappedResource<E>> iter = _mappings.iterator();
         boolean removed = false;
-        while (iter.hasNext())
+        try (AutoLock l = _lock.lock())
         {
-            if (iter.next().getPathSpec().equals(pathSpec))
+            switch (pathSpec.getGroup())
             {
-                removed = true;
-                iter.remove();
-                break;
+                case EXACT:
+                    if (prefix != null)
+                        _exactMap.remove(prefix);
+                    break;
+                case PREFIX_GLOB:
+                    if (prefix != null)
+                        _prefixMap.remove(prefix);
+                    break;
+                case SUFFIX_GLOB:
+                    if (suffix != null)
+                        _suffixMap.remove(suffix);
+                    break;
+                default:
+                    break;
+            }
+
+            Iterator<MappedResource<E>> iter = _mappings.iterator();
+            while (iter.hasNext())
+            {
+                if (iter.next().getPathSpec().equals(pathSpec))
+                {
+                    removed = true;
+                    iter.remove();
+                    break;
+                }
             }
+            _routes = null;
         }
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} to {}", removed ? "Removed" : "Ignored", pathSpec, this);
@@ -296,4 +357,213 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
     {
         return String.format("%s[size=%d]", this.getClass().getSimpleName(), _mappings.size());
     }
+
+    /**
+     * <p>A mapping with its rank in search order.</p>
+     */
+    private static class Route<E>
+    {
+        private final MappedResource<E> _resource;
+        private final int _rank;
+        private boolean _compiled;
+
+        private Route(MappedResource<E> resource, int rank)
+        {
+            _resource = resource;
+            _rank = rank;
+        }
+
+        private static <E> Route<E> first(Route<E> r1, Route<E> r2)
+        {
+            if (r1 == null)
+                return r2;
+            if (r2 == null)
+                return r1;
+            return r1._rank <= r2._rank ? r1 : r2;
+        }
+    }
+
+    /**
+     * <p>A node of the tree of URI template path segments.</p>
+     */
+    private static class Segment<E>
+    {
+        private final Map<String, Segment<E>> _literals = new HashMap<>();
+        private Segment<E> _variable;
+        private Route<E> _route;
+
+        private Route<E> match(String path, int start)
+        {
+            int end = path.indexOf('/', start);
+            boolean last = end < 0;
+            if (last)
+                end = path.length();
+
+            Route<E> result = null;
+            if (!_literals.isEmpty())
+            {
+                Segment<E> literal = _literals.get(path.substring(start, end));
+                if (literal != null)
+                    result = last ? literal._route : literal.match(path, end + 1);
+            }
+            // A variable matches a non empty segment.
+            if (_variable != null && end > start)
+                result = Route.first(result, last ? _variable._route : _variable.match(path, end + 1));
+            return result;
+        }
+    }
+
+    /**
+     * <p>The compiled form of the mappings, rebuilt after each mutation.</p>
+     * <p>{@link UriTemplatePathSpec}s are compiled to a tree of path segments, so that matching
+     * is linear with the path length, while {@link RegexPathSpec}s are compiled to a single
+     * regular expression of alternatives in search order, so that the first alternative that
+     * matches is the first {@link RegexPathSpec} mapping that matches.</p>
+     * <p>Subclasses of these path specs, URI templates with regular expression characters in
+     * their literal segments, and regular expressions with back references or named groups are
+     * not compiled, and are matched one by one as the other path specs.</p>
+     */
+    private static class Routes<E>
+    {
+        private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)|\\(\\?<[a-zA-Z]");
+        private static final String REGEX_SYMBOLS = "+?()|^$";
+
+        // The mappings that are not compiled, and the first mapping of each group.
+        private final List<Route<E>> _checkpoints = new ArrayList<>();
+        private final Segment<E> _templates = new Segment<>();
+        private boolean _hasTemplates;
+        private Pattern _regex;
+        private Route<E>[] _regexRoutes;
+        private int[] _regexGroups;
+
+        @SuppressWarnings("unchecked")
+        private Routes(Set<MappedResource<E>> mappings)
+        {
+            List<Route<E>> routes = new ArrayList<>(mappings.size());
+            List<Route<E>> regexRoutes = new ArrayList<>();
+            List<Integer> regexGroups = new ArrayList<>();
+            StringBuilder regex = new StringBuilder();
+            int regexGroup = 1;
+
+            for (MappedResource<E> mapping : mappings)
+            {
+                Route<E> route = new Route<>(mapping, routes.size());
+                routes.add(route);
+                PathSpec pathSpec = mapping.getPathSpec();
+                if (pathSpec.getClass() == UriTemplatePathSpec.class)
+                {
+                    route._compiled = addTemplate(route, pathSpec.getDeclaration());
+                }
+                else if (pathSpec.getClass() == RegexPathSpec.class)
+                {
+                    String declaration = pathSpec.getDeclaration();
+                    if (!BACK_REFERENCE.matcher(declaration).find())
+                    {
+                        // Each alternative is a group, followed by the groups of the declaration.
+                        int count = Pattern.compile(declaration).matcher("").groupCount();
+                        if (regex.length() > 0)
+                            regex.append('|');
+                        regex.append('(').append(declaration).append(')');
+                        regexRoutes.add(route);
+                        regexGroups.add(regexGroup);
+                        regexGroup += 1 + count;
+                        route._compiled = true;
+                    }
+                }
+            }
+
+            if (!regexRoutes.isEmpty())
+            {
+                try
+                {
+                    _regex = Pattern.compile(regex.toString());
+                    _regexRoutes = regexRoutes.toArray(new Route[0]);
+                    _regexGroups = regexGroups.stream().mapToInt(Integer::intValue).toArray();
+                }
+                catch (PatternSyntaxException x)
+                {
+                    // Match the regular expressions one by one.
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Could not combine {}", regex, x);
+                    regexRoutes.forEach(route -> route._compiled = false);
+                }
+            }
+
+            // The group optimizations only need to run at the first mapping of each group,
+            // as mappings of different groups may interleave, for example URI templates.
+            Set<PathSpecGroup> groups = EnumSet.noneOf(PathSpecGroup.class);
+            for (Route<E> route : routes)
+            {
+                if (groups.add(route._resource.getPathSpec().getGroup()) || !route._compiled)
+                    _checkpoints.add(route);
+            }
+        }
+
+        private boolean addTemplate(Route<E> route, String declaration)
+        {
+            // The segments after the first slash, where a trailing slash is an empty segment.
+            String[] segments = declaration.substring(1).split("/", -1);
+            for (String segment : segments)
+            {
+                if (segment.startsWith("{"))
+                    continue;
+                // The literal segments are not escaped in the URI template regular expression.
+                for (int i = 0; i < segment.length(); i++)
+                {
+                    if (REGEX_SYMBOLS.indexOf(segment.charAt(i)) >= 0)
+                        return false;
+                }
+            }
+
+            Segment<E> node = _templates;
+            for (String segment : segments)
+            {
+                if (segment.startsWith("{"))
+                {
+                    if (node._variable == null)
+                        node._variable = new Segment<>();
+                    node = node._variable;
+                }
+                else
+                {
+                    node = node._literals.computeIfAbsent(segment, k -> new Segment<>());
+                }
+            }
+            node._route = Route.first(node._route, route);
+            _hasTemplates = true;
+            return true;
+        }
+
+        private Route<E> match(String path)
+        {
+            if (!_hasTemplates && _regex == null)
+                return null;
+
+            // Match only the non-query part.
+            int query = path.indexOf('?');
+            if (query >= 0)
+                path = path.substring(0, query);
+
+            Route<E> result = null;
+            if (_hasTemplates && path.startsWith("/"))
+                result = _templates.match(path, 1);
+
+            if (_regex != null)
+            {
+                Matcher matcher = _regex.matcher(path);
+                if (matcher.matches())
+                {
+                    for (int i = 0; i < _regexGroups.length; i++)
+                    {
+                        if (matcher.start(_regexGroups[i]) >= 0)
+                        {
+                            result = Route.first(result, _regexRoutes[i]);
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
 }
@@ -106,6 +106,83 @@ public class HttpGeneratorServerTest
         assertThat(response, containsString("\r\n0123456789"));
     }
 
+    @Test
+    public void testHeaderCache() throws Exception
+    {
+        HttpGenerator.HeaderCache cache = new HttpGenerator.HeaderCache(16);
+        for (int i = 0; i < 3; i++)
+        {
+            HttpFields.Mutable fields = HttpFields.build();
+            fields.add("Content-Type", "application/json");
+            fields.add("Cache-Control", "no-store");
+            fields.add("Set-Cookie", "id=" + i);
+            fields.add("X-Custom", "custom\r\nvalue");
+            fields.add(new PreEncodedHttpField(HttpHeader.DATE, "Thu, 01 Jan 1970 00:00:0" + i + " GMT"));
+            MetaData.Response info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, fields, 10 + i);
+
+            String expected = generate(new HttpGenerator(), info);
+            HttpGenerator gen = new HttpGenerator();
+            gen.setHeaderCache(cache);
+            String response = generate(gen, info);
+
+            assertEquals(expected, response);
+            assertThat(response, containsString("Set-Cookie: id=" + i + "\r\n"));
+            assertThat(response, containsString("Date: Thu, 01 Jan 1970 00:00:0" + i + " GMT\r\n"));
+            assertThat(response, containsString("Content-Length: " + (10 + i) + "\r\n"));
+            // The two runs of fields around Set-Cookie are cached.
+            assertEquals(2, cache.size());
+            // The blocks are only encoded once, and then copied from the cache.
+            assertEquals(2, cache.getMisses());
+            assertEquals(2 * i, cache.getHits());
+        }
+    }
+
+    @Test
+    public void testHeaderCacheEvictsNotRecentlyUsedBlock() throws Exception
+    {
+        HttpGenerator.HeaderCache cache = new HttpGenerator.HeaderCache(2);
+        MetaData.Response[] infos = new MetaData.Response[3];
+        for (int i = 0; i < infos.length; i++)
+        {
+            HttpFields.Mutable fields = HttpFields.build();
+            fields.add("Content-Type", "text/plain");
+            fields.add("X-Block", Integer.toString(i));
+            infos[i] = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, fields, 10);
+        }
+
+        HttpGenerator gen = new HttpGenerator();
+        gen.setHeaderCache(cache);
+        generate(gen, infos[0]);
+        gen.reset();
+        generate(gen, infos[1]);
+        gen.reset();
+        // Use the first block again, so that the second is evicted.
+        generate(gen, infos[0]);
+        gen.reset();
+        assertEquals(1, cache.getHits());
+
+        String expected = generate(new HttpGenerator(), infos[2]);
+        assertEquals(expected, generate(gen, infos[2]));
+        gen.reset();
+        // Only one block was evicted.
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getMisses());
+
+        generate(gen, infos[0]);
+        gen.reset();
+        assertEquals(2, cache.getHits());
+        generate(gen, infos[1]);
+        assertEquals(4, cache.getMisses());
+    }
+
+    private static String generate(HttpGenerator gen, MetaData.Response info) throws Exception
+    {
+        ByteBuffer header = BufferUtil.allocate(8096);
+        HttpGenerator.Result result = gen.generateResponse(info, false, header, null, null, false);
+        assertEquals(HttpGenerator.Result.FLUSH, result);
+        return BufferUtil.toString(header);
+    }
+
     @Test
     public void testHeaderOverflow() throws Exception
     {
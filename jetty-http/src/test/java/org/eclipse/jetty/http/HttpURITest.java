@@ -101,6 +101,29 @@ public class HttpURITest
         assertThat(uri.getAuthority(), is("host:8888"));
     }
 
+    @Test
+    public void testReuseParsedQueryAndFragment()
+    {
+        HttpURI.Mutable builder = HttpURI.build();
+        builder.uri("http://host/path?query=value#fragment");
+        HttpURI uri = builder.asImmutable();
+
+        // The builder is reused for another URI, which does not change the immutable URI.
+        builder.uri("GET", "/other?a=b");
+        assertThat(builder.getQuery(), is("a=b"));
+        assertThat(builder.getFragment(), nullValue());
+        assertThat(uri.getQuery(), is("query=value"));
+        assertThat(uri.getFragment(), is("fragment"));
+        assertThat(uri.getPathQuery(), is("/path?query=value"));
+
+        // Copies share the query, unless it is replaced.
+        HttpURI.Mutable copy = HttpURI.build(builder.asImmutable());
+        assertThat(copy.getQuery(), is("a=b"));
+        assertThat(copy.query(null).getQuery(), nullValue());
+        assertThat(copy.asString(), is("/other"));
+        assertThat(HttpURI.build(uri).query("c=d").asString(), is("http://host/path?c=d"));
+    }
+
     @Test
     public void testInvalidAddress()
     {
@@ -13,6 +13,9 @@
 
 package org.eclipse.jetty.http.pathmap;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -456,4 +459,105 @@ public class PathMappingsTest
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(true));
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(false));
     }
+
+    /**
+     * Test that compiled URI template and regex path specs match as if they were
+     * searched one by one, by comparing with subclasses of them that are not compiled.
+     */
+    @Test
+    public void testCompiledMatchesSearchOrder()
+    {
+        PathMappings<String> compiled = new PathMappings<>();
+        PathMappings<String> searched = new PathMappings<>();
+
+        String[] templates = {
+            "/", "/a", "/a/", "/a/b", "/a/{x}", "/a/{x}/", "/{x}", "/{x}/b", "/{x}/{y}", "/a/{x}/c",
+            "/{x}/{y}/c", "/a/b/{z}", "/v1.0/{id}", "/a+b/{x}", "/(a)/{x}"
+        };
+        for (String template : templates)
+        {
+            compiled.put(new UriTemplatePathSpec(template), template);
+            searched.put(new UriTemplatePathSpec(template) {}, template);
+        }
+
+        String[] regexes = {
+            "^/a/.*$", "^/a/(b|c)/d$", "/a/[0-9]+", "^/(x)/\\1$", "^/(?<n>[a-z]+)/n$", "^/.*\\.gif$", "^/b/(.*)/(.*)$"
+        };
+        for (String regex : regexes)
+        {
+            compiled.put(new RegexPathSpec(regex), regex);
+            searched.put(new RegexPathSpec(regex) {}, regex);
+        }
+
+        String[] servlets = {"/", "/a/*", "/a/b", "*.gif", ""};
+        for (String servlet : servlets)
+        {
+            compiled.put(new ServletPathSpec(servlet), servlet);
+            searched.put(new ServletPathSpec(servlet), servlet);
+        }
+
+        String[] paths = {
+            "/", "/a", "/a/", "/a/b", "/a/b/", "/a/c", "/a/c/", "/a/b/c", "/a/x/c", "/x/y/c", "/x/b", "/x/y",
+            "/a/b/d", "/a/c/d", "/a/123", "/x/x", "/abc/n", "/img/a.gif", "/b/c/d", "/v1.0/42", "/v1x0/42",
+            "/a//b", "/a+b/1", "/(a)/1", "/a/b?q=1", "/a/x/c?q", "/z", "/z/", "/z/y/x/w", ""
+        };
+        for (String path : paths)
+        {
+            MappedResource<String> expected = searched.getMatch(path);
+            MappedResource<String> actual = compiled.getMatch(path);
+            String msg = String.format(".getMatch(\"%s\")", path);
+            if (expected == null)
+                assertThat(msg, actual, nullValue());
+            else
+                assertEquals(expected.getResource(), actual.getResource(), msg);
+        }
+
+        // Mutations recompile the routes.
+        compiled.remove(new UriTemplatePathSpec("/a/{x}"));
+        searched.remove(new UriTemplatePathSpec("/a/{x}") {});
+        assertMatch(compiled, "/a/c", searched.getMatch("/a/c").getResource());
+        compiled.put(new RegexPathSpec("^/a/c$"), "ac");
+        assertMatch(compiled, "/a/c", "ac");
+    }
+
+    @Test
+    public void testMutationsConcurrentWithMatches() throws Exception
+    {
+        PathMappings<String> p = new PathMappings<>();
+        int count = 200;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() ->
+        {
+            try
+            {
+                while (running.get())
+                {
+                    // Compiles the routes while the mappings are being added.
+                    p.getMatch("/r0/x");
+                }
+            }
+            catch (Throwable x)
+            {
+                failure.set(x);
+            }
+        });
+        reader.start();
+
+        try
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                p.put(new UriTemplatePathSpec("/r" + i + "/{x}"), "r" + i);
+                // Routes compiled concurrently with the mutation must not hide it.
+                assertMatch(p, "/r" + i + "/x", "r" + i);
+            }
+        }
+        finally
+        {
+            running.set(false);
+            reader.join();
+        }
+        assertThat(failure.get(), nullValue());
+    }
 }
@@ -111,6 +111,7 @@ public class HTTP2Client extends ContainerLifeCycle
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
     private int maxDynamicTableSize = 4096;
     private int maxHeaderBlockFragment = 0;
+    private int writeCoalescingSize = 0;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers = true;
@@ -337,6 +338,21 @@ public class HTTP2Client extends ContainerLifeCycle
         this.maxHeaderBlockFragment = maxHeaderBlockFragment;
     }
 
+    @ManagedAttribute("The max number of bytes of small frames coalesced in a single write buffer")
+    public int getWriteCoalescingSize()
+    {
+        return writeCoalescingSize;
+    }
+
+    /**
+     * @param writeCoalescingSize the max number of bytes of small frames coalesced in a single write buffer, or 0 to not coalesce frames
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalescingSize(int)
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        this.writeCoalescingSize = writeCoalescingSize;
+    }
+
     @ManagedAttribute("Whether to use direct ByteBuffers for reading")
     public boolean isUseInputDirectByteBuffers()
     {
@@ -0,0 +1,359 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.AdaptiveFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.IO;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveFlowControlStrategyTest extends FlowControlStrategyTest
+{
+    private final AdaptiveFlowControlStrategy.Factory factory = new AdaptiveFlowControlStrategy.Factory(16 * 1024 * 1024);
+
+    @Override
+    protected FlowControlStrategy newFlowControlStrategy()
+    {
+        return factory.newFlowControlStrategy();
+    }
+
+    @Test
+    public void testUploadOverHighLatencyLink() throws Exception
+    {
+        factory.setPingInterval(0);
+
+        int length = 4 * 1024 * 1024;
+        AtomicLong received = new AtomicLong();
+        AtomicInteger maxSessionRecvWindowTarget = new AtomicInteger();
+        AtomicReference<AdaptiveFlowControlStrategy> serverStrategyRef = new AtomicReference<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                AdaptiveFlowControlStrategy serverStrategy = (AdaptiveFlowControlStrategy)((HTTP2Session)stream.getSession()).getFlowControlStrategy();
+                serverStrategyRef.set(serverStrategy);
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        received.addAndGet(frame.remaining());
+                        maxSessionRecvWindowTarget.accumulateAndGet(serverStrategy.getSessionRecvWindowTarget(), Math::max);
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                        }
+                    }
+                };
+            }
+        });
+
+        long delay = 25;
+        try (LatencyProxy proxy = new LatencyProxy(connector.getLocalPort(), delay))
+        {
+            FuturePromise<Session> sessionPromise = new FuturePromise<>();
+            client.connect(new InetSocketAddress("localhost", proxy.getLocalPort()), new Session.Listener.Adapter(), sessionPromise);
+            Session session = sessionPromise.get(5, TimeUnit.SECONDS);
+
+            CountDownLatch latch = new CountDownLatch(1);
+            FuturePromise<Stream> streamPromise = new FuturePromise<>();
+            session.newStream(new HeadersFrame(newRequest("POST", HttpFields.EMPTY), null, false), streamPromise, new Stream.Listener.Adapter()
+            {
+                @Override
+                public void onHeaders(Stream stream, HeadersFrame frame)
+                {
+                    if (frame.isEndStream())
+                        latch.countDown();
+                }
+            });
+            Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+            assertEquals(length, received.get());
+
+            // With fixed windows, each round trip could only carry one window,
+            // while the session window has grown to carry more.
+            AdaptiveFlowControlStrategy serverStrategy = serverStrategyRef.get();
+            assertThat(serverStrategy.getWindowGrowthCount(), greaterThan(0L));
+            assertThat(maxSessionRecvWindowTarget.get(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+            assertThat(serverStrategy.getRoundTripTimeMax(), greaterThan(TimeUnit.MILLISECONDS.toMicros(2 * delay)));
+        }
+    }
+
+    @Test
+    public void testMemoryIsReleasedWhenSessionIsIdle() throws Exception
+    {
+        factory.setPingInterval(0);
+        factory.setMaxMemory(256 * 1024);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<AdaptiveFlowControlStrategy> serverStrategyRef = new AtomicReference<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverStrategyRef.set((AdaptiveFlowControlStrategy)((HTTP2Session)stream.getSession()).getFlowControlStrategy());
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.from(latch::countDown));
+                        }
+                    }
+                };
+            }
+        });
+
+        try (LatencyProxy proxy = new LatencyProxy(connector.getLocalPort(), 10))
+        {
+            FuturePromise<Session> sessionPromise = new FuturePromise<>();
+            client.connect(new InetSocketAddress("localhost", proxy.getLocalPort()), new Session.Listener.Adapter(), sessionPromise);
+            Session session = sessionPromise.get(5, TimeUnit.SECONDS);
+
+            FuturePromise<Stream> streamPromise = new FuturePromise<>();
+            session.newStream(new HeadersFrame(newRequest("POST", HttpFields.EMPTY), null, false), streamPromise, new Stream.Listener.Adapter());
+            Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(2 * 1024 * 1024), true), Callback.NOOP);
+
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+
+            AdaptiveFlowControlStrategy serverStrategy = serverStrategyRef.get();
+            assertThat(serverStrategy.getWindowGrowthCount(), greaterThan(0L));
+            // The windows do not grow beyond the max memory.
+            assertThat(serverStrategy.getSessionRecvWindowTarget(), lessThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE + 256 * 1024 + 1));
+
+            // The memory is released when the stream is destroyed.
+            await().atMost(5, TimeUnit.SECONDS).until(factory::getMemory, is(0L));
+            assertEquals(FlowControlStrategy.DEFAULT_WINDOW_SIZE, serverStrategy.getSessionRecvWindowTarget());
+        }
+    }
+
+    @Test
+    public void testWindowsShrinkWhenMemoryIsExhausted() throws Exception
+    {
+        factory.setPingInterval(0);
+        factory.setMaxMemory(256 * 1024);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong shrinksWhileReceiving = new AtomicLong();
+        AtomicReference<AdaptiveFlowControlStrategy> serverStrategyRef = new AtomicReference<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                AdaptiveFlowControlStrategy serverStrategy = (AdaptiveFlowControlStrategy)((HTTP2Session)stream.getSession()).getFlowControlStrategy();
+                serverStrategyRef.set(serverStrategy);
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.from(latch::countDown));
+                        }
+                        else
+                        {
+                            shrinksWhileReceiving.set(serverStrategy.getWindowShrinkCount());
+                        }
+                    }
+                };
+            }
+        });
+
+        try (LatencyProxy proxy = new LatencyProxy(connector.getLocalPort(), 10))
+        {
+            FuturePromise<Session> sessionPromise = new FuturePromise<>();
+            client.connect(new InetSocketAddress("localhost", proxy.getLocalPort()), new Session.Listener.Adapter(), sessionPromise);
+            Session session = sessionPromise.get(5, TimeUnit.SECONDS);
+
+            FuturePromise<Stream> streamPromise = new FuturePromise<>();
+            session.newStream(new HeadersFrame(newRequest("POST", HttpFields.EMPTY), null, false), streamPromise, new Stream.Listener.Adapter());
+            Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(4 * 1024 * 1024), true), Callback.NOOP);
+
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+
+            // The windows grew until the memory was exhausted,
+            // and then shrunk while the stream was still active.
+            AdaptiveFlowControlStrategy serverStrategy = serverStrategyRef.get();
+            assertThat(serverStrategy.getWindowGrowthCount(), greaterThan(0L));
+            assertThat(shrinksWhileReceiving.get(), greaterThan(0L));
+        }
+    }
+
+    /**
+     * <p>A TCP proxy that delays by a fixed time the bytes relayed in each direction.</p>
+     */
+    private static class LatencyProxy implements AutoCloseable
+    {
+        private static final byte[] EOF = new byte[0];
+
+        private final ServerSocket server;
+        private final int port;
+        private final long delay;
+
+        private LatencyProxy(int port, long delay) throws IOException
+        {
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.port = port;
+            this.delay = delay;
+            Thread acceptor = new Thread(this::accept, "latency-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getLocalPort()
+        {
+            return server.getLocalPort();
+        }
+
+        private void accept()
+        {
+            try
+            {
+                while (true)
+                {
+                    Socket downstream = server.accept();
+                    Socket upstream = new Socket(InetAddress.getLoopbackAddress(), port);
+                    downstream.setTcpNoDelay(true);
+                    upstream.setTcpNoDelay(true);
+                    relay(downstream, upstream);
+                    relay(upstream, downstream);
+                }
+            }
+            catch (IOException x)
+            {
+                // The proxy has been closed.
+            }
+        }
+
+        private void relay(Socket from, Socket to)
+        {
+            BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() ->
+            {
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream input = from.getInputStream())
+                {
+                    while (true)
+                    {
+                        int read = input.read(buffer);
+                        if (read < 0)
+                            break;
+                        chunks.offer(new Chunk(System.nanoTime(), Arrays.copyOf(buffer, read)));
+                    }
+                }
+                catch (IOException ignored)
+                {
+                }
+                chunks.offer(new Chunk(System.nanoTime(), EOF));
+            }, "latency-proxy-reader");
+            Thread writer = new Thread(() ->
+            {
+                try (OutputStream output = to.getOutputStream())
+                {
+                    while (true)
+                    {
+                        Chunk chunk = chunks.take();
+                        long wait = chunk.nanoTime + TimeUnit.MILLISECONDS.toNanos(delay) - System.nanoTime();
+                        if (wait > 0)
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        if (chunk.bytes == EOF)
+                            break;
+                        output.write(chunk.bytes);
+                        output.flush();
+                    }
+                }
+                catch (IOException | InterruptedException ignored)
+                {
+                }
+                IO.close(to);
+                IO.close(from);
+            }, "latency-proxy-writer");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        @Override
+        public void close()
+        {
+            IO.close(server);
+        }
+
+        private static class Chunk
+        {
+            private final long nanoTime;
+            private final byte[] bytes;
+
+            private Chunk(long nanoTime, byte[] bytes)
+            {
+                this.nanoTime = nanoTime;
+                this.bytes = bytes;
+            }
+        }
+    }
+}
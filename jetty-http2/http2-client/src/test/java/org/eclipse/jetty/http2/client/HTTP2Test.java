@@ -17,7 +17,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
@@ -36,6 +38,7 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.ErrorCode;
+import org.eclipse.jetty.http2.HTTP2Flusher;
 import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
@@ -43,6 +46,7 @@ import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.GoAwayFrame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
@@ -53,6 +57,7 @@ import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
 import org.eclipse.jetty.util.FuturePromise;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.Jetty;
@@ -61,6 +66,8 @@ import org.eclipse.jetty.util.component.Graceful;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -101,6 +108,138 @@ public class HTTP2Test extends AbstractTest
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testWriteCoalescing() throws Exception
+    {
+        AtomicReference<HTTP2Flusher> serverFlusherRef = new AtomicReference<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverFlusherRef.set(((HTTP2Session)stream.getSession()).getBean(HTTP2Flusher.class));
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), new Callback()
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        ByteBuffer content = StandardCharsets.UTF_8.encode("stream-" + stream.getId());
+                        stream.data(new DataFrame(stream.getId(), content, true), NOOP);
+                    }
+                });
+                return null;
+            }
+        }, factory -> factory.setWriteCoalescingSize(4096));
+        client.setWriteCoalescingSize(4096);
+
+        int pings = 4;
+        CountDownLatch pingLatch = new CountDownLatch(pings);
+        Session session = newClient(new Session.Listener.Adapter()
+        {
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                pingLatch.countDown();
+            }
+        });
+
+        int streams = 16;
+        CountDownLatch latch = new CountDownLatch(streams);
+        for (int i = 0; i < streams; ++i)
+        {
+            MetaData.Request metaData = newRequest("GET", HttpFields.EMPTY);
+            session.newStream(new HeadersFrame(metaData, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+            {
+                @Override
+                public void onData(Stream stream, DataFrame frame, Callback callback)
+                {
+                    assertEquals("stream-" + stream.getId(), StandardCharsets.UTF_8.decode(frame.getData()).toString());
+                    assertTrue(frame.isEndStream());
+                    callback.succeeded();
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // The PING replies are generated while parsing the PING frames,
+        // that the client writes together, and are written together.
+        List<PingFrame> frames = new ArrayList<>();
+        for (int i = 0; i < pings; ++i)
+        {
+            frames.add(new PingFrame(i, false));
+        }
+        ((HTTP2Session)session).frames(null, frames, Callback.NOOP);
+        assertTrue(pingLatch.await(5, TimeUnit.SECONDS));
+
+        HTTP2Flusher serverFlusher = serverFlusherRef.get();
+        assertThat(serverFlusher.getFramesPerWriteMax(), greaterThanOrEqualTo(2L));
+        assertThat(serverFlusher.getCoalescedBufferCount(), greaterThan(0L));
+    }
+
+    @Test
+    public void testWriteCoalescingBlockingWriteFromOnData() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        if (!frame.isEndStream())
+                        {
+                            callback.succeeded();
+                            return;
+                        }
+                        try
+                        {
+                            // Write from the parsing thread and wait for the write to complete.
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.NOOP);
+                            FutureCallback write = new FutureCallback();
+                            stream.data(new DataFrame(stream.getId(), StandardCharsets.UTF_8.encode("pong"), true), write);
+                            write.get(5, TimeUnit.SECONDS);
+                            callback.succeeded();
+                            serverLatch.countDown();
+                        }
+                        catch (Throwable x)
+                        {
+                            callback.failed(x);
+                        }
+                    }
+                };
+            }
+        }, factory -> factory.setWriteCoalescingSize(4096));
+
+        Session session = newClient(new Session.Listener.Adapter());
+
+        CountDownLatch clientLatch = new CountDownLatch(1);
+        MetaData.Request metaData = newRequest("POST", HttpFields.EMPTY);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(metaData, null, false), promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    clientLatch.countDown();
+            }
+        });
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), StandardCharsets.UTF_8.encode("ping"), true), Callback.NOOP);
+
+        assertTrue(serverLatch.await(10, TimeUnit.SECONDS));
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+    }
+
     @Test
     public void testRequestNoContentResponseEmptyContent() throws Exception
     {
@@ -0,0 +1,557 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows from an estimate
+ * of the bandwidth-delay product of the connection.</p>
+ * <p>While data is received, a PING frame is sent at most once per
+ * {@link Factory#getPingInterval() ping interval} to measure the round-trip time,
+ * and the bandwidth is measured from the bytes received between PING replies.
+ * When the estimated bandwidth-delay product is more than half the session
+ * receive window, the window may limit the sender, so the session and stream
+ * receive windows are grown to twice the estimate, up to
+ * {@link Factory#getMaxRecvWindow()}.
+ * Windows are not grown when the application does not consume the data,
+ * or when the bandwidth drops, because larger windows would only buffer
+ * more data.</p>
+ * <p>The memory of the grown windows is accounted in the {@link Factory}, which
+ * is shared by all the sessions of a connector or client.
+ * Windows are not grown beyond {@link Factory#getMaxMemory()}, and when the
+ * whole memory is granted, so that other sessions could not grow their windows,
+ * or when a session has no streams, the windows shrink back by not returning
+ * to the sender the credit of the consumed data.</p>
+ * <p>Like {@link BufferingFlowControlStrategy}, window updates are sent when
+ * the data consumed reaches a fraction of the window.</p>
+ */
+@ManagedObject
+public class AdaptiveFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    private final AutoLock lock = new AutoLock();
+    private final Map<IStream, StreamWindow> streamWindows = new ConcurrentHashMap<>();
+    private final AtomicInteger streams = new AtomicInteger();
+    private final SampleStatistic rtt = new SampleStatistic();
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder growths = new LongAdder();
+    private final LongAdder shrinks = new LongAdder();
+    private final byte[] pingPayload = new byte[PingFrame.PING_LENGTH];
+    private final Factory factory;
+    private int sessionBase = DEFAULT_WINDOW_SIZE;
+    private int sessionTarget = DEFAULT_WINDOW_SIZE;
+    private int sessionBuffered;
+    private int sessionLevel;
+    private int streamTarget;
+    private long pingNanoTime;
+    private long lastPingNanoTime;
+    private long lastShrinkNanoTime;
+    private long sampleNanoTime;
+    private long sampleBytes;
+    private long sampleConsumed;
+    private volatile long bdp;
+    private volatile long bandwidth;
+    private long maxBandwidth;
+
+    public AdaptiveFlowControlStrategy(int maxRecvWindow)
+    {
+        this(new Factory(maxRecvWindow));
+    }
+
+    public AdaptiveFlowControlStrategy(Factory factory)
+    {
+        super(DEFAULT_WINDOW_SIZE);
+        this.factory = factory;
+        ThreadLocalRandom.current().nextBytes(pingPayload);
+    }
+
+    @ManagedAttribute(value = "The current target size of the session receive window", readonly = true)
+    public int getSessionRecvWindowTarget()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return sessionTarget;
+        }
+    }
+
+    @ManagedAttribute(value = "The current target size of the streams receive window", readonly = true)
+    public int getStreamRecvWindowTarget()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return getStreamTarget();
+        }
+    }
+
+    @ManagedAttribute(value = "The last estimate of the bandwidth-delay product in bytes", readonly = true)
+    public long getBandwidthDelayProduct()
+    {
+        return bdp;
+    }
+
+    @ManagedAttribute(value = "The last estimate of the bandwidth in bytes per second", readonly = true)
+    public long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    @ManagedAttribute(value = "The average round-trip time in microseconds", readonly = true)
+    public double getRoundTripTimeMean()
+    {
+        return rtt.getMean();
+    }
+
+    @ManagedAttribute(value = "The max round-trip time in microseconds", readonly = true)
+    public long getRoundTripTimeMax()
+    {
+        return rtt.getMax();
+    }
+
+    @ManagedAttribute(value = "The number of PING frames sent to estimate the bandwidth-delay product", readonly = true)
+    public long getPingCount()
+    {
+        return pings.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of times the receive windows have been grown", readonly = true)
+    public long getWindowGrowthCount()
+    {
+        return growths.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of times the receive windows have been shrunk", readonly = true)
+    public long getWindowShrinkCount()
+    {
+        return shrinks.longValue();
+    }
+
+    @Override
+    public void reset()
+    {
+        super.reset();
+        rtt.reset();
+        pings.reset();
+        growths.reset();
+        shrinks.reset();
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        streamWindows.put(stream, new StreamWindow());
+        streams.incrementAndGet();
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        streamWindows.remove(stream);
+        super.onStreamDestroyed(stream);
+        // Release the memory of idle sessions.
+        if (streams.decrementAndGet() == 0)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                shrink(sessionBase);
+            }
+        }
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        boolean ping = false;
+        try (AutoLock l = lock.lock())
+        {
+            super.onDataReceived(session, stream, length);
+            sessionBuffered += length;
+            if (stream != null)
+            {
+                StreamWindow streamWindow = streamWindows.get(stream);
+                if (streamWindow != null)
+                    streamWindow.buffered += length;
+            }
+
+            if (sampleNanoTime != 0)
+                sampleBytes += length;
+
+            // Measure only when the window could grow, that is when
+            // the application keeps up with the data it receives.
+            if (pingNanoTime == 0 && stream != null && sessionTarget < factory.getMaxRecvWindow() && sessionBuffered <= sessionTarget / 2)
+            {
+                long now = System.nanoTime();
+                if (lastPingNanoTime == 0 || now - lastPingNanoTime >= TimeUnit.MILLISECONDS.toNanos(factory.getPingInterval()))
+                {
+                    pingNanoTime = now;
+                    lastPingNanoTime = now;
+                    if (sampleNanoTime == 0)
+                    {
+                        sampleNanoTime = now;
+                        sampleBytes = 0;
+                        sampleConsumed = 0;
+                    }
+                    ping = true;
+                }
+            }
+        }
+        if (ping)
+        {
+            pings.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Sending PING to estimate the bandwidth-delay product of {}", session);
+            session.frames(null, List.of(new PingFrame(pingPayload, false)), Callback.NOOP);
+        }
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        if (!Arrays.equals(pingPayload, frame.getPayload()))
+            return false;
+
+        WindowUpdateFrame sessionFrame = null;
+        try (AutoLock l = lock.lock())
+        {
+            if (pingNanoTime == 0 || sampleNanoTime == 0)
+                return true;
+            long now = System.nanoTime();
+            long roundTrip = Math.max(1, now - pingNanoTime);
+            long interval = Math.max(1, now - sampleNanoTime);
+            pingNanoTime = 0;
+            rtt.record(TimeUnit.NANOSECONDS.toMicros(roundTrip));
+            long sampleBandwidth = sampleBytes * TimeUnit.SECONDS.toNanos(1) / interval;
+            long estimate = sampleBytes * roundTrip / interval;
+            bandwidth = sampleBandwidth;
+            bdp = estimate;
+            boolean consumed = 2 * sampleConsumed >= sampleBytes && sessionBuffered <= sessionTarget / 2;
+            sampleNanoTime = now;
+            sampleBytes = 0;
+            sampleConsumed = 0;
+
+            if (2 * estimate > sessionTarget && 4 * sampleBandwidth >= 3 * maxBandwidth && consumed)
+            {
+                maxBandwidth = Math.max(maxBandwidth, sampleBandwidth);
+                int target = (int)Math.min(2 * estimate, factory.getMaxRecvWindow());
+                int granted = factory.acquire(target - sessionTarget);
+                if (granted > 0)
+                {
+                    sessionTarget += granted;
+                    streamTarget = Math.min(sessionTarget, factory.getMaxRecvWindow());
+                    growths.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Grown receive windows to {} bytes, bdp={} rtt={}us for {}", sessionTarget, estimate, TimeUnit.NANOSECONDS.toMicros(roundTrip), session);
+                    // Grant the grown window immediately.
+                    sessionFrame = updateSessionWindow(session);
+                }
+            }
+        }
+        if (sessionFrame != null)
+            sendWindowUpdate(null, session, sessionFrame);
+        return true;
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        WindowUpdateFrame sessionFrame = null;
+        WindowUpdateFrame streamFrame = null;
+        try (AutoLock l = lock.lock())
+        {
+            sessionBuffered -= length;
+            sessionLevel += length;
+            if (sampleNanoTime != 0)
+                sampleConsumed += length;
+
+            if (sessionTarget > sessionBase && factory.isMemoryExhausted())
+            {
+                long now = System.nanoTime();
+                if (now - lastShrinkNanoTime >= TimeUnit.MILLISECONDS.toNanos(factory.getPingInterval()))
+                {
+                    lastShrinkNanoTime = now;
+                    shrink(Math.max(sessionBase, sessionTarget / 2));
+                }
+            }
+
+            float ratio = factory.getBufferRatio();
+            if (sessionLevel > sessionTarget * ratio)
+                sessionFrame = updateSessionWindow(session);
+
+            if (stream != null)
+            {
+                StreamWindow streamWindow = streamWindows.get(stream);
+                if (streamWindow != null)
+                {
+                    streamWindow.buffered -= length;
+                    streamWindow.level += length;
+                    if (stream.isRemotelyClosed())
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, ignoring update stream recv window for remotely closed {}", length, stream);
+                    }
+                    else
+                    {
+                        // The window may still be smaller than a grown target.
+                        int target = getStreamTarget();
+                        int size = stream.updateRecvWindow(0) + streamWindow.buffered + streamWindow.level;
+                        if (streamWindow.level > Math.min(target, size) * ratio)
+                        {
+                            streamWindow.level = 0;
+                            int delta = target - streamWindow.buffered - stream.updateRecvWindow(0);
+                            if (delta > 0)
+                            {
+                                stream.updateRecvWindow(delta);
+                                if (LOG.isDebugEnabled())
+                                    LOG.debug("Data consumed, {} bytes, updated stream recv window by {}/{} for {}", length, delta, target, stream);
+                                streamFrame = new WindowUpdateFrame(stream.getId(), delta);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (sessionFrame != null)
+            sendWindowUpdate(null, session, sessionFrame);
+        if (streamFrame != null)
+            sendWindowUpdate(stream, session, streamFrame);
+    }
+
+    private WindowUpdateFrame updateSessionWindow(ISession session)
+    {
+        assert lock.isHeldByCurrentThread();
+        sessionLevel = 0;
+        // The window that the sender may use, excluding the data not yet consumed;
+        // it is less than the target when the target has been shrunk.
+        int delta = sessionTarget - sessionBuffered - session.updateRecvWindow(0);
+        if (delta <= 0)
+            return null;
+        session.updateRecvWindow(delta);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Updated session recv window by {}/{} for {}", delta, sessionTarget, session);
+        return new WindowUpdateFrame(0, delta);
+    }
+
+    private void shrink(int target)
+    {
+        assert lock.isHeldByCurrentThread();
+        int released = sessionTarget - target;
+        if (released <= 0)
+            return;
+        sessionTarget = target;
+        if (streamTarget > target)
+            streamTarget = target;
+        maxBandwidth = 0;
+        sampleNanoTime = 0;
+        factory.release(released);
+        shrinks.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Shrunk receive windows to {} bytes", target);
+    }
+
+    private int getStreamTarget()
+    {
+        return Math.max(getInitialStreamRecvWindow(), streamTarget);
+    }
+
+    protected void sendWindowUpdate(IStream stream, ISession session, WindowUpdateFrame frame)
+    {
+        session.frames(stream, List.of(frame), Callback.NOOP);
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+        if (frame.getStreamId() == 0)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                // Track the window updates not sent by this strategy,
+                // for example the one that sets the initial session window.
+                int size = session.updateRecvWindow(0) + sessionBuffered + sessionLevel;
+                if (size > sessionTarget)
+                {
+                    sessionBase += size - sessionTarget;
+                    sessionTarget = size;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[window=%d/%d,bdp=%d,rtt=%.0fus,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getSessionRecvWindowTarget(),
+            getStreamRecvWindowTarget(),
+            getBandwidthDelayProduct(),
+            getRoundTripTimeMean(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+
+    private static class StreamWindow
+    {
+        private int buffered;
+        private int level;
+    }
+
+    /**
+     * <p>Creates {@link AdaptiveFlowControlStrategy} instances that share the
+     * accounting of the memory of their grown receive windows.</p>
+     */
+    @ManagedObject
+    public static class Factory implements FlowControlStrategy.Factory
+    {
+        private final AtomicLong memory = new AtomicLong();
+        private final int maxRecvWindow;
+        private volatile long maxMemory;
+        private float bufferRatio = 0.25F;
+        private long pingInterval = 100;
+
+        /**
+         * @param maxRecvWindow the max size of the session and stream receive windows
+         */
+        public Factory(int maxRecvWindow)
+        {
+            this(maxRecvWindow, Long.MAX_VALUE);
+        }
+
+        /**
+         * @param maxRecvWindow the max size of the session and stream receive windows
+         * @param maxMemory the max memory of the receive windows grown beyond their initial size, across all sessions
+         */
+        public Factory(int maxRecvWindow, long maxMemory)
+        {
+            this.maxRecvWindow = maxRecvWindow;
+            this.maxMemory = maxMemory;
+        }
+
+        @Override
+        public FlowControlStrategy newFlowControlStrategy()
+        {
+            return new AdaptiveFlowControlStrategy(this);
+        }
+
+        @ManagedAttribute(value = "The max size of the session and stream receive windows", readonly = true)
+        public int getMaxRecvWindow()
+        {
+            return maxRecvWindow;
+        }
+
+        @ManagedAttribute("The max memory of the receive windows grown beyond their initial size")
+        public long getMaxMemory()
+        {
+            return maxMemory;
+        }
+
+        /**
+         * <p>Sets the max memory of the receive windows grown beyond their initial size,
+         * across all sessions; if the memory is already exhausted, the windows shrink.</p>
+         *
+         * @param maxMemory the max memory of the grown receive windows
+         */
+        public void setMaxMemory(long maxMemory)
+        {
+            this.maxMemory = maxMemory;
+        }
+
+        @ManagedAttribute(value = "The memory of the receive windows grown beyond their initial size", readonly = true)
+        public long getMemory()
+        {
+            return memory.get();
+        }
+
+        @ManagedAttribute("The ratio between the receive window and the consumed data that triggers a window update")
+        public float getBufferRatio()
+        {
+            return bufferRatio;
+        }
+
+        public void setBufferRatio(float bufferRatio)
+        {
+            this.bufferRatio = bufferRatio;
+        }
+
+        @ManagedAttribute("The min interval in milliseconds between the PING frames that estimate the bandwidth-delay product")
+        public long getPingInterval()
+        {
+            return pingInterval;
+        }
+
+        public void setPingInterval(long pingInterval)
+        {
+            this.pingInterval = pingInterval;
+        }
+
+        private int acquire(int bytes)
+        {
+            while (bytes > 0)
+            {
+                long current = memory.get();
+                long available = maxMemory - current;
+                if (available <= 0)
+                    return 0;
+                int granted = (int)Math.min(bytes, available);
+                if (memory.compareAndSet(current, current + granted))
+                    return granted;
+            }
+            return 0;
+        }
+
+        private void release(int bytes)
+        {
+            memory.addAndGet(-bytes);
+        }
+
+        private boolean isMemoryExhausted()
+        {
+            // Acquiring never exceeds the max memory, so the memory
+            // is exhausted as soon as the whole budget is granted.
+            return memory.get() >= maxMemory;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[memory=%d/%d,maxRecvWindow=%d]",
+                getClass().getSimpleName(),
+                hashCode(),
+                getMemory(),
+                getMaxMemory(),
+                getMaxRecvWindow());
+        }
+    }
+}
@@ -273,11 +273,23 @@ public class HTTP2Connection extends AbstractConnection implements WriteFlusher.
                 {
                     if (parse)
                     {
-                        while (networkBuffer.hasRemaining())
+                        // Write the control frames generated while parsing once the whole buffer has been parsed.
+                        HTTP2Flusher flusher = session instanceof HTTP2Session ? ((HTTP2Session)session).getFlusher() : null;
+                        if (flusher != null)
+                            flusher.cork();
+                        try
                         {
-                            parser.parse(networkBuffer.getBuffer());
-                            if (failed)
-                                return null;
+                            while (networkBuffer.hasRemaining())
+                            {
+                                parser.parse(networkBuffer.getBuffer());
+                                if (failed)
+                                    return null;
+                            }
+                        }
+                        finally
+                        {
+                            if (flusher != null)
+                                flusher.uncork();
                         }
 
                         task = pollTask();
@@ -24,21 +24,39 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>Generates the queued frames and writes them to the network.</p>
+ * <p>The frames generated in a flush cycle are written with a single gathering write.
+ * When {@link HTTP2Session#getWriteCoalescingSize() write coalescing} is enabled, the
+ * small frame buffers are also copied into pooled buffers of up to the coalescing size,
+ * and the flushes of the control frames that the session generates while parsing a
+ * network buffer are deferred until the whole network buffer has been parsed
+ * (see {@link #cork()}), so that they are written together in fewer and larger writes.</p>
+ */
+@ManagedObject
 public class HTTP2Flusher extends IteratingCallback implements Dumpable
 {
     private static final Logger LOG = LoggerFactory.getLogger(HTTP2Flusher.class);
@@ -51,14 +69,22 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private final Collection<Entry> processedEntries = new ArrayList<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
+    private final ByteBufferPool.Lease coalescedLease;
+    private final SampleStatistic framesPerWrite = new SampleStatistic();
+    private final SampleStatistic buffersPerWrite = new SampleStatistic();
+    private final LongAdder coalescedBuffers = new LongAdder();
     private InvocationType invocationType = InvocationType.NON_BLOCKING;
     private Throwable terminated;
     private Entry stalledEntry;
+    private Thread corked;
+    private boolean deferred;
+    private int frames;
 
     public HTTP2Flusher(HTTP2Session session)
     {
         this.session = session;
         this.lease = new ByteBufferPool.Lease(session.getGenerator().getByteBufferPool());
+        this.coalescedLease = new ByteBufferPool.Lease(session.getGenerator().getByteBufferPool());
     }
 
     @Override
@@ -138,6 +164,69 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         return false;
     }
 
+    /**
+     * <p>Defers the flushes requested by the current thread until {@link #uncork()} is called,
+     * as long as only the control frames generated by the session are queued, that is
+     * WINDOW_UPDATE frames and the SETTINGS and PING replies.</p>
+     * <p>The frames written by the application, for example from a listener called by the
+     * current thread, are flushed immediately, since the application may wait for them
+     * to be written. Flushes requested by other threads are not deferred either, and
+     * they also write the frames queued by the current thread.
+     * This method does nothing if write coalescing is disabled.</p>
+     */
+    void cork()
+    {
+        if (session.getWriteCoalescingSize() <= 0)
+            return;
+        try (AutoLock l = lock.lock())
+        {
+            corked = Thread.currentThread();
+        }
+    }
+
+    /**
+     * <p>Flushes the frames whose flush has been deferred by {@link #cork()}.</p>
+     */
+    void uncork()
+    {
+        boolean flush;
+        try (AutoLock l = lock.lock())
+        {
+            if (corked != Thread.currentThread())
+                return;
+            corked = null;
+            flush = deferred;
+            deferred = false;
+        }
+        if (flush)
+            iterate();
+    }
+
+    private boolean isDeferrable()
+    {
+        assert lock.isHeldByCurrentThread();
+        for (Entry entry : entries)
+        {
+            Frame frame = entry.frame;
+            switch (frame.getType())
+            {
+                case WINDOW_UPDATE:
+                    break;
+                case SETTINGS:
+                    if (!((SettingsFrame)frame).isReply())
+                        return false;
+                    break;
+                case PING:
+                    if (!((PingFrame)frame).isReply())
+                        return false;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
     private int getWindowQueueSize()
     {
         try (AutoLock l = lock.lock())
@@ -165,6 +254,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             if (terminated != null)
                 throw terminated;
 
+            if (corked == Thread.currentThread() && isDeferrable())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Deferred flush {}", session);
+                deferred = true;
+                return Action.IDLE;
+            }
+
             WindowEntry windowEntry;
             while ((windowEntry = windows.poll()) != null)
             {
@@ -218,6 +315,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                             LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
 
                         progress = true;
+                        ++frames;
 
                         // We use ArrayList contains() + add() instead of HashSet add()
                         // because that is faster for collections of size up to 250 entries.
@@ -280,19 +378,75 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        ByteBuffer[] buffers = coalesce(byteBuffers);
+        framesPerWrite.record(frames);
+        buffersPerWrite.record(buffers.length);
+        frames = 0;
+
         if (LOG.isDebugEnabled())
             LOG.debug("Writing {} buffers ({} bytes) - entries processed/pending {}/{}: {}/{}",
-                byteBuffers.size(),
+                buffers.length,
                 lease.getTotalLength(),
                 processedEntries.size(),
                 pendingEntries.size(),
                 processedEntries,
                 pendingEntries);
 
-        session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
+        session.getEndPoint().write(this, buffers);
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Copies the runs of consecutive buffers whose total length does not exceed
+     * the write coalescing size into a single pooled buffer.</p>
+     * <p>Larger buffers, typically the content of DATA frames, are not copied.</p>
+     *
+     * @param byteBuffers the generated buffers
+     * @return the buffers to write
+     */
+    private ByteBuffer[] coalesce(List<ByteBuffer> byteBuffers)
+    {
+        int coalescingSize = session.getWriteCoalescingSize();
+        int size = byteBuffers.size();
+        if (coalescingSize <= 0 || size < 2)
+            return byteBuffers.toArray(EMPTY_BYTE_BUFFERS);
+
+        List<ByteBuffer> result = new ArrayList<>(size);
+        int start = 0;
+        int length = 0;
+        for (int i = 0; i <= size; ++i)
+        {
+            int remaining = i < size ? byteBuffers.get(i).remaining() : 0;
+            if (i < size && length + remaining <= coalescingSize)
+            {
+                length += remaining;
+                continue;
+            }
+
+            // Close the run of buffers [start, i).
+            int count = i - start;
+            if (count == 1)
+            {
+                result.add(byteBuffers.get(start));
+            }
+            else if (count > 1)
+            {
+                ByteBuffer buffer = coalescedLease.acquire(length, session.getGenerator().isUseDirectByteBuffers());
+                for (int j = start; j < i; ++j)
+                {
+                    buffer.put(byteBuffers.get(j).slice());
+                }
+                BufferUtil.flipToFlush(buffer, 0);
+                coalescedLease.append(buffer, true);
+                result.add(buffer);
+                coalescedBuffers.add(count);
+            }
+            start = i;
+            length = remaining;
+        }
+        return result.toArray(EMPTY_BYTE_BUFFERS);
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -319,6 +473,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private void finish()
     {
         lease.recycle();
+        coalescedLease.recycle();
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
@@ -349,6 +504,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     protected void onCompleteFailure(Throwable x)
     {
         lease.recycle();
+        coalescedLease.recycle();
 
         Throwable closed;
         Set<Entry> allEntries;
@@ -392,6 +548,44 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             iterate();
     }
 
+    @ManagedAttribute("The number of writes")
+    public long getWriteCount()
+    {
+        return framesPerWrite.getCount();
+    }
+
+    @ManagedAttribute("The average number of frames per write")
+    public double getFramesPerWriteMean()
+    {
+        return framesPerWrite.getMean();
+    }
+
+    @ManagedAttribute("The max number of frames per write")
+    public long getFramesPerWriteMax()
+    {
+        return framesPerWrite.getMax();
+    }
+
+    @ManagedAttribute("The average number of buffers per write")
+    public double getBuffersPerWriteMean()
+    {
+        return buffersPerWrite.getMean();
+    }
+
+    @ManagedAttribute("The number of buffers copied into coalesced buffers")
+    public long getCoalescedBufferCount()
+    {
+        return coalescedBuffers.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        framesPerWrite.reset();
+        buffersPerWrite.reset();
+        coalescedBuffers.reset();
+    }
+
     private void closed(Entry entry, Throwable failure)
     {
         entry.failed(failure);
@@ -412,12 +606,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     @Override
     public String toString()
     {
-        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending=%d/%d]",
+        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending=%d/%d,writes=%d,frames/write=%.2f]",
             super.toString(),
             getWindowQueueSize(),
             getFrameQueueSize(),
             processedEntries.size(),
-            pendingEntries.size());
+            pendingEntries.size(),
+            getWriteCount(),
+            getFramesPerWriteMean());
     }
 
     public abstract static class Entry extends Callback.Nested
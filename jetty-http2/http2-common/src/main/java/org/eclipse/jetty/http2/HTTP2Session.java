@@ -104,6 +104,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private int writeCoalescingSize;
     private boolean pushEnabled;
     private boolean connectProtocolEnabled;
 
@@ -207,6 +208,32 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.writeThreshold = writeThreshold;
     }
 
+    @ManagedAttribute("The max number of bytes of small frames coalesced in a single write buffer, 0 to not coalesce")
+    public int getWriteCoalescingSize()
+    {
+        return writeCoalescingSize;
+    }
+
+    /**
+     * <p>Sets the max number of bytes of small frames that are copied into a single
+     * pooled buffer before being written, so that the frames of many streams are
+     * written with fewer buffers.</p>
+     * <p>When write coalescing is enabled, the acknowledgements and window updates
+     * generated while a network buffer is parsed are also written once the whole
+     * network buffer has been parsed.</p>
+     *
+     * @param writeCoalescingSize the max number of bytes of coalesced frames, or 0 to not coalesce frames
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        this.writeCoalescingSize = writeCoalescingSize;
+    }
+
+    HTTP2Flusher getFlusher()
+    {
+        return flusher;
+    }
+
     public EndPoint getEndPoint()
     {
         return endPoint;
@@ -431,7 +458,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -66,6 +66,11 @@ public class Generator
         return byteBufferPool;
     }
 
+    public boolean isUseDirectByteBuffers()
+    {
+        return headerGenerator.isUseDirectByteBuffers();
+    }
+
     public void setValidateHpackEncoding(boolean validateEncoding)
     {
         hpackEncoder.setValidateEncoding(validateEncoding);
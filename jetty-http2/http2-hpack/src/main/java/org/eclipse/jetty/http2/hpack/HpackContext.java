@@ -18,6 +18,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -25,7 +26,6 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.Index;
-import org.eclipse.jetty.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +36,9 @@ import org.slf4j.LoggerFactory;
  * and the associated sizes and limits.
  * </p>
  * <p>It is compliant with draft 11 of the specification</p>
+ * <p>The dynamic table is a ring buffer of entries, indexed by field and by name
+ * with open addressing hash tables of ring slots, so that lookups do not allocate
+ * and evictions are O(1).</p>
  */
 public class HpackContext
 {
@@ -184,8 +187,6 @@ public class HpackContext
     private int _maxDynamicTableSizeInBytes;
     private int _dynamicTableSizeInBytes;
     private final DynamicTable _dynamicTable;
-    private final Map<HttpField, Entry> _fieldMap = new HashMap<>();
-    private final Map<String, Entry> _nameMap = new HashMap<>();
 
     HpackContext(int maxDynamicTableSize)
     {
@@ -206,7 +207,7 @@ public class HpackContext
 
     public Entry get(HttpField field)
     {
-        Entry entry = _fieldMap.get(field);
+        Entry entry = _dynamicTable.get(field);
         if (entry == null)
             entry = __staticFieldMap.get(field);
         return entry;
@@ -217,7 +218,7 @@ public class HpackContext
         Entry entry = __staticNameMap.get(name);
         if (entry != null)
             return entry;
-        return _nameMap.get(StringUtil.asciiToLowerCase(name));
+        return _dynamicTable.get(name);
     }
 
     public Entry get(int index)
@@ -254,8 +255,6 @@ public class HpackContext
         }
         _dynamicTableSizeInBytes += size;
         _dynamicTable.add(entry);
-        _fieldMap.put(field, entry);
-        _nameMap.put(field.getLowerCaseName(), entry);
 
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] added %s", hashCode(), entry));
@@ -313,21 +312,60 @@ public class HpackContext
         return String.format("HpackContext@%x{entries=%d,size=%d,max=%d}", hashCode(), _dynamicTable.size(), _dynamicTableSizeInBytes, _maxDynamicTableSizeInBytes);
     }
 
+    /**
+     * <p>Computes a case insensitive hash of a header name, without allocating.</p>
+     *
+     * @param name the header name
+     * @return the case insensitive hash of the name
+     */
+    static int nameHash(String name)
+    {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            // Header names are US-ASCII, see RFC 7230 section 3.2.4.
+            if (c >= 'A' && c <= 'Z')
+                c += 0x20;
+            h = 31 * h + c;
+        }
+        return h;
+    }
+
     private class DynamicTable
     {
         Entry[] _entries;
         int _size;
         int _offset;
         int _growby;
+        // Open addressing hash tables of ring slots + 1, where 0 is an empty bucket.
+        // Only the most recent entry with a given field or name is indexed.
+        int[] _fieldIndex;
+        int[] _nameIndex;
+        int _mask;
 
         private DynamicTable(int initCapacity)
         {
             _entries = new Entry[initCapacity];
             _growby = initCapacity;
+            newIndexes();
+        }
+
+        private void newIndexes()
+        {
+            // Keep the load factor at most 0.5.
+            int length = Integer.highestOneBit(_entries.length * 4 - 1);
+            _fieldIndex = new int[length];
+            _nameIndex = new int[length];
+            _mask = length - 1;
         }
 
         public void add(Entry entry)
         {
+            HttpField field = entry.getHttpField();
+            entry._nameHash = nameHash(field.getName());
+            entry._fieldHash = 31 * entry._nameHash + Objects.hashCode(field.getValue());
+
             if (_size == _entries.length)
             {
                 Entry[] entries = new Entry[_entries.length + _growby];
@@ -339,10 +377,122 @@ public class HpackContext
                 }
                 _entries = entries;
                 _offset = 0;
+                // The slots have moved, so re-index the entries, from the oldest to the most recent.
+                newIndexes();
+                for (int i = 0; i < _size; i++)
+                {
+                    put(_fieldIndex, true, entries[i]);
+                    put(_nameIndex, false, entries[i]);
+                }
             }
             int slot = (_size++ + _offset) % _entries.length;
             _entries[slot] = entry;
             entry._slot = slot;
+            put(_fieldIndex, true, entry);
+            put(_nameIndex, false, entry);
+        }
+
+        private int bucket(int hash)
+        {
+            int h = hash * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & _mask;
+        }
+
+        private int hash(Entry entry, boolean field)
+        {
+            return field ? entry._fieldHash : entry._nameHash;
+        }
+
+        private boolean matches(Entry indexed, Entry entry, boolean field)
+        {
+            HttpField indexedField = indexed.getHttpField();
+            HttpField entryField = entry.getHttpField();
+            return field ? indexedField.equals(entryField) : indexedField.getName().equalsIgnoreCase(entryField.getName());
+        }
+
+        private void put(int[] index, boolean field, Entry entry)
+        {
+            int hash = hash(entry, field);
+            int b = bucket(hash);
+            while (true)
+            {
+                int slot = index[b] - 1;
+                if (slot < 0)
+                    break;
+                Entry indexed = _entries[slot];
+                // Replace the older entry for the same key.
+                if (hash(indexed, field) == hash && matches(indexed, entry, field))
+                    break;
+                b = (b + 1) & _mask;
+            }
+            index[b] = entry._slot + 1;
+        }
+
+        private void remove(int[] index, boolean field, Entry entry)
+        {
+            int b = bucket(hash(entry, field));
+            int value = entry._slot + 1;
+            while (true)
+            {
+                if (index[b] == 0)
+                    return; // A more recent entry for the same key replaced this entry.
+                if (index[b] == value)
+                    break;
+                b = (b + 1) & _mask;
+            }
+
+            // Backward shift deletion, so that probe sequences do not need tombstones.
+            int hole = b;
+            int next = b;
+            while (true)
+            {
+                next = (next + 1) & _mask;
+                int slot = index[next] - 1;
+                if (slot < 0)
+                    break;
+                int home = bucket(hash(_entries[slot], field));
+                // Move the entry into the hole, unless its home bucket is cyclically in (hole, next].
+                boolean stay = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if (!stay)
+                {
+                    index[hole] = index[next];
+                    hole = next;
+                }
+            }
+            index[hole] = 0;
+        }
+
+        public Entry get(HttpField field)
+        {
+            String name = field.getName();
+            int hash = 31 * nameHash(name) + Objects.hashCode(field.getValue());
+            int b = bucket(hash);
+            while (true)
+            {
+                int slot = _fieldIndex[b] - 1;
+                if (slot < 0)
+                    return null;
+                Entry entry = _entries[slot];
+                if (entry._fieldHash == hash && entry.getHttpField().equals(field))
+                    return entry;
+                b = (b + 1) & _mask;
+            }
+        }
+
+        public Entry get(String name)
+        {
+            int hash = nameHash(name);
+            int b = bucket(hash);
+            while (true)
+            {
+                int slot = _nameIndex[b] - 1;
+                if (slot < 0)
+                    return null;
+                Entry entry = _entries[slot];
+                if (entry._nameHash == hash && entry.getHttpField().getName().equalsIgnoreCase(name))
+                    return entry;
+                b = (b + 1) & _mask;
+            }
         }
 
         public int index(Entry entry)
@@ -369,6 +519,8 @@ public class HpackContext
             while (_dynamicTableSizeInBytes > _maxDynamicTableSizeInBytes)
             {
                 Entry entry = _entries[_offset];
+                remove(_fieldIndex, true, entry);
+                remove(_nameIndex, false, entry);
                 _entries[_offset] = null;
                 _offset = (_offset + 1) % _entries.length;
                 _size--;
@@ -376,10 +528,6 @@ public class HpackContext
                     LOG.debug(String.format("HdrTbl[%x] evict %s", HpackContext.this.hashCode(), entry));
                 _dynamicTableSizeInBytes -= entry.getSize();
                 entry._slot = -1;
-                _fieldMap.remove(entry.getHttpField());
-                String lc = entry.getHttpField().getLowerCaseName();
-                if (entry == _nameMap.get(lc))
-                    _nameMap.remove(lc);
             }
             if (LOG.isDebugEnabled())
                 LOG.debug(String.format("HdrTbl[%x] entries=%d, size=%d, max=%d", HpackContext.this.hashCode(), _dynamicTable.size(), _dynamicTableSizeInBytes, _maxDynamicTableSizeInBytes));
@@ -391,8 +539,8 @@ public class HpackContext
                 LOG.debug(String.format("HdrTbl[%x] evictAll", HpackContext.this.hashCode()));
             if (size() > 0)
             {
-                _fieldMap.clear();
-                _nameMap.clear();
+                Arrays.fill(_fieldIndex, 0);
+                Arrays.fill(_nameIndex, 0);
                 _offset = 0;
                 _size = 0;
                 _dynamicTableSizeInBytes = 0;
@@ -405,6 +553,8 @@ public class HpackContext
     {
         final HttpField _field;
         int _slot; // The index within it's array
+        int _nameHash; // The case insensitive hash of the name, for dynamic entries
+        int _fieldHash; // The hash of the name and value, for dynamic entries
 
         Entry()
         {
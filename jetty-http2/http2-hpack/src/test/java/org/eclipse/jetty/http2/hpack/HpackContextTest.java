@@ -14,6 +14,9 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http2.hpack.HpackContext.Entry;
@@ -25,6 +28,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -445,4 +449,47 @@ public class HpackContextTest
         assertEquals("Wibble", ctx.get("wibble").getHttpField().getName());
         assertEquals("Wibble", ctx.get("Wibble").getHttpField().getName());
     }
+
+    @Test
+    public void testDynamicLookupMatchesTable()
+    {
+        // Small table, so that there are many evictions, plus duplicates and growth.
+        HpackContext ctx = new HpackContext(1024);
+        Random random = new Random(1234);
+        for (int i = 0; i < 10_000; i++)
+        {
+            String name = (random.nextBoolean() ? "X-Name-" : "x-name-") + random.nextInt(40);
+            String value = "value-" + random.nextInt(10);
+            ctx.add(new HttpField(name, value));
+
+            // The most recent dynamic entry for a field or a name must be found.
+            List<HttpField> fields = new ArrayList<>();
+            for (int index = HpackContext.STATIC_SIZE + 1; index <= HpackContext.STATIC_SIZE + ctx.size(); index++)
+            {
+                fields.add(ctx.get(index).getHttpField());
+            }
+            for (int d = 0; d < fields.size(); d++)
+            {
+                HttpField field = fields.get(d);
+                int newestField = fields.indexOf(field);
+                int newestName = -1;
+                for (int n = 0; n < fields.size(); n++)
+                {
+                    if (fields.get(n).getName().equalsIgnoreCase(field.getName()))
+                    {
+                        newestName = n;
+                        break;
+                    }
+                }
+                int staticIndex = HpackContext.STATIC_SIZE + 1;
+                assertSame(ctx.get(staticIndex + newestField), ctx.get(field));
+                assertSame(ctx.get(staticIndex + newestName), ctx.get(field.getName().toUpperCase()));
+                assertEquals(staticIndex + newestField, ctx.index(ctx.get(field)));
+            }
+        }
+
+        // Evicted entries are not found.
+        assertNull(ctx.get(new HttpField("x-name-999", "value-0")));
+        assertNull(ctx.get("x-name-999"));
+    }
 }
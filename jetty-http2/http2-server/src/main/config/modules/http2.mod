@@ -34,4 +34,7 @@ etc/jetty-http2.xml
 ## Specifies the maximum number of bad frames and pings per second,
 ## after which a session is closed to avoid denial of service attacks.
 # jetty.http2.rateControl.maxEventsPerSecond=50
+
+## Specifies the maximum number of bytes of small frames coalesced in a single write buffer (0 to not coalesce frames).
+# jetty.http2.writeCoalescingSize=0
 # end::documentation[]
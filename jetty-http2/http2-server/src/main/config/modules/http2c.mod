@@ -32,4 +32,7 @@ etc/jetty-http2c.xml
 ## Specifies the maximum number of bad frames and pings per second,
 ## after which a session is closed to avoid denial of service attacks.
 # jetty.http2c.rateControl.maxEventsPerSecond=50
+
+## Specifies the maximum number of bytes of small frames coalesced in a single write buffer (0 to not coalesce frames).
+# jetty.http2c.writeCoalescingSize=0
 # end::documentation[]
@@ -16,12 +16,15 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -30,6 +33,14 @@ import org.eclipse.jetty.util.component.DumpableCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link RetainableByteBufferPool} that pools buffers in buckets of increasing capacity.</p>
+ * <p>Optionally, a {@link #setMagazineSize(int) magazine} tier can be configured in front of the buckets:
+ * each magazine is a small stripe, selected by the current thread, that caches buffers for each bucket
+ * so that most acquires and releases do not contend on the shared buckets.
+ * Magazines are refilled from, and drained to, the buckets in batches of half their size.
+ * Buffers cached in magazines are accounted in the retained memory, and may be evicted.</p>
+ */
 @ManagedObject
 public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool, Dumpable
 {
@@ -44,6 +55,10 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     private final AtomicLong _currentHeapMemory = new AtomicLong();
     private final AtomicLong _currentDirectMemory = new AtomicLong();
     private final Function<Integer, Integer> _bucketIndexFor;
+    private final Magazine[] _magazines;
+    private final LongAdder _magazineHits = new LongAdder();
+    private final LongAdder _magazineMisses = new LongAdder();
+    private volatile int _magazineSize;
 
     public ArrayRetainableByteBufferPool()
     {
@@ -83,8 +98,8 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         for (int i = 0; i < directArray.length; i++)
         {
             int capacity = Math.min(bucketCapacity.apply(i), maxCapacity);
-            directArray[i] = new Bucket(capacity, maxBucketSize);
-            indirectArray[i] = new Bucket(capacity, maxBucketSize);
+            directArray[i] = new Bucket(i, capacity, maxBucketSize);
+            indirectArray[i] = new Bucket(length + i, capacity, maxBucketSize);
         }
 
         _minCapacity = minCapacity;
@@ -94,6 +109,13 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         _maxHeapMemory = maxHeapMemory;
         _maxDirectMemory = maxDirectMemory;
         _bucketIndexFor = bucketIndexFor;
+        // Round up to a power of 2, to select the stripe with a mask.
+        int stripes = Integer.highestOneBit(Math.max(1, ProcessorUtils.availableProcessors() * 2 - 1));
+        _magazines = new Magazine[stripes];
+        for (int i = 0; i < stripes; i++)
+        {
+            _magazines[i] = new Magazine(2 * length);
+        }
     }
 
     @ManagedAttribute("The minimum pooled buffer capacity")
@@ -108,13 +130,51 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         return _maxCapacity;
     }
 
+    /**
+     * @return the max number of buffers cached per bucket by each magazine, or 0 if magazines are disabled
+     */
+    @ManagedAttribute("The max number of buffers cached per bucket by each magazine")
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    /**
+     * <p>Sets the max number of buffers cached per bucket by each magazine.</p>
+     * <p>The buffers cached by the magazines are returned to the buckets.</p>
+     *
+     * @param magazineSize the max number of buffers cached per bucket by each magazine, or 0 to disable magazines
+     */
+    public void setMagazineSize(int magazineSize)
+    {
+        if (magazineSize < 0)
+            throw new IllegalArgumentException("Invalid magazine size: " + magazineSize);
+        _magazineSize = magazineSize;
+        for (Magazine magazine : _magazines)
+        {
+            magazine.drain();
+        }
+    }
+
+    @ManagedAttribute("The number of buffers acquired from the magazines")
+    public long getMagazineHits()
+    {
+        return _magazineHits.longValue();
+    }
+
+    @ManagedAttribute("The number of buffers that could not be acquired from the magazines")
+    public long getMagazineMisses()
+    {
+        return _magazineMisses.longValue();
+    }
+
     @Override
     public RetainableByteBuffer acquire(int size, boolean direct)
     {
         Bucket bucket = bucketFor(size, direct);
         if (bucket == null)
             return newRetainableByteBuffer(size, direct, byteBuffer -> {});
-        Bucket.Entry entry = bucket.acquire();
+        Bucket.Entry entry = acquireEntry(bucket);
 
         RetainableByteBuffer buffer;
         if (entry == null)
@@ -125,7 +185,7 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
                 buffer = newRetainableByteBuffer(bucket._capacity, direct, byteBuffer ->
                 {
                     BufferUtil.reset(byteBuffer);
-                    reservedEntry.release();
+                    releaseEntry(bucket, reservedEntry);
                 });
                 reservedEntry.enable(buffer, true);
                 if (direct)
@@ -147,6 +207,83 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         return buffer;
     }
 
+    private Bucket.Entry acquireEntry(Bucket bucket)
+    {
+        int magazineSize = _magazineSize;
+        if (magazineSize == 0)
+            return bucket.acquire();
+
+        Magazine magazine = magazine();
+        if (magazine.tryLock())
+        {
+            try
+            {
+                Bucket.Entry entry = magazine.pop(bucket);
+                if (entry != null)
+                {
+                    _magazineHits.increment();
+                    return entry;
+                }
+                // Refill the magazine with a batch of entries.
+                int batch = Math.max(1, magazineSize / 2);
+                for (int i = 0; i < batch; ++i)
+                {
+                    entry = bucket.acquire();
+                    if (entry == null)
+                        break;
+                    if (!magazine.push(bucket, entry, magazineSize))
+                    {
+                        entry.release();
+                        break;
+                    }
+                }
+                entry = magazine.pop(bucket);
+                if (entry != null)
+                {
+                    _magazineMisses.increment();
+                    return entry;
+                }
+            }
+            finally
+            {
+                magazine.unlock();
+            }
+        }
+        _magazineMisses.increment();
+        return bucket.acquire();
+    }
+
+    private void releaseEntry(Bucket bucket, Bucket.Entry entry)
+    {
+        int magazineSize = _magazineSize;
+        if (magazineSize > 0 && !entry.isClosed())
+        {
+            Magazine magazine = magazine();
+            if (magazine.tryLock())
+            {
+                try
+                {
+                    if (magazine.push(bucket, entry, magazineSize))
+                        return;
+                    // Drain a batch of entries to make space.
+                    magazine.drain(bucket, Math.max(1, magazineSize / 2));
+                    if (magazine.push(bucket, entry, magazineSize))
+                        return;
+                }
+                finally
+                {
+                    magazine.unlock();
+                }
+            }
+        }
+        entry.release();
+    }
+
+    private Magazine magazine()
+    {
+        return _magazines[(int)Thread.currentThread().getId() & (_magazines.length - 1)];
+    }
+
     private RetainableByteBuffer newRetainableByteBuffer(int capacity, boolean direct, Consumer<ByteBuffer> releaser)
     {
         ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
@@ -200,7 +337,17 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     private long getAvailableByteBufferCount(boolean direct)
     {
         Bucket[] buckets = direct ? _direct : _indirect;
-        return Arrays.stream(buckets).mapToLong(bucket -> bucket.values().stream().filter(Pool.Entry::isIdle).count()).sum();
+        return Arrays.stream(buckets).mapToLong(bucket -> bucket.values().stream().filter(Pool.Entry::isIdle).count() + magazineCount(bucket)).sum();
+    }
+
+    private long magazineCount(Bucket bucket)
+    {
+        long count = 0;
+        for (Magazine magazine : _magazines)
+        {
+            count += magazine.size(bucket);
+        }
+        return count;
     }
 
     @ManagedAttribute("The bytes retained by direct ByteBuffers")
@@ -242,7 +389,7 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         for (Bucket bucket : buckets)
         {
             int capacity = bucket._capacity;
-            total += bucket.values().stream().filter(Pool.Entry::isIdle).count() * capacity;
+            total += (bucket.values().stream().filter(Pool.Entry::isIdle).count() + magazineCount(bucket)) * capacity;
         }
         return total;
     }
@@ -250,6 +397,10 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     @ManagedOperation(value = "Clears this RetainableByteBufferPool", impact = "ACTION")
     public void clear()
     {
+        for (Magazine magazine : _magazines)
+        {
+            magazine.drain();
+        }
         clearArray(_direct, _currentDirectMemory);
         clearArray(_indirect, _currentHeapMemory);
     }
@@ -319,12 +470,13 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     @Override
     public String toString()
     {
-        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d}",
+        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d,magazine=%d,hits=%d,misses=%d}",
             super.toString(),
             _minCapacity, _maxCapacity,
             _direct.length,
             _currentHeapMemory.get(), _maxHeapMemory,
-            _currentDirectMemory.get(), _maxDirectMemory);
+            _currentDirectMemory.get(), _maxDirectMemory,
+            _magazineSize, getMagazineHits(), getMagazineMisses());
     }
 
     @Override
@@ -359,11 +511,14 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
 
     private static class Bucket extends Pool<RetainableByteBuffer>
     {
+        // The index of this bucket in the magazines.
+        private final int _index;
         private final int _capacity;
 
-        Bucket(int capacity, int size)
+        Bucket(int index, int capacity, int size)
         {
             super(Pool.StrategyType.THREAD_ID, size, true);
+            _index = index;
             _capacity = capacity;
         }
 
@@ -386,4 +541,114 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
                 entries > 0 ? (inUse * 100) / entries : 0);
         }
     }
+
+    /**
+     * <p>A stripe of cached entries for each bucket, that is used by at most
+     * one thread at a time, guarded by a lock that is never waited for.</p>
+     */
+    private static class Magazine
+    {
+        private final AtomicBoolean _lock = new AtomicBoolean();
+        private final Object[][] _entries;
+        private final int[] _sizes;
+
+        private Magazine(int buckets)
+        {
+            _entries = new Object[buckets][];
+            _sizes = new int[buckets];
+        }
+
+        private boolean tryLock()
+        {
+            return !_lock.get() && _lock.compareAndSet(false, true);
+        }
+
+        private void unlock()
+        {
+            _lock.set(false);
+        }
+
+        private int size(Bucket bucket)
+        {
+            return _sizes[bucket._index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private Bucket.Entry pop(Bucket bucket)
+        {
+            int index = bucket._index;
+            Object[] entries = _entries[index];
+            while (_sizes[index] > 0)
+            {
+                int size = --_sizes[index];
+                Bucket.Entry entry = (Bucket.Entry)entries[size];
+                entries[size] = null;
+                // The entry may have been evicted while cached.
+                if (!entry.isClosed())
+                    return entry;
+            }
+            return null;
+        }
+
+        private boolean push(Bucket bucket, Bucket.Entry entry, int magazineSize)
+        {
+            int index = bucket._index;
+            Object[] entries = _entries[index];
+            if (entries == null || entries.length != magazineSize)
+            {
+                // The magazine size changed, or this is the first use for the bucket.
+                if (entries != null)
+                    drain(bucket, _sizes[index]);
+                entries = _entries[index] = new Object[magazineSize];
+            }
+            int size = _sizes[index];
+            if (size == entries.length)
+                return false;
+            entries[size] = entry;
+            _sizes[index] = size + 1;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain(Bucket bucket, int count)
+        {
+            int index = bucket._index;
+            Object[] entries = _entries[index];
+            // Release the oldest entries, and keep the most recently used ones.
+            int size = _sizes[index];
+            int drained = Math.min(count, size);
+            for (int i = 0; i < drained; ++i)
+            {
+                ((Bucket.Entry)entries[i]).release();
+            }
+            System.arraycopy(entries, drained, entries, 0, size - drained);
+            Arrays.fill(entries, size - drained, size, null);
+            _sizes[index] = size - drained;
+        }
+
+        private void drain()
+        {
+            while (!tryLock())
+            {
+                Thread.onSpinWait();
+            }
+            try
+            {
+                for (int index = 0; index < _entries.length; ++index)
+                {
+                    Object[] entries = _entries[index];
+                    for (int i = 0; i < _sizes[index]; ++i)
+                    {
+                        ((Pool<?>.Entry)entries[i]).release();
+                        entries[i] = null;
+                    }
+                    _sizes[index] = 0;
+                }
+            }
+            finally
+            {
+                unlock();
+            }
+        }
+    }
 }
@@ -38,6 +38,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -88,6 +89,12 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
     private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
     private final SampleStatistic _keyStats = new SampleStatistic();
+    private final SampleStatistic _updateStats = new SampleStatistic();
+    private final SampleStatistic _selectStats = new SampleStatistic();
+    private final LongAdder _wakeups = new LongAdder();
+    private final LongAdder _coalescedUpdates = new LongAdder();
+    private final Runnable _coalescedWakeup = this::coalescedWakeup;
+    private boolean _wakeupScheduled;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
@@ -169,10 +176,50 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         return _keyStats.getCount();
     }
 
+    @ManagedAttribute(value = "Average number of updates applied per select() loop", readonly = true)
+    public double getAverageUpdatesPerSelect()
+    {
+        return _updateStats.getMean();
+    }
+
+    @ManagedAttribute(value = "Maximum number of updates applied per select() loop", readonly = true)
+    public long getMaxUpdatesPerSelect()
+    {
+        return _updateStats.getMax();
+    }
+
+    @ManagedAttribute(value = "Average duration of select() calls in microseconds", readonly = true)
+    public double getAverageSelectDuration()
+    {
+        return _selectStats.getMean();
+    }
+
+    @ManagedAttribute(value = "Maximum duration of select() calls in microseconds", readonly = true)
+    public long getMaxSelectDuration()
+    {
+        return _selectStats.getMax();
+    }
+
+    @ManagedAttribute(value = "Total number of selector wakeups", readonly = true)
+    public long getWakeupCount()
+    {
+        return _wakeups.sum();
+    }
+
+    @ManagedAttribute(value = "Total number of interest updates applied without waking up the selector on their own", readonly = true)
+    public long getCoalescedUpdateCount()
+    {
+        return _coalescedUpdates.sum();
+    }
+
     @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
     public void resetStats()
     {
         _keyStats.reset();
+        _updateStats.reset();
+        _selectStats.reset();
+        _wakeups.reset();
+        _coalescedUpdates.reset();
     }
 
     protected int nioSelect(Selector selector, boolean now) throws IOException
@@ -277,29 +324,90 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         submit(update, false);
     }
 
-    private void submit(SelectorUpdate update, boolean lazy)
+    /**
+     * <p>Submits an {@link SelectorUpdate}, typically an interest update of an endpoint,
+     * that may be applied lazily, within the {@link SelectorManager#getWakeupLatency()
+     * wakeup latency}, together with the other updates submitted in the meantime.</p>
+     *
+     * @param update The selector update to apply at next wakeup
+     * @param lazy whether the wakeup of the selector can be coalesced with other wakeups
+     */
+    void submit(SelectorUpdate update, boolean lazy)
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Queued change lazy={} {} on {}", lazy, update, this);
 
+        long latency = lazy ? _selectorManager.getWakeupLatency() : 0;
         Selector selector = null;
+        boolean schedule = false;
+        boolean coalesced = false;
         try (AutoLock l = _lock.lock())
         {
             _updates.offer(update);
 
-            if (_selecting && !lazy)
+            if (_selecting)
+            {
+                if (latency > 0)
+                {
+                    // Only the first lazy update schedules a wakeup,
+                    // the others are applied in the same selector loop.
+                    schedule = !_wakeupScheduled;
+                    coalesced = !schedule;
+                    _wakeupScheduled = true;
+                }
+                else
+                {
+                    selector = _selector;
+                    // To avoid the extra select wakeup.
+                    _selecting = false;
+                }
+            }
+        }
+
+        if (selector != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wakeup on submit {}", this);
+            wakeup(selector);
+        }
+        else
+        {
+            if (coalesced)
+                _coalescedUpdates.increment();
+            if (schedule)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Wakeup in {}us on submit {}", latency, this);
+                _selectorManager.getScheduler().schedule(_coalescedWakeup, latency, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    private void coalescedWakeup()
+    {
+        Selector selector = null;
+        try (AutoLock l = _lock.lock())
+        {
+            // The selector may have woken up in the meantime
+            // and already applied the coalesced updates.
+            if (_wakeupScheduled && _selecting)
             {
                 selector = _selector;
-                // To avoid the extra select wakeup.
                 _selecting = false;
             }
+            _wakeupScheduled = false;
         }
 
         if (selector != null)
         {
             if (LOG.isDebugEnabled())
-                LOG.debug("Wakeup on submit {}", this);
-            selector.wakeup();
+                LOG.debug("Wakeup on coalesced updates {}", this);
+            wakeup(selector);
+        }
+        else
+        {
+            // The update that scheduled this wakeup did not need it either.
+            _coalescedUpdates.increment();
         }
     }
 
@@ -319,7 +427,13 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         }
 
         if (selector != null)
-            selector.wakeup();
+            wakeup(selector);
+    }
+
+    private void wakeup(Selector selector)
+    {
+        _wakeups.increment();
+        selector.wakeup();
     }
 
     private void execute(Runnable task)
@@ -463,7 +577,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             }
             if (LOG.isDebugEnabled())
                 LOG.debug("wakeup on dump {}", this);
-            selector.wakeup();
+            wakeup(selector);
             keys = dump.get(5, TimeUnit.SECONDS);
             String keysAt = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(ZonedDateTime.now());
             if (keys == null)
@@ -550,10 +664,15 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 Deque<SelectorUpdate> updates = _updates;
                 _updates = _updateable;
                 _updateable = updates;
+                // The coalesced updates are applied now.
+                _wakeupScheduled = false;
             }
 
+            int updateable = _updateable.size();
             if (LOG.isDebugEnabled())
-                LOG.debug("updateable {}", _updateable.size());
+                LOG.debug("updateable {}", updateable);
+            if (updateable > 0)
+                _updateStats.record(updateable);
 
             for (SelectorUpdate update : _updateable)
             {
@@ -588,7 +707,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("wakeup on updates {}", this);
-                selector.wakeup();
+                wakeup(selector);
             }
         }
 
@@ -601,7 +720,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} waiting with {} keys", selector, selector.keys().size());
+                    long begin = System.nanoTime();
                     int selected = ManagedSelector.this.select(selector);
+                    _selectStats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
                     // The selector may have been recreated.
                     selector = _selector;
                     if (selector != null)
@@ -812,7 +933,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                     channel = _selectorManager.doAccept(_channel);
                     if (channel == null)
                         break;
-                    _selectorManager.accepted(channel);
+                    _selectorManager.accepted(_channel, channel, _id);
                 }
             }
             catch (Throwable x)
@@ -204,7 +204,7 @@ public abstract class SelectableChannelEndPoint extends AbstractEndPoint impleme
             LOG.debug("changeInterests p={} {}->{} for {}", pending, oldInterestOps, newInterestOps, this);
 
         if (!pending && _selector != null)
-            _selector.submit(_updateKeyAction);
+            _selector.submit(_updateKeyAction, true);
     }
 
     @Override
@@ -62,6 +62,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new ArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long _wakeupLatency;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -129,6 +130,35 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return the max time, in microseconds, that an interest update may wait for a selector wakeup
+     * @see #setWakeupLatency(long)
+     */
+    @ManagedAttribute("The max latency (us) of interest updates before a selector wakeup, or 0 to wakeup on every update")
+    public long getWakeupLatency()
+    {
+        return _wakeupLatency;
+    }
+
+    /**
+     * <p>Sets the latency budget for the interest updates of endpoints.</p>
+     * <p>By default, every change of the fill or flush interest of an endpoint
+     * wakes up its selector if it is blocked in {@link Selector#select()}.
+     * With a positive latency, the first interest update submitted to a
+     * blocked selector schedules a single wakeup after the given latency,
+     * and the interest updates submitted in the meantime are applied together
+     * in the same selector loop, at the cost of a bounded additional latency.</p>
+     *
+     * @param microseconds the max time, in microseconds, that an interest update
+     * may wait for a selector wakeup, or 0 to wakeup on every update
+     */
+    public void setWakeupLatency(long microseconds)
+    {
+        if (microseconds < 0)
+            throw new IllegalArgumentException("Invalid wakeup latency " + microseconds);
+        _wakeupLatency = microseconds;
+    }
+
     /**
      * Executes the given task in a different thread.
      *
@@ -194,6 +224,21 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         selector.submit(selector.new Accept(channel, attachment));
     }
 
+    /**
+     * <p>Registers a channel to perform non-blocking read/write operations
+     * with the given selector, rather than with the next selector in turn.</p>
+     *
+     * @param channel the channel to register
+     * @param attachment the attachment object
+     * @param selector the index of the selector, modulo the number of selectors
+     * @see #accept(SelectableChannel, Object)
+     */
+    public void accept(SelectableChannel channel, Object attachment, int selector)
+    {
+        ManagedSelector managedSelector = _selectors[Math.floorMod(selector, _selectors.length)];
+        managedSelector.submit(managedSelector.new Accept(channel, attachment));
+    }
+
     /**
      * <p>Registers a server channel for accept operations.
      * When a {@link SocketChannel} is accepted from the given {@link ServerSocketChannel}
@@ -205,7 +250,25 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
      */
     public Closeable acceptor(SelectableChannel server)
     {
-        ManagedSelector selector = chooseSelector();
+        return acceptor(server, chooseSelector());
+    }
+
+    /**
+     * <p>Registers a server channel for accept operations with the given selector,
+     * rather than with the next selector in turn.</p>
+     *
+     * @param server the server channel to register
+     * @param selector the index of the selector, modulo the number of selectors
+     * @return A Closable that allows the acceptor to be cancelled
+     * @see #acceptor(SelectableChannel)
+     */
+    public Closeable acceptor(SelectableChannel server, int selector)
+    {
+        return acceptor(server, _selectors[Math.floorMod(selector, _selectors.length)]);
+    }
+
+    private Closeable acceptor(SelectableChannel server, ManagedSelector selector)
+    {
         ManagedSelector.Acceptor acceptor = selector.new Acceptor(server);
         selector.submit(acceptor);
         return acceptor;
@@ -225,6 +288,24 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * <p>Callback method when a channel is accepted from the server channel
+     * passed to {@link #acceptor(SelectableChannel)}.</p>
+     * <p>The default implementation calls {@link #accepted(SelectableChannel)};
+     * subclasses may override it to know which server channel and which selector
+     * accepted the channel, for example to register the channel with the same selector.</p>
+     *
+     * @param server the server channel
+     * @param channel the accepted channel
+     * @param selector the index of the selector that accepted the channel
+     * @throws IOException if unable to accept channel
+     * @see #accept(SelectableChannel, Object, int)
+     */
+    protected void accepted(SelectableChannel server, SelectableChannel channel, int selector) throws IOException
+    {
+        accepted(channel);
+    }
+
     @Override
     protected void doStart() throws Exception
     {
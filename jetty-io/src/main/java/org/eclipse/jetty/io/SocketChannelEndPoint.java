@@ -16,10 +16,13 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +34,8 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
 {
     private static final Logger LOG = LoggerFactory.getLogger(SocketChannelEndPoint.class);
 
+    private volatile FileTransfer _transfer;
+
     public SocketChannelEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
     {
         super(scheduler, channel, selector, key);
@@ -125,6 +130,104 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
                 return false;
         }
 
-        return true;
+        FileTransfer transfer = _transfer;
+        return transfer == null || transfer.transfer();
+    }
+
+    /**
+     * <p>Transfers a region of a file directly to the network with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the file bytes are not copied through user space buffers.</p>
+     * <p>The transfer is performed as a {@link #write(Callback, ByteBuffer...) write},
+     * so it is subject to the same idle timeout and failure handling, and the callback
+     * is notified once the whole region has been transferred.
+     * As for a write, this method must not be called while another write is pending.</p>
+     * <p>Bytes transferred this way are not reported to
+     * {@link WriteFlusher.Listener#onFlushed(long)}.</p>
+     *
+     * @param callback the callback notified when the transfer is complete
+     * @param file the file to transfer from, which is not closed by this method
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @throws WritePendingException if another write operation is concurrent
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferFrom {} {}/{} {}", file, position, length, this);
+        FileTransfer transfer = new FileTransfer(callback, file, position, length);
+        _transfer = transfer;
+        try
+        {
+            write(transfer, BufferUtil.EMPTY_BUFFER);
+        }
+        catch (WritePendingException x)
+        {
+            _transfer = null;
+            throw x;
+        }
+    }
+
+    private class FileTransfer extends Callback.Nested
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileTransfer(Callback callback, FileChannel file, long position, long length)
+        {
+            super(callback);
+            _file = file;
+            _position = position;
+            _remaining = length;
+        }
+
+        private boolean transfer() throws IOException
+        {
+            long transferred = 0;
+            try
+            {
+                while (_remaining > 0)
+                {
+                    long written = _file.transferTo(_position, _remaining, getChannel());
+                    if (written <= 0)
+                    {
+                        if (_position >= _file.size())
+                            throw new IOException("Unexpected end of file " + _file);
+                        break;
+                    }
+                    _position += written;
+                    _remaining -= written;
+                    transferred += written;
+                }
+            }
+            catch (IOException e)
+            {
+                throw new EofException(e);
+            }
+            finally
+            {
+                if (transferred > 0)
+                    notIdle();
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {} remaining {} {}", transferred, _remaining, SocketChannelEndPoint.this);
+            return _remaining == 0;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            _transfer = null;
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            _transfer = null;
+            super.failed(x);
+        }
     }
 }
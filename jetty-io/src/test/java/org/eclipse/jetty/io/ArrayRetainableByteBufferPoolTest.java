@@ -27,6 +27,7 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -391,4 +392,67 @@ public class ArrayRetainableByteBufferPoolTest
         assertThat(buffer.release(), is(true));
         assertThat(buffer.getBuffer().order(), Matchers.is(ByteOrder.BIG_ENDIAN));
     }
+
+    @Test
+    public void testMagazine()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE);
+        pool.setMagazineSize(4);
+
+        RetainableByteBuffer buf1 = pool.acquire(10, true);
+        assertThat(pool.getMagazineMisses(), is(1L));
+        assertThat(buf1.release(), is(true));
+        // The released buffer is cached in the magazine.
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(1L));
+
+        RetainableByteBuffer buf2 = pool.acquire(10, true);
+        assertThat(buf2, sameInstance(buf1));
+        assertThat(pool.getMagazineHits(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        // Fill more than the magazine size, so that part is drained to the bucket.
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        buffers.add(buf2);
+        for (int i = 0; i < 9; i++)
+        {
+            buffers.add(pool.acquire(10, true));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getDirectByteBufferCount(), is(10L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(10L));
+        assertThat(pool.getDirectMemory(), is(100L));
+
+        // Disabling the magazines returns the cached buffers to the buckets.
+        pool.setMagazineSize(0);
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(10L));
+        for (int i = 0; i < 10; i++)
+        {
+            assertThat(buffers.contains(pool.acquire(10, true)), is(true));
+        }
+    }
+
+    @Test
+    public void testMagazineMaxMemory()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, 40, 40);
+        pool.setMagazineSize(8);
+
+        for (int round = 0; round < 3; round++)
+        {
+            List<RetainableByteBuffer> buffers = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+            {
+                buffers.add(pool.acquire(i % 2 == 0 ? 10 : 20, true));
+                assertThat(pool.getDirectMemory(), lessThanOrEqualTo(40L));
+            }
+            buffers.forEach(RetainableByteBuffer::release);
+            assertThat(pool.getDirectMemory(), lessThanOrEqualTo(40L));
+            assertThat(pool.getAvailableDirectMemory(), lessThanOrEqualTo(40L));
+        }
+
+        pool.clear();
+        assertThat(pool.getDirectMemory(), is(0L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+    }
 }
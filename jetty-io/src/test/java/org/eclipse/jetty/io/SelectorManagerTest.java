@@ -16,13 +16,17 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.TimerScheduler;
@@ -30,6 +34,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -152,4 +159,99 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testWakeupLatencyCoalescesInterestUpdates() throws Exception
+    {
+        int connections = 8;
+        CountDownLatch openedLatch = new CountDownLatch(connections);
+        CountDownLatch filledLatch = new CountDownLatch(connections);
+        Queue<Connection> opened = new ConcurrentLinkedQueue<>();
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                return new AbstractConnection(endpoint, executor)
+                {
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        opened.offer(this);
+                        openedLatch.countDown();
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                        try
+                        {
+                            ByteBuffer buffer = BufferUtil.allocate(16);
+                            if (getEndPoint().fill(buffer) > 0)
+                                filledLatch.countDown();
+                            else
+                                fillInterested();
+                        }
+                        catch (IOException x)
+                        {
+                            close();
+                        }
+                    }
+                };
+            }
+        };
+        selectorManager.setWakeupLatency(TimeUnit.MILLISECONDS.toMicros(50));
+        selectorManager.start();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            SocketChannel[] clients = new SocketChannel[connections];
+            for (int i = 0; i < connections; i++)
+            {
+                clients[i] = SocketChannel.open(server.getLocalAddress());
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+            }
+            assertTrue(openedLatch.await(5, TimeUnit.SECONDS));
+            // Let the selector go back to select.
+            Thread.sleep(500);
+
+            // All the interest updates but the first are coalesced
+            // with the wakeup scheduled by the first.
+            ManagedSelector selector = selectorManager.getBean(ManagedSelector.class);
+            long coalesced = selector.getCoalescedUpdateCount();
+            for (Connection connection : opened)
+            {
+                ((AbstractConnection)connection).fillInterested();
+            }
+            assertEquals(connections - 1, selector.getCoalescedUpdateCount() - coalesced);
+
+            for (SocketChannel client : clients)
+            {
+                client.write(ByteBuffer.wrap(new byte[]{'x'}));
+            }
+
+            // The interest updates are applied within the wakeup latency.
+            assertTrue(filledLatch.await(5, TimeUnit.SECONDS));
+            assertThat(selector.getSelectCount(), greaterThan(0L));
+
+            for (SocketChannel client : clients)
+            {
+                client.close();
+            }
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
@@ -359,6 +359,28 @@ public abstract class AbstractProxyServlet extends HttpServlet
         return newHttpClient(clientConnector);
     }
 
+    /**
+     * <p>Creates the {@link HttpClient} used to proxy requests to the servers.</p>
+     * <p>By default, the {@link HttpClient} uses a {@link HttpClientTransportDynamic}
+     * configured with HTTP/1.1 only.
+     * Servers that support HTTP/2 may be proxied with fewer connections by overriding
+     * this method to add the HTTP/2 protocol (from the {@code http2-http-client-transport}
+     * module) to the dynamic transport, so that requests to the same server are multiplexed
+     * over the same connection:</p>
+     * <pre>
+     * protected HttpClient newHttpClient(ClientConnector clientConnector)
+     * {
+     *     HTTP2Client http2Client = new HTTP2Client(clientConnector);
+     *     ClientConnectionFactoryOverHTTP2.HTTP2 h2 = new ClientConnectionFactoryOverHTTP2.HTTP2(http2Client);
+     *     // For clear-text servers, the first protocol is used, so h2c is used here.
+     *     return new HttpClient(new HttpClientTransportDynamic(clientConnector, h2, HttpClientConnectionFactory.HTTP11));
+     * }
+     * </pre>
+     * <p>For secure servers, the protocol is negotiated via ALPN.</p>
+     *
+     * @param clientConnector the {@link ClientConnector} to use
+     * @return a new HttpClient instance
+     */
     protected HttpClient newHttpClient(ClientConnector clientConnector)
     {
         return new HttpClient(new HttpClientTransportDynamic(clientConnector));
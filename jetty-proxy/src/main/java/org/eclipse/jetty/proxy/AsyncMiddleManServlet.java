@@ -13,10 +13,10 @@
 
 package org.eclipse.jetty.proxy;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -24,7 +24,9 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import javax.servlet.AsyncContext;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletConfig;
@@ -35,7 +37,6 @@ import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jetty.client.ContentDecoder;
 import org.eclipse.jetty.client.GZIPContentDecoder;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
@@ -44,12 +45,13 @@ import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.AsyncRequestContent;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.io.ByteBufferPool;
-import org.eclipse.jetty.io.RuntimeIOException;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CountingCallback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +72,17 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
     private static final String CONTINUE_ACTION_ATTRIBUTE = AsyncMiddleManServlet.class.getName() + ".continueAction";
     private static final String WRITE_LISTENER_ATTRIBUTE = AsyncMiddleManServlet.class.getName() + ".writeListener";
 
+    @Override
+    public void init() throws ServletException
+    {
+        super.init();
+        // Create the compression pools used by GZIPContentTransformer
+        // eagerly, so that concurrent requests do not race to create them.
+        HttpClient httpClient = getHttpClient();
+        InflaterPool.ensurePool(httpClient);
+        DeflaterPool.ensurePool(httpClient);
+    }
+
     @Override
     protected void service(HttpServletRequest clientRequest, HttpServletResponse proxyResponse) throws ServletException, IOException
     {
@@ -205,7 +218,7 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
         byte[] buffer;
         if (content.hasArray())
         {
-            offset = content.arrayOffset();
+            offset = content.arrayOffset() + content.position();
             buffer = content.array();
         }
         else
@@ -214,6 +227,8 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
             content.get(buffer);
         }
         output.write(buffer, offset, length);
+        // Consume the content, so that transformers know it has been written.
+        content.position(content.limit());
     }
 
     private void cleanup(HttpServletRequest clientRequest)
@@ -683,6 +698,12 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
      * <p>Applications should override {@link #newClientRequestContentTransformer(HttpServletRequest, Request)}
      * and/or {@link #newServerResponseContentTransformer(HttpServletRequest, HttpServletResponse, Response)}
      * to provide the transformer implementation.</p>
+     * <p>The content is transformed as it arrives, and more content is not read
+     * until the transformed content has been written, so that a slow receiver
+     * applies backpressure to the sender.
+     * Transformers may be composed with {@link #chain(ContentTransformer...)}
+     * and with {@link GZIPContentTransformer}; transformers that implement
+     * {@link Destroyable} are destroyed when the content is complete.</p>
      */
     public interface ContentTransformer
     {
@@ -691,6 +712,18 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
          */
         public static final ContentTransformer IDENTITY = new IdentityContentTransformer();
 
+        /**
+         * <p>Returns a transformer that passes the output of each of the given
+         * transformers as input to the next one.</p>
+         *
+         * @param transformers the transformers to chain
+         * @return a transformer that applies the given transformers in order
+         */
+        public static ContentTransformer chain(ContentTransformer... transformers)
+        {
+            return new ChainedContentTransformer(List.of(transformers));
+        }
+
         /**
          * <p>Transforms the given input byte buffers into (possibly multiple) byte buffers.</p>
          * <p>The transformation must happen synchronously in the context of a call
@@ -749,15 +782,78 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
         }
     }
 
-    public static class GZIPContentTransformer implements ContentTransformer
+    private static class ChainedContentTransformer implements ContentTransformer, Destroyable
+    {
+        private final List<ContentTransformer> transformers;
+
+        private ChainedContentTransformer(List<ContentTransformer> transformers)
+        {
+            this.transformers = transformers;
+        }
+
+        @Override
+        public void transform(ByteBuffer input, boolean finished, List<ByteBuffer> output) throws IOException
+        {
+            List<ByteBuffer> inputs = List.of(input);
+            for (ContentTransformer transformer : transformers)
+            {
+                List<ByteBuffer> outputs = new ArrayList<>();
+                if (inputs.isEmpty())
+                {
+                    if (!finished)
+                        return;
+                    transformer.transform(BufferUtil.EMPTY_BUFFER, true, outputs);
+                }
+                else
+                {
+                    int last = inputs.size() - 1;
+                    for (int i = 0; i <= last; ++i)
+                    {
+                        transformer.transform(inputs.get(i), finished && i == last, outputs);
+                    }
+                }
+                inputs = outputs;
+            }
+            output.addAll(inputs);
+        }
+
+        @Override
+        public void destroy()
+        {
+            for (ContentTransformer transformer : transformers)
+            {
+                if (transformer instanceof Destroyable)
+                    ((Destroyable)transformer).destroy();
+            }
+        }
+    }
+
+    /**
+     * <p>A {@link ContentTransformer} that decodes gzipped content, passes the
+     * decoded content to another transformer, and gzips the transformed content.</p>
+     * <p>The content is decoded and encoded incrementally, so that the content is
+     * never buffered as a whole (unless the nested transformer buffers it).
+     * The {@link Inflater} and {@link Deflater} are acquired from the
+     * {@link InflaterPool} and {@link DeflaterPool} beans of the {@link HttpClient},
+     * and the encoded content is written to buffers acquired from the
+     * {@link HttpClient#getByteBufferPool() ByteBufferPool}; these resources are
+     * released when this transformer is {@link #destroy() destroyed}.</p>
+     */
+    public static class GZIPContentTransformer implements ContentTransformer, Destroyable
     {
         private static final Logger logger = LoggerFactory.getLogger(GZIPContentTransformer.class);
+        private static final byte[] GZIP_HEADER = {(byte)0x1F, (byte)0x8B, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
 
         private final List<ByteBuffer> buffers = new ArrayList<>(2);
+        private final List<ByteBuffer> gzipped = new ArrayList<>(2);
+        private final CRC32 crc = new CRC32();
         private final ContentTransformer transformer;
-        private final ContentDecoder decoder;
-        private final ByteArrayOutputStream out;
-        private final GZIPOutputStream gzipOut;
+        private final GZIPContentDecoder decoder;
+        private final ByteBufferPool byteBufferPool;
+        private final int bufferSize;
+        private DeflaterPool.Entry deflaterEntry;
+        private boolean headerWritten;
+        private boolean destroyed;
 
         public GZIPContentTransformer(ContentTransformer transformer)
         {
@@ -766,18 +862,13 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
 
         public GZIPContentTransformer(HttpClient httpClient, ContentTransformer transformer)
         {
-            try
-            {
-                this.transformer = transformer;
-                ByteBufferPool byteBufferPool = httpClient == null ? null : httpClient.getByteBufferPool();
-                this.decoder = new GZIPContentDecoder(byteBufferPool, GZIPContentDecoder.DEFAULT_BUFFER_SIZE);
-                this.out = new ByteArrayOutputStream();
-                this.gzipOut = new GZIPOutputStream(out);
-            }
-            catch (IOException x)
-            {
-                throw new RuntimeIOException(x);
-            }
+            this.transformer = transformer;
+            this.byteBufferPool = httpClient == null ? null : httpClient.getByteBufferPool();
+            this.bufferSize = GZIPContentDecoder.DEFAULT_BUFFER_SIZE;
+            InflaterPool inflaterPool = httpClient == null ? new InflaterPool(0, true) : InflaterPool.ensurePool(httpClient);
+            this.decoder = new GZIPContentDecoder(inflaterPool, byteBufferPool, bufferSize);
+            DeflaterPool deflaterPool = httpClient == null ? new DeflaterPool(0, Deflater.DEFAULT_COMPRESSION, true) : DeflaterPool.ensurePool(httpClient);
+            this.deflaterEntry = deflaterPool.acquire();
         }
 
         @Override
@@ -786,6 +877,9 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
             if (logger.isDebugEnabled())
                 logger.debug("Ungzipping {} bytes, finished={}", input.remaining(), finished);
 
+            // The previously gzipped buffers have been written when more input arrives.
+            releaseGzipped();
+
             List<ByteBuffer> decodeds = Collections.emptyList();
             if (!input.hasRemaining())
             {
@@ -812,25 +906,105 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
 
             if (!buffers.isEmpty() || finished)
             {
-                ByteBuffer result = gzip(buffers, finished);
+                gzip(buffers, finished);
                 buffers.clear();
-                output.add(result);
+                output.addAll(gzipped);
             }
 
             decodeds.forEach(decoder::release);
         }
 
-        private ByteBuffer gzip(List<ByteBuffer> buffers, boolean finished) throws IOException
+        private void gzip(List<ByteBuffer> buffers, boolean finished)
         {
-            for (ByteBuffer buffer : buffers)
+            Deflater deflater = deflaterEntry.get();
+            ByteBuffer buffer = acquire();
+            if (!headerWritten)
+            {
+                headerWritten = true;
+                buffer.put(GZIP_HEADER);
+            }
+            for (ByteBuffer input : buffers)
             {
-                write(gzipOut, buffer);
+                crc.update(input.slice());
+                deflater.setInput(input);
+                while (!deflater.needsInput())
+                {
+                    buffer = deflate(deflater, buffer);
+                }
             }
             if (finished)
-                gzipOut.close();
-            byte[] gzipBytes = out.toByteArray();
-            out.reset();
-            return ByteBuffer.wrap(gzipBytes);
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    buffer = deflate(deflater, buffer);
+                }
+                if (buffer.remaining() < 8)
+                    buffer = flush(buffer);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt((int)crc.getValue());
+                buffer.putInt((int)deflater.getBytesRead());
+                buffer.order(ByteOrder.BIG_ENDIAN);
+            }
+            if (buffer.position() > 0)
+            {
+                buffer.flip();
+                gzipped.add(buffer);
+            }
+            else
+            {
+                release(buffer);
+            }
+        }
+
+        private ByteBuffer deflate(Deflater deflater, ByteBuffer buffer)
+        {
+            if (!buffer.hasRemaining())
+                buffer = flush(buffer);
+            deflater.deflate(buffer);
+            return buffer;
+        }
+
+        private ByteBuffer flush(ByteBuffer buffer)
+        {
+            buffer.flip();
+            gzipped.add(buffer);
+            return acquire();
+        }
+
+        private ByteBuffer acquire()
+        {
+            // Use heap buffers, as the content is eventually
+            // written to the ServletOutputStream as a byte array.
+            ByteBuffer buffer = byteBufferPool == null ? ByteBuffer.allocate(bufferSize) : byteBufferPool.acquire(bufferSize, false);
+            buffer.clear();
+            return buffer;
+        }
+
+        private void release(ByteBuffer buffer)
+        {
+            if (byteBufferPool != null)
+                byteBufferPool.release(buffer);
+        }
+
+        private void releaseGzipped()
+        {
+            gzipped.forEach(this::release);
+            gzipped.clear();
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (destroyed)
+                return;
+            destroyed = true;
+            releaseGzipped();
+            deflaterEntry.release();
+            deflaterEntry = null;
+            decoder.destroy();
+            if (transformer instanceof Destroyable)
+                ((Destroyable)transformer).destroy();
         }
     }
 
@@ -20,18 +20,57 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
-
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.util.URIUtil;
-
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A reverse proxy servlet that balances requests across a set of servers,
+ * the balancer members.</p>
+ * <p>The following init parameters may be used to configure the servlet,
+ * in addition to those of {@link ProxyServlet}:</p>
+ * <ul>
+ * <li>balancerMember.&lt;name&gt;.proxyTo - the URI of the balancer member with the given name</li>
+ * <li>balancerStrategy - how a balancer member is selected for a request:
+ * {@code roundRobin} (the default) selects the members in turn,
+ * {@code leastRequests} selects the member with the least outstanding requests,
+ * {@code ewma} selects the member with the least outstanding requests weighted
+ * by the moving average of the member latency, where members without latency samples
+ * yet are assumed to have the average latency of the other members</li>
+ * <li>stickySessions - whether requests with a session are sent to the member that created the session</li>
+ * <li>proxyPassReverse - whether the server URIs in the response headers are rewritten to the proxy URI</li>
+ * <li>maxFailures - the number of consecutive failures, either connection failures or 5xx responses,
+ * after which a member is ejected from the balancing, or 0 to never eject members; defaults to 5</li>
+ * <li>ejectionTime - the time in milliseconds a member is ejected for; defaults to 30000</li>
+ * </ul>
+ * <p>Ejected members are selected again when all the members are ejected.</p>
+ * <p>The balancer members are added as beans of the {@link HttpClient} and
+ * are therefore exposed via JMX along with it, with their statistics.</p>
+ * <p>Requests to the same member may share connections, and may be multiplexed
+ * if the {@link HttpClient} is configured with HTTP/2, see
+ * {@link #newHttpClient(org.eclipse.jetty.io.ClientConnector)}.</p>
+ */
 public class BalancerServlet extends ProxyServlet
 {
     private static final String BALANCER_MEMBER_PREFIX = "balancerMember.";
+    private static final String BALANCER_MEMBER_ATTRIBUTE = BalancerMember.class.getName();
     private static final List<String> FORBIDDEN_CONFIG_PARAMETERS;
 
     static
@@ -59,15 +98,20 @@ public class BalancerServlet extends ProxyServlet
 
     private final List<BalancerMember> _balancerMembers = new ArrayList<>();
     private final AtomicLong counter = new AtomicLong();
+    private Strategy _strategy;
     private boolean _stickySessions;
     private boolean _proxyPassReverse;
+    private int _maxFailures;
+    private long _ejectionTime;
 
     @Override
     public void init() throws ServletException
     {
         validateConfig();
         super.init();
+        initStrategy();
         initStickySessions();
+        initEjection();
         initBalancers();
         initProxyPassReverse();
     }
@@ -83,11 +127,27 @@ public class BalancerServlet extends ProxyServlet
         }
     }
 
+    private void initStrategy() throws ServletException
+    {
+        String value = getServletConfig().getInitParameter("balancerStrategy");
+        _strategy = Strategy.from(value);
+        if (_strategy == null)
+            throw new UnavailableException("balancerStrategy " + value + " not supported in " + getClass().getName());
+    }
+
     private void initStickySessions()
     {
         _stickySessions = Boolean.parseBoolean(getServletConfig().getInitParameter("stickySessions"));
     }
 
+    private void initEjection()
+    {
+        String value = getServletConfig().getInitParameter("maxFailures");
+        _maxFailures = value == null ? 5 : Integer.parseInt(value);
+        value = getServletConfig().getInitParameter("ejectionTime");
+        _ejectionTime = value == null ? 30000 : Long.parseLong(value);
+    }
+
     private void initBalancers() throws ServletException
     {
         Set<BalancerMember> members = new HashSet<>();
@@ -97,9 +157,13 @@ public class BalancerServlet extends ProxyServlet
             String proxyTo = getServletConfig().getInitParameter(memberProxyToParam);
             if (proxyTo == null || proxyTo.trim().length() == 0)
                 throw new UnavailableException(memberProxyToParam + " parameter is empty.");
-            members.add(new BalancerMember(balancerName, proxyTo));
+            members.add(new BalancerMember(getHttpClient(), balancerName, proxyTo, _maxFailures, _ejectionTime));
         }
         _balancerMembers.addAll(members);
+        for (BalancerMember member : _balancerMembers)
+        {
+            getHttpClient().addBean(member);
+        }
     }
 
     private void initProxyPassReverse()
@@ -130,6 +194,7 @@ public class BalancerServlet extends ProxyServlet
         BalancerMember balancerMember = selectBalancerMember(request);
         if (_log.isDebugEnabled())
             _log.debug("Selected {}", balancerMember);
+        request.setAttribute(BALANCER_MEMBER_ATTRIBUTE, balancerMember);
         String path = request.getRequestURI();
         String query = request.getQueryString();
         if (query != null)
@@ -139,18 +204,63 @@ public class BalancerServlet extends ProxyServlet
 
     private BalancerMember selectBalancerMember(HttpServletRequest request)
     {
+        long now = System.nanoTime();
         if (_stickySessions)
         {
             String name = getBalancerMemberNameFromSessionId(request);
             if (name != null)
             {
                 BalancerMember balancerMember = findBalancerMemberByName(name);
-                if (balancerMember != null)
+                if (balancerMember != null && !balancerMember.isEjected(now))
                     return balancerMember;
             }
         }
-        int index = (int)(counter.getAndIncrement() % _balancerMembers.size());
-        return _balancerMembers.get(index);
+
+        // Start from a different member every request, so that
+        // members with the same load are selected in turn.
+        int size = _balancerMembers.size();
+        int start = (int)(counter.getAndIncrement() % size);
+        double defaultLatency = _strategy == Strategy.EWMA ? getAverageLatency(now) : 0;
+        BalancerMember selected = null;
+        double selectedLoad = Double.MAX_VALUE;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < size; ++i)
+        {
+            BalancerMember balancerMember = _balancerMembers.get((start + i) % size);
+            if (balancerMember.isEjected(now))
+                continue;
+            if (_strategy == Strategy.ROUND_ROBIN)
+                return balancerMember;
+            int outstanding = balancerMember.getOutstandingRequests();
+            double load = _strategy == Strategy.LEAST_REQUESTS
+                ? outstanding
+                : balancerMember.getLoad(now, defaultLatency);
+            // Members with the same load, for example before any
+            // latency is known, are compared by their outstanding requests.
+            if (load < selectedLoad || (load == selectedLoad && outstanding < selectedOutstanding))
+            {
+                selected = balancerMember;
+                selectedLoad = load;
+                selectedOutstanding = outstanding;
+            }
+        }
+        // When all the members are ejected, it is better
+        // to try one of them than to fail the request.
+        return selected == null ? _balancerMembers.get(start) : selected;
+    }
+
+    private double getAverageLatency(long now)
+    {
+        double total = 0;
+        int count = 0;
+        for (BalancerMember balancerMember : _balancerMembers)
+        {
+            if (balancerMember.isEjected(now) || !balancerMember.hasLatency())
+                continue;
+            total += balancerMember.getLatency(now);
+            ++count;
+        }
+        return count == 0 ? 0 : total / count;
     }
 
     private BalancerMember findBalancerMemberByName(String name)
@@ -209,6 +319,29 @@ public class BalancerServlet extends ProxyServlet
         return null;
     }
 
+    @Override
+    protected void sendProxyRequest(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Request proxyRequest)
+    {
+        BalancerMember balancerMember = (BalancerMember)clientRequest.getAttribute(BALANCER_MEMBER_ATTRIBUTE);
+        if (balancerMember != null)
+        {
+            BalancedExchange exchange = new BalancedExchange(balancerMember);
+            proxyRequest.attribute(BALANCER_MEMBER_ATTRIBUTE, exchange).onComplete(exchange);
+        }
+        super.sendProxyRequest(clientRequest, proxyResponse, proxyRequest);
+    }
+
+    @Override
+    protected void onClientRequestFailure(HttpServletRequest clientRequest, Request proxyRequest, HttpServletResponse proxyResponse, Throwable failure)
+    {
+        // The request to the member fails because the client failed,
+        // which must not count as a failure of the member.
+        Object exchange = proxyRequest.getAttributes().get(BALANCER_MEMBER_ATTRIBUTE);
+        if (exchange instanceof BalancedExchange)
+            ((BalancedExchange)exchange)._clientFailure = true;
+        super.onClientRequestFailure(clientRequest, proxyRequest, proxyResponse, failure);
+    }
+
     @Override
     protected String filterServerResponseHeader(HttpServletRequest request, Response serverResponse, String headerName, String headerValue)
     {
@@ -254,24 +387,104 @@ public class BalancerServlet extends ProxyServlet
         return true;
     }
 
-    private static class BalancerMember
+    private enum Strategy
+    {
+        ROUND_ROBIN("roundRobin"), LEAST_REQUESTS("leastRequests"), EWMA("ewma");
+
+        private final String _value;
+
+        Strategy(String value)
+        {
+            _value = value;
+        }
+
+        private static Strategy from(String value)
+        {
+            if (value == null)
+                return ROUND_ROBIN;
+            for (Strategy strategy : values())
+            {
+                if (strategy._value.equalsIgnoreCase(value.trim()))
+                    return strategy;
+            }
+            return null;
+        }
+    }
+
+    private class BalancedExchange implements Response.CompleteListener
+    {
+        private final BalancerMember _balancerMember;
+        private final long _beginNanoTime;
+        private volatile boolean _clientFailure;
+
+        private BalancedExchange(BalancerMember balancerMember)
+        {
+            _balancerMember = balancerMember;
+            _balancerMember.onBegin();
+            _beginNanoTime = System.nanoTime();
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            int status = result.getResponse().getStatus();
+            // Failures after the response began, for example while writing the
+            // response to the client, are not failures of the member, unless 5xx.
+            boolean failure = status >= 500 || (status == 0 && result.isFailed() && !_clientFailure);
+            if (_balancerMember.onComplete(_beginNanoTime, status > 0, failure))
+                _log.warn("Ejected {} for {} ms", _balancerMember, _ejectionTime);
+        }
+    }
+
+    /**
+     * <p>A server that requests are balanced to, with its load and health statistics.</p>
+     * <p>The latency of a member is a moving average of its request latencies, that decays
+     * while the member is not selected, so that a member avoided because it was slow is
+     * eventually selected again.</p>
+     */
+    @ManagedObject("A balancer member")
+    public static class BalancerMember
     {
+        // The weight of a new sample in the latency moving average.
+        private static final double ALPHA = 0.2D;
+        // The time for the latency to decay to ~37% of its value.
+        private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+        private final AutoLock _lock = new AutoLock();
+        private final HttpClient _httpClient;
         private final String _name;
         private final String _proxyTo;
         private final URI _backendURI;
-
-        public BalancerMember(String name, String proxyTo)
+        private final int _maxFailures;
+        private final long _ejectionNanos;
+        private volatile int _outstanding;
+        private volatile long _requests;
+        private volatile long _failures;
+        private volatile long _ejections;
+        private volatile double _latency;
+        private volatile long _latencyNanoTime;
+        private volatile long _samples;
+        private volatile boolean _ejected;
+        private volatile long _ejectedUntilNanoTime;
+        private int _consecutiveFailures;
+
+        private BalancerMember(HttpClient httpClient, String name, String proxyTo, int maxFailures, long ejectionTime)
         {
+            _httpClient = httpClient;
             _name = name;
             _proxyTo = proxyTo;
             _backendURI = URI.create(_proxyTo).normalize();
+            _maxFailures = maxFailures;
+            _ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionTime);
         }
 
+        @ManagedAttribute(value = "The name of the member", readonly = true)
         public String getName()
         {
             return _name;
         }
 
+        @ManagedAttribute(value = "The URI requests are proxied to", readonly = true)
         public String getProxyTo()
         {
             return _proxyTo;
@@ -282,6 +495,154 @@ public class BalancerServlet extends ProxyServlet
             return _backendURI;
         }
 
+        @ManagedAttribute(value = "The number of outstanding requests", readonly = true)
+        public int getOutstandingRequests()
+        {
+            return _outstanding;
+        }
+
+        @ManagedAttribute(value = "The number of completed requests", readonly = true)
+        public long getRequestCount()
+        {
+            return _requests;
+        }
+
+        @ManagedAttribute(value = "The number of failed requests", readonly = true)
+        public long getFailureCount()
+        {
+            return _failures;
+        }
+
+        @ManagedAttribute(value = "The number of times the member was ejected", readonly = true)
+        public long getEjectionCount()
+        {
+            return _ejections;
+        }
+
+        @ManagedAttribute(value = "Whether the member is ejected", readonly = true)
+        public boolean isEjected()
+        {
+            return isEjected(System.nanoTime());
+        }
+
+        @ManagedAttribute(value = "The moving average of the request latency in ns", readonly = true)
+        public long getLatency()
+        {
+            return (long)getLatency(System.nanoTime());
+        }
+
+        @ManagedAttribute(value = "The number of active connections to the member", readonly = true)
+        public int getActiveConnectionCount()
+        {
+            int result = 0;
+            for (AbstractConnectionPool pool : getConnectionPools())
+            {
+                result += pool.getActiveConnectionCount();
+            }
+            return result;
+        }
+
+        @ManagedAttribute(value = "The number of idle connections to the member", readonly = true)
+        public int getIdleConnectionCount()
+        {
+            int result = 0;
+            for (AbstractConnectionPool pool : getConnectionPools())
+            {
+                result += pool.getIdleConnectionCount();
+            }
+            return result;
+        }
+
+        private List<AbstractConnectionPool> getConnectionPools()
+        {
+            String scheme = _backendURI.getScheme();
+            String host = _backendURI.getHost();
+            int port = HttpClient.normalizePort(scheme, _backendURI.getPort());
+            List<AbstractConnectionPool> result = new ArrayList<>();
+            for (Destination destination : _httpClient.getDestinations())
+            {
+                if (!(destination instanceof HttpDestination))
+                    continue;
+                if (!scheme.equalsIgnoreCase(destination.getScheme()) || !host.equalsIgnoreCase(destination.getHost()) || port != destination.getPort())
+                    continue;
+                ConnectionPool pool = ((HttpDestination)destination).getConnectionPool();
+                if (pool instanceof AbstractConnectionPool)
+                    result.add((AbstractConnectionPool)pool);
+            }
+            return result;
+        }
+
+        private boolean isEjected(long now)
+        {
+            return _ejected && now - _ejectedUntilNanoTime < 0;
+        }
+
+        private double getLatency(long now)
+        {
+            if (_samples == 0)
+                return 0;
+            return _latency * Math.exp((_latencyNanoTime - now) / DECAY_NANOS);
+        }
+
+        private boolean hasLatency()
+        {
+            return _samples > 0;
+        }
+
+        private double getLoad(long now, double defaultLatency)
+        {
+            // Members without latency samples yet, for example because they cannot
+            // be connected, are not preferred to the members with known latencies.
+            double latency = hasLatency() ? getLatency(now) : defaultLatency;
+            return latency * (getOutstandingRequests() + 1);
+        }
+
+        private void onBegin()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                ++_outstanding;
+            }
+        }
+
+        /**
+         * @return whether this member has been ejected
+         */
+        private boolean onComplete(long beginNanoTime, boolean responded, boolean failure)
+        {
+            long now = System.nanoTime();
+            try (AutoLock l = _lock.lock())
+            {
+                --_outstanding;
+                ++_requests;
+                if (responded)
+                {
+                    double sample = now - beginNanoTime;
+                    double latency = getLatency(now);
+                    _latency = _samples == 0 ? sample : latency + ALPHA * (sample - latency);
+                    _latencyNanoTime = now;
+                    ++_samples;
+                }
+                if (!failure)
+                {
+                    _consecutiveFailures = 0;
+                    return false;
+                }
+                ++_failures;
+                if (_maxFailures <= 0 || ++_consecutiveFailures < _maxFailures)
+                    return false;
+                _consecutiveFailures = 0;
+                // Requests that were outstanding when the member
+                // was ejected do not extend the ejection.
+                if (isEjected(now))
+                    return false;
+                _ejected = true;
+                _ejectedUntilNanoTime = now + _ejectionNanos;
+                ++_ejections;
+                return true;
+            }
+        }
+
         @Override
         public String toString()
         {
@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -50,6 +51,10 @@ import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.CounterStatistic;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
@@ -57,7 +62,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * <p>Implementation of a {@link Handler} that supports HTTP CONNECT.</p>
+ * <p>The tunnel bytes are relayed with buffers that are only held while there
+ * are bytes to relay, see {@link ProxyConnection}, so that the memory used
+ * is proportional to the number of active tunnels rather than open tunnels.
+ * The buffers start at {@link #getBufferSize()} bytes and grow up to
+ * {@link #getMaxBufferSize()} bytes for bulk transfers.</p>
  */
+@ManagedObject("HTTP CONNECT handler")
 public class ConnectHandler extends HandlerWrapper
 {
     protected static final Logger LOG = LoggerFactory.getLogger(ConnectHandler.class);
@@ -71,6 +82,10 @@ public class ConnectHandler extends HandlerWrapper
     private long connectTimeout = 15000;
     private long idleTimeout = 30000;
     private int bufferSize = 4096;
+    private int maxBufferSize = 64 * 1024;
+    private final CounterStatistic tunnels = new CounterStatistic();
+    private final LongAdder upstreamBytes = new LongAdder();
+    private final LongAdder downstreamBytes = new LongAdder();
 
     public ConnectHandler()
     {
@@ -146,16 +161,85 @@ public class ConnectHandler extends HandlerWrapper
         this.idleTimeout = idleTimeout;
     }
 
+    /**
+     * @return the initial size of the buffers used to relay tunnel bytes
+     */
+    @ManagedAttribute("The initial size of the buffers used to relay tunnel bytes")
     public int getBufferSize()
     {
         return bufferSize;
     }
 
+    /**
+     * @param bufferSize the initial size of the buffers used to relay tunnel bytes
+     */
     public void setBufferSize(int bufferSize)
     {
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * @return the max size of the buffers used to relay tunnel bytes
+     */
+    @ManagedAttribute("The max size of the buffers used to relay tunnel bytes")
+    public int getMaxBufferSize()
+    {
+        return maxBufferSize;
+    }
+
+    /**
+     * @param maxBufferSize the max size of the buffers used to relay tunnel bytes,
+     * or a value not greater than {@link #getBufferSize()} to not grow buffers
+     */
+    public void setMaxBufferSize(int maxBufferSize)
+    {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @ManagedAttribute(value = "The number of open tunnels", readonly = true)
+    public long getTunnels()
+    {
+        return tunnels.getCurrent();
+    }
+
+    @ManagedAttribute(value = "The max number of open tunnels", readonly = true)
+    public long getTunnelsMax()
+    {
+        return tunnels.getMax();
+    }
+
+    @ManagedAttribute(value = "The total number of tunnels", readonly = true)
+    public long getTunnelsTotal()
+    {
+        return tunnels.getTotal();
+    }
+
+    /**
+     * @return the number of bytes relayed from clients to servers by closed tunnels
+     */
+    @ManagedAttribute(value = "The number of bytes relayed from clients to servers by closed tunnels", readonly = true)
+    public long getUpstreamBytes()
+    {
+        return upstreamBytes.longValue();
+    }
+
+    /**
+     * @return the number of bytes relayed from servers to clients by closed tunnels
+     */
+    @ManagedAttribute(value = "The number of bytes relayed from servers to clients by closed tunnels", readonly = true)
+    public long getDownstreamBytes()
+    {
+        return downstreamBytes.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        tunnels.reset();
+        upstreamBytes.reset();
+        downstreamBytes.reset();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -338,6 +422,7 @@ public class ConnectHandler extends HandlerWrapper
         EndPoint downstreamEndPoint = connectContext.getEndPoint();
         DownstreamConnection downstreamConnection = newDownstreamConnection(downstreamEndPoint, context);
         downstreamConnection.setInputBufferSize(getBufferSize());
+        downstreamConnection.setMaxInputBufferSize(getMaxBufferSize());
 
         upstreamConnection.setConnection(downstreamConnection);
         downstreamConnection.setConnection(upstreamConnection);
@@ -513,6 +598,7 @@ public class ConnectHandler extends HandlerWrapper
             ConnectContext connectContext = (ConnectContext)attachment;
             UpstreamConnection connection = newUpstreamConnection(endpoint, connectContext);
             connection.setInputBufferSize(getBufferSize());
+            connection.setMaxInputBufferSize(getMaxBufferSize());
             return connection;
         }
 
@@ -581,10 +667,21 @@ public class ConnectHandler extends HandlerWrapper
         public void onOpen()
         {
             super.onOpen();
+            tunnels.increment();
             onConnectSuccess(connectContext, UpstreamConnection.this);
             fillInterested();
         }
 
+        @Override
+        public void onClose(Throwable cause)
+        {
+            tunnels.decrement();
+            downstreamBytes.add(getBytesIn());
+            if (LOG.isDebugEnabled())
+                LOG.debug("Tunnel closed {}, write latency avg/max {}/{} ns", this, getWriteLatencyAverage(), getWriteLatencyMax());
+            super.onClose(cause);
+        }
+
         @Override
         protected int read(EndPoint endPoint, ByteBuffer buffer) throws IOException
         {
@@ -613,6 +710,13 @@ public class ConnectHandler extends HandlerWrapper
             this.buffer = buffer;
         }
 
+        @Override
+        public void onClose(Throwable cause)
+        {
+            upstreamBytes.add(getBytesIn());
+            super.onClose(cause);
+        }
+
         @Override
         public void onOpen()
         {
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
@@ -26,6 +27,18 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.slf4j.Logger;
 
+/**
+ * <p>A connection that relays the bytes read from its {@link EndPoint}
+ * to the {@link EndPoint} of another {@link ProxyConnection}.</p>
+ * <p>A buffer is acquired from the {@link ByteBufferPool} only when there are
+ * bytes to read, and it is released as soon as they are written, so that an
+ * idle connection does not retain any buffer.</p>
+ * <p>The size of the buffer adapts to the traffic: it starts from the
+ * {@link #getInputBufferSize() input buffer size}, it doubles up to the
+ * {@link #getMaxInputBufferSize() max input buffer size} when reads fill
+ * the buffer, as it happens for bulk transfers, and it halves when reads
+ * only use a small part of the buffer.</p>
+ */
 public abstract class ProxyConnection extends AbstractConnection
 {
     protected static final Logger LOG = ConnectHandler.LOG;
@@ -33,6 +46,11 @@ public abstract class ProxyConnection extends AbstractConnection
     private final ByteBufferPool bufferPool;
     private final ConcurrentMap<String, Object> context;
     private ProxyConnection connection;
+    private int maxInputBufferSize;
+    private volatile long bytesIn;
+    private volatile long writes;
+    private volatile long writeNanos;
+    private volatile long writeNanosMax;
 
     protected ProxyConnection(EndPoint endp, Executor executor, ByteBufferPool bufferPool, ConcurrentMap<String, Object> context)
     {
@@ -61,6 +79,58 @@ public abstract class ProxyConnection extends AbstractConnection
         this.connection = connection;
     }
 
+    /**
+     * @return the max size of the buffer used to read from the {@link EndPoint}
+     */
+    public int getMaxInputBufferSize()
+    {
+        return Math.max(maxInputBufferSize, getInputBufferSize());
+    }
+
+    /**
+     * @param maxInputBufferSize the max size of the buffer used to read from the {@link EndPoint}
+     */
+    public void setMaxInputBufferSize(int maxInputBufferSize)
+    {
+        this.maxInputBufferSize = maxInputBufferSize;
+    }
+
+    /**
+     * @return the number of bytes read from the {@link EndPoint} of this connection
+     */
+    @Override
+    public long getBytesIn()
+    {
+        return bytesIn;
+    }
+
+    /**
+     * @return the number of bytes written to the {@link EndPoint} of this connection
+     */
+    @Override
+    public long getBytesOut()
+    {
+        ProxyConnection connection = this.connection;
+        return connection == null ? 0 : connection.bytesIn;
+    }
+
+    /**
+     * @return the average time, in nanoseconds, to write to the other {@link EndPoint} the bytes read from this connection
+     */
+    public long getWriteLatencyAverage()
+    {
+        long count = writes;
+        return count == 0 ? 0 : writeNanos / count;
+    }
+
+    /**
+     * @return the max time, in nanoseconds, to write to the other {@link EndPoint} the bytes read from this connection
+     */
+    public long getWriteLatencyMax()
+    {
+        return writeNanosMax;
+    }
+
     @Override
     public void onFillable()
     {
@@ -79,22 +149,29 @@ public abstract class ProxyConnection extends AbstractConnection
     @Override
     public String toConnectionString()
     {
-        return String.format("%s@%x[l:%s<=>r:%s]",
+        return String.format("%s@%x[l:%s<=>r:%s,in=%d,out=%d,latency=%dus]",
             getClass().getSimpleName(),
             hashCode(),
             getEndPoint().getLocalSocketAddress(),
-            getEndPoint().getRemoteSocketAddress());
+            getEndPoint().getRemoteSocketAddress(),
+            getBytesIn(),
+            getBytesOut(),
+            TimeUnit.NANOSECONDS.toMicros(getWriteLatencyAverage()));
     }
 
     private class ProxyIteratingCallback extends IteratingCallback
     {
         private ByteBuffer buffer;
+        private int bufferSize;
         private int filled;
+        private long writeBegin;
 
         @Override
         protected Action process()
         {
-            buffer = bufferPool.acquire(getInputBufferSize(), true);
+            if (bufferSize == 0)
+                bufferSize = getInputBufferSize();
+            buffer = bufferPool.acquire(bufferSize, true);
             try
             {
                 int filled = this.filled = read(getEndPoint(), buffer);
@@ -102,6 +179,9 @@ public abstract class ProxyConnection extends AbstractConnection
                     LOG.debug("{} filled {} bytes", ProxyConnection.this, filled);
                 if (filled > 0)
                 {
+                    bytesIn += filled;
+                    resize(filled);
+                    writeBegin = System.nanoTime();
                     write(connection.getEndPoint(), buffer, this);
                     return Action.SCHEDULED;
                 }
@@ -128,9 +208,27 @@ public abstract class ProxyConnection extends AbstractConnection
             }
         }
 
+        private void resize(int filled)
+        {
+            int maxSize = getMaxInputBufferSize();
+            int minSize = getInputBufferSize();
+            int size = bufferSize;
+            if (filled >= size && size < maxSize)
+                bufferSize = Math.min(maxSize, size * 2);
+            else if (filled <= size / 4 && size > minSize)
+                bufferSize = Math.max(minSize, size / 2);
+            if (LOG.isDebugEnabled() && bufferSize != size)
+                LOG.debug("{} resized buffer {}->{} bytes", ProxyConnection.this, size, bufferSize);
+        }
+
         @Override
         public void succeeded()
         {
+            long latency = System.nanoTime() - writeBegin;
+            writes += 1;
+            writeNanos += latency;
+            if (latency > writeNanosMax)
+                writeNanosMax = latency;
             if (LOG.isDebugEnabled())
                 LOG.debug("{} wrote {} bytes", ProxyConnection.this, filled);
             bufferPool.release(buffer);
@@ -0,0 +1,296 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.component.Destroyable;
+
+/**
+ * <p>A streaming transformer for {@link AsyncMiddleManServlet} that replaces
+ * occurrences of tokens in the content, for example to rewrite the absolute
+ * URLs found in HTML or JSON documents.</p>
+ * <p>The content is transformed as it arrives: the input is scanned in place,
+ * and only the bytes at the end of an input chunk that may be the beginning of
+ * a token are retained until more input arrives, so that tokens split across
+ * chunks are replaced as well.</p>
+ * <p>Tokens are matched byte by byte after being encoded with the given charset,
+ * so the content must be encoded with a compatible charset such as UTF-8.
+ * When more tokens match at the same position, the first one in the iteration
+ * order of the replacements map wins.</p>
+ * <p>The transformed content is written to buffers acquired from the
+ * {@link HttpClient#getByteBufferPool() ByteBufferPool} of the given {@link HttpClient},
+ * typically the one of the proxy; the buffers are released once they have been
+ * consumed, when more input arrives, or when this transformer is
+ * {@link #destroy() destroyed}.</p>
+ * <p>Gzipped content may be transformed by wrapping this transformer in a
+ * {@link AsyncMiddleManServlet.GZIPContentTransformer}.</p>
+ */
+public class ReplacingContentTransformer implements AsyncMiddleManServlet.ContentTransformer, Destroyable
+{
+    private static final int MIN_BUFFER_SIZE = 512;
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private final boolean[] firstBytes = new boolean[256];
+    private final ByteBufferPool byteBufferPool;
+    private final byte[][] tokens;
+    private final byte[][] replacements;
+    private final byte[] pending;
+    private int pendingLength;
+    private List<ByteBuffer> output;
+    private ByteBuffer buffer;
+    private int bufferSize;
+
+    /**
+     * @param replacements the map of tokens to their replacements, encoded in UTF-8
+     */
+    public ReplacingContentTransformer(Map<String, String> replacements)
+    {
+        this(null, replacements);
+    }
+
+    /**
+     * @param replacements the map of tokens to their replacements
+     * @param charset the charset to encode tokens and replacements
+     */
+    public ReplacingContentTransformer(Map<String, String> replacements, Charset charset)
+    {
+        this(null, replacements, charset);
+    }
+
+    /**
+     * @param httpClient the client whose {@link ByteBufferPool} provides the output buffers, or null
+     * @param replacements the map of tokens to their replacements, encoded in UTF-8
+     */
+    public ReplacingContentTransformer(HttpClient httpClient, Map<String, String> replacements)
+    {
+        this(httpClient, replacements, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param httpClient the client whose {@link ByteBufferPool} provides the output buffers, or null
+     * @param replacements the map of tokens to their replacements
+     * @param charset the charset to encode tokens and replacements
+     */
+    public ReplacingContentTransformer(HttpClient httpClient, Map<String, String> replacements, Charset charset)
+    {
+        this.byteBufferPool = httpClient == null ? null : httpClient.getByteBufferPool();
+        this.tokens = new byte[replacements.size()][];
+        this.replacements = new byte[replacements.size()][];
+        int maxTokenLength = 0;
+        int index = 0;
+        for (Map.Entry<String, String> entry : replacements.entrySet())
+        {
+            byte[] token = entry.getKey().getBytes(charset);
+            if (token.length == 0)
+                throw new IllegalArgumentException("Empty token");
+            firstBytes[token[0] & 0xFF] = true;
+            maxTokenLength = Math.max(maxTokenLength, token.length);
+            this.tokens[index] = token;
+            this.replacements[index] = entry.getValue().getBytes(charset);
+            ++index;
+        }
+        // Only a partial match, shorter than the longest token, is retained.
+        this.pending = new byte[Math.max(0, maxTokenLength - 1)];
+    }
+
+    @Override
+    public void transform(ByteBuffer input, boolean finished, List<ByteBuffer> output)
+    {
+        releaseConsumed();
+
+        int offset = input.position();
+        int length = pendingLength + input.remaining();
+        if (length == 0)
+            return;
+        bufferSize = Math.max(MIN_BUFFER_SIZE, length);
+        this.output = output;
+
+        // The bytes are scanned in place, across the pending bytes and the input.
+        int index = 0;
+        int copyFrom = 0;
+        int retainFrom = length;
+        scan:
+        while (index < length)
+        {
+            if (firstBytes[byteAt(input, offset, index) & 0xFF])
+            {
+                for (int i = 0; i < tokens.length; ++i)
+                {
+                    byte[] token = tokens[i];
+                    int matched = match(input, offset, index, length, token);
+                    if (matched == token.length)
+                    {
+                        copy(input, offset, copyFrom, index);
+                        put(replacements[i], 0, replacements[i].length);
+                        index += matched;
+                        copyFrom = index;
+                        continue scan;
+                    }
+                    // Retain the bytes that may be the beginning of a token,
+                    // which takes precedence over the tokens that follow it.
+                    if (matched == length - index && !finished)
+                    {
+                        retainFrom = index;
+                        break scan;
+                    }
+                }
+            }
+            ++index;
+        }
+        copy(input, offset, copyFrom, retainFrom);
+
+        // Carry over only the partial match; the retained bytes may
+        // overlap the pending bytes, but they are copied forward.
+        int retained = length - retainFrom;
+        for (int i = 0; i < retained; ++i)
+        {
+            pending[i] = byteAt(input, offset, retainFrom + i);
+        }
+        pendingLength = retained;
+        input.position(input.limit());
+
+        ByteBuffer last = buffer;
+        buffer = null;
+        if (last != null)
+        {
+            if (last.position() > 0)
+                flush(last);
+            else
+                release(last);
+        }
+        this.output = null;
+    }
+
+    private byte byteAt(ByteBuffer input, int offset, int index)
+    {
+        return index < pendingLength ? pending[index] : input.get(offset + index - pendingLength);
+    }
+
+    private int match(ByteBuffer input, int offset, int index, int length, byte[] token)
+    {
+        int max = Math.min(token.length, length - index);
+        for (int i = 0; i < max; ++i)
+        {
+            if (byteAt(input, offset, index + i) != token[i])
+                return i;
+        }
+        return max;
+    }
+
+    /**
+     * <p>Copies the scanned bytes between the given indexes to the output buffers.</p>
+     */
+    private void copy(ByteBuffer input, int offset, int from, int to)
+    {
+        if (from < pendingLength)
+        {
+            int end = Math.min(to, pendingLength);
+            put(pending, from, end - from);
+            from = end;
+        }
+        if (from < to)
+        {
+            ByteBuffer slice = input.duplicate();
+            slice.limit(offset + to - pendingLength);
+            slice.position(offset + from - pendingLength);
+            while (slice.hasRemaining())
+            {
+                ByteBuffer target = space();
+                int limit = slice.limit();
+                slice.limit(slice.position() + Math.min(slice.remaining(), target.remaining()));
+                target.put(slice);
+                slice.limit(limit);
+            }
+        }
+    }
+
+    private void put(byte[] bytes, int offset, int length)
+    {
+        while (length > 0)
+        {
+            ByteBuffer target = space();
+            int chunk = Math.min(length, target.remaining());
+            target.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @return the current output buffer in fill mode, with space
+     */
+    private ByteBuffer space()
+    {
+        if (buffer != null && !buffer.hasRemaining())
+        {
+            flush(buffer);
+            buffer = null;
+        }
+        if (buffer == null)
+            buffer = acquire(bufferSize);
+        return buffer;
+    }
+
+    private void flush(ByteBuffer buffer)
+    {
+        buffer.flip();
+        buffers.add(buffer);
+        output.add(buffer);
+    }
+
+    private ByteBuffer acquire(int size)
+    {
+        // Use heap buffers, as the content is eventually
+        // written to the ServletOutputStream as a byte array.
+        ByteBuffer buffer = byteBufferPool == null ? ByteBuffer.allocate(size) : byteBufferPool.acquire(size, false);
+        buffer.clear();
+        return buffer;
+    }
+
+    private void release(ByteBuffer buffer)
+    {
+        if (byteBufferPool != null)
+            byteBufferPool.release(buffer);
+    }
+
+    /**
+     * <p>Releases the output buffers that have been consumed, either written
+     * or transformed further; the others may still be in use.</p>
+     */
+    private void releaseConsumed()
+    {
+        buffers.removeIf(buffer ->
+        {
+            if (buffer.hasRemaining())
+                return false;
+            release(buffer);
+            return true;
+        });
+    }
+
+    @Override
+    public void destroy()
+    {
+        buffers.forEach(this::release);
+        buffers.clear();
+    }
+}
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.proxy;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -309,6 +310,52 @@ public class AsyncMiddleManServletTest
         assertArrayEquals(bytes, response.getContent());
     }
 
+    @Test
+    public void testStreamingReplaceGzippedContent() throws Exception
+    {
+        String chunk = "{\"href\":\"http://backend/path\"}\n";
+        int chunks = 16 * 1024;
+        startServer(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+                ServletOutputStream output = response.getOutputStream();
+                GZIPOutputStream gzipOutput = new GZIPOutputStream(output, true);
+                for (int i = 0; i < chunks; ++i)
+                {
+                    gzipOutput.write(chunk.getBytes(StandardCharsets.UTF_8));
+                    if (i % 1024 == 0)
+                        gzipOutput.flush();
+                }
+                gzipOutput.finish();
+            }
+        });
+        startProxy(new AsyncMiddleManServlet()
+        {
+            @Override
+            protected ContentTransformer newServerResponseContentTransformer(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse)
+            {
+                ContentTransformer replacing = new ReplacingContentTransformer(getHttpClient(), Map.of("http://backend/", "https://edge/"));
+                return new GZIPContentTransformer(getHttpClient(), ContentTransformer.chain(replacing, ContentTransformer.IDENTITY));
+            }
+        });
+        startClient();
+        // Decode the content with the JDK, which also verifies the gzip trailer.
+        client.getContentDecoderFactories().clear();
+
+        ContentResponse response = client.newRequest("localhost", serverConnector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeaders().get(HttpHeader.CONTENT_ENCODING));
+        byte[] content = IO.readBytes(new GZIPInputStream(new ByteArrayInputStream(response.getContent())));
+        String expected = chunk.replace("http://backend/", "https://edge/").repeat(chunks);
+        assertEquals(expected, new String(content, StandardCharsets.UTF_8));
+    }
+
     @Test
     public void testTransformGzippedHead() throws Exception
     {
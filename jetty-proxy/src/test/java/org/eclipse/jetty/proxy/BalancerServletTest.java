@@ -17,8 +17,13 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -26,6 +31,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.rewrite.handler.RewriteHandler;
 import org.eclipse.jetty.rewrite.handler.VirtualHostRuleContainer;
 import org.eclipse.jetty.server.Server;
@@ -39,23 +47,34 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BalancerServletTest
 {
     private static final String CONTEXT_PATH = "/context";
     private static final String SERVLET_PATH = "/mapping";
 
+    private final Map<String, String> initParams = new HashMap<>();
     private boolean stickySessions;
     private Server server1;
     private Server server2;
     private Server balancer;
+    private ServletHolder balancerServletHolder;
     private HttpClient client;
 
     @BeforeEach
     public void prepare() throws Exception
     {
+        PortServlet.slowPort = 0;
+        PortServlet.failingPort = 0;
+        PortServlet.latch = new CountDownLatch(0);
         client = new HttpClient();
         client.start();
     }
@@ -77,11 +96,13 @@ public class BalancerServletTest
         server2 = createServer(new ServletHolder(servletClass), "node2");
         server2.start();
 
-        ServletHolder balancerServletHolder = new ServletHolder(BalancerServlet.class);
+        balancerServletHolder = new ServletHolder(BalancerServlet.class);
+        balancerServletHolder.setInitOrder(0);
         balancerServletHolder.setInitParameter("stickySessions", String.valueOf(stickySessions));
         balancerServletHolder.setInitParameter("proxyPassReverse", "true");
         balancerServletHolder.setInitParameter("balancerMember." + "node1" + ".proxyTo", "http://localhost:" + getServerPort(server1));
         balancerServletHolder.setInitParameter("balancerMember." + "node2" + ".proxyTo", "http://localhost:" + getServerPort(server2));
+        initParams.forEach(balancerServletHolder::setInitParameter);
 
         balancer = createServer(balancerServletHolder, null);
         balancer.start();
@@ -184,6 +205,182 @@ public class BalancerServletTest
         assertThat(response.getContentAsString(), containsString("pathInfo='/test/\n'"));
     }
 
+    @Test
+    public void testLeastRequestsBalancer() throws Exception
+    {
+        initParams.put("balancerStrategy", "leastRequests");
+        startBalancer(PortServlet.class);
+        PortServlet.latch = new CountDownLatch(1);
+
+        Request request = client.newRequest("localhost", getServerPort(balancer))
+            .path(CONTEXT_PATH + SERVLET_PATH + "/block")
+            .timeout(5, TimeUnit.SECONDS);
+        FutureResponseListener listener = new FutureResponseListener(request);
+        request.send(listener);
+
+        awaitCondition(() -> getOutstandingRequests() == 1);
+        BalancerServlet.BalancerMember blocked = getBalancerMembers().stream()
+            .filter(member -> member.getOutstandingRequests() == 1)
+            .findAny()
+            .orElseThrow();
+
+        // While a member is busy, the other member serves all the requests.
+        int blockedPort = blocked.getBackendURI().getPort();
+        for (int i = 0; i < 4; ++i)
+        {
+            ContentResponse response = getCompletedResponse("/port", 1);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertNotEquals(blockedPort, Integer.parseInt(response.getContentAsString()));
+        }
+
+        PortServlet.latch.countDown();
+        ContentResponse response = listener.get(5, TimeUnit.SECONDS);
+        assertEquals(blockedPort, Integer.parseInt(response.getContentAsString()));
+        awaitCondition(() -> blocked.getOutstandingRequests() == 0);
+    }
+
+    @Test
+    public void testEWMABalancerAvoidsSlowMember() throws Exception
+    {
+        initParams.put("balancerStrategy", "ewma");
+        startBalancer(PortServlet.class);
+        int slowPort = getServerPort(server1);
+        PortServlet.slowPort = slowPort;
+
+        int slowResponses = 0;
+        for (int i = 0; i < 10; ++i)
+        {
+            ContentResponse response = getCompletedResponse("/port", 0);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            if (Integer.parseInt(response.getContentAsString()) == slowPort)
+                ++slowResponses;
+        }
+        // The slow member is only selected before its latency is known.
+        assertEquals(1, slowResponses);
+
+        BalancerServlet.BalancerMember slow = getBalancerMember("node1");
+        BalancerServlet.BalancerMember fast = getBalancerMember("node2");
+        assertEquals(1, slow.getRequestCount());
+        assertEquals(9, fast.getRequestCount());
+        assertThat(slow.getLatency(), greaterThan(fast.getLatency()));
+        assertThat(fast.getIdleConnectionCount(), greaterThan(0));
+    }
+
+    @Test
+    public void testEWMABalancerDoesNotPreferUnreachableMember() throws Exception
+    {
+        initParams.put("balancerStrategy", "ewma");
+        initParams.put("maxFailures", "0");
+        startBalancer(PortServlet.class);
+        server2.stop();
+
+        int errors = 0;
+        for (int i = 0; i < 10; ++i)
+        {
+            ContentResponse response = getCompletedResponse("/port", 0);
+            if (response.getStatus() == HttpStatus.BAD_GATEWAY_502)
+                ++errors;
+        }
+        // The unreachable member has no latency samples, so it is assumed
+        // to have the latency of the other member, rather than no latency.
+        assertThat(errors, lessThanOrEqualTo(5));
+        assertThat(getBalancerMember("node1").getRequestCount(), greaterThanOrEqualTo(5L));
+    }
+
+    @Test
+    public void testMemberEjectedAfterServerErrors() throws Exception
+    {
+        initParams.put("maxFailures", "3");
+        startBalancer(PortServlet.class);
+        PortServlet.failingPort = getServerPort(server1);
+
+        int errors = 0;
+        for (int i = 0; i < 12; ++i)
+        {
+            ContentResponse response = getCompletedResponse("/port", 0);
+            if (response.getStatus() == HttpStatus.INTERNAL_SERVER_ERROR_500)
+                ++errors;
+        }
+        assertEquals(3, errors);
+
+        BalancerServlet.BalancerMember failing = getBalancerMember("node1");
+        assertTrue(failing.isEjected());
+        assertEquals(1, failing.getEjectionCount());
+        assertEquals(3, failing.getFailureCount());
+        BalancerServlet.BalancerMember healthy = getBalancerMember("node2");
+        assertFalse(healthy.isEjected());
+        assertEquals(0, healthy.getFailureCount());
+    }
+
+    @Test
+    public void testMemberEjectedAfterConnectFailures() throws Exception
+    {
+        initParams.put("maxFailures", "2");
+        initParams.put("ejectionTime", "500");
+        startBalancer(PortServlet.class);
+        server2.stop();
+
+        int errors = 0;
+        for (int i = 0; i < 10; ++i)
+        {
+            ContentResponse response = getCompletedResponse("/port", 0);
+            if (response.getStatus() == HttpStatus.BAD_GATEWAY_502)
+                ++errors;
+        }
+        assertEquals(2, errors);
+
+        BalancerServlet.BalancerMember failing = getBalancerMember("node2");
+        assertTrue(failing.isEjected());
+        assertEquals(2, failing.getFailureCount());
+
+        // After the ejection time, the member is selected again.
+        awaitCondition(() -> !failing.isEjected());
+        for (int i = 0; i < 2; ++i)
+        {
+            getCompletedResponse("/port", 0);
+        }
+        assertEquals(3, failing.getFailureCount());
+    }
+
+    private ContentResponse getCompletedResponse(String path, int outstandingRequests) throws Exception
+    {
+        // The response may arrive before the balancer has completed the exchange
+        // with the member, so wait for it to avoid affecting the next selection.
+        ContentResponse response = getBalancedResponse(path);
+        awaitCondition(() -> getOutstandingRequests() == outstandingRequests);
+        return response;
+    }
+
+    private int getOutstandingRequests()
+    {
+        return getBalancerMembers().stream()
+            .mapToInt(BalancerServlet.BalancerMember::getOutstandingRequests)
+            .sum();
+    }
+
+    private List<BalancerServlet.BalancerMember> getBalancerMembers()
+    {
+        BalancerServlet servlet = (BalancerServlet)balancerServletHolder.getServletInstance();
+        return List.copyOf(servlet.getHttpClient().getBeans(BalancerServlet.BalancerMember.class));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); ++i)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private BalancerServlet.BalancerMember getBalancerMember(String name)
+    {
+        return getBalancerMembers().stream()
+            .filter(member -> member.getName().equals(name))
+            .findAny()
+            .orElseThrow();
+    }
+
     private String readFirstLine(byte[] responseBytes) throws IOException
     {
         BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(responseBytes)));
@@ -217,6 +414,33 @@ public class BalancerServletTest
         }
     }
 
+    public static final class PortServlet extends HttpServlet
+    {
+        private static volatile int slowPort;
+        private static volatile int failingPort;
+        private static volatile CountDownLatch latch;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            try
+            {
+                if (req.getRequestURI().endsWith("/block"))
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                if (req.getLocalPort() == slowPort)
+                    Thread.sleep(200);
+            }
+            catch (InterruptedException x)
+            {
+                throw new IOException(x);
+            }
+            if (req.getLocalPort() == failingPort)
+                resp.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+            resp.setContentType("text/plain");
+            resp.getWriter().print(req.getLocalPort());
+        }
+    }
+
     public static final class RelocationServlet extends HttpServlet
     {
         @Override
@@ -26,6 +26,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -46,6 +48,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -658,6 +665,70 @@ public class ConnectHandlerTest extends AbstractConnectHandlerTest
         }
     }
 
+    @Test
+    public void testCONNECTAndPOSTWithBigBodyGrowsBuffersAndRecordsStatistics() throws Exception
+    {
+        int maxBufferSize = 32 * 1024;
+        AtomicInteger maxCapacity = new AtomicInteger();
+        disposeProxy();
+        ConnectHandler connectHandler = new ConnectHandler()
+        {
+            @Override
+            protected int read(EndPoint endPoint, ByteBuffer buffer, ConcurrentMap<String, Object> context) throws IOException
+            {
+                maxCapacity.accumulateAndGet(buffer.capacity(), Math::max);
+                return super.read(endPoint, buffer, context);
+            }
+        };
+        connectHandler.setMaxBufferSize(maxBufferSize);
+        proxy.setHandler(connectHandler);
+        proxy.start();
+
+        String hostPort = "localhost:" + serverConnector.getLocalPort();
+        String request =
+            "CONNECT " + hostPort + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "\r\n";
+        int length = 1024 * 1024;
+        try (Socket socket = newSocket())
+        {
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            // Expect 200 OK from the CONNECT request
+            HttpTester.Input in = HttpTester.from(input);
+            HttpTester.Response response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals(1, connectHandler.getTunnels());
+
+            String body = "A".repeat(length);
+            request =
+                "POST /echo HTTP/1.1\r\n" +
+                    "Host: " + hostPort + "\r\n" +
+                    "Content-Length: " + body.length() + "\r\n" +
+                    "\r\n" +
+                    body;
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("POST /echo\r\n" + body, response.getContent());
+        }
+
+        // Bulk transfers grow the buffers, but not beyond the max.
+        assertThat(maxCapacity.get(), greaterThan(connectHandler.getBufferSize()));
+        assertThat(maxCapacity.get(), lessThanOrEqualTo(maxBufferSize));
+
+        await().atMost(5, TimeUnit.SECONDS).until(connectHandler::getTunnels, is(0L));
+        assertEquals(1, connectHandler.getTunnelsTotal());
+        assertThat(connectHandler.getUpstreamBytes(), greaterThan((long)length));
+        assertThat(connectHandler.getDownstreamBytes(), greaterThan((long)length));
+    }
+
     @Test
     public void testCONNECTAndPOSTWithContext() throws Exception
     {
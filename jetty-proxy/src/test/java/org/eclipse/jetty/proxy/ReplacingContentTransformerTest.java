@@ -0,0 +1,111 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplacingContentTransformerTest
+{
+    private static String transform(AsyncMiddleManServlet.ContentTransformer transformer, String content, int chunkSize) throws Exception
+    {
+        byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < input.length; i += chunkSize)
+        {
+            int length = Math.min(chunkSize, input.length - i);
+            List<ByteBuffer> output = new ArrayList<>();
+            transformer.transform(ByteBuffer.wrap(input, i, length), i + length == input.length, output);
+            // The output buffers are only valid until they are consumed.
+            for (ByteBuffer buffer : output)
+            {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                result.write(bytes);
+            }
+        }
+        return result.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testTokensSplitAcrossChunks() throws Exception
+    {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        replacements.put("foobar", "X");
+        replacements.put("foo", "YY");
+
+        for (int chunkSize = 1; chunkSize <= 8; ++chunkSize)
+        {
+            String result = transform(new ReplacingContentTransformer(replacements), "afoobarbfoocfo", chunkSize);
+            assertEquals("aXbYYcfo", result, "chunkSize=" + chunkSize);
+        }
+    }
+
+    @Test
+    public void testOutputBuffersArePooled() throws Exception
+    {
+        AtomicInteger buffers = new AtomicInteger();
+        HttpClient httpClient = new HttpClient();
+        httpClient.setByteBufferPool(new ArrayByteBufferPool()
+        {
+            @Override
+            public ByteBuffer acquire(int size, boolean direct)
+            {
+                buffers.incrementAndGet();
+                return super.acquire(size, direct);
+            }
+
+            @Override
+            public void release(ByteBuffer buffer)
+            {
+                buffers.decrementAndGet();
+                super.release(buffer);
+            }
+        });
+
+        ReplacingContentTransformer transformer = new ReplacingContentTransformer(httpClient, Map.of("foo", "barbaz"));
+        String content = "foo,".repeat(1024);
+        assertEquals("barbaz,".repeat(1024), transform(transformer, content, 100));
+        // Only the buffers of the last chunk are still in use.
+        assertThat(buffers.get(), lessThanOrEqualTo(1));
+
+        transformer.destroy();
+        assertEquals(0, buffers.get());
+    }
+
+    @Test
+    public void testChainedTransformers() throws Exception
+    {
+        AsyncMiddleManServlet.ContentTransformer transformer = AsyncMiddleManServlet.ContentTransformer.chain(
+            new ReplacingContentTransformer(Map.of("http://backend/", "http://edge/")),
+            new ReplacingContentTransformer(Map.of("http://", "https://")));
+
+        String result = transform(transformer, "<a href=\"http://backend/path\">link</a>", 3);
+        assertEquals("<a href=\"https://edge/path\">link</a>", result);
+    }
+}
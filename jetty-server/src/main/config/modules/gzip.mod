@@ -42,6 +42,9 @@ etc/jetty-gzip.xml
 ## Set the {@link Deflater} flush mode to use.
 # jetty.gzip.syncFlush=false
 
+## Max size in bytes of the cache of compressed static content (0 for no cache)
+# jetty.gzip.contentCacheSize=0
+
 ## The set of DispatcherType that this filter will operate on
 # jetty.gzip.dispatcherTypes=REQUEST
 
@@ -43,6 +43,9 @@ etc/jetty-http.xml
 ## Whether to enable the SO_REUSEPORT socket option.
 # jetty.http.reusePort=false
 
+## The number of server sockets bound with SO_REUSEPORT to the same host and port.
+# jetty.http.acceptChannelCount=1
+
 ## Whether to enable the TCP_NODELAY socket option on accepted sockets.
 # jetty.http.acceptedTcpNoDelay=true
 
@@ -53,4 +56,8 @@ etc/jetty-http.xml
 ## The SO_SNDBUF socket option to set on accepted sockets.
 ## A value of -1 indicates that the platform default is used.
 # jetty.http.acceptedSendBufferSize=-1
+
+## The max latency in microseconds of endpoint interest updates before a selector wakeup.
+## A value of 0 wakes up the selector on every update.
+# jetty.http.selectorWakeupLatency=0
 # end::documentation[]
@@ -66,6 +66,18 @@ etc/jetty.xml
 ## Whether to use direct ByteBuffers for reading or writing
 # jetty.httpConfig.useInputDirectByteBuffers=true
 # jetty.httpConfig.useOutputDirectByteBuffers=true
+
+## Whether to transfer file content directly from the file system to the network
+# jetty.httpConfig.useSendFile=false
+
+## Max number of buffers of file content read asynchronously ahead of the network writes (0 for blocking reads)
+# jetty.httpConfig.fileReadAhead=0
+
+## Max number of cached encoded blocks of HTTP/1 response header fields (0 to not cache)
+# jetty.httpConfig.responseHeaderCacheSize=0
+
+## Max number of request header fields learned from the requests of all connections (0 to not share header fields)
+# jetty.httpConfig.sharedHeaderCacheSize=0
 # end::documentation-http-config[]
 
 # tag::documentation-server-compliance[]
@@ -0,0 +1,488 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.RolloverFileOutputStream;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An asynchronous {@link RequestLogWriter} that encodes the log entries
+ * as UTF-8 directly into pooled {@link ByteBuffer}s.</p>
+ * <p>The encoded entries are queued in a lock-free ring buffer, from which a
+ * writer thread takes them in batches, that are written to the file with
+ * gathering writes. The file is rolled over as configured on {@link RequestLogWriter}.</p>
+ * <p>The buffers are taken from the {@link ByteBufferPool} passed to the constructor,
+ * typically the one of the {@link Server}, or else from a private pool.</p>
+ * <p>When the ring buffer is full, the log entries are either dropped or, if
+ * {@link #isBlockWhenFull()}, the threads logging the requests wait for the writer
+ * thread to catch up. Both are reported by {@link #getDroppedCount()} and
+ * {@link #getBackPressureCount()}.</p>
+ */
+@ManagedObject("Asynchronous Request Log writer which writes pooled buffers to file")
+public class ByteBufferRequestLogWriter extends RequestLogWriter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ByteBufferRequestLogWriter.class);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBufferPool _configuredBufferPool;
+    private final LongAdder _written = new LongAdder();
+    private final LongAdder _dropped = new LongAdder();
+    private final LongAdder _backPressure = new LongAdder();
+    private final AtomicBoolean _parked = new AtomicBoolean();
+    private final AtomicInteger _writers = new AtomicInteger();
+    private ByteBufferPool _bufferPool;
+    private int _capacity = 1024;
+    private int _maxBatchSize = 64;
+    private boolean _blockWhenFull;
+    private volatile Ring _ring;
+    private volatile boolean _stopping;
+    private volatile Thread _thread;
+
+    public ByteBufferRequestLogWriter()
+    {
+        this(null);
+    }
+
+    public ByteBufferRequestLogWriter(String filename)
+    {
+        this(filename, null);
+    }
+
+    /**
+     * @param filename the name of the log file
+     * @param bufferPool the pool of the buffers of the log entries, typically the
+     * {@link ByteBufferPool} bean of the {@link Server}, or null to use a private pool
+     */
+    public ByteBufferRequestLogWriter(String filename, ByteBufferPool bufferPool)
+    {
+        super(filename);
+        _configuredBufferPool = bufferPool;
+    }
+
+    /**
+     * @return the pool of the buffers of the log entries
+     */
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _bufferPool == null ? _configuredBufferPool : _bufferPool;
+    }
+
+    /**
+     * @return the max number of log entries queued to be written
+     */
+    @ManagedAttribute("The max number of log entries queued to be written")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @param capacity the max number of log entries queued to be written, rounded up to a power of 2
+     */
+    public void setCapacity(int capacity)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        _capacity = capacity;
+    }
+
+    /**
+     * @return the max number of log entries written with a single gathering write
+     */
+    @ManagedAttribute("The max number of log entries written with a single gathering write")
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the max number of log entries written with a single gathering write
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Invalid max batch size " + maxBatchSize);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return whether logging waits for the queue to have space, rather than dropping the log entry
+     */
+    @ManagedAttribute("Whether logging waits for the queue to have space, rather than dropping the log entry")
+    public boolean isBlockWhenFull()
+    {
+        return _blockWhenFull;
+    }
+
+    /**
+     * @param blockWhenFull whether logging waits for the queue to have space, rather than dropping the log entry
+     */
+    public void setBlockWhenFull(boolean blockWhenFull)
+    {
+        _blockWhenFull = blockWhenFull;
+    }
+
+    @ManagedAttribute("The number of log entries written")
+    public long getWrittenCount()
+    {
+        return _written.sum();
+    }
+
+    @ManagedAttribute("The number of log entries dropped because the queue was full")
+    public long getDroppedCount()
+    {
+        return _dropped.sum();
+    }
+
+    @ManagedAttribute("The number of log entries that waited because the queue was full")
+    public long getBackPressureCount()
+    {
+        return _backPressure.sum();
+    }
+
+    @ManagedAttribute("The number of log entries queued to be written")
+    public int getQueueSize()
+    {
+        Ring ring = _ring;
+        return ring == null ? 0 : ring.size();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _written.reset();
+        _dropped.reset();
+        _backPressure.reset();
+    }
+
+    @Override
+    public void write(String requestEntry) throws IOException
+    {
+        write((CharSequence)requestEntry);
+    }
+
+    @Override
+    public void write(CharSequence requestEntry) throws IOException
+    {
+        // Either doStop() sees this writer, or this writer sees _stopping.
+        _writers.incrementAndGet();
+        try
+        {
+            offer(requestEntry);
+        }
+        finally
+        {
+            _writers.decrementAndGet();
+        }
+    }
+
+    private void offer(CharSequence requestEntry)
+    {
+        Ring ring = _ring;
+        if (ring == null || _stopping)
+            return;
+
+        ByteBuffer buffer = _bufferPool.acquire(requestEntry.length() * 3 + LINE_SEPARATOR.length, true);
+        int position = BufferUtil.flipToFill(buffer);
+        encode(requestEntry, buffer);
+        buffer.put(LINE_SEPARATOR);
+        BufferUtil.flipToFlush(buffer, position);
+
+        if (!ring.offer(buffer))
+        {
+            if (!_blockWhenFull)
+            {
+                _bufferPool.release(buffer);
+                _dropped.increment();
+                return;
+            }
+
+            _backPressure.increment();
+            while (!ring.offer(buffer))
+            {
+                if (_stopping)
+                {
+                    _bufferPool.release(buffer);
+                    _dropped.increment();
+                    return;
+                }
+                unpark();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+
+        if (_parked.get())
+            unpark();
+    }
+
+    private void unpark()
+    {
+        if (_parked.compareAndSet(true, false))
+            LockSupport.unpark(_thread);
+    }
+
+    /**
+     * <p>Encodes the characters as UTF-8, with a fast path for US-ASCII.</p>
+     * <p>The buffer must have at least 3 bytes of space per character.</p>
+     */
+    private static void encode(CharSequence chars, ByteBuffer buffer)
+    {
+        int length = chars.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = chars.charAt(i);
+            if (c < 0x80)
+            {
+                buffer.put((byte)c);
+            }
+            else if (c < 0x800)
+            {
+                buffer.put((byte)(0xC0 | (c >> 6)));
+                buffer.put((byte)(0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                buffer.put((byte)(0xF0 | (codePoint >> 18)));
+                buffer.put((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte)(0x80 | (codePoint & 0x3F)));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                buffer.put((byte)'?');
+            }
+            else
+            {
+                buffer.put((byte)(0xE0 | (c >> 12)));
+                buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte)(0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        _bufferPool = _configuredBufferPool == null ? new ArrayByteBufferPool() : _configuredBufferPool;
+        _ring = new Ring(_capacity);
+        _stopping = false;
+        _thread = new Thread(this::run, "ByteBufferRequestLogWriter@" + Integer.toString(hashCode(), 16));
+        _thread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _stopping = true;
+        LockSupport.unpark(_thread);
+        _thread.join();
+        _thread = null;
+
+        // Writers that did not see _stopping may have offered their entry
+        // after the consumer thread exited: wait for them and write their
+        // entries, so that they are not lost and their buffers are released.
+        while (_writers.get() > 0)
+        {
+            Thread.onSpinWait();
+        }
+        Ring ring = _ring;
+        ByteBuffer[] batch = new ByteBuffer[_maxBatchSize];
+        while (drain(ring, batch))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Written entries offered while stopping {}", this);
+        }
+        _ring = null;
+        _bufferPool = null;
+        super.doStop();
+    }
+
+    private void run()
+    {
+        Ring ring = _ring;
+        ByteBuffer[] batch = new ByteBuffer[_maxBatchSize];
+        while (true)
+        {
+            if (drain(ring, batch))
+                continue;
+
+            if (_stopping)
+                break;
+
+            _parked.set(true);
+            if (ring.isEmpty() && !_stopping)
+                LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+            _parked.set(false);
+        }
+    }
+
+    /**
+     * @return whether entries were polled from the ring and written
+     */
+    private boolean drain(Ring ring, ByteBuffer[] batch)
+    {
+        int size = 0;
+        while (size < batch.length)
+        {
+            ByteBuffer buffer = ring.poll();
+            if (buffer == null)
+                break;
+            batch[size++] = buffer;
+        }
+        if (size == 0)
+            return false;
+        write(batch, size);
+        return true;
+    }
+
+    private void write(ByteBuffer[] batch, int size)
+    {
+        try
+        {
+            OutputStream out = getOutputStream();
+            if (out instanceof RolloverFileOutputStream)
+            {
+                ((RolloverFileOutputStream)out).write(batch, 0, size);
+            }
+            else if (out != null)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    BufferUtil.writeTo(batch[i], out);
+                }
+                out.flush();
+            }
+            _written.add(size);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Failed to write log", x);
+        }
+        finally
+        {
+            for (int i = 0; i < size; i++)
+            {
+                _bufferPool.release(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    /**
+     * <p>A bounded, lock-free, multiple producers and single consumer ring buffer.</p>
+     * <p>Each slot has a sequence number, that tells producers whether the slot is
+     * free for the current lap, and tells the consumer whether it has been filled.</p>
+     */
+    private static class Ring
+    {
+        private final ByteBuffer[] _slots;
+        private final AtomicLongArray _sequences;
+        private final AtomicLong _tail = new AtomicLong();
+        private final int _mask;
+        private volatile long _head;
+
+        private Ring(int capacity)
+        {
+            int size = Integer.highestOneBit(capacity - 1) << 1;
+            if (capacity == 1)
+                size = 1;
+            _slots = new ByteBuffer[size];
+            _sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++)
+            {
+                _sequences.set(i, i);
+            }
+            _mask = size - 1;
+        }
+
+        private boolean offer(ByteBuffer buffer)
+        {
+            long tail = _tail.get();
+            while (true)
+            {
+                int index = (int)(tail & _mask);
+                long difference = _sequences.get(index) - tail;
+                if (difference == 0)
+                {
+                    if (_tail.compareAndSet(tail, tail + 1))
+                    {
+                        _slots[index] = buffer;
+                        // Publish the slot to the consumer.
+                        _sequences.lazySet(index, tail + 1);
+                        return true;
+                    }
+                    tail = _tail.get();
+                }
+                else if (difference < 0)
+                {
+                    // The slot of the previous lap is not consumed yet.
+                    return false;
+                }
+                else
+                {
+                    tail = _tail.get();
+                }
+            }
+        }
+
+        private ByteBuffer poll()
+        {
+            long head = _head;
+            int index = (int)(head & _mask);
+            if (_sequences.get(index) != head + 1)
+                return null;
+            ByteBuffer buffer = _slots[index];
+            _slots[index] = null;
+            // Free the slot for the next lap.
+            _sequences.lazySet(index, head + _slots.length);
+            _head = head + 1;
+            return buffer;
+        }
+
+        private boolean isEmpty()
+        {
+            return size() == 0;
+        }
+
+        private int size()
+        {
+            return (int)Math.max(0, _tail.get() - _head);
+        }
+    }
+}
@@ -21,12 +21,13 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -39,11 +40,27 @@ import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the contents and their metadata.</p>
+ * <p>When the cache exceeds the max number of cached files or the max cache size, the
+ * least recently used contents are evicted in constant time.
+ * Hits do not take a lock: they are recorded in a bounded buffer, that is replayed
+ * on the access order when contents are added or evicted.</p>
+ * <p>When the cache is full, an optional admission filter keeps a compact estimate of
+ * the access frequency of the recently requested paths, and only caches a new content
+ * if it is requested more frequently than the content that it would evict, so that
+ * scans of rarely requested resources do not flush the frequently requested ones.</p>
+ */
+@ManagedObject("Cache of static contents")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachedContentFactory.class);
@@ -58,6 +75,16 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final AutoLock _lock = new AutoLock();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _rejections = new LongAdder();
+    // The contents in access order, from the least recently used, guarded by _lock.
+    private CachedHttpContent _leastRecentlyUsed;
+    private CachedHttpContent _mostRecentlyUsed;
+    private final HitBuffer _hitBuffer = new HitBuffer(128);
+    private volatile FrequencySketch _sketch;
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
@@ -86,16 +113,52 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _precompressedFormats = precompressedFormats;
     }
 
+    @ManagedAttribute("The size in bytes of the cached buffers")
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("The number of cached files")
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    @ManagedAttribute("The number of requests for a content found in the cache")
+    public long getCacheHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of requests for a content not found in the cache")
+    public long getCacheMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The number of contents evicted from the cache")
+    public long getCacheEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedAttribute("The number of contents not cached by the admission filter")
+    public long getCacheAdmissionRejections()
+    {
+        return _rejections.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetCacheStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _rejections.reset();
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -107,6 +170,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("The max size in bytes of the cached buffers")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +185,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The max number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -132,9 +197,31 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     public void setMaxCachedFiles(int maxCachedFiles)
     {
         _maxCachedFiles = maxCachedFiles;
+        if (_sketch != null)
+            _sketch = new FrequencySketch(maxCachedFiles);
         shrinkCache();
     }
 
+    /**
+     * @return whether the admission filter is used when the cache is full
+     */
+    @ManagedAttribute("Whether the admission filter is used when the cache is full")
+    public boolean isUseAdmissionFilter()
+    {
+        return _sketch != null;
+    }
+
+    /**
+     * <p>Sets whether a full cache only admits new contents that are requested more
+     * frequently than the least recently used content that they would evict.</p>
+     *
+     * @param useAdmissionFilter whether the admission filter is used when the cache is full
+     */
+    public void setUseAdmissionFilter(boolean useAdmissionFilter)
+    {
+        _sketch = useAdmissionFilter ? new FrequencySketch(_maxCachedFiles) : null;
+    }
+
     public boolean isUseFileMappedBuffer()
     {
         return _useFileMappedBuffer;
@@ -168,10 +255,18 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     @Override
     public HttpContent getContent(String pathInContext, int maxBufferSize) throws IOException
     {
+        FrequencySketch sketch = _sketch;
+        if (sketch != null)
+            sketch.increment(pathInContext);
+
         // Is the content in this cache?
         CachedHttpContent content = _cache.get(pathInContext);
         if (content != null && (content).isValid())
+        {
+            _hits.increment();
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -205,6 +300,34 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return (len > 0 && (_useFileMappedBuffer || (len < _maxCachedFileSize && len < _maxCacheSize)));
     }
 
+    /**
+     * <p>Tests whether a cacheable resource is admitted in the cache.</p>
+     * <p>The default implementation admits all resources, unless the
+     * {@link #setUseAdmissionFilter(boolean) admission filter} is used and the cache
+     * is full, in which case the resource is admitted if it is requested more frequently
+     * than the least recently used content, that would be evicted.</p>
+     *
+     * @param pathInContext the path of the resource
+     * @param resource the resource to test
+     * @return whether the resource is admitted in the cache
+     */
+    protected boolean isAdmitted(String pathInContext, Resource resource)
+    {
+        FrequencySketch sketch = _sketch;
+        if (sketch == null)
+            return true;
+        if (_cachedFiles.get() < _maxCachedFiles && _cachedSize.get() + resource.length() <= _maxCacheSize)
+            return true;
+
+        String victim;
+        try (AutoLock l = _lock.lock())
+        {
+            _hitBuffer.drain();
+            victim = _leastRecentlyUsed == null ? null : _leastRecentlyUsed.getKey();
+        }
+        return victim == null || sketch.frequency(pathInContext) > sketch.frequency(victim);
+    }
+
     private HttpContent load(String pathInContext, Resource resource, int maxBufferSize) throws IOException
     {
         if (resource == null || !resource.exists())
@@ -214,7 +337,13 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return new ResourceHttpContent(resource, _mimeTypes.getMimeByExtension(resource.toString()), getMaxCachedFileSize());
 
         // Will it fit in the cache?
-        if (isCacheable(resource))
+        boolean cacheable = isCacheable(resource);
+        if (cacheable && !isAdmitted(pathInContext, resource))
+        {
+            _rejections.increment();
+            cacheable = false;
+        }
+        if (cacheable)
         {
             CachedHttpContent content;
 
@@ -240,6 +369,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                                 compressedContent.invalidate();
                                 compressedContent = added;
                             }
+                            else
+                            {
+                                compressedContent.added();
+                            }
                         }
                     }
                     if (compressedContent != null)
@@ -257,6 +390,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                content.added();
+            }
 
             return content;
         }
@@ -291,31 +428,22 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private void shrinkCache()
     {
         // While we need to shrink
-        while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        while (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize)
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
-            {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
-
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
-
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
-
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
-
             // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            CachedHttpContent content;
+            try (AutoLock l = _lock.lock())
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
+                _hitBuffer.drain();
+                content = _leastRecentlyUsed;
+                if (content == null)
                     break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                content.unlink();
+            }
+            if (content == _cache.remove(content.getKey()))
+            {
+                _evictions.increment();
+                content.invalidate();
             }
         }
     }
@@ -390,7 +518,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        // The links in access order, guarded by _lock.
+        private CachedHttpContent _prev;
+        private CachedHttpContent _next;
+        private boolean _linked;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -413,8 +544,6 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
                 shrinkCache();
 
-            _lastAccessed = System.currentTimeMillis();
-
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
             if (precompressedResources != null)
@@ -463,7 +592,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
             {
-                _lastAccessed = System.currentTimeMillis();
+                used();
                 return true;
             }
 
@@ -472,8 +601,77 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return false;
         }
 
+        /**
+         * <p>Records a hit of this content, without locking.</p>
+         */
+        private void used()
+        {
+            _hitBuffer.offer(this);
+        }
+
+        /**
+         * <p>Moves this new content to the most recently used position,
+         * after the hits recorded so far.</p>
+         */
+        private void added()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _hitBuffer.drain();
+                relink();
+            }
+        }
+
+        /**
+         * <p>Moves this content, if it is cached, to the most recently used position.</p>
+         */
+        private void relink()
+        {
+            assert _lock.isHeldByCurrentThread();
+            if (_linked)
+            {
+                if (this == _mostRecentlyUsed)
+                    return;
+                unlink();
+            }
+            else if (this != _cache.get(_key))
+            {
+                return;
+            }
+            _prev = _mostRecentlyUsed;
+            if (_mostRecentlyUsed == null)
+                _leastRecentlyUsed = this;
+            else
+                _mostRecentlyUsed._next = this;
+            _mostRecentlyUsed = this;
+            _linked = true;
+        }
+
+        private void unlink()
+        {
+            assert _lock.isHeldByCurrentThread();
+            if (!_linked)
+                return;
+            if (_prev == null)
+                _leastRecentlyUsed = _next;
+            else
+                _prev._next = _next;
+            if (_next == null)
+                _mostRecentlyUsed = _prev;
+            else
+                _next._prev = _prev;
+            _prev = null;
+            _next = null;
+            _linked = false;
+        }
+
         protected void invalidate()
         {
+            try (AutoLock l = _lock.lock())
+            {
+                unlink();
+            }
+
             ByteBuffer indirect = _indirectBuffer.getAndSet(null);
             if (indirect != null)
                 _cachedSize.addAndGet(-BufferUtil.length(indirect));
@@ -712,4 +910,132 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return "Cached" + super.toString();
         }
     }
+
+    /**
+     * <p>An estimate of the access frequency of paths, based on a count-min sketch of
+     * 4-bit counters that are halved periodically, so that the frequencies age.</p>
+     * <p>The counters are updated without synchronization: concurrent updates may be lost,
+     * which only makes the estimate less accurate.</p>
+     */
+    private static class FrequencySketch
+    {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] _table;
+        private final int _sampleSize;
+        private int _size;
+
+        private FrequencySketch(int maxEntries)
+        {
+            int length = Integer.highestOneBit(Math.max(16, Math.min(maxEntries, 1 << 24)) - 1) << 1;
+            _table = new long[length];
+            _sampleSize = 10 * length;
+        }
+
+        private void increment(String key)
+        {
+            int hash = spread(key.hashCode());
+            // Each key uses 4 of the 16 counters of each selected long.
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++)
+            {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xFL << offset;
+                long value = _table[index];
+                if ((value & mask) != mask)
+                {
+                    _table[index] = value + (1L << offset);
+                    added = true;
+                }
+            }
+            if (added && ++_size >= _sampleSize)
+                reset();
+        }
+
+        private int frequency(String key)
+        {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++)
+            {
+                int offset = (start + i) << 2;
+                int count = (int)((_table[indexOf(hash, i)] >>> offset) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int i)
+        {
+            long h = (SEEDS[i] + hash) * SEEDS[i];
+            h += h >>> 32;
+            return (int)h & (_table.length - 1);
+        }
+
+        private void reset()
+        {
+            for (int i = 0; i < _table.length; i++)
+            {
+                _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            }
+            _size /= 2;
+        }
+
+        private static int spread(int hash)
+        {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+
+    /**
+     * <p>A bounded ring of the contents that were hit, in hit order.</p>
+     * <p>Hits are offered without locking, and are replayed on the access order
+     * by {@link #drain()}, under the lock, when contents are added or evicted.
+     * When the ring is full, the hits are dropped, which only makes the access
+     * order less accurate.</p>
+     */
+    private static class HitBuffer
+    {
+        private final AtomicReferenceArray<CachedHttpContent> _contents;
+        private final AtomicLong _writeIndex = new AtomicLong();
+        private volatile long _readIndex;
+
+        private HitBuffer(int capacity)
+        {
+            _contents = new AtomicReferenceArray<>(capacity);
+        }
+
+        private void offer(CachedHttpContent content)
+        {
+            long index = _writeIndex.get();
+            if (index - _readIndex >= _contents.length())
+                return;
+            if (_writeIndex.compareAndSet(index, index + 1))
+                _contents.lazySet((int)(index % _contents.length()), content);
+        }
+
+        private void drain()
+        {
+            long index = _readIndex;
+            long end = _writeIndex.get();
+            while (index < end)
+            {
+                int slot = (int)(index % _contents.length());
+                CachedHttpContent content = _contents.get(slot);
+                // The offering thread has not stored the content yet.
+                if (content == null)
+                    break;
+                _contents.lazySet(slot, null);
+                content.relink();
+                ++index;
+            }
+            _readIndex = index;
+        }
+    }
 }
@@ -0,0 +1,49 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+
+/**
+ * <p>A cache of the compressed variants of static content.</p>
+ * <p>A handler that compresses responses may make a cache available to the
+ * {@link ResourceService} as the {@link #ATTRIBUTE} request attribute, for the
+ * requests that it would compress, so that the content is served compressed
+ * from the cache rather than being compressed on each request.</p>
+ *
+ * @see org.eclipse.jetty.server.handler.gzip.GzipContentCache
+ */
+public interface CompressedContentCache
+{
+    /**
+     * The name of the request attribute of the cache.
+     */
+    public static final String ATTRIBUTE = CompressedContentCache.class.getName();
+
+    /**
+     * @return the format of the compressed variants
+     */
+    public CompressedContentFormat getCompressedContentFormat();
+
+    /**
+     * <p>Gets the cached compressed variant of the given content.</p>
+     *
+     * @param request the request that accepts compressed content
+     * @param pathInContext the path of the content
+     * @param content the content to compress
+     * @return the compressed variant of the content, or null if it is not cached
+     */
+    public HttpContent getCompressedContent(Request request, String pathInContext, HttpContent content);
+}
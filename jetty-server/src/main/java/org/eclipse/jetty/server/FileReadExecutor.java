@@ -0,0 +1,122 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+/**
+ * <p>A small, bounded pool of threads that perform the blocking reads of the files
+ * read asynchronously, see {@link HttpConfiguration#setFileReadAhead(int)}.</p>
+ * <p>An {@link java.nio.channels.AsynchronousFileChannel} performs its reads as
+ * blocking calls on the threads of its executor, so slow storage only ties up the
+ * threads of this pool, rather than the threads of the server thread pool.
+ * The read completions are then processed by the server thread pool.</p>
+ * <p>The {@link Server} creates an instance when it starts, if one of its connectors
+ * reads files asynchronously and no instance has been added as a bean.</p>
+ */
+@ManagedObject("The executor of the asynchronous file reads")
+public class FileReadExecutor extends AbstractLifeCycle
+{
+    private final AtomicInteger count = new AtomicInteger();
+    private final String name;
+    private final int threads;
+    private volatile ThreadPoolExecutor executor;
+
+    public FileReadExecutor()
+    {
+        this(null, -1);
+    }
+
+    /**
+     * @param name the name of the threads, or null for an automatic name
+     * @param threads the max number of threads, or a negative value for a heuristic
+     * based on the number of processors
+     */
+    public FileReadExecutor(@Name("name") String name, @Name("threads") int threads)
+    {
+        this.name = StringUtil.isBlank(name) ? "FileRead-" + hashCode() : name;
+        this.threads = threads > 0 ? threads : Math.max(2, Math.min(8, ProcessorUtils.availableProcessors() / 2));
+    }
+
+    @ManagedAttribute(value = "The max number of threads", readonly = true)
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    @ManagedAttribute(value = "The number of reads waiting for a thread", readonly = true)
+    public int getQueueSize()
+    {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @ManagedAttribute(value = "The number of completed reads", readonly = true)
+    public long getCompletedTaskCount()
+    {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return the executor to pass to {@link java.nio.channels.AsynchronousFileChannel#open(java.nio.file.Path, java.util.Set, ExecutorService, java.nio.file.attribute.FileAttribute[])},
+     * or null if this component is not started
+     */
+    public ExecutorService getExecutorService()
+    {
+        return executor;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task ->
+        {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Threads are only created when there are reads, and exit when idle.
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        ThreadPoolExecutor executor = this.executor;
+        this.executor = null;
+        if (executor != null)
+            executor.shutdownNow();
+        super.doStop();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,threads=%d,queue=%d}", getClass().getSimpleName(), hashCode(), getState(), threads, getQueueSize());
+    }
+}
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -1047,6 +1048,50 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
         sendResponse(null, content, complete, callback);
     }
 
+    /**
+     * @return whether {@link #sendFile(FileChannel, long, long, Callback)} is supported
+     */
+    public boolean isSendFileSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Non-Blocking transfer of a region of a file directly to the network,
+     * bypassing the {@link HttpOutput.Interceptor} chain.</p>
+     * <p>The response must have been committed with a content length
+     * and the transferred bytes are not notified to
+     * {@link Listener#onResponseContent(Request, ByteBuffer)}.</p>
+     *
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback Callback when complete or failed
+     * @see #isSendFileSupported()
+     */
+    public void sendFile(FileChannel file, long position, long length, Callback callback)
+    {
+        if (!isCommitted())
+        {
+            callback.failed(new IllegalStateException("Not committed"));
+            return;
+        }
+        transferFile(file, position, length, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += length;
+                super.succeeded();
+            }
+        });
+    }
+
+    protected void transferFile(FileChannel file, long position, long length, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException("sendFile not supported"));
+    }
+
     @Override
     public void resetBuffer()
     {
@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +37,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.Callback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -477,6 +479,18 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
         return _httpConnection.isUseOutputDirectByteBuffers();
     }
 
+    @Override
+    public boolean isSendFileSupported()
+    {
+        return getHttpConfiguration().isUseSendFile() && _httpConnection.isSendFileSupported();
+    }
+
+    @Override
+    protected void transferFile(FileChannel file, long position, long length, Callback callback)
+    {
+        _httpConnection.sendFile(file, position, length, callback);
+    }
+
     @Override
     public boolean messageComplete()
     {
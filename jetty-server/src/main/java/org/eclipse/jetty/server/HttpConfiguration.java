@@ -21,6 +21,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import org.eclipse.jetty.http.CookieCompliance;
 import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.util.Index;
@@ -67,6 +68,11 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useSendFile = false;
+    private int _fileReadAhead = 0;
+    private int _responseHeaderCacheSize = 0;
+    private int _sharedHeaderCacheSize = 0;
+    private HttpParser.SharedFieldCache _sharedHeaderCache;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -137,6 +143,11 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useSendFile = config._useSendFile;
+        _fileReadAhead = config._fileReadAhead;
+        _responseHeaderCacheSize = config._responseHeaderCacheSize;
+        _sharedHeaderCacheSize = config._sharedHeaderCacheSize;
+        _sharedHeaderCache = config._sharedHeaderCache;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -358,6 +369,102 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * <p>Sets whether file content may be transferred directly from the file
+     * system to the network, without being copied through ByteBuffers.</p>
+     * <p>The transfer is only performed for unencrypted HTTP/1.1 connections and
+     * for responses that are not modified by an {@link HttpOutput.Interceptor},
+     * otherwise the content is copied as usual.</p>
+     *
+     * @param useSendFile whether to transfer file content directly to the network
+     * @see java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)
+     */
+    public void setUseSendFile(boolean useSendFile)
+    {
+        _useSendFile = useSendFile;
+    }
+
+    @ManagedAttribute("Whether to transfer file content directly to the network")
+    public boolean isUseSendFile()
+    {
+        return _useSendFile;
+    }
+
+    /**
+     * <p>Sets the max number of buffers of file content that are read ahead of the
+     * network writes, or 0 to read file content with blocking reads.</p>
+     * <p>When positive, file content that is not cached is read asynchronously with an
+     * {@link java.nio.channels.AsynchronousFileChannel}, so that the thread sending the
+     * content is not blocked by slow storage. The reads block the threads of the
+     * server's {@link FileReadExecutor} instead. At most this number of buffers,
+     * taken from the connector's {@link org.eclipse.jetty.io.ByteBufferPool}, hold
+     * content that has been read but not yet written.</p>
+     *
+     * @param fileReadAhead the max number of buffers read ahead of the network writes
+     */
+    public void setFileReadAhead(int fileReadAhead)
+    {
+        _fileReadAhead = fileReadAhead;
+    }
+
+    @ManagedAttribute("The max number of buffers of file content read ahead of the network writes")
+    public int getFileReadAhead()
+    {
+        return _fileReadAhead;
+    }
+
+    /**
+     * <p>Sets the max number of encoded blocks of HTTP/1 response header fields
+     * that are cached and shared by the connections of a connector.</p>
+     * <p>Responses with the same header fields, except the fields whose value is
+     * specific to each response such as {@code Date} and {@code Content-Length},
+     * copy the cached encoding of their header fields rather than encoding them.</p>
+     *
+     * @param responseHeaderCacheSize the max number of cached header blocks, or 0 to not cache header blocks
+     * @see org.eclipse.jetty.http.HttpGenerator.HeaderCache
+     */
+    public void setResponseHeaderCacheSize(int responseHeaderCacheSize)
+    {
+        _responseHeaderCacheSize = responseHeaderCacheSize;
+    }
+
+    @ManagedAttribute("The max number of cached encoded blocks of response header fields")
+    public int getResponseHeaderCacheSize()
+    {
+        return _responseHeaderCacheSize;
+    }
+
+    /**
+     * <p>Sets the max number of request header fields that are learned from the requests
+     * of all the connections, so that the parsers of new connections do not have to
+     * allocate again the fields that are frequently received, such as those of a tenant
+     * or of a client library.</p>
+     * <p>The fields are shared by all the connections that use this configuration, or a
+     * copy of it, and are looked up after the per-connection header cache.</p>
+     *
+     * @param sharedHeaderCacheSize the max number of shared header fields, or 0 to not share header fields
+     * @see HttpParser.SharedFieldCache
+     */
+    public void setSharedHeaderCacheSize(int sharedHeaderCacheSize)
+    {
+        _sharedHeaderCacheSize = sharedHeaderCacheSize;
+        _sharedHeaderCache = sharedHeaderCacheSize > 0 ? new HttpParser.SharedFieldCache(sharedHeaderCacheSize) : null;
+    }
+
+    @ManagedAttribute("The max number of header fields learned from the requests of all connections")
+    public int getSharedHeaderCacheSize()
+    {
+        return _sharedHeaderCacheSize;
+    }
+
+    /**
+     * @return the header fields cache shared by the parsers of all connections, or null if header fields are not shared
+     */
+    public HttpParser.SharedFieldCache getSharedHeaderCache()
+    {
+        return _sharedHeaderCache;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
@@ -682,7 +789,8 @@ public class HttpConfiguration implements Dumpable
             "requestCookieCompliance=" + _requestCookieCompliance,
             "responseCookieCompliance=" + _responseCookieCompliance,
             "notifyRemoteAsyncErrors=" + _notifyRemoteAsyncErrors,
-            "relativeRedirectAllowed=" + _relativeRedirectAllowed
+            "relativeRedirectAllowed=" + _relativeRedirectAllowed,
+            "useSendFile=" + _useSendFile
         );
     }
 
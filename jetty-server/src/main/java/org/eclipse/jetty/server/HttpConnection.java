@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.LongAdder;
@@ -34,8 +35,10 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.NetworkTrafficSocketChannelEndPoint;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.io.RetainableByteBufferPool;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -132,6 +135,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         HttpParser parser = new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
         parser.setHeaderCacheSize(getHttpConfiguration().getHeaderCacheSize());
         parser.setHeaderCacheCaseSensitive(getHttpConfiguration().isHeaderCacheCaseSensitive());
+        parser.setSharedFieldCache(getHttpConfiguration().getSharedHeaderCache());
         return parser;
     }
 
@@ -612,6 +616,45 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         LOG.debug("ignore push in {}", this);
     }
 
+    /**
+     * @return whether file content can be transferred directly to the network,
+     * which is only possible when this connection writes to a plain socket
+     * @see #sendFile(FileChannel, long, long, Callback)
+     */
+    public boolean isSendFileSupported()
+    {
+        EndPoint endPoint = getEndPoint();
+        // Network traffic listeners must see all the bytes written, so they are excluded.
+        return endPoint instanceof SocketChannelEndPoint && !(endPoint instanceof NetworkTrafficSocketChannelEndPoint);
+    }
+
+    /**
+     * <p>Transfers a region of a file directly to the network.</p>
+     * <p>The response must have been committed with a known content length,
+     * and the generator is bypassed, so that the file bytes are written
+     * as they are, without any transfer encoding.</p>
+     *
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback the callback notified when the transfer is complete
+     */
+    public void sendFile(FileChannel file, long position, long length, Callback callback)
+    {
+        if (!isSendFileSupported())
+        {
+            callback.failed(new UnsupportedOperationException("sendFile not supported by " + getEndPoint()));
+            return;
+        }
+        if (_generator.isEnd() || !_generator.isCommitted())
+        {
+            callback.failed(new IllegalStateException(_generator.toString()));
+            return;
+        }
+        bytesOut.add(length);
+        ((SocketChannelEndPoint)getEndPoint()).transferFrom(callback, file, position, length);
+    }
+
     public void asyncReadFillInterested()
     {
         getEndPoint().tryFillInterested(_asyncReadCallback);
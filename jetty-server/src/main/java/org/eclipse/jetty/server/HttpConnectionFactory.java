@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.util.Objects;
 
+import org.eclipse.jetty.http.HttpGenerator;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
@@ -32,6 +33,7 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
     private boolean _recordHttpComplianceViolations;
     private boolean _useInputDirectByteBuffers;
     private boolean _useOutputDirectByteBuffers;
+    private HttpGenerator.HeaderCache _responseHeaderCache;
 
     public HttpConnectionFactory()
     {
@@ -83,12 +85,28 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
         _useOutputDirectByteBuffers = useOutputDirectByteBuffers;
     }
 
+    @Override
+    protected void doStart() throws Exception
+    {
+        int cacheSize = _config.getResponseHeaderCacheSize();
+        _responseHeaderCache = cacheSize > 0 ? new HttpGenerator.HeaderCache(cacheSize) : null;
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _responseHeaderCache = null;
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         HttpConnection connection = new HttpConnection(_config, connector, endPoint, isRecordHttpComplianceViolations());
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
+        connection.getGenerator().setHeaderCache(_responseHeaderCache);
         return configure(connection, connector, endPoint);
     }
 }
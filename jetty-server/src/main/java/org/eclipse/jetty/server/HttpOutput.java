@@ -13,17 +13,28 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletOutputStream;
@@ -32,6 +43,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.WriteListener;
 
 import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.util.BufferUtil;
@@ -40,6 +52,8 @@ import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.SharedBlockingCallback;
 import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -1186,6 +1200,24 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Blocking send of a range of HTTP content with a file transfer.
+     *
+     * @param content The HTTP content to send
+     * @param offset The offset of the first byte of the range to send
+     * @param length The length of the range to send
+     * @throws IOException if the send fails
+     * @see #isSendFileSupported(HttpContent, long)
+     */
+    public void sendContent(HttpContent content, long offset, long length) throws IOException
+    {
+        try (Blocker blocker = _writeBlocker.acquire())
+        {
+            sendContent(content, offset, length, blocker);
+            blocker.block();
+        }
+    }
+
     /**
      * Asynchronous send of whole content.
      *
@@ -1249,7 +1281,7 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             new ReadableByteChannelWritingCB(in, callback).iterate();
     }
 
-    private boolean prepareSendContent(int len, Callback callback)
+    private boolean prepareSendContent(long len, Callback callback)
     {
         try (AutoLock l = _channelState.lock())
         {
@@ -1312,6 +1344,32 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             return;
         }
 
+        long length = httpContent.getContentLengthValue();
+        if (isSendFileSupported(httpContent, length))
+        {
+            FileChannel file = openFile(httpContent);
+            if (file != null)
+            {
+                sendFile(file, 0, length, callback);
+                return;
+            }
+        }
+
+        HttpConfiguration configuration = _channel.getHttpConfiguration();
+        int readAhead = configuration == null ? 0 : configuration.getFileReadAhead();
+        if (readAhead > 0 && length > 0 && isDefaultFileSystemPath(httpContent))
+        {
+            AsynchronousFileChannel file = openAsynchronousFile(httpContent);
+            if (file != null)
+            {
+                if (prepareSendContent(0, callback))
+                    new AsynchronousFileChannelWritingCB(file, length, readAhead, callback).iterate();
+                else
+                    IO.close(file);
+                return;
+            }
+        }
+
         ReadableByteChannel rbc = null;
         try
         {
@@ -1350,6 +1408,111 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         callback.failed(cause);
     }
 
+    /**
+     * Asynchronous send of a range of HTTP content with a file transfer.
+     *
+     * @param httpContent The HTTP content to send
+     * @param offset The offset of the first byte of the range to send
+     * @param length The length of the range to send
+     * @param callback The callback to use to notify success or failure
+     * @see #isSendFileSupported(HttpContent, long)
+     */
+    public void sendContent(HttpContent httpContent, long offset, long length, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendContent(http={},{},{},{})", httpContent, offset, length, callback);
+
+        FileChannel file = isSendFileSupported(httpContent, length) ? openFile(httpContent) : null;
+        if (file == null)
+        {
+            callback.failed(new IllegalStateException("sendFile not supported for " + httpContent));
+            return;
+        }
+        sendFile(file, offset, length, callback);
+    }
+
+    /**
+     * <p>Returns whether the given content can be sent with a file transfer,
+     * that writes the file bytes directly to the network without copying
+     * them through {@link ByteBuffer}s.</p>
+     * <p>This is only possible if the {@link HttpChannel} supports it,
+     * no {@link Interceptor} is wrapping the output, the response has a
+     * matching content length and the content is a file in the default
+     * file system.</p>
+     *
+     * @param httpContent The HTTP content to send
+     * @param length The number of bytes that would be sent
+     * @return whether the content can be sent with a file transfer
+     * @see HttpChannel#isSendFileSupported()
+     */
+    public boolean isSendFileSupported(HttpContent httpContent, long length)
+    {
+        if (length <= 0 || _interceptor != _channel || !_channel.isSendFileSupported())
+            return false;
+        if (HttpMethod.HEAD.is(_channel.getRequest().getMethod()))
+            return false;
+        if (_channel.getResponse().getLongContentLength() != length)
+            return false;
+        return isDefaultFileSystemPath(httpContent);
+    }
+
+    private static boolean isDefaultFileSystemPath(HttpContent httpContent)
+    {
+        Resource resource = httpContent.getResource();
+        return resource instanceof PathResource &&
+            ((PathResource)resource).getPath().getFileSystem() == FileSystems.getDefault();
+    }
+
+    private AsynchronousFileChannel openAsynchronousFile(HttpContent httpContent)
+    {
+        Path path = ((PathResource)httpContent.getResource()).getPath();
+        try
+        {
+            // The reads block the threads of the executor, so they run on the
+            // bounded pool of the server rather than on the server threads or on
+            // the unbounded default AIO thread pool.
+            Server server = _channel.getServer();
+            FileReadExecutor fileReadExecutor = server == null ? null : server.getBean(FileReadExecutor.class);
+            ExecutorService executor = fileReadExecutor == null ? null : fileReadExecutor.getExecutorService();
+            if (executor == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("No FileReadExecutor to read content {}", httpContent);
+                return null;
+            }
+            return AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.READ), executor);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to open AsynchronousFileChannel for content {}", httpContent, x);
+            return null;
+        }
+    }
+
+    private FileChannel openFile(HttpContent httpContent)
+    {
+        Path path = ((PathResource)httpContent.getResource()).getPath();
+        try
+        {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to open FileChannel for content {}", httpContent, x);
+            return null;
+        }
+    }
+
+    private void sendFile(FileChannel file, long offset, long length, Callback callback)
+    {
+        if (prepareSendContent(length, callback))
+            new FileChannelWritingCB(file, offset, length, callback).iterate();
+        else
+            IO.close(file);
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1867,6 +2030,267 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * An iterating callback that commits the response, then transfers a region
+     * of a {@link FileChannel} directly to the network with
+     * {@link HttpChannel#sendFile(FileChannel, long, long, Callback)} and
+     * finally completes the response.
+     */
+    private class FileChannelWritingCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _file;
+        private final long _offset;
+        private final long _length;
+        private int _step;
+
+        private FileChannelWritingCB(FileChannel file, long offset, long length, Callback callback)
+        {
+            super(callback, true);
+            _file = file;
+            _offset = offset;
+            _length = length;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            switch (_step++)
+            {
+                case 0:
+                    // Commit the response, so that the headers are written.
+                    channelWrite(BufferUtil.EMPTY_BUFFER, false, this);
+                    return Action.SCHEDULED;
+                case 1:
+                    _channel.sendFile(_file, _offset, _length, this);
+                    return Action.SCHEDULED;
+                case 2:
+                    channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                    return Action.SCHEDULED;
+                default:
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("EOF of {}", this);
+                    IO.close(_file);
+                    return Action.SUCCEEDED;
+            }
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
+    /**
+     * An iterating callback that reads a file with an {@link AsynchronousFileChannel}
+     * and writes it to the {@link HttpChannel}.
+     * The file is read one buffer at a time, ahead of the writes, in at most
+     * {@link HttpConfiguration#getFileReadAhead()} buffers of size {@link HttpOutput#getBufferSize()}
+     * taken from the {@link ByteBufferPool}.
+     * The reads block the threads of the {@link FileReadExecutor}, but not the thread
+     * sending the content, nor the other server threads.
+     * When the next buffer has not been read yet, this callback is succeeded by the read
+     * completion, that is dispatched to the server threads to write the buffer.
+     */
+    private class AsynchronousFileChannelWritingCB extends NestedChannelWriteCB implements CompletionHandler<Integer, ByteBuffer>
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final Queue<ByteBuffer> _buffers = new ArrayDeque<>();
+        private final AsynchronousFileChannel _file;
+        private final long _length;
+        private final int _readAhead;
+        private long _read;
+        private long _flushed;
+        private ByteBuffer _writing;
+        private boolean _reading;
+        private boolean _waiting;
+        private boolean _closed;
+        private Throwable _failure;
+
+        private AsynchronousFileChannelWritingCB(AsynchronousFileChannel file, long length, int readAhead, Callback callback)
+        {
+            super(callback, true);
+            _file = file;
+            _length = length;
+            _readAhead = readAhead;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            ByteBuffer buffer;
+            boolean read;
+            try (AutoLock l = _lock.lock())
+            {
+                if (_writing != null)
+                {
+                    _channel.getByteBufferPool().release(_writing);
+                    _writing = null;
+                }
+
+                if (_failure instanceof Exception)
+                    throw (Exception)_failure;
+                if (_failure != null)
+                    throw new IOException(_failure);
+
+                if (_flushed == _length)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("EOF of {}", this);
+                    _closed = true;
+                    IO.close(_file);
+                    return Action.SUCCEEDED;
+                }
+
+                buffer = _buffers.poll();
+                if (buffer == null)
+                    _waiting = true;
+                else
+                    _writing = buffer;
+                read = startRead();
+            }
+
+            if (read)
+                read();
+
+            // Wait for the read completion to succeed this callback.
+            if (buffer == null)
+                return Action.SCHEDULED;
+
+            int length = buffer.remaining();
+            _written += length;
+            _flushed += length;
+            channelWrite(buffer, _flushed == _length, this);
+            return Action.SCHEDULED;
+        }
+
+        private boolean startRead()
+        {
+            assert _lock.isHeldByCurrentThread();
+            if (_reading || _closed || _read == _length)
+                return false;
+            if (_buffers.size() + (_writing == null ? 0 : 1) >= _readAhead)
+                return false;
+            _reading = true;
+            return true;
+        }
+
+        private void read()
+        {
+            ByteBuffer buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.isUseOutputDirectByteBuffers());
+            long position;
+            try (AutoLock l = _lock.lock())
+            {
+                position = _read;
+            }
+            BufferUtil.clearToFill(buffer);
+            buffer.limit((int)Math.min(buffer.capacity(), _length - position));
+            try
+            {
+                _file.read(buffer, position, buffer, this);
+            }
+            catch (Throwable x)
+            {
+                // For example, the file was closed or the executor rejected the read.
+                failed(x, buffer);
+            }
+        }
+
+        @Override
+        public void completed(Integer result, ByteBuffer buffer)
+        {
+            boolean read = false;
+            boolean succeed = false;
+            Throwable failure = null;
+            try (AutoLock l = _lock.lock())
+            {
+                _reading = false;
+                if (_closed)
+                {
+                    _channel.getByteBufferPool().release(buffer);
+                    return;
+                }
+
+                if (result < 0)
+                {
+                    _channel.getByteBufferPool().release(buffer);
+                    _failure = new EOFException("Unexpected EOF of " + _file);
+                    if (_waiting)
+                    {
+                        _waiting = false;
+                        failure = _failure;
+                    }
+                }
+                else
+                {
+                    BufferUtil.flipToFlush(buffer, 0);
+                    _read += result;
+                    _buffers.offer(buffer);
+                    read = startRead();
+                    if (_waiting)
+                    {
+                        _waiting = false;
+                        succeed = true;
+                    }
+                }
+            }
+
+            if (read)
+                read();
+            // Write from the server threads, leaving the file read threads to the reads.
+            if (succeed)
+                _channel.execute(this::succeeded);
+            else if (failure != null)
+            {
+                Throwable cause = failure;
+                _channel.execute(() -> failed(cause));
+            }
+        }
+
+        @Override
+        public void failed(Throwable x, ByteBuffer buffer)
+        {
+            boolean fail = false;
+            try (AutoLock l = _lock.lock())
+            {
+                _reading = false;
+                _channel.getByteBufferPool().release(buffer);
+                if (_closed)
+                    return;
+                _failure = x;
+                if (_waiting)
+                {
+                    _waiting = false;
+                    fail = true;
+                }
+            }
+            if (fail)
+                _channel.execute(() -> failed(x));
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _closed = true;
+                if (_writing != null)
+                {
+                    _channel.getByteBufferPool().release(_writing);
+                    _writing = null;
+                }
+                ByteBuffer buffer;
+                while ((buffer = _buffers.poll()) != null)
+                {
+                    _channel.getByteBufferPool().release(buffer);
+                }
+            }
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
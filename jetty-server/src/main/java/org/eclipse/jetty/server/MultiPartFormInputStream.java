@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,13 +32,18 @@ import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.servlet.MultipartConfigElement;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.Part;
 
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.MultiException;
 import org.eclipse.jetty.util.MultiMap;
 import org.eclipse.jetty.util.QuotedStringTokenizer;
@@ -74,6 +80,10 @@ import org.slf4j.LoggerFactory;
  *                      +---------------> DELETING -------------------+
  *                        deleteParts()               parsing thread
  * }</pre>
+ * <p>
+ * The parts may also be parsed asynchronously with {@link #parseAsync(Consumer)}, which reads the
+ * content with a {@link ReadListener} rather than blocking a thread for the whole upload.
+ * </p>
  * @see <a href="https://tools.ietf.org/html/rfc7578">https://tools.ietf.org/html/rfc7578</a>
  */
 public class MultiPartFormInputStream
@@ -92,6 +102,7 @@ public class MultiPartFormInputStream
     private final AutoLock _lock = new AutoLock();
     private final MultiMap<Part> _parts = new MultiMap<>();
     private final InputStream _in;
+    private final ServletInputStream _servletInput;
     private final MultipartConfigElement _config;
     private final File _contextTmpDir;
     private final String _contentType;
@@ -100,6 +111,9 @@ public class MultiPartFormInputStream
     private volatile boolean _deleteOnExit;
     private volatile boolean _writeFilesWithFilenames;
     private volatile int _bufferSize = 16 * 1024;
+    private volatile ByteBufferPool _byteBufferPool;
+    private volatile boolean _async;
+    private volatile Consumer<Part> _partListener;
     private State state = State.UNPARSED;
 
     public class MultiPart implements Part
@@ -136,7 +150,7 @@ public class MultiPartFormInputStream
             // We will either be writing to a file, if it has a filename on the content-disposition
             // and otherwise a byte-array-input-stream, OR if we exceed the getFileSizeThreshold, we
             // will need to change to write to a file.
-            if (isWriteFilesWithFilenames() && _filename != null && !_filename.trim().isEmpty())
+            if ((isWriteFilesWithFilenames() || _async) && _filename != null && !_filename.trim().isEmpty())
             {
                 createFile();
             }
@@ -153,6 +167,16 @@ public class MultiPartFormInputStream
             _out.close();
         }
 
+        /**
+         * Releases the buffer of a part that failed while it was being written to file,
+         * without writing the buffered bytes.
+         */
+        protected void release()
+        {
+            if (_out instanceof FileChannelOutputStream)
+                ((FileChannelOutputStream)_out).release();
+        }
+
         protected void write(int b) throws IOException
         {
             if (MultiPartFormInputStream.this._config.getMaxFileSize() > 0 && _size + 1 > MultiPartFormInputStream.this._config.getMaxFileSize())
@@ -220,18 +244,17 @@ public class MultiPartFormInputStream
             Path tempFile = Files.createTempFile(parent, "MultiPart", "");
             _file = tempFile.toFile();
 
-            OutputStream fos = Files.newOutputStream(tempFile, StandardOpenOption.WRITE);
-            BufferedOutputStream bos = new BufferedOutputStream(fos);
+            OutputStream fos = new FileChannelOutputStream(FileChannel.open(tempFile, StandardOpenOption.WRITE));
 
             if (_size > 0 && _out != null)
             {
                 // already written some bytes, so need to copy them into the file
                 _out.flush();
-                _bout.writeTo(bos);
+                _bout.writeTo(fos);
                 _out.close();
             }
             _bout = null;
-            _out = bos;
+            _out = fos;
         }
 
         protected void setHeaders(MultiMap<String> headers)
@@ -365,9 +388,10 @@ public class MultiPartFormInputStream
         _contextTmpDir =  (contextTmpDir != null) ? contextTmpDir : new File(System.getProperty("java.io.tmpdir"));
         _config = (config != null) ? config : new MultipartConfigElement(_contextTmpDir.getAbsolutePath());
 
-        if (in instanceof ServletInputStream)
+        _servletInput = in instanceof ServletInputStream ? (ServletInputStream)in : null;
+        if (_servletInput != null)
         {
-            if (((ServletInputStream)in).isFinished())
+            if (_servletInput.isFinished())
             {
                 _in = null;
                 state = State.PARSED;
@@ -462,7 +486,7 @@ public class MultiPartFormInputStream
     {
         parse();
         throwIfError();
-        return _parts.values().stream().flatMap(List::stream).collect(Collectors.toList());
+        return getPartsList();
     }
 
     /**
@@ -505,85 +529,32 @@ public class MultiPartFormInputStream
      */
     protected void parse()
     {
-        try (AutoLock l = _lock.lock())
-        {
-            switch (state)
-            {
-                case UNPARSED:
-                    state = State.PARSING;
-                    break;
-
-                case PARSED:
-                    return;
-
-                default:
-                    _err = new IOException(state.name());
-                    return;
-            }
-        }
+        if (!startParsing())
+            return;
 
         MultiPartParser parser = null;
         try
         {
-            // Sort out the location to which to write files:
-            // If there is a MultiPartConfigElement.location, use it
-            // otherwise default to the context tmp dir
-            if (StringUtil.isBlank(_config.getLocation()))
-                _tmpDir = _contextTmpDir.toPath();
-            else
-            {
-                // If the MultiPartConfigElement.location is
-                // relative, make it relative to the context tmp dir
-                Path location = FileSystems.getDefault().getPath(_config.getLocation());
-                _tmpDir = (location.isAbsolute() ? location : _contextTmpDir.toPath().resolve(location));
-            }
-
-            if (!Files.exists(_tmpDir))
-                Files.createDirectories(_tmpDir);
-
-            String contentTypeBoundary = "";
-            int bstart = _contentType.indexOf("boundary=");
-            if (bstart >= 0)
-            {
-                int bend = _contentType.indexOf(";", bstart);
-                bend = (bend < 0 ? _contentType.length() : bend);
-                contentTypeBoundary = QuotedStringTokenizer.unquote(value(_contentType.substring(bstart, bend)).trim());
-            }
-
-            parser = new MultiPartParser(new Handler(), contentTypeBoundary);
+            parser = newMultiPartParser();
             byte[] data = new byte[_bufferSize];
             int len;
             long total = 0;
 
             while (true)
             {
-                try (AutoLock l = _lock.lock())
-                {
-                    if (state != State.PARSING)
-                    {
-                        _err = new IOException(state.name());
-                        return;
-                    }
-                }
+                if (!isParsing())
+                    return;
 
                 len = _in.read(data);
                 if (len > 0)
                 {
                     // keep running total of size of bytes read from input and throw an exception if exceeds MultipartConfigElement._maxRequestSize
                     total += len;
-                    if (_config.getMaxRequestSize() > 0 && total > _config.getMaxRequestSize())
-                    {
-                        _err = new IllegalStateException("Request exceeds maxRequestSize (" + _config.getMaxRequestSize() + ")");
+                    if (isRequestTooLarge(total))
                         return;
-                    }
 
-                    ByteBuffer buffer = BufferUtil.toBuffer(data);
-                    buffer.limit(len);
-                    if (parser.parse(buffer, false))
+                    if (parse(parser, data, len))
                         break;
-
-                    if (buffer.hasRemaining())
-                        throw new IllegalStateException("Buffer did not fully consume");
                 }
                 else if (len == -1)
                 {
@@ -592,57 +563,318 @@ public class MultiPartFormInputStream
                 }
             }
 
-            // check for exceptions
+            checkParsed(parser);
+        }
+        catch (Throwable e)
+        {
+            _err = e;
+
+            // Notify parser if failure occurs
+            if (parser != null)
+                parser.parse(BufferUtil.EMPTY_BUFFER, true);
+        }
+        finally
+        {
+            finishParsing();
+        }
+    }
+
+    /**
+     * <p>Parses, if necessary, the multipart content asynchronously.</p>
+     * <p>The content is read with a {@link ReadListener}, so the request must be in
+     * asynchronous mode, and it is parsed by the threads that call the listener.
+     * The content is read only as fast as the parts are written, so a slow disk
+     * applies back pressure to the client rather than buffering the content.</p>
+     * <p>Uploaded files, that is parts with a filename, are written directly to disk,
+     * and other parts are written to disk once they exceed the file size threshold.
+     * The max file size and max request size limits are enforced as the content is read.</p>
+     * <p>The returned future must be used to obtain the parts, rather than
+     * {@link #getParts()}, which fails while the parts are being parsed.</p>
+     *
+     * @param partListener the listener notified of each part once its content is complete, or null
+     * @return a future completed with the parts, or completed exceptionally if the parsing fails
+     * @throws IllegalStateException if the input stream is not a {@link ServletInputStream}
+     */
+    public CompletableFuture<Collection<Part>> parseAsync(Consumer<Part> partListener)
+    {
+        if (_servletInput == null)
+            throw new IllegalStateException("Asynchronous parsing requires a ServletInputStream");
+
+        _partListener = partListener;
+        _async = true;
+        if (!startParsing())
+        {
+            CompletableFuture<Collection<Part>> result = new CompletableFuture<>();
             if (_err != null)
+                result.completeExceptionally(_err);
+            else
+                result.complete(getPartsList());
+            return result;
+        }
+
+        AsyncParser asyncParser = new AsyncParser();
+        try
+        {
+            asyncParser._parser = newMultiPartParser();
+            _servletInput.setReadListener(asyncParser);
+        }
+        catch (Throwable x)
+        {
+            asyncParser.onError(x);
+        }
+        return asyncParser._result;
+    }
+
+    private boolean startParsing()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            switch (state)
             {
-                return;
+                case UNPARSED:
+                    state = State.PARSING;
+                    return true;
+
+                case PARSED:
+                    return false;
+
+                default:
+                    _err = new IOException(state.name());
+                    return false;
             }
+        }
+    }
 
-            // check we read to the end of the message
-            if (parser.getState() != MultiPartParser.State.END)
+    private boolean isParsing()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (state != State.PARSING)
             {
-                if (parser.getState() == MultiPartParser.State.PREAMBLE)
-                    _err = new IOException("Missing initial multi part boundary");
-                else
-                    _err = new IOException("Incomplete Multipart");
+                _err = new IOException(state.name());
+                return false;
             }
+            return true;
+        }
+    }
 
-            if (LOG.isDebugEnabled())
+    private MultiPartParser newMultiPartParser() throws IOException
+    {
+        // Sort out the location to which to write files:
+        // If there is a MultiPartConfigElement.location, use it
+        // otherwise default to the context tmp dir
+        if (StringUtil.isBlank(_config.getLocation()))
+            _tmpDir = _contextTmpDir.toPath();
+        else
+        {
+            // If the MultiPartConfigElement.location is
+            // relative, make it relative to the context tmp dir
+            Path location = FileSystems.getDefault().getPath(_config.getLocation());
+            _tmpDir = (location.isAbsolute() ? location : _contextTmpDir.toPath().resolve(location));
+        }
+
+        if (!Files.exists(_tmpDir))
+            Files.createDirectories(_tmpDir);
+
+        String contentTypeBoundary = "";
+        int bstart = _contentType.indexOf("boundary=");
+        if (bstart >= 0)
+        {
+            int bend = _contentType.indexOf(";", bstart);
+            bend = (bend < 0 ? _contentType.length() : bend);
+            contentTypeBoundary = QuotedStringTokenizer.unquote(value(_contentType.substring(bstart, bend)).trim());
+        }
+
+        return new MultiPartParser(new Handler(), contentTypeBoundary);
+    }
+
+    private boolean isRequestTooLarge(long total)
+    {
+        if (_config.getMaxRequestSize() > 0 && total > _config.getMaxRequestSize())
+        {
+            _err = new IllegalStateException("Request exceeds maxRequestSize (" + _config.getMaxRequestSize() + ")");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the parsing is complete, either because the message is complete or because of a failure
+     */
+    private boolean parse(MultiPartParser parser, byte[] data, int len)
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(data);
+        buffer.limit(len);
+        if (parser.parse(buffer, false))
+            return true;
+
+        if (buffer.hasRemaining())
+            throw new IllegalStateException("Buffer did not fully consume");
+        return false;
+    }
+
+    private void checkParsed(MultiPartParser parser)
+    {
+        // check for exceptions
+        if (_err != null)
+            return;
+
+        // check we read to the end of the message
+        if (parser.getState() != MultiPartParser.State.END)
+        {
+            if (parser.getState() == MultiPartParser.State.PREAMBLE)
+                _err = new IOException("Missing initial multi part boundary");
+            else
+                _err = new IOException("Incomplete Multipart");
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Parsing Complete {} err={}", parser, _err);
+        }
+    }
+
+    private void finishParsing()
+    {
+        boolean cleanup = false;
+        try (AutoLock l = _lock.lock())
+        {
+            switch (state)
             {
-                LOG.debug("Parsing Complete {} err={}", parser, _err);
+                case PARSING:
+                    state = State.PARSED;
+                    break;
+
+                case DELETING:
+                    state = State.DELETED;
+                    cleanup = true;
+                    break;
+
+                default:
+                    _err = new IllegalStateException(state.name());
             }
         }
-        catch (Throwable e)
+
+        // A failed parse may leave the last part open with a pooled buffer.
+        if (_err != null)
         {
-            _err = e;
+            for (List<Part> parts : _parts.values())
+            {
+                for (Part part : parts)
+                {
+                    ((MultiPart)part).release();
+                }
+            }
+        }
 
-            // Notify parser if failure occurs
-            if (parser != null)
-                parser.parse(BufferUtil.EMPTY_BUFFER, true);
+        if (cleanup)
+            delete();
+    }
+
+    private List<Part> getPartsList()
+    {
+        return _parts.values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    private void notifyPart(Part part)
+    {
+        Consumer<Part> listener = _partListener;
+        if (listener == null)
+            return;
+        try
+        {
+            listener.accept(part);
         }
-        finally
+        catch (Throwable x)
+        {
+            LOG.info("Failure while notifying listener {}", listener, x);
+        }
+    }
+
+    /**
+     * <p>Parses the content as it becomes available to read without blocking.</p>
+     * <p>The callbacks of a {@link ReadListener} are not concurrent, so the parsing state needs no locking.</p>
+     */
+    private class AsyncParser implements ReadListener
+    {
+        private final CompletableFuture<Collection<Part>> _result = new CompletableFuture<>();
+        private final byte[] _data = new byte[_bufferSize];
+        private MultiPartParser _parser;
+        private long _total;
+        private boolean _complete;
+
+        @Override
+        public void onDataAvailable()
         {
-            boolean cleanup = false;
-            try (AutoLock l = _lock.lock())
+            try
             {
-                switch (state)
+                while (!_complete && _servletInput.isReady())
                 {
-                    case PARSING:
-                        state = State.PARSED;
-                        break;
+                    if (!isParsing())
+                    {
+                        complete();
+                        return;
+                    }
 
-                    case DELETING:
-                        state = State.DELETED;
-                        cleanup = true;
-                        break;
+                    int len = _servletInput.read(_data);
+                    if (len < 0)
+                        return;
 
-                    default:
-                        _err = new IllegalStateException(state.name());
+                    _total += len;
+                    if (isRequestTooLarge(_total) || parse(_parser, _data, len))
+                        complete();
                 }
             }
+            catch (Throwable x)
+            {
+                onError(x);
+            }
+        }
 
-            if (cleanup)
-                delete();
+        @Override
+        public void onAllDataRead()
+        {
+            if (_complete)
+                return;
+            try
+            {
+                _parser.parse(BufferUtil.EMPTY_BUFFER, true);
+                complete();
+            }
+            catch (Throwable x)
+            {
+                onError(x);
+            }
+        }
+
+        @Override
+        public void onError(Throwable failure)
+        {
+            if (_complete)
+                return;
+            if (_err == null)
+                _err = failure;
+
+            // Notify parser if failure occurs
+            if (_parser != null)
+                _parser.parse(BufferUtil.EMPTY_BUFFER, true);
+            complete();
+        }
+
+        private void complete()
+        {
+            if (_complete)
+                return;
+            _complete = true;
+            if (_parser != null)
+                checkParsed(_parser);
+            finishParsing();
+
+            Throwable failure = _err;
+            if (failure != null)
+                _result.completeExceptionally(failure);
+            else
+                _result.complete(getPartsList());
         }
     }
 
@@ -773,6 +1005,7 @@ public class MultiPartFormInputStream
                     _err = e;
                     return true;
                 }
+                notifyPart(_part);
             }
 
             return false;
@@ -886,4 +1119,116 @@ public class MultiPartFormInputStream
     {
         _bufferSize = bufferSize;
     }
+
+    /**
+     * @return the pool of the direct buffers used to write the parts to files, or null
+     * to write them through heap buffers
+     */
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _byteBufferPool;
+    }
+
+    /**
+     * @param byteBufferPool the pool of the direct buffers used to write the parts to files,
+     * or null to write them through heap buffers
+     */
+    public void setByteBufferPool(ByteBufferPool byteBufferPool)
+    {
+        _byteBufferPool = byteBufferPool;
+    }
+
+    /**
+     * <p>Writes to a {@link FileChannel} through a pooled direct buffer, so that the
+     * bytes are not copied again into a temporary direct buffer by the JVM.</p>
+     * <p>Without a pool, a heap buffer is used rather than allocating a direct
+     * buffer per part.</p>
+     */
+    private class FileChannelOutputStream extends OutputStream
+    {
+        private final FileChannel _channel;
+        private final ByteBufferPool _pool;
+        private ByteBuffer _buffer;
+
+        private FileChannelOutputStream(FileChannel channel)
+        {
+            _channel = channel;
+            _pool = _byteBufferPool;
+            _buffer = _pool == null ? BufferUtil.allocate(_bufferSize) : _pool.acquire(_bufferSize, true);
+            BufferUtil.clearToFill(_buffer);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (_buffer == null)
+                throw new IOException("Closed");
+            if (!_buffer.hasRemaining())
+                flush();
+            _buffer.put((byte)b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            if (_buffer == null)
+                throw new IOException("Closed");
+            while (length > 0)
+            {
+                if (!_buffer.hasRemaining())
+                    flush();
+                int chunk = Math.min(length, _buffer.remaining());
+                _buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            if (_buffer == null)
+                throw new IOException("Closed");
+            try
+            {
+                _buffer.flip();
+                while (_buffer.hasRemaining())
+                {
+                    _channel.write(_buffer);
+                }
+                _buffer.clear();
+            }
+            catch (Throwable x)
+            {
+                release();
+                throw x;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (_buffer == null)
+                return;
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                release();
+            }
+        }
+
+        private void release()
+        {
+            ByteBuffer buffer = _buffer;
+            if (buffer == null)
+                return;
+            _buffer = null;
+            if (_pool != null)
+                _pool.release(buffer);
+            IO.close(_channel);
+        }
+    }
 }
@@ -89,12 +89,14 @@ import org.eclipse.jetty.server.session.Session;
 import org.eclipse.jetty.server.session.SessionHandler;
 import org.eclipse.jetty.util.Attributes;
 import org.eclipse.jetty.util.AttributesMap;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.MultiMap;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.UrlEncoded;
+import org.eclipse.jetty.util.UrlEncodedIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -224,6 +226,9 @@ public class Request implements HttpServletRequest
     private MultiMap<String> _queryParameters;
     private MultiMap<String> _contentParameters;
     private MultiMap<String> _parameters;
+    // The parameters indexed but not yet decoded into the MultiMaps above.
+    private UrlEncodedIndex _queryIndex;
+    private UrlEncodedIndex _contentIndex;
     private Charset _queryEncoding;
     private InetSocketAddress _remote;
     private String _requestedSessionId;
@@ -454,6 +459,15 @@ public class Request implements HttpServletRequest
             }
         }
 
+        // Decode the form content parameters that have only been indexed.
+        if (_contentIndex != null)
+        {
+            MultiMap<String> contentParameters = new MultiMap<>();
+            _contentIndex.decodeTo(contentParameters, -1);
+            _contentParameters = contentParameters;
+            _contentIndex = null;
+        }
+
         // Extract query string parameters; these may be replaced by a forward()
         // and may have already been extracted by mergeQueryParameters().
         if (_queryParameters == null)
@@ -481,6 +495,13 @@ public class Request implements HttpServletRequest
     {
         if (_uri == null || StringUtil.isEmpty(_uri.getQuery()))
             _queryParameters = NO_PARAMS;
+        else if (_queryIndex != null)
+        {
+            MultiMap<String> queryParameters = new MultiMap<>();
+            _queryIndex.decodeTo(queryParameters, -1);
+            _queryParameters = queryParameters;
+            _queryIndex = null;
+        }
         else
         {
             try
@@ -496,6 +517,152 @@ public class Request implements HttpServletRequest
         }
     }
 
+    /**
+     * <p>Indexes the query string and the form content parameters, if they have not been
+     * extracted yet, so that single parameters can be looked up without decoding all of them.</p>
+     *
+     * @return whether the parameters can be looked up in the indexes or in the extracted parameters
+     */
+    private boolean indexParameters()
+    {
+        if (_parameters != null)
+            return false;
+
+        if (!_contentParamsExtracted)
+        {
+            if (_contentParameters != null)
+                return false;
+
+            String contentType = getContentType();
+            if (contentType == null || contentType.isEmpty())
+            {
+                _contentParamsExtracted = true;
+                _contentParameters = NO_PARAMS;
+            }
+            else if (MimeTypes.Type.MULTIPART_FORM_DATA.is(HttpField.valueParameters(contentType, null)))
+            {
+                return false;
+            }
+            else if (getContentLength() != 0 && _inputState == INPUT_NONE &&
+                MimeTypes.Type.FORM_ENCODED.is(HttpField.valueParameters(contentType, null)) &&
+                _channel.getHttpConfiguration().isFormEncodedMethod(getMethod()))
+            {
+                Charset charset = getFormCharset();
+                if (!UrlEncodedIndex.isSupported(charset))
+                    return false;
+                if (_metaData != null && !isContentEncodingSupported())
+                    throw new BadMessageException(HttpStatus.UNSUPPORTED_MEDIA_TYPE_415, "Unsupported Content-Encoding");
+
+                _contentParamsExtracted = true;
+                try
+                {
+                    extractFormIndex(charset);
+                }
+                catch (IllegalStateException | IllegalArgumentException e)
+                {
+                    LOG.warn(e.toString());
+                    throw new BadMessageException("Unable to parse form content", e);
+                }
+            }
+            else
+            {
+                _contentParamsExtracted = true;
+                _contentParameters = new MultiMap<>();
+            }
+        }
+        else if (_contentParameters == null && _contentIndex == null)
+        {
+            return false;
+        }
+
+        if (_queryParameters == null && _queryIndex == null)
+        {
+            if (_uri == null || StringUtil.isEmpty(_uri.getQuery()))
+            {
+                _queryParameters = NO_PARAMS;
+            }
+            else
+            {
+                try
+                {
+                    _queryIndex = UrlEncodedIndex.parse(_uri.getQuery(), _queryEncoding == null ? UrlEncoded.ENCODING : _queryEncoding);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    _queryParameters = BAD_PARAMS;
+                    throw new BadMessageException("Unable to parse URI query", e);
+                }
+                if (_queryIndex == null)
+                    extractQueryParameters();
+            }
+        }
+        return true;
+    }
+
+    private Charset getFormCharset()
+    {
+        String encoding = getCharacterEncoding();
+        if (encoding == null)
+            return UrlEncoded.ENCODING;
+        try
+        {
+            return Charset.forName(encoding);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private void extractFormIndex(Charset charset)
+    {
+        try
+        {
+            int maxFormContentSize = getMaxFormContentSize();
+            int maxFormKeys = getMaxFormKeys();
+
+            int contentLength = getContentLength();
+            if (maxFormContentSize >= 0 && contentLength > maxFormContentSize)
+                throw new IllegalStateException("Form is larger than max length " + maxFormContentSize);
+
+            InputStream in = getInputStream();
+            if (_input.isAsync())
+                throw new IllegalStateException("Cannot extract parameters with async IO");
+
+            ByteArrayOutputStream2 form = new ByteArrayOutputStream2(contentLength > 0 ? contentLength : 1024);
+            byte[] buffer = new byte[4096];
+            while (true)
+            {
+                int read = in.read(buffer);
+                if (read < 0)
+                    break;
+                form.write(buffer, 0, read);
+                if (maxFormContentSize >= 0 && form.size() > maxFormContentSize)
+                    throw new IllegalStateException("Form is larger than max length " + maxFormContentSize);
+            }
+
+            UrlEncodedIndex index = UrlEncodedIndex.parse(form.getBuf(), form.getCount(), charset);
+            if (maxFormKeys >= 0 && index.getFieldCount() > maxFormKeys)
+            {
+                // There may be too many keys, decode them to count the distinct ones.
+                MultiMap<String> contentParameters = new MultiMap<>();
+                index.decodeTo(contentParameters, maxFormKeys);
+                _contentParameters = contentParameters;
+            }
+            else
+            {
+                _contentIndex = index;
+            }
+        }
+        catch (IOException e)
+        {
+            String msg = "Unable to extract form parameters";
+            if (LOG.isDebugEnabled())
+                LOG.debug(msg, e);
+            throw new RuntimeIOException(msg, e);
+        }
+    }
+
     private boolean isContentEncodingSupported()
     {
         String contentEncoding = getHttpFields().get(HttpHeader.CONTENT_ENCODING);
@@ -554,20 +721,8 @@ public class Request implements HttpServletRequest
     {
         try
         {
-            int maxFormContentSize = ContextHandler.DEFAULT_MAX_FORM_CONTENT_SIZE;
-            int maxFormKeys = ContextHandler.DEFAULT_MAX_FORM_KEYS;
-
-            if (_context != null)
-            {
-                ContextHandler contextHandler = _context.getContextHandler();
-                maxFormContentSize = contextHandler.getMaxFormContentSize();
-                maxFormKeys = contextHandler.getMaxFormKeys();
-            }
-            else
-            {
-                maxFormContentSize = lookupServerAttribute(ContextHandler.MAX_FORM_CONTENT_SIZE_KEY, maxFormContentSize);
-                maxFormKeys = lookupServerAttribute(ContextHandler.MAX_FORM_KEYS_KEY, maxFormKeys);
-            }
+            int maxFormContentSize = getMaxFormContentSize();
+            int maxFormKeys = getMaxFormKeys();
 
             int contentLength = getContentLength();
             if (maxFormContentSize >= 0 && contentLength > maxFormContentSize)
@@ -588,6 +743,20 @@ public class Request implements HttpServletRequest
         }
     }
 
+    private int getMaxFormContentSize()
+    {
+        if (_context != null)
+            return _context.getContextHandler().getMaxFormContentSize();
+        return lookupServerAttribute(ContextHandler.MAX_FORM_CONTENT_SIZE_KEY, ContextHandler.DEFAULT_MAX_FORM_CONTENT_SIZE);
+    }
+
+    private int getMaxFormKeys()
+    {
+        if (_context != null)
+            return _context.getContextHandler().getMaxFormKeys();
+        return lookupServerAttribute(ContextHandler.MAX_FORM_KEYS_KEY, ContextHandler.DEFAULT_MAX_FORM_KEYS);
+    }
+
     private int lookupServerAttribute(String key, int dftValue)
     {
         Object attribute = _channel.getServer().getAttribute(key);
@@ -1046,6 +1215,13 @@ public class Request implements HttpServletRequest
     @Override
     public String getParameter(String name)
     {
+        if (indexParameters())
+        {
+            String value = _queryIndex == null ? _queryParameters.getValue(name, 0) : _queryIndex.getValue(name);
+            if (value == null)
+                value = _contentIndex == null ? _contentParameters.getValue(name, 0) : _contentIndex.getValue(name);
+            return value;
+        }
         return getParameters().getValue(name, 0);
     }
 
@@ -1064,7 +1240,25 @@ public class Request implements HttpServletRequest
     @Override
     public String[] getParameterValues(String name)
     {
-        List<String> vals = getParameters().getValues(name);
+        List<String> vals;
+        if (indexParameters())
+        {
+            List<String> queryValues = _queryIndex == null ? _queryParameters.getValues(name) : _queryIndex.getValues(name);
+            List<String> contentValues = _contentIndex == null ? _contentParameters.getValues(name) : _contentIndex.getValues(name);
+            if (queryValues == null)
+                vals = contentValues;
+            else if (contentValues == null)
+                vals = queryValues;
+            else
+            {
+                vals = new ArrayList<>(queryValues);
+                vals.addAll(contentValues);
+            }
+        }
+        else
+        {
+            vals = getParameters().getValues(name);
+        }
         if (vals == null)
             return null;
         return vals.toArray(new String[0]);
@@ -1078,11 +1272,13 @@ public class Request implements HttpServletRequest
     public void setQueryParameters(MultiMap<String> queryParameters)
     {
         _queryParameters = queryParameters;
+        _queryIndex = null;
     }
 
     public void setContentParameters(MultiMap<String> contentParameters)
     {
         _contentParameters = contentParameters;
+        _contentIndex = null;
     }
 
     public void resetParameters()
@@ -1543,7 +1739,10 @@ public class Request implements HttpServletRequest
     public void setHttpURI(HttpURI uri)
     {
         if (_uri != null && !Objects.equals(_uri.getQuery(), uri.getQuery()) && _queryParameters != BAD_PARAMS)
+        {
             _parameters = _queryParameters = null;
+            _queryIndex = null;
+        }
         _uri = uri.asImmutable();
     }
 
@@ -1823,6 +2022,8 @@ public class Request implements HttpServletRequest
         _queryParameters = null;
         _contentParameters = null;
         _parameters = null;
+        _queryIndex = null;
+        _contentIndex = null;
         _queryEncoding = null;
         _remote = null;
         _requestedSessionId = null;
@@ -2323,8 +2524,10 @@ public class Request implements HttpServletRequest
 
     private MultiPartFormInputStream newMultiParts(MultipartConfigElement config) throws IOException
     {
-        return new MultiPartFormInputStream(getInputStream(), getContentType(), config,
+        MultiPartFormInputStream multiParts = new MultiPartFormInputStream(getInputStream(), getContentType(), config,
             (_context != null ? (File)_context.getAttribute("javax.servlet.context.tempdir") : null));
+        multiParts.setByteBufferPool(_channel.getByteBufferPool());
+        return multiParts;
     }
 
     @Override
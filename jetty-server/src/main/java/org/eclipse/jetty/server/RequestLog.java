@@ -42,6 +42,20 @@ public interface RequestLog
     interface Writer
     {
         void write(String requestEntry) throws IOException;
+
+        /**
+         * <p>Writes a log entry that is only valid during this call,
+         * as the characters may be reused once this method returns.</p>
+         * <p>Writers that can encode the characters directly override
+         * this method to avoid the creation of a {@code String}.</p>
+         *
+         * @param requestEntry the log entry
+         * @throws IOException if the log entry cannot be written
+         */
+        default void write(CharSequence requestEntry) throws IOException
+        {
+            write(requestEntry.toString());
+        }
     }
 
     class Collection implements RequestLog
@@ -203,6 +203,14 @@ public class RequestLogWriter extends AbstractLifeCycle implements RequestLog.Wr
         }
     }
 
+    /**
+     * @return the stream the log entries are written to, or null if this writer is not started
+     */
+    protected OutputStream getOutputStream()
+    {
+        return _out;
+    }
+
     public void setTimeZone(String timeZone)
     {
         _timeZone = timeZone;
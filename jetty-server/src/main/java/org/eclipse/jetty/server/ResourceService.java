@@ -227,7 +227,11 @@ public class ResourceService
                 reqRanges = null;
         }
 
-        String pathInContext = URIUtil.addPaths(servletPath, pathInfo);
+        // The path in context of a request that is not wrapped is already the
+        // servlet path and path info, so use it rather than joining them again.
+        String pathInContext = !included && !_pathInfoOnly && request instanceof Request
+            ? ((Request)request).getPathInContext()
+            : URIUtil.addPaths(servletPath, pathInfo);
 
         boolean endsWithSlash = (pathInfo == null ? (_pathInfoOnly ? "" : servletPath) : pathInfo).endsWith(URIUtil.SLASH);
         boolean checkPrecompressedVariants = _precompressedFormats.length > 0 && !endsWithSlash && !included && reqRanges == null;
@@ -294,6 +298,9 @@ public class ResourceService
             // TODO this should be done by HttpContent#getContentEncoding
             if (isGzippedContent(pathInContext))
                 response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+            // Compressed variant cached by a GzipHandler?
+            else if (!included && !endsWithSlash && reqRanges == null)
+                content = getCachedGzipContent(request, response, pathInContext, content);
 
             // Send the data
             releaseContent = sendData(request, response, included, content, reqRanges);
@@ -326,6 +333,25 @@ public class ResourceService
         return true;
     }
 
+    private HttpContent getCachedGzipContent(HttpServletRequest request, HttpServletResponse response, String pathInContext, HttpContent content)
+    {
+        Object attribute = request.getAttribute(CompressedContentCache.ATTRIBUTE);
+        if (!(attribute instanceof CompressedContentCache) || response.containsHeader(HttpHeader.CONTENT_ENCODING.asString()))
+            return content;
+
+        CompressedContentCache cache = (CompressedContentCache)attribute;
+        Request baseRequest = Request.getBaseRequest(request);
+        HttpContent compressedContent = baseRequest == null ? null : cache.getCompressedContent(baseRequest, pathInContext, content);
+        if (compressedContent == null)
+            return content;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("cached compressed={}", compressedContent);
+        response.addHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+        response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), cache.getCompressedContentFormat().getEncoding());
+        return compressedContent;
+    }
+
     private List<String> getPreferredEncodingOrder(HttpServletRequest request)
     {
         Enumeration<String> headers = request.getHeaders(HttpHeader.ACCEPT_ENCODING.asString());
@@ -770,7 +796,10 @@ public class ResourceService
                     response.addDateHeader(HttpHeader.DATE.asString(), System.currentTimeMillis());
                 response.setHeader(HttpHeader.CONTENT_RANGE.asString(),
                     singleSatisfiableRange.toHeaderRangeString(content_length));
-                writeContent(content, out, singleSatisfiableRange.getFirst(), singleLength);
+                if (!written && ((HttpOutput)out).isSendFileSupported(content, singleLength))
+                    ((HttpOutput)out).sendContent(content, singleSatisfiableRange.getFirst(), singleLength);
+                else
+                    writeContent(content, out, singleSatisfiableRange.getFirst(), singleLength);
                 return true;
             }
 
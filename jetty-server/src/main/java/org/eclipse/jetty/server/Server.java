@@ -409,6 +409,10 @@ public class Server extends HandlerWrapper implements Attributes
                 mex.ifExceptionThrow();
             }
 
+            // Read files asynchronously on a bounded pool of threads, if configured.
+            if (getBean(FileReadExecutor.class) == null && isFileReadAhead())
+                addBean(new FileReadExecutor());
+
             // Start the server and components, but not connectors!
             // #start(LifeCycle) is overridden so that connectors are not started
             super.doStart();
@@ -461,6 +465,15 @@ public class Server extends HandlerWrapper implements Attributes
         }
     }
 
+    private boolean isFileReadAhead()
+    {
+        return _connectors.stream()
+            .flatMap(connector -> connector.getConnectionFactories().stream())
+            .filter(HttpConfiguration.ConnectionFactory.class::isInstance)
+            .map(factory -> ((HttpConfiguration.ConnectionFactory)factory).getHttpConfiguration())
+            .anyMatch(configuration -> configuration != null && configuration.getFileReadAhead() > 0);
+    }
+
     @Override
     protected void start(LifeCycle l) throws Exception
     {
@@ -28,6 +28,7 @@ import java.nio.channels.SocketChannel;
 import java.util.EventListener;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
@@ -67,6 +68,15 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * which should allow optimal performance even if all the connections used are performing
  * significant non-blocking work in the callback tasks.
  * </p>
+ * <h2>Accept Channels</h2>
+ * <p>
+ * By default, the connector accepts connections from a single server socket.
+ * When the {@link #setAcceptChannelCount(int) accept channel count} is greater than 1,
+ * the connector binds that number of server sockets with {@code SO_REUSEPORT} to the same
+ * host and port, so that the kernel spreads the incoming connections among them.
+ * Each server socket is accepted by its own acceptor, and the accepted connections
+ * are registered with the selector associated to the server socket that accepted them.
+ * </p>
  */
 @ManagedObject("HTTP connector using NIO ByteChannels and Selectors")
 public class ServerConnector extends AbstractNetworkConnector
@@ -74,6 +84,9 @@ public class ServerConnector extends AbstractNetworkConnector
     private final SelectorManager _manager;
     private final AtomicReference<Closeable> _acceptor = new AtomicReference<>();
     private volatile ServerSocketChannel _acceptChannel;
+    private volatile ServerSocketChannel[] _acceptChannels;
+    private volatile LongAdder[] _acceptedCounts;
+    private volatile int _acceptChannelCount = 1;
     private volatile boolean _inheritChannel = false;
     private volatile int _localPort = -1;
     private volatile int _acceptQueueSize = 0;
@@ -228,10 +241,32 @@ public class ServerConnector extends AbstractNetworkConnector
         super.doStart();
 
         if (getAcceptors() == 0)
+            _acceptor.set(newAcceptor());
+    }
+
+    private Closeable newAcceptor() throws IOException
+    {
+        ServerSocketChannel[] channels = _acceptChannels;
+        if (channels == null)
         {
             _acceptChannel.configureBlocking(false);
-            _acceptor.set(_manager.acceptor(_acceptChannel));
+            return _manager.acceptor(_acceptChannel);
         }
+
+        // Each server channel is accepted by its own selector.
+        Closeable[] acceptors = new Closeable[channels.length];
+        for (int i = 0; i < channels.length; i++)
+        {
+            channels[i].configureBlocking(false);
+            acceptors[i] = _manager.acceptor(channels[i], i);
+        }
+        return () ->
+        {
+            for (Closeable acceptor : acceptors)
+            {
+                IO.close(acceptor);
+            }
+        };
     }
 
     @Override
@@ -307,7 +342,56 @@ public class ServerConnector extends AbstractNetworkConnector
             if (_localPort <= 0)
                 throw new IOException("Server channel not bound");
             addBean(_acceptChannel);
+            openReusePortChannels();
+        }
+    }
+
+    private void openReusePortChannels() throws IOException
+    {
+        int count = getAcceptChannelCount();
+        if (count <= 1)
+            return;
+        if (isInheritChannel())
+        {
+            LOG.warn("Ignoring accept channel count {} for inherited channel {}", count, _acceptChannel);
+            return;
         }
+        int acceptors = getAcceptors();
+        if (acceptors > 0 && acceptors < count)
+            throw new IllegalStateException("Fewer acceptors (" + acceptors + ") than accept channels (" + count + ")");
+
+        ServerSocketChannel[] channels = new ServerSocketChannel[count];
+        LongAdder[] counts = new LongAdder[count];
+        channels[0] = _acceptChannel;
+        counts[0] = new LongAdder();
+        for (int i = 1; i < count; i++)
+        {
+            // Bind to the actual port, in case an ephemeral port was requested.
+            InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(_localPort) : new InetSocketAddress(getHost(), _localPort);
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
+            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, true);
+            try
+            {
+                serverChannel.bind(bindAddress, getAcceptQueueSize());
+                serverChannel.configureBlocking(true);
+            }
+            catch (Throwable e)
+            {
+                IO.close(serverChannel);
+                for (int j = 1; j < i; j++)
+                {
+                    removeBean(channels[j]);
+                    IO.close(channels[j]);
+                }
+                throw new IOException("Failed to bind to " + bindAddress + " with SO_REUSEPORT", e);
+            }
+            addBean(serverChannel);
+            channels[i] = serverChannel;
+            counts[i] = new LongAdder();
+        }
+        _acceptedCounts = counts;
+        _acceptChannels = channels;
     }
 
     /**
@@ -333,7 +417,7 @@ public class ServerConnector extends AbstractNetworkConnector
             InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
             serverChannel = ServerSocketChannel.open();
             setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
-            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort());
+            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort() || getAcceptChannelCount() > 1);
             try
             {
                 serverChannel.bind(bindAddress, getAcceptQueueSize());
@@ -379,6 +463,17 @@ public class ServerConnector extends AbstractNetworkConnector
     {
         super.close();
 
+        ServerSocketChannel[] channels = _acceptChannels;
+        _acceptChannels = null;
+        if (channels != null)
+        {
+            for (int i = 1; i < channels.length; i++)
+            {
+                removeBean(channels[i]);
+                IO.close(channels[i]);
+            }
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         _acceptChannel = null;
         if (serverChannel != null)
@@ -403,15 +498,47 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     public void accept(int acceptorID) throws IOException
     {
+        ServerSocketChannel[] channels = _acceptChannels;
+        if (channels != null)
+        {
+            int index = acceptorID % channels.length;
+            ServerSocketChannel serverChannel = channels[index];
+            if (serverChannel.isOpen())
+            {
+                SocketChannel channel = serverChannel.accept();
+                _acceptedCounts[index].increment();
+                accepted(channel, index);
+            }
+            return;
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         if (serverChannel != null && serverChannel.isOpen())
         {
             SocketChannel channel = serverChannel.accept();
-            accepted(channel);
+            accepted(channel, -1);
         }
     }
 
-    private void accepted(SocketChannel channel) throws IOException
+    private void accepted(SelectableChannel server, SocketChannel channel, int selector) throws IOException
+    {
+        ServerSocketChannel[] channels = _acceptChannels;
+        if (channels != null)
+        {
+            for (int i = 0; i < channels.length; i++)
+            {
+                if (channels[i] == server)
+                {
+                    _acceptedCounts[i].increment();
+                    accepted(channel, selector);
+                    return;
+                }
+            }
+        }
+        accepted(channel, -1);
+    }
+
+    private void accepted(SocketChannel channel, int selector) throws IOException
     {
         channel.configureBlocking(false);
         setSocketOption(channel, StandardSocketOptions.TCP_NODELAY, _acceptedTcpNoDelay);
@@ -419,7 +546,10 @@ public class ServerConnector extends AbstractNetworkConnector
             setSocketOption(channel, StandardSocketOptions.SO_RCVBUF, _acceptedReceiveBufferSize);
         if (_acceptedSendBufferSize > -1)
             setSocketOption(channel, StandardSocketOptions.SO_SNDBUF, _acceptedSendBufferSize);
-        _manager.accept(channel);
+        if (selector < 0)
+            _manager.accept(channel);
+        else
+            _manager.accept(channel, null, selector);
     }
 
     @ManagedAttribute("The Selector Manager")
@@ -501,6 +631,49 @@ public class ServerConnector extends AbstractNetworkConnector
         _reusePort = reusePort;
     }
 
+    /**
+     * @return the number of server sockets bound with SO_REUSEPORT to the same host and port
+     */
+    @ManagedAttribute("The number of server sockets bound with SO_REUSEPORT to the same host and port")
+    public int getAcceptChannelCount()
+    {
+        return _acceptChannelCount;
+    }
+
+    /**
+     * <p>Sets the number of server sockets bound with {@code SO_REUSEPORT} to the same host and port.</p>
+     * <p>When greater than 1, each server socket is accepted by its own acceptor, so the number of
+     * {@link #getAcceptors() acceptors} must be either 0 or at least this number, and the connections
+     * accepted from a server socket are registered with the selector associated to that server socket.</p>
+     *
+     * @param acceptChannelCount the number of server sockets bound with SO_REUSEPORT to the same host and port
+     */
+    public void setAcceptChannelCount(int acceptChannelCount)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _acceptChannelCount = Math.max(1, acceptChannelCount);
+    }
+
+    /**
+     * @return the number of connections accepted by each server socket bound with SO_REUSEPORT,
+     * or an empty array if a single server socket is used
+     * @see #setAcceptChannelCount(int)
+     */
+    @ManagedAttribute("The number of connections accepted by each server socket bound with SO_REUSEPORT")
+    public long[] getAcceptChannelAcceptedCounts()
+    {
+        LongAdder[] counts = _acceptedCounts;
+        if (counts == null || _acceptChannels == null)
+            return new long[0];
+        long[] result = new long[counts.length];
+        for (int i = 0; i < counts.length; i++)
+        {
+            result[i] = counts[i].longValue();
+        }
+        return result;
+    }
+
     /**
      * @return whether the accepted socket gets {@link java.net.SocketOptions#TCP_NODELAY TCP_NODELAY} enabled.
      * @see Socket#getTcpNoDelay()
@@ -575,7 +748,7 @@ public class ServerConnector extends AbstractNetworkConnector
             {
                 if (_acceptor.get() == null)
                 {
-                    Closeable acceptor = _manager.acceptor(_acceptChannel);
+                    Closeable acceptor = newAcceptor();
                     if (!_acceptor.compareAndSet(null, acceptor))
                         acceptor.close();
                 }
@@ -603,7 +776,13 @@ public class ServerConnector extends AbstractNetworkConnector
         @Override
         protected void accepted(SelectableChannel channel) throws IOException
         {
-            ServerConnector.this.accepted((SocketChannel)channel);
+            ServerConnector.this.accepted((SocketChannel)channel, -1);
+        }
+
+        @Override
+        protected void accepted(SelectableChannel server, SelectableChannel channel, int selector) throws IOException
+        {
+            ServerConnector.this.accepted(server, (SocketChannel)channel, selector);
         }
 
         @Override
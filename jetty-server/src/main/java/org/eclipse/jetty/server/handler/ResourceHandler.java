@@ -23,10 +23,12 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.CachedContentFactory;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
@@ -34,6 +36,7 @@ import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
 import org.eclipse.jetty.server.handler.ContextHandler.Context;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.slf4j.Logger;
@@ -42,8 +45,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Resource Handler.
  *
- * This handle will serve static content and handle If-Modified-Since headers. No caching is done. Requests for resources that do not exist are let pass (Eg no
- * 404's).
+ * This handle will serve static content and handle If-Modified-Since headers. No caching is done, unless the
+ * {@link ResourceService} is configured with a {@link CachedContentFactory}. Requests for resources that do not
+ * exist are let pass (Eg no 404's).
  */
 public class ResourceHandler extends HandlerWrapper implements ResourceFactory, WelcomeFactory
 {
@@ -99,7 +103,8 @@ public class ResourceHandler extends HandlerWrapper implements ResourceFactory,
         if (_mimeTypes == null)
             _mimeTypes = _context == null ? new MimeTypes() : _context.getMimeTypes();
 
-        _resourceService.setContentFactory(new ResourceContentFactory(this, _mimeTypes, _resourceService.getPrecompressedFormats()));
+        if (!(_resourceService.getContentFactory() instanceof CachedContentFactory))
+            _resourceService.setContentFactory(new ResourceContentFactory(this, _mimeTypes, _resourceService.getPrecompressedFormats()));
         _resourceService.setWelcomeFactory(this);
 
         super.doStart();
@@ -115,6 +120,52 @@ public class ResourceHandler extends HandlerWrapper implements ResourceFactory,
         return _baseResource;
     }
 
+    private CachedContentFactory getCachedContentFactory()
+    {
+        HttpContent.ContentFactory contentFactory = _resourceService.getContentFactory();
+        return contentFactory instanceof CachedContentFactory ? (CachedContentFactory)contentFactory : null;
+    }
+
+    /**
+     * @return the number of requests for a content found in the cache, or 0 if contents are not cached
+     */
+    @ManagedAttribute("The number of requests for a content found in the cache")
+    public long getCacheHits()
+    {
+        CachedContentFactory cache = getCachedContentFactory();
+        return cache == null ? 0 : cache.getCacheHits();
+    }
+
+    /**
+     * @return the number of requests for a content not found in the cache, or 0 if contents are not cached
+     */
+    @ManagedAttribute("The number of requests for a content not found in the cache")
+    public long getCacheMisses()
+    {
+        CachedContentFactory cache = getCachedContentFactory();
+        return cache == null ? 0 : cache.getCacheMisses();
+    }
+
+    /**
+     * @return the number of contents evicted from the cache, or 0 if contents are not cached
+     */
+    @ManagedAttribute("The number of contents evicted from the cache")
+    public long getCacheEvictions()
+    {
+        CachedContentFactory cache = getCachedContentFactory();
+        return cache == null ? 0 : cache.getCacheEvictions();
+    }
+
+    /**
+     * @return the number of contents not cached by the cache admission filter, or 0 if contents are not cached
+     */
+    @ManagedAttribute("The number of contents not cached by the admission filter")
+    public long getCacheAdmissionRejections()
+    {
+        CachedContentFactory cache = getCachedContentFactory();
+        return cache == null ? 0 : cache.getCacheAdmissionRejections();
+    }
+
     /**
      * @return the cacheControl header to set on all static content.
      */
@@ -0,0 +1,565 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PrecompressedHttpContent;
+import org.eclipse.jetty.server.CompressedContentCache;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.jetty.http.CompressedContentFormat.GZIP;
+
+/**
+ * <p>A bounded cache of the gzip compressed variants of static content.</p>
+ * <p>The compressed variants are keyed by the URI of the resource, its last modified
+ * time and its length, so that a modified resource is compressed again, and so that
+ * contexts serving different resources at the same path do not share variants.
+ * The key does not depend on the ETag, that may not be generated.
+ * On the first request for a variant, the content is served compressed on the fly by the
+ * {@link GzipHttpOutputInterceptor}, while the variant is compressed by a task
+ * submitted to the executor. Subsequent requests are served the compressed variant as
+ * a {@link PrecompressedHttpContent}, so the ETag carries the gzip suffix as if the
+ * content had been compressed on the fly.</p>
+ * <p>The cache is made available to the {@link org.eclipse.jetty.server.ResourceService}
+ * by a {@link GzipHandler} with a {@link GzipHandler#setContentCacheSize(long) content cache size},
+ * for the requests it would compress, as the {@link CompressedContentCache#ATTRIBUTE} request attribute.</p>
+ */
+@ManagedObject("Cache of gzip compressed static content")
+public class GzipContentCache implements CompressedContentCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(GzipContentCache.class);
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final ConcurrentMap<Key, Entry> _cache = new ConcurrentHashMap<>();
+    private final AtomicLong _cachedSize = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _compressions = new LongAdder();
+    private final LongAdder _compressionNanos = new LongAdder();
+    private final LongAdder _savedNanos = new LongAdder();
+    private final GzipFactory _factory;
+    private final DeflaterPool _deflaterPool;
+    private final Executor _executor;
+    private final long _maxCacheSize;
+    private int _minGzipSize = GzipHandler.DEFAULT_MIN_GZIP_SIZE;
+    private int _maxCachedFileSize = 4 * 1024 * 1024;
+
+    /**
+     * @param factory the factory that tells which mime types are compressible
+     * @param deflaterPool the pool of the deflaters used to compress the content
+     * @param executor the executor of the compression tasks
+     * @param maxCacheSize the max size in bytes of the compressed variants in the cache
+     */
+    public GzipContentCache(GzipFactory factory, DeflaterPool deflaterPool, Executor executor, long maxCacheSize)
+    {
+        _factory = Objects.requireNonNull(factory);
+        _deflaterPool = Objects.requireNonNull(deflaterPool);
+        _executor = Objects.requireNonNull(executor);
+        _maxCacheSize = maxCacheSize;
+    }
+
+    @ManagedAttribute("The max size in bytes of the compressed variants in the cache")
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    @ManagedAttribute("The min size in bytes of the content to compress")
+    public int getMinGzipSize()
+    {
+        return _minGzipSize;
+    }
+
+    public void setMinGzipSize(int minGzipSize)
+    {
+        _minGzipSize = minGzipSize;
+    }
+
+    @ManagedAttribute("The max size in bytes of the content to compress in the cache")
+    public int getMaxCachedFileSize()
+    {
+        return _maxCachedFileSize;
+    }
+
+    public void setMaxCachedFileSize(int maxCachedFileSize)
+    {
+        _maxCachedFileSize = maxCachedFileSize;
+    }
+
+    @ManagedAttribute("The size in bytes of the compressed variants in the cache")
+    public long getCachedSize()
+    {
+        return _cachedSize.get();
+    }
+
+    @ManagedAttribute("The number of compressed variants in the cache")
+    public int getCachedEntries()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The number of requests served a cached compressed variant")
+    public long getCacheHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of requests for a compressed variant not yet in the cache")
+    public long getCacheMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The number of compressed variants built")
+    public long getCompressions()
+    {
+        return _compressions.longValue();
+    }
+
+    @ManagedAttribute("The time in ms spent compressing the variants")
+    public long getCompressionTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_compressionNanos.longValue());
+    }
+
+    @ManagedAttribute("The compression time in ms saved by serving cached variants")
+    public long getCompressionTimeSaved()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_savedNanos.longValue());
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _compressions.reset();
+        _compressionNanos.reset();
+        _savedNanos.reset();
+    }
+
+    @ManagedOperation(value = "Removes all the compressed variants from the cache", impact = "ACTION")
+    public void flushCache()
+    {
+        for (Key key : _cache.keySet())
+        {
+            remove(key);
+        }
+    }
+
+    /**
+     * <p>Gets the cached gzip compressed variant of the given content.</p>
+     * <p>If the variant is not cached yet, its compression is started
+     * in the background and {@code null} is returned, so that this request
+     * is compressed on the fly.</p>
+     *
+     * @param request the request that accepts gzip content
+     * @param pathInContext the path of the content
+     * @param content the content to compress
+     * @return the compressed variant of the content, or null if it is not cached
+     */
+    @Override
+    public HttpContent getCompressedContent(Request request, String pathInContext, HttpContent content)
+    {
+        if (!isCacheable(request, content))
+            return null;
+
+        Resource resource = content.getResource();
+        Key key = new Key(resource, resource.lastModified(), resource.length());
+        Entry entry = _cache.get(key);
+        if (entry != null && entry._buffer != null)
+        {
+            _hits.increment();
+            _savedNanos.add(entry._compressionNanos);
+            entry._lastAccessed = System.nanoTime();
+            return new PrecompressedHttpContent(content, new GzipHttpContent(content, entry._buffer), GZIP);
+        }
+
+        _misses.increment();
+        if (entry == null)
+        {
+            Entry newEntry = new Entry();
+            if (_cache.putIfAbsent(key, newEntry) == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Compressing {} for {}", resource, pathInContext);
+                try
+                {
+                    _executor.execute(() -> compress(key, newEntry, resource));
+                }
+                catch (Throwable x)
+                {
+                    LOG.debug("Could not compress {}", resource, x);
+                    _cache.remove(key, newEntry);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public CompressedContentFormat getCompressedContentFormat()
+    {
+        return GZIP;
+    }
+
+    protected boolean isCacheable(Request request, HttpContent content)
+    {
+        long length = content.getContentLengthValue();
+        if (length < _minGzipSize || length > _maxCachedFileSize || length > _maxCacheSize)
+            return false;
+
+        if (!request.getHttpFields().contains(HttpHeader.ACCEPT_ENCODING, "gzip"))
+            return false;
+
+        String contentType = content.getContentTypeValue();
+        if (contentType != null)
+        {
+            String mimeType = MimeTypes.getContentTypeWithoutCharset(contentType);
+            return _factory.isMimeTypeGzipable(StringUtil.asciiToLowerCase(mimeType));
+        }
+        return true;
+    }
+
+    private void compress(Key key, Entry entry, Resource resource)
+    {
+        try
+        {
+            long start = System.nanoTime();
+            ByteBuffer buffer = compress(resource);
+            long elapsed = System.nanoTime() - start;
+
+            if (resource.lastModified() != key._lastModified || resource.length() != key._length)
+            {
+                // Modified while compressing, a later request will compress it again.
+                _cache.remove(key, entry);
+                return;
+            }
+
+            _compressions.increment();
+            _compressionNanos.add(elapsed);
+            entry._compressionNanos = elapsed;
+            entry._lastAccessed = System.nanoTime();
+            boolean shrink = false;
+            synchronized (entry)
+            {
+                entry._buffer = buffer;
+                if (_cache.get(key) == entry)
+                {
+                    entry._size = buffer.remaining();
+                    shrink = _cachedSize.addAndGet(entry._size) > _maxCacheSize;
+                }
+            }
+            if (shrink)
+                shrinkCache();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Compressed {} to {} bytes in {} ns", resource, buffer.remaining(), elapsed);
+        }
+        catch (Throwable x)
+        {
+            LOG.debug("Could not compress {}", resource, x);
+            _cache.remove(key, entry);
+        }
+    }
+
+    private ByteBuffer compress(Resource resource) throws IOException
+    {
+        try (InputStream input = resource.getInputStream();
+             DeflaterPool.Entry deflaterEntry = _deflaterPool.acquire())
+        {
+            Deflater deflater = deflaterEntry.get();
+            CRC32 crc = new CRC32();
+            ByteArrayOutputStream2 output = new ByteArrayOutputStream2((int)Math.max(64, resource.length() / 2));
+            output.write(GZIP_HEADER);
+
+            byte[] in = new byte[8192];
+            byte[] out = new byte[8192];
+            while (true)
+            {
+                int read = input.read(in);
+                if (read < 0)
+                    break;
+                crc.update(in, 0, read);
+                deflater.setInput(in, 0, read);
+                while (!deflater.needsInput())
+                {
+                    output.write(out, 0, deflater.deflate(out));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished())
+            {
+                output.write(out, 0, deflater.deflate(out));
+            }
+
+            writeIntLittleEndian(output, (int)crc.getValue());
+            writeIntLittleEndian(output, deflater.getTotalIn());
+
+            // Copy the bytes, as the array of the stream may be up to twice as large,
+            // and the cache only accounts for the size of the compressed content.
+            return ByteBuffer.wrap(output.toByteArray()).asReadOnlyBuffer();
+        }
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream2 output, int value)
+    {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+
+    private void shrinkCache()
+    {
+        // Invalidate least recently used first.
+        List<Map.Entry<Key, Entry>> entries = new ArrayList<>(_cache.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue()._lastAccessed));
+        for (Map.Entry<Key, Entry> e : entries)
+        {
+            if (_cachedSize.get() <= _maxCacheSize)
+                break;
+            if (e.getValue()._buffer != null)
+                remove(e.getKey());
+        }
+    }
+
+    private void remove(Key key)
+    {
+        Entry entry = _cache.remove(key);
+        if (entry != null)
+        {
+            synchronized (entry)
+            {
+                _cachedSize.addAndGet(-entry._size);
+                entry._size = 0;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{entries=%d,size=%d/%d}", getClass().getSimpleName(), hashCode(), getCachedEntries(), getCachedSize(), getMaxCacheSize());
+    }
+
+    private static class Key
+    {
+        // The URI identifies the resource across contexts,
+        // or the resource itself if it has no URI.
+        private final Object _resource;
+        private final long _lastModified;
+        private final long _length;
+
+        private Key(Resource resource, long lastModified, long length)
+        {
+            URI uri = resource.getURI();
+            _resource = uri == null ? resource : uri;
+            _lastModified = lastModified;
+            _length = length;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key that = (Key)obj;
+            return _lastModified == that._lastModified && _length == that._length && _resource.equals(that._resource);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * (31 * _resource.hashCode() + Long.hashCode(_lastModified)) + Long.hashCode(_length);
+        }
+    }
+
+    private static class Entry
+    {
+        // Null while the compression is in progress.
+        private volatile ByteBuffer _buffer;
+        private volatile long _compressionNanos;
+        private volatile long _lastAccessed;
+        // The size accounted in the cached size, guarded by this entry.
+        private int _size;
+    }
+
+    /**
+     * <p>The compressed bytes of a content, to be wrapped by a {@link PrecompressedHttpContent}
+     * that provides the metadata of the uncompressed content.</p>
+     */
+    private static class GzipHttpContent implements HttpContent
+    {
+        private final HttpContent _content;
+        private final ByteBuffer _buffer;
+
+        private GzipHttpContent(HttpContent content, ByteBuffer buffer)
+        {
+            _content = content;
+            _buffer = buffer;
+        }
+
+        @Override
+        public HttpField getContentType()
+        {
+            return _content.getContentType();
+        }
+
+        @Override
+        public String getContentTypeValue()
+        {
+            return _content.getContentTypeValue();
+        }
+
+        @Override
+        public String getCharacterEncoding()
+        {
+            return _content.getCharacterEncoding();
+        }
+
+        @Override
+        public MimeTypes.Type getMimeType()
+        {
+            return _content.getMimeType();
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return GZIP.getContentEncoding();
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return GZIP.getEncoding();
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return new HttpField.LongValueHttpField(HttpHeader.CONTENT_LENGTH, getContentLengthValue());
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public HttpField getLastModified()
+        {
+            return _content.getLastModified();
+        }
+
+        @Override
+        public String getLastModifiedValue()
+        {
+            return _content.getLastModifiedValue();
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            return _content.getETag();
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            return _content.getETagValue();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return _buffer.slice();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            return null;
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            return _content.getResource();
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            ByteBuffer buffer = _buffer.slice();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel()
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public void release()
+        {
+        }
+
+        @Override
+        public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            return null;
+        }
+    }
+}
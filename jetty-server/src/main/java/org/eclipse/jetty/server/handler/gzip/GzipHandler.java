@@ -35,6 +35,7 @@ import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
+import org.eclipse.jetty.server.CompressedContentCache;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
@@ -170,6 +171,8 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     private final IncludeExclude<String> _paths = new IncludeExclude<>(PathSpecSet.class);
     private final IncludeExclude<String> _mimeTypes = new IncludeExclude<>(AsciiLowerCaseSet.class);
     private HttpField _vary = GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING;
+    private long _contentCacheSize;
+    private GzipContentCache _contentCache;
 
     /**
      * Instantiates a new GzipHandler.
@@ -216,6 +219,12 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             _deflaterPool = DeflaterPool.ensurePool(server);
             addBean(_deflaterPool);
         }
+        if (_contentCacheSize > 0)
+        {
+            _contentCache = new GzipContentCache(this, _deflaterPool, server.getThreadPool(), _contentCacheSize);
+            _contentCache.setMinGzipSize(_minGzipSize);
+            addBean(_contentCache);
+        }
 
         super.doStart();
     }
@@ -230,6 +239,41 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
 
         removeBean(_deflaterPool);
         _deflaterPool = null;
+
+        removeBean(_contentCache);
+        _contentCache = null;
+    }
+
+    /**
+     * @return the max size in bytes of the cache of compressed static content, or 0 if there is no cache
+     * @see #setContentCacheSize(long)
+     */
+    public long getContentCacheSize()
+    {
+        return _contentCacheSize;
+    }
+
+    /**
+     * <p>Sets the max size in bytes of the cache of the compressed variants of static content.</p>
+     * <p>When positive, a {@link GzipContentCache} is made available to the
+     * {@link org.eclipse.jetty.server.ResourceService} for the requests that this handler
+     * would compress, so that static content is compressed once rather than on each request.</p>
+     *
+     * @param contentCacheSize the max size in bytes of the cache, or 0 for no cache
+     */
+    public void setContentCacheSize(long contentCacheSize)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _contentCacheSize = contentCacheSize;
+    }
+
+    /**
+     * @return the cache of compressed static content, or null if there is no cache
+     */
+    public GzipContentCache getContentCache()
+    {
+        return _contentCache;
     }
 
     /**
@@ -709,6 +753,8 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         {
             // install interceptor and handle
             out.setInterceptor(new GzipHttpOutputInterceptor(this, getVaryField(), baseRequest.getHttpChannel(), origInterceptor, isSyncFlush()));
+            if (_contentCache != null)
+                baseRequest.setAttribute(CompressedContentCache.ATTRIBUTE, _contentCache);
 
             if (_handler != null)
                 _handler.handle(target, baseRequest, request, response);
@@ -717,7 +763,11 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         {
             // reset interceptor if request not handled
             if (!baseRequest.isHandled() && !baseRequest.isAsyncStarted())
+            {
                 out.setInterceptor(origInterceptor);
+                if (_contentCache != null)
+                    baseRequest.removeAttribute(CompressedContentCache.ATTRIBUTE);
+            }
         }
     }
 
@@ -0,0 +1,125 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ByteBufferRequestLogWriterTest
+{
+    private Path newLogFile(String name)
+    {
+        Path dir = MavenTestingUtils.getTargetTestingPath(ByteBufferRequestLogWriterTest.class.getSimpleName() + "-" + name);
+        FS.ensureEmpty(dir);
+        return dir.resolve("request.log");
+    }
+
+    @Test
+    public void testWriteEntries() throws Exception
+    {
+        Path file = newLogFile("entries");
+        ByteBufferRequestLogWriter writer = new ByteBufferRequestLogWriter(file.toString());
+        writer.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            String entry = "GET /path/" + i + " été € 😀 200";
+            expected.add(entry);
+            writer.write(new StringBuilder(entry));
+        }
+        writer.stop();
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8), is(expected));
+        assertThat(writer.getWrittenCount(), is(100L));
+        assertThat(writer.getDroppedCount(), is(0L));
+    }
+
+    @Test
+    public void testBuffersFromGivenPool() throws Exception
+    {
+        Path file = newLogFile("pool");
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool();
+        ByteBufferRequestLogWriter writer = new ByteBufferRequestLogWriter(file.toString(), bufferPool);
+        writer.start();
+        assertThat(writer.getByteBufferPool(), sameInstance(bufferPool));
+
+        for (int i = 0; i < 10; i++)
+        {
+            writer.write("GET /path/" + i + " 200");
+        }
+        writer.stop();
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8).size(), is(10));
+        // The buffers were released to the given pool.
+        assertThat(bufferPool.getDirectByteBufferCount(), greaterThan(0L));
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception
+    {
+        Path file = newLogFile("blocking");
+        ByteBufferRequestLogWriter writer = new ByteBufferRequestLogWriter(file.toString());
+        writer.setCapacity(2);
+        writer.setMaxBatchSize(1);
+        writer.setBlockWhenFull(true);
+        writer.start();
+
+        int threads = 4;
+        int entries = 500;
+        List<Thread> loggers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            int id = t;
+            Thread logger = new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < entries; i++)
+                    {
+                        writer.write("thread=" + id + " entry=" + i);
+                    }
+                }
+                catch (Exception x)
+                {
+                    throw new RuntimeException(x);
+                }
+            });
+            logger.start();
+            loggers.add(logger);
+        }
+        for (Thread logger : loggers)
+        {
+            logger.join();
+        }
+        writer.stop();
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8).size(), is(threads * entries));
+        assertThat(writer.getWrittenCount(), is((long)threads * entries));
+        assertThat(writer.getDroppedCount(), is(0L));
+    }
+}
@@ -18,12 +18,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.MultipartConfigElement;
@@ -31,6 +35,7 @@ import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.Part;
 
+import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.server.MultiPartFormInputStream.MultiPart;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.util.IO;
@@ -39,6 +44,7 @@ import org.junit.jupiter.api.Test;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
@@ -1097,6 +1103,136 @@ public class MultiPartFormInputStreamTest
         assertThat(part2, notNullValue());
     }
 
+    @Test
+    public void testAsyncParse() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_dirname, 1024, 3072, 50);
+        MultiPartFormInputStream mpis = new MultiPartFormInputStream(new AsyncInputStream(_multi.getBytes()),
+            _contentType,
+            config,
+            _tmpDir);
+        List<String> completed = new CopyOnWriteArrayList<>();
+        Collection<Part> parts = mpis.parseAsync(part -> completed.add(part.getName())).get(5, TimeUnit.SECONDS);
+
+        assertThat(parts.size(), is(2));
+        assertThat(completed, is(List.of("field1", "stuff")));
+
+        // Uploaded files are written to disk even when below the file size threshold.
+        MultiPart field1 = (MultiPart)mpis.getPart("field1");
+        assertThat(field1.getFile(), notNullValue());
+        assertThat(field1.getBytes(), nullValue());
+        assertThat(IO.toString(field1.getInputStream()), is("Joe Blow"));
+
+        MultiPart stuff = (MultiPart)mpis.getPart("stuff");
+        assertThat(stuff.getSize(), is(51L));
+        assertThat(IO.toString(stuff.getInputStream()), startsWith("stuff.txt000"));
+
+        mpis.deleteParts();
+        assertThat(field1.getFile().exists(), is(false));
+        assertThat(stuff.getFile().exists(), is(false));
+    }
+
+    @Test
+    public void testAsyncFileTooBig()
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_dirname, 40, 1024, 30);
+        MultiPartFormInputStream mpis = new MultiPartFormInputStream(new AsyncInputStream(_multi.getBytes()),
+            _contentType,
+            config,
+            _tmpDir);
+        ExecutionException x = assertThrows(ExecutionException.class, () -> mpis.parseAsync(null).get(5, TimeUnit.SECONDS));
+        assertThat(x.getCause(), instanceOf(IllegalStateException.class));
+        assertThat(x.getCause().getMessage(), startsWith("Multipart Mime part"));
+        mpis.deleteParts();
+    }
+
+    @Test
+    public void testAsyncDeletePartsWhileWritingReleasesBuffer()
+    {
+        AtomicInteger acquired = new AtomicInteger();
+        MultipartConfigElement config = new MultipartConfigElement(_dirname);
+        MultiPartFormInputStream mpis = new MultiPartFormInputStream(new AsyncInputStream(_multi.getBytes()),
+            _contentType,
+            config,
+            _tmpDir);
+        mpis.setByteBufferPool(new MappedByteBufferPool()
+        {
+            @Override
+            public ByteBuffer acquire(int size, boolean direct)
+            {
+                acquired.incrementAndGet();
+                // The request completes while the part is being written.
+                mpis.deleteParts();
+                return super.acquire(size, direct);
+            }
+
+            @Override
+            public void release(ByteBuffer buffer)
+            {
+                acquired.decrementAndGet();
+                super.release(buffer);
+            }
+        });
+        ExecutionException x = assertThrows(ExecutionException.class, () -> mpis.parseAsync(null).get(5, TimeUnit.SECONDS));
+        assertThat(x.getCause(), instanceOf(IOException.class));
+        assertThat(acquired.get(), is(0));
+    }
+
+    /**
+     * A ServletInputStream that notifies its ReadListener from another thread,
+     * returning a few bytes at a time.
+     */
+    private static class AsyncInputStream extends ServletInputStream
+    {
+        private final ByteArrayInputStream _in;
+
+        private AsyncInputStream(byte[] content)
+        {
+            _in = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return _in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady()
+        {
+            return !isFinished();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    readListener.onDataAvailable();
+                    readListener.onAllDataRead();
+                }
+                catch (Throwable x)
+                {
+                    readListener.onError(x);
+                }
+            }).start();
+        }
+
+        @Override
+        public int read()
+        {
+            return _in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            return _in.read(b, off, Math.min(len, 7));
+        }
+    }
+
     private static String createMultipartRequestString(String filename)
     {
         int length = filename.length();
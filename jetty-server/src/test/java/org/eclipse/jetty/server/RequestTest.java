@@ -34,6 +34,7 @@ import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -1073,6 +1074,36 @@ public class RequestTest
         assertThat(response, containsString(" 200 OK"));
     }
 
+    @Test
+    public void testQueryAndFormParameterLookup() throws Exception
+    {
+        _handler._checker = (request, response) ->
+        {
+            // Single parameters are looked up before all the parameters are decoded.
+            boolean lookup = "q1".equals(request.getParameter("name")) &&
+                "f%2".equals(request.getParameter("form")) &&
+                Arrays.asList("q1", "q2", "f1").equals(Arrays.asList(request.getParameterValues("name"))) &&
+                request.getParameter("missing") == null &&
+                request.getParameterValues("missing") == null;
+            Map<String, String[]> map = request.getParameterMap();
+            return lookup &&
+                map.size() == 3 &&
+                Arrays.asList("q1", "q2", "f1").equals(Arrays.asList(map.get("name"))) &&
+                "".equals(request.getParameter("empty"));
+        };
+
+        String content = "name=f1&form=f%252&empty=";
+        String request = "POST /?name=q1&name=q2 HTTP/1.1\r\n" +
+            "Host: whatever\r\n" +
+            "Content-Type: " + MimeTypes.Type.FORM_ENCODED.asString() + "\r\n" +
+            "Content-Length: " + content.length() + "\r\n" +
+            "Connection: close\r\n" +
+            "\r\n" +
+            content;
+        String response = _connector.getResponse(request);
+        assertThat(response, containsString(" 200 OK"));
+    }
+
     @Test
     public void testUTF8EncodedForm() throws Exception
     {
@@ -38,9 +38,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -342,6 +344,78 @@ public class ResourceCacheTest
         cache.flushCache();
     }
 
+    @Test
+    public void testAdmissionFilter() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        String[] names = {"hot1.txt", "hot2.txt", "cold.txt"};
+        for (String name : names)
+        {
+            makeFile(basePath.resolve(name), "content of " + name);
+        }
+
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(2);
+        cache.setUseAdmissionFilter(true);
+
+        for (int i = 0; i < 5; i++)
+        {
+            assertThat(cache.getContent(names[0], 4096), instanceOf(CachedContentFactory.CachedHttpContent.class));
+            assertThat(cache.getContent(names[1], 4096), instanceOf(CachedContentFactory.CachedHttpContent.class));
+        }
+        assertEquals(2, cache.getCachedFiles());
+        assertEquals(8, cache.getCacheHits());
+        assertEquals(2, cache.getCacheMisses());
+
+        // The cold content is not admitted in the full cache.
+        assertThat(cache.getContent(names[2], 4096), instanceOf(ResourceHttpContent.class));
+        assertEquals(1, cache.getCacheAdmissionRejections());
+        assertEquals(0, cache.getCacheEvictions());
+
+        // Until it is requested more frequently than the least recently used content.
+        HttpContent content = null;
+        for (int i = 0; i < 10 && !(content instanceof CachedContentFactory.CachedHttpContent); i++)
+        {
+            content = cache.getContent(names[2], 4096);
+        }
+        assertThat(content, instanceOf(CachedContentFactory.CachedHttpContent.class));
+        assertEquals(1, cache.getCacheEvictions());
+        assertEquals(2, cache.getCachedFiles());
+
+        // The least recently used content was evicted.
+        assertThat(cache.getContent(names[1], 4096), instanceOf(CachedContentFactory.CachedHttpContent.class));
+        assertThat(cache.getContent(names[0], 4096), instanceOf(ResourceHttpContent.class));
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testHitsOrderEviction() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        String[] names = {"a.txt", "b.txt", "c.txt"};
+        for (String name : names)
+        {
+            makeFile(basePath.resolve(name), "content of " + name);
+        }
+
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(2);
+
+        HttpContent a = cache.getContent(names[0], 4096);
+        HttpContent b = cache.getContent(names[1], 4096);
+        // The hit is recorded without locking, and replayed when the cache is shrunk.
+        assertThat(cache.getContent(names[0], 4096), sameInstance(a));
+
+        cache.getContent(names[2], 4096);
+        assertEquals(1, cache.getCacheEvictions());
+        assertThat(cache.getContent(names[0], 4096), sameInstance(a));
+        assertThat(cache.getContent(names[1], 4096), not(sameInstance(b)));
+
+        cache.flushCache();
+    }
+
     @Test
     public void testNoextension() throws Exception
     {
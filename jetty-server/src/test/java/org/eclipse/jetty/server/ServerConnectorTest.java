@@ -47,6 +47,8 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
 import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
@@ -269,6 +271,73 @@ public class ServerConnectorTest
         }
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {0, 4})
+    @DisabledOnOs(value = OS.WINDOWS, disabledReason = "SO_REUSEPORT not available on windows")
+    public void testAcceptChannels(int acceptors) throws Exception
+    {
+        Server server = new Server();
+        try
+        {
+            ServerConnector connector = new ServerConnector(server, acceptors, 4);
+            connector.setAcceptChannelCount(4);
+            server.addConnector(connector);
+            server.setHandler(new AbstractHandler()
+            {
+                @Override
+                public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+                {
+                    jettyRequest.setHandled(true);
+                }
+            });
+            server.start();
+
+            int connections = 32;
+            for (int i = 0; i < connections; i++)
+            {
+                try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+                {
+                    HttpTester.Request request = HttpTester.newRequest();
+                    request.put(HttpHeader.HOST, "localhost");
+                    client.write(request.generate());
+                    HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client));
+                    assertNotNull(response);
+                    assertEquals(HttpStatus.OK_200, response.getStatus());
+                }
+            }
+
+            long[] counts = connector.getAcceptChannelAcceptedCounts();
+            assertEquals(4, counts.length);
+            long total = 0;
+            for (long count : counts)
+            {
+                total += count;
+            }
+            assertEquals(connections, total);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testAcceptChannelsRequireEnoughAcceptors() throws Exception
+    {
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setAcceptChannelCount(2);
+        server.addConnector(connector);
+        try
+        {
+            assertThrows(IllegalStateException.class, server::start);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
     @Test
     public void testAddFirstConnectionFactory()
     {
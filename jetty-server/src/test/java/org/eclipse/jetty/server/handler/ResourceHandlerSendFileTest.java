@@ -0,0 +1,190 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.FileReadExecutor;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class ResourceHandlerSendFileTest
+{
+    private static final int FILE_SIZE = 1024 * 1024 + 17;
+
+    private Server server;
+    private ServerConnector connector;
+    private byte[] fileBytes;
+    private final AtomicLong contentNotified = new AtomicLong();
+    private final Set<String> contentThreads = ConcurrentHashMap.newKeySet();
+    private int fileReadAhead;
+
+    private void start(boolean useSendFile, boolean gzip) throws Exception
+    {
+        Path dir = MavenTestingUtils.getTargetTestingPath(ResourceHandlerSendFileTest.class.getSimpleName());
+        FS.ensureEmpty(dir);
+        fileBytes = new byte[FILE_SIZE];
+        for (int i = 0; i < fileBytes.length; i++)
+        {
+            fileBytes[i] = (byte)('A' + i % 26);
+        }
+        Files.write(dir.resolve("big.txt"), fileBytes);
+
+        server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setUseSendFile(useSendFile);
+        httpConfig.setFileReadAhead(fileReadAhead);
+        connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        connector.addBean(new HttpChannel.Listener()
+        {
+            @Override
+            public void onResponseContent(Request request, ByteBuffer content)
+            {
+                contentNotified.addAndGet(content.remaining());
+                contentThreads.add(Thread.currentThread().getName());
+            }
+        });
+        server.addConnector(connector);
+
+        ResourceHandler resourceHandler = new ResourceHandler();
+        resourceHandler.setBaseResource(new PathResource(dir));
+        if (gzip)
+        {
+            GzipHandler gzipHandler = new GzipHandler();
+            gzipHandler.setHandler(resourceHandler);
+            server.setHandler(gzipHandler);
+        }
+        else
+        {
+            server.setHandler(resourceHandler);
+        }
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        server.stop();
+    }
+
+    private HttpTester.Response request(String extraHeaders) throws Exception
+    {
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            String request = "GET /big.txt HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                extraHeaders +
+                "Connection: close\r\n" +
+                "\r\n";
+            output.write(request.getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+            return HttpTester.parseResponse(HttpTester.from(socket.getInputStream()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testFullContent(boolean useSendFile) throws Exception
+    {
+        start(useSendFile, false);
+
+        HttpTester.Response response = request("");
+
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.getLongField("Content-Length"), is((long)FILE_SIZE));
+        assertArrayEquals(fileBytes, response.getContentBytes());
+        // Transferred file bytes bypass the HttpChannel content events.
+        assertThat(contentNotified.get(), is(useSendFile ? 0L : FILE_SIZE));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testSingleRange(boolean useSendFile) throws Exception
+    {
+        start(useSendFile, false);
+
+        HttpTester.Response response = request("Range: bytes=1000-200999\r\n");
+
+        assertThat(response.getStatus(), is(HttpStatus.PARTIAL_CONTENT_206));
+        assertThat(response.get("Content-Range"), is("bytes 1000-200999/" + FILE_SIZE));
+        assertArrayEquals(Arrays.copyOfRange(fileBytes, 1000, 201000), response.getContentBytes());
+        assertThat(contentNotified.get(), is(useSendFile ? 0L : 200000L));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    public void testAsynchronousFileRead(int readAhead) throws Exception
+    {
+        fileReadAhead = readAhead;
+        start(false, false);
+
+        HttpTester.Response response = request("");
+
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.getLongField("Content-Length"), is((long)FILE_SIZE));
+        assertArrayEquals(fileBytes, response.getContentBytes());
+        assertThat(contentNotified.get(), is((long)FILE_SIZE));
+        // The reads run on the file read threads, and the content
+        // is written from the read completions on the server threads.
+        FileReadExecutor fileReadExecutor = server.getBean(FileReadExecutor.class);
+        assertThat(fileReadExecutor.getCompletedTaskCount(), greaterThan(0L));
+        String threadPoolName = ((QueuedThreadPool)server.getThreadPool()).getName();
+        assertThat(contentThreads, everyItem(startsWith(threadPoolName)));
+    }
+
+    @Test
+    public void testInterceptorDisablesSendFile() throws Exception
+    {
+        start(true, true);
+
+        HttpTester.Response response = request("Accept-Encoding: gzip\r\n");
+
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        // The content went through the gzip interceptor rather than a file transfer.
+        assertThat(contentNotified.get() > 0, is(true));
+    }
+}
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import javax.servlet.ServletException;
@@ -30,6 +31,8 @@ import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.gzip.GzipContentCache;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
@@ -46,6 +49,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
@@ -446,6 +450,165 @@ public class GzipDefaultServletTest extends AbstractGzipTest
         assertThat("(Uncompressed) Content Length", metadata.uncompressedSize, is(0));
     }
 
+    @Test
+    public void testContentCache() throws Exception
+    {
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setContentCacheSize(1024 * 1024);
+
+        server = new Server();
+        LocalConnector localConnector = new LocalConnector(server);
+        server.addConnector(localConnector);
+
+        Path contextDir = workDir.resolve("context");
+        FS.ensureDirExists(contextDir);
+
+        ServletContextHandler servletContextHandler = new ServletContextHandler();
+        servletContextHandler.setContextPath("/context");
+        servletContextHandler.setBaseResource(new PathResource(contextDir));
+        ServletHolder holder = new ServletHolder("default", DefaultServlet.class);
+        holder.setInitParameter("etags", "true");
+        servletContextHandler.addServlet(holder, "/");
+        servletContextHandler.insertHandler(gzipHandler);
+
+        server.setHandler(servletContextHandler);
+
+        // Prepare Server File
+        int fileSize = DEFAULT_OUTPUT_BUFFER_SIZE * 4;
+        Path file = createFile(contextDir, "file.txt", fileSize);
+        String expectedSha1Sum = Sha1Sum.calculate(file);
+
+        server.start();
+
+        // Setup request
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setVersion(HttpVersion.HTTP_1_1);
+        request.setHeader("Host", "tester");
+        request.setHeader("Connection", "close");
+        request.setHeader("Accept-Encoding", "gzip");
+        request.setURI("/context/file.txt");
+
+        // The first request is compressed on the fly, while the cached variant is built.
+        HttpTester.Response response = HttpTester.parseResponse(localConnector.getResponse(request.generate(), 5, TimeUnit.SECONDS));
+        assertThat("Response status", response.getStatus(), is(HttpStatus.OK_200));
+        assertThat("Response[Content-Encoding]", response.get("Content-Encoding"), containsString("gzip"));
+        assertThat("Response[Content-Length]", response.get("Content-Length"), is(nullValue()));
+        String etag = response.get("ETag");
+        assertThat("Response[ETag]", etag, containsString(CompressedContentFormat.GZIP.getEtagSuffix()));
+
+        GzipContentCache cache = gzipHandler.getContentCache();
+        await().atMost(5, TimeUnit.SECONDS).until(cache::getCompressions, is(1L));
+
+        // The following requests are served the cached variant.
+        response = HttpTester.parseResponse(localConnector.getResponse(request.generate(), 5, TimeUnit.SECONDS));
+        assertThat("Response status", response.getStatus(), is(HttpStatus.OK_200));
+        assertThat("Response[Content-Encoding]", response.get("Content-Encoding"), containsString("gzip"));
+        assertThat("Response[Vary]", response.get("Vary"), containsString("Accept-Encoding"));
+        assertThat("Response[ETag]", response.get("ETag"), is(etag));
+        UncompressedMetadata metadata = parseResponseContent(response);
+        assertThat("Response[Content-Length]", response.get("Content-Length"), is(Integer.toString(metadata.contentLength)));
+        assertThat("(Uncompressed) Content Length", metadata.uncompressedSize, is(fileSize));
+        assertThat("(Uncompressed) Content Hash", metadata.uncompressedSha1Sum, is(expectedSha1Sum));
+        assertThat(cache.getCacheHits(), is(1L));
+        assertThat(cache.getCachedEntries(), is(1));
+        assertThat(cache.getCachedSize(), is((long)metadata.contentLength));
+
+        request.setHeader("If-None-Match", etag);
+        response = HttpTester.parseResponse(localConnector.getResponse(request.generate(), 5, TimeUnit.SECONDS));
+        assertThat("Response status", response.getStatus(), is(HttpStatus.NOT_MODIFIED_304));
+        assertThat("Response[ETag]", response.get("ETag"), is(etag));
+
+        // Clients not accepting gzip are not served the cached variant.
+        request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setVersion(HttpVersion.HTTP_1_1);
+        request.setHeader("Host", "tester");
+        request.setHeader("Connection", "close");
+        request.setURI("/context/file.txt");
+        response = HttpTester.parseResponse(localConnector.getResponse(request.generate(), 5, TimeUnit.SECONDS));
+        assertThat("Response status", response.getStatus(), is(HttpStatus.OK_200));
+        assertThat("Response[Content-Encoding]", response.get("Content-Encoding"), is(nullValue()));
+        assertThat("Response[Content-Length]", response.get("Content-Length"), is(Integer.toString(fileSize)));
+    }
+
+    @Test
+    public void testContentCacheAcrossContexts() throws Exception
+    {
+        // A server wide GzipHandler, as configured by the gzip module.
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setContentCacheSize(1024 * 1024);
+
+        server = new Server();
+        LocalConnector localConnector = new LocalConnector(server);
+        server.addConnector(localConnector);
+
+        // Files with the same path, length and last modified time in two contexts,
+        // served from the DefaultServlet content cache without ETags,
+        // so only the resource tells them apart.
+        int lines = 1024;
+        FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        ContextHandlerCollection contexts = new ContextHandlerCollection();
+        String[] sha1Sums = new String[2];
+        for (int i = 0; i < 2; ++i)
+        {
+            Path contextDir = workDir.resolve("context" + i);
+            FS.ensureDirExists(contextDir);
+            Path file = contextDir.resolve("file.txt");
+            Files.writeString(file, ("context" + i + " line\n").repeat(lines));
+            Files.setLastModifiedTime(file, lastModified);
+            sha1Sums[i] = Sha1Sum.calculate(file);
+
+            ServletContextHandler servletContextHandler = new ServletContextHandler();
+            servletContextHandler.setContextPath("/context" + i);
+            servletContextHandler.setBaseResource(new PathResource(contextDir));
+            ServletHolder holder = new ServletHolder("default", DefaultServlet.class);
+            holder.setInitParameter("etags", "false");
+            holder.setInitParameter("maxCacheSize", Integer.toString(1024 * 1024));
+            servletContextHandler.addServlet(holder, "/");
+            contexts.addHandler(servletContextHandler);
+        }
+        gzipHandler.setHandler(contexts);
+        server.setHandler(gzipHandler);
+        server.start();
+
+        GzipContentCache cache = gzipHandler.getContentCache();
+        for (int i = 0; i < 2; ++i)
+        {
+            // The first request compresses on the fly and builds the cached variant.
+            HttpTester.Response response = HttpTester.parseResponse(localConnector.getResponse(newGzipRequest("/context" + i + "/file.txt"), 5, TimeUnit.SECONDS));
+            assertThat("Response status", response.getStatus(), is(HttpStatus.OK_200));
+            assertThat("Response[ETag]", response.get("ETag"), is(nullValue()));
+            long compressions = i + 1;
+            await().atMost(5, TimeUnit.SECONDS).until(cache::getCompressions, is(compressions));
+        }
+        assertThat(cache.getCachedEntries(), is(2));
+
+        for (int i = 0; i < 2; ++i)
+        {
+            // Each context is served the cached variant of its own file.
+            HttpTester.Response response = HttpTester.parseResponse(localConnector.getResponse(newGzipRequest("/context" + i + "/file.txt"), 5, TimeUnit.SECONDS));
+            assertThat("Response status", response.getStatus(), is(HttpStatus.OK_200));
+            assertThat("Response[Content-Encoding]", response.get("Content-Encoding"), containsString("gzip"));
+            UncompressedMetadata metadata = parseResponseContent(response);
+            assertThat("Response[Content-Length]", response.get("Content-Length"), is(Integer.toString(metadata.contentLength)));
+            assertThat("(Uncompressed) Content Hash", metadata.uncompressedSha1Sum, is(sha1Sums[i]));
+        }
+        assertThat(cache.getCacheHits(), is(2L));
+    }
+
+    private static ByteBuffer newGzipRequest(String uri)
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setVersion(HttpVersion.HTTP_1_1);
+        request.setHeader("Host", "tester");
+        request.setHeader("Connection", "close");
+        request.setHeader("Accept-Encoding", "gzip");
+        request.setURI(uri);
+        return request.generate();
+    }
+
     /**
      * Gzip incorrectly gzips when {@code Accept-Encoding: gzip; q=0}.
      *
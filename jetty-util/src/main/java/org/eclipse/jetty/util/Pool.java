@@ -15,14 +15,20 @@ package org.eclipse.jetty.util;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -40,6 +46,11 @@ import org.slf4j.LoggerFactory;
  * an optional {@link ThreadLocal} cache of the last release entry.</p>
  * <p>When the method {@link #close()} is called, all {@link Closeable}s
  * object pooled by the pool are also closed.</p>
+ * <p>Entries are stored in an array of {@link #getMaxEntries() maxEntries} slots
+ * that is allocated lazily in segments, so that entries never move once stored.
+ * Slots are claimed and released with CAS operations, so that {@link #reserve()},
+ * {@link #acquire()}, {@link #release(Entry)} and {@link #remove(Entry)} never
+ * copy the entries nor take a lock.</p>
  *
  * @param <T> the type of the pooled objects
  */
@@ -48,7 +59,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(Pool.class);
 
-    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private final Slots<Entry> entries;
     private final int maxEntries;
     private final StrategyType strategyType;
     /*
@@ -127,6 +138,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
     public Pool(StrategyType strategyType, int maxEntries, boolean cache)
     {
         this.maxEntries = maxEntries;
+        this.entries = new Slots<>(maxEntries);
         this.strategyType = strategyType;
         this.cache = cache ? new ThreadLocal<>() : null;
         this.nextIndex = strategyType == StrategyType.ROUND_ROBIN ? new AtomicInteger() : null;
@@ -138,7 +150,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
     @ManagedAttribute("The number of reserved entries")
     public int getReservedCount()
     {
-        return (int)entries.stream().filter(Entry::isReserved).count();
+        return (int)values().stream().filter(Entry::isReserved).count();
     }
 
     /**
@@ -147,7 +159,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
     @ManagedAttribute("The number of idle entries")
     public int getIdleCount()
     {
-        return (int)entries.stream().filter(Entry::isIdle).count();
+        return (int)values().stream().filter(Entry::isIdle).count();
     }
 
     /**
@@ -156,7 +168,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
     @ManagedAttribute("The number of in-use entries")
     public int getInUseCount()
     {
-        return (int)entries.stream().filter(Entry::isInUse).count();
+        return (int)values().stream().filter(Entry::isInUse).count();
     }
 
     /**
@@ -165,7 +177,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
     @ManagedAttribute("The number of closed entries")
     public int getClosedCount()
     {
-        return (int)entries.stream().filter(Entry::isClosed).count();
+        return (int)values().stream().filter(Entry::isClosed).count();
     }
 
     /**
@@ -203,6 +215,9 @@ public class Pool<T> implements AutoCloseable, Dumpable
 
     /**
      * <p>Sets the default maximum multiplex count for the Pool's entries.</p>
+     * <p>Lowering the maximum multiplex count does not release the entries
+     * that are already acquired more times than the new value: such entries
+     * cannot be acquired again until they are released below the new value.</p>
      *
      * @param maxMultiplex the default maximum multiplex count of entries
      * @deprecated Multiplex functionalities will be removed
@@ -217,10 +232,15 @@ public class Pool<T> implements AutoCloseable, Dumpable
             if (closed)
                 return;
 
-            if (entries.stream().anyMatch(MonoEntry.class::isInstance))
-                throw new IllegalStateException("Pool entries do not support multiplexing");
-
+            // Write the field before checking the entries, as reserve()
+            // adds the entry before checking the field, without the lock.
+            int previous = this.maxMultiplex;
             this.maxMultiplex = maxMultiplex;
+            if (values().stream().anyMatch(MonoEntry.class::isInstance))
+            {
+                this.maxMultiplex = previous;
+                throw new IllegalStateException("Pool entries do not support multiplexing");
+            }
         }
     }
 
@@ -272,12 +292,16 @@ public class Pool<T> implements AutoCloseable, Dumpable
             if (closed)
                 return;
 
-            if (entries.stream().anyMatch(MonoEntry.class::isInstance))
-                throw new IllegalStateException("Pool entries do not support max usage");
-
+            // Write the field before checking the entries, see setMaxMultiplex().
+            int previous = this.maxUsage;
             this.maxUsage = maxUsageCount;
+            if (values().stream().anyMatch(MonoEntry.class::isInstance))
+            {
+                this.maxUsage = previous;
+                throw new IllegalStateException("Pool entries do not support max usage");
+            }
 
-            copy = entries.stream()
+            copy = values().stream()
                 .filter(entry -> entry.isIdleAndOverUsed() && remove(entry) && entry.pooled instanceof Closeable)
                 .map(entry -> (Closeable)entry.pooled)
                 .collect(Collectors.toList());
@@ -305,19 +329,10 @@ public class Pool<T> implements AutoCloseable, Dumpable
     {
         try (AutoLock l = lock.lock())
         {
-            if (closed)
-                return null;
-
-            int space = maxEntries - entries.size();
-            if (space <= 0)
-                return null;
-
             if (allotment >= 0 && (getReservedCount() * getMaxMultiplex()) >= allotment)
                 return null;
 
-            Entry entry = newEntry();
-            entries.add(entry);
-            return entry;
+            return reserve();
         }
     }
 
@@ -333,7 +348,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
      */
     public Entry reserve()
     {
-        try (AutoLock l = lock.lock())
+        while (true)
         {
             if (closed)
                 return null;
@@ -343,7 +358,28 @@ public class Pool<T> implements AutoCloseable, Dumpable
                 return null;
 
             Entry entry = newEntry();
-            entries.add(entry);
+            int slot = entries.add(entry);
+            if (slot < 0)
+                return null;
+            entry.slot = slot;
+
+            // Check again now that the entry is visible: either close()
+            // sees the entry and removes it, or this thread removes it.
+            if (closed)
+            {
+                entry.tryRemove();
+                entries.remove(slot, entry);
+                return null;
+            }
+
+            // Likewise, either setMaxMultiplex() or setMaxUsageCount() see
+            // the entry, or this thread sees that it is of the wrong kind.
+            if (MonoEntry.class.isInstance(entry) && (maxMultiplex >= 0 || maxUsage >= 0))
+            {
+                entry.tryRemove();
+                entries.remove(slot, entry);
+                continue;
+            }
             return entry;
         }
     }
@@ -370,8 +406,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
         if (closed)
             return null;
 
-        int size = entries.size();
-        if (size == 0)
+        if (entries.size() == 0)
             return null;
 
         if (cache != null)
@@ -381,27 +416,77 @@ public class Pool<T> implements AutoCloseable, Dumpable
                 return entry;
         }
 
-        int index = startIndex(size);
+        // Slots below the limit may be empty if their
+        // entry has been removed, so they are skipped.
+        int limit = entries.limit();
+        if (limit == 0)
+            return null;
+
+        return acquireFrom(startIndex(limit), limit);
+    }
 
-        for (int tries = size; tries-- > 0;)
+    /**
+     * <p>Acquires an entry from the pool, choosing the better
+     * of two entries picked at random.</p>
+     * <p>Of the two entries, the one whose pooled object is the
+     * smaller according to the given comparator is tried first,
+     * and the other is tried if the first cannot be acquired.
+     * If neither can be acquired, the other entries are tried in
+     * sequence, starting from a random one.</p>
+     * <p>Sampling just two entries avoids both the cost of comparing
+     * all the entries and the herding of all the threads on the
+     * same best entry, while still steering away from the worst
+     * entries (the "power of two choices").</p>
+     *
+     * @param comparator the comparator that orders the pooled objects,
+     * with the most desirable first
+     * @return an entry from the pool or null if none is available.
+     */
+    public Entry acquire(Comparator<? super T> comparator)
+    {
+        if (closed)
+            return null;
+
+        int limit = entries.limit();
+        if (limit == 0)
+            return null;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(limit);
+        if (limit > 1)
         {
-            try
+            Pool<T>.Entry first = enabled(entries.get(index));
+            Pool<T>.Entry second = enabled(entries.get((index + 1 + random.nextInt(limit - 1)) % limit));
+            if (first != null && second != null && comparator.compare(second.getPooled(), first.getPooled()) < 0)
             {
-                Pool<T>.Entry entry = entries.get(index);
-                if (entry != null && entry.tryAcquire())
-                    return entry;
+                Pool<T>.Entry swap = first;
+                first = second;
+                second = swap;
             }
-            catch (IndexOutOfBoundsException e)
-            {
-                LOGGER.trace("IGNORED", e);
-                size = entries.size();
-                // Size can be 0 when the pool is in the middle of
-                // acquiring a connection while another thread
-                // removes the last one from the pool.
-                if (size == 0)
-                    break;
-            }
-            index = (index + 1) % size;
+            if (first != null && first.tryAcquire())
+                return first;
+            if (second != null && second.tryAcquire())
+                return second;
+        }
+
+        return acquireFrom(index, limit);
+    }
+
+    private Entry enabled(Entry entry)
+    {
+        // Reserved entries have no pooled object yet.
+        return entry == null || entry.isReserved() || entry.isClosed() ? null : entry;
+    }
+
+    private Entry acquireFrom(int index, int limit)
+    {
+        for (int tries = limit; tries-- > 0;)
+        {
+            Pool<T>.Entry entry = entries.get(index);
+            if (entry != null && entry.tryAcquire())
+                return entry;
+            if (++index == limit)
+                index = 0;
         }
         return null;
     }
@@ -499,7 +584,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
             return false;
         }
 
-        boolean removed = entries.remove(entry);
+        boolean removed = entries.remove(entry.slot, entry);
         if (!removed && LOGGER.isDebugEnabled())
             LOGGER.debug("Attempt to remove an object from the pool that does not exist: {}", entry);
 
@@ -518,8 +603,7 @@ public class Pool<T> implements AutoCloseable, Dumpable
         try (AutoLock l = lock.lock())
         {
             closed = true;
-            copy = new ArrayList<>(entries);
-            entries.clear();
+            copy = entries.clear();
         }
 
         // iterate the copy and close its entries
@@ -546,14 +630,34 @@ public class Pool<T> implements AutoCloseable, Dumpable
 
     public Collection<Entry> values()
     {
-        return Collections.unmodifiableCollection(entries);
+        return new AbstractCollection<>()
+        {
+            @Override
+            public Iterator<Entry> iterator()
+            {
+                return entries.iterator();
+            }
+
+            @Override
+            public Spliterator<Entry> spliterator()
+            {
+                // The size is only an estimate, as entries may be concurrently added or removed.
+                return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+            }
+
+            @Override
+            public int size()
+            {
+                return entries.size();
+            }
+        };
     }
 
     @Override
     public void dump(Appendable out, String indent) throws IOException
     {
         Dumpable.dumpObjects(out, indent, this,
-            new DumpableCollection("entries", entries));
+            new DumpableCollection("entries", values()));
     }
 
     @Override
@@ -568,6 +672,238 @@ public class Pool<T> implements AutoCloseable, Dumpable
             isClosed());
     }
 
+    /**
+     * <p>The storage of the pool entries.</p>
+     * <p>Slots are stored in segments of increasing power of 2 sizes, where segment {@code k}
+     * holds {@code 2^k} slots, so that the capacity can be as large as {@link Integer#MAX_VALUE}
+     * while only the segments below the {@link #limit() limit} are allocated, and slots never move.</p>
+     * <p>A new element is stored in the first free slot hinted by the segments bitmaps, that
+     * track the slots left empty by removed elements, or otherwise in the slot at the limit.</p>
+     *
+     * @param <E> the type of the elements
+     */
+    private static class Slots<E>
+    {
+        private final AtomicReferenceArray<Segment<E>> segments = new AtomicReferenceArray<>(Integer.SIZE - 1);
+        private final int capacity;
+        // The number of slots used so far, whether they are empty or not.
+        private final AtomicInteger limit = new AtomicInteger();
+        // The number of empty slots below the limit, may be transiently negative.
+        private final AtomicInteger free = new AtomicInteger();
+        // The number of elements.
+        private final AtomicInteger size = new AtomicInteger();
+
+        private Slots(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        private static int segmentOf(int index)
+        {
+            return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(index + 1);
+        }
+
+        private static int offsetOf(int index, int segment)
+        {
+            return index + 1 - (1 << segment);
+        }
+
+        private int size()
+        {
+            return size.get();
+        }
+
+        private int limit()
+        {
+            return limit.get();
+        }
+
+        private E get(int index)
+        {
+            int s = segmentOf(index);
+            Segment<E> segment = segments.get(s);
+            return segment == null ? null : segment.slots.get(offsetOf(index, s));
+        }
+
+        /**
+         * @param element the element to add
+         * @return the index of the slot that stores the element, or -1 if there is no space
+         */
+        private int add(E element)
+        {
+            while (true)
+            {
+                int size = this.size.get();
+                if (size >= capacity)
+                    return -1;
+                if (this.size.compareAndSet(size, size + 1))
+                    break;
+            }
+
+            while (true)
+            {
+                if (free.get() > 0)
+                {
+                    int index = claimFree();
+                    if (index >= 0)
+                    {
+                        free.decrementAndGet();
+                        set(index, element);
+                        return index;
+                    }
+                }
+
+                int limit = this.limit.get();
+                if (limit < capacity)
+                {
+                    if (this.limit.compareAndSet(limit, limit + 1))
+                    {
+                        set(limit, element);
+                        return limit;
+                    }
+                }
+                else
+                {
+                    // The space was reserved, but the free slot is
+                    // not yet visible because a remove() is in progress.
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private void set(int index, E element)
+        {
+            int s = segmentOf(index);
+            Segment<E> segment = segments.get(s);
+            if (segment == null)
+            {
+                segment = new Segment<>(1 << s);
+                if (!segments.compareAndSet(s, null, segment))
+                    segment = segments.get(s);
+            }
+            segment.slots.set(offsetOf(index, s), element);
+        }
+
+        private int claimFree()
+        {
+            int limit = this.limit.get();
+            for (int s = 0, base = 0; base < limit; base += 1 << s, ++s)
+            {
+                Segment<E> segment = segments.get(s);
+                if (segment == null)
+                    break;
+                AtomicLongArray bits = segment.free;
+                for (int i = 0; i < bits.length(); ++i)
+                {
+                    long word = bits.get(i);
+                    while (word != 0)
+                    {
+                        long bit = Long.lowestOneBit(word);
+                        if (bits.compareAndSet(i, word, word & ~bit))
+                            return base + (i << 6) + Long.numberOfTrailingZeros(bit);
+                        word = bits.get(i);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param index the index of the slot that stores the element
+         * @param element the element to remove
+         * @return whether the element was removed by this call
+         */
+        private boolean remove(int index, E element)
+        {
+            if (index < 0 || index >= limit.get())
+                return false;
+            int s = segmentOf(index);
+            Segment<E> segment = segments.get(s);
+            if (segment == null)
+                return false;
+            int offset = offsetOf(index, s);
+            if (!segment.slots.compareAndSet(offset, element, null))
+                return false;
+            int word = offset >>> 6;
+            long bit = 1L << offset;
+            while (true)
+            {
+                long bits = segment.free.get(word);
+                if (segment.free.compareAndSet(word, bits, bits | bit))
+                    break;
+            }
+            free.incrementAndGet();
+            size.decrementAndGet();
+            return true;
+        }
+
+        /**
+         * @return the elements that have been removed
+         */
+        private List<E> clear()
+        {
+            List<E> removed = new ArrayList<>();
+            int limit = this.limit.get();
+            for (int i = 0; i < limit; ++i)
+            {
+                E element = get(i);
+                if (element != null && remove(i, element))
+                    removed.add(element);
+            }
+            return removed;
+        }
+
+        private Iterator<E> iterator()
+        {
+            return new Iterator<>()
+            {
+                private final int limit = Slots.this.limit.get();
+                private int index;
+                private E next = advance();
+
+                private E advance()
+                {
+                    while (index < limit)
+                    {
+                        E element = get(index++);
+                        if (element != null)
+                            return element;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next != null;
+                }
+
+                @Override
+                public E next()
+                {
+                    E result = next;
+                    if (result == null)
+                        throw new NoSuchElementException();
+                    next = advance();
+                    return result;
+                }
+            };
+        }
+
+        private static class Segment<E>
+        {
+            private final AtomicReferenceArray<E> slots;
+            // The bitmap of the slots that are empty because their element was removed.
+            private final AtomicLongArray free;
+
+            private Segment(int length)
+            {
+                slots = new AtomicReferenceArray<>(length);
+                free = new AtomicLongArray((length + Long.SIZE - 1) / Long.SIZE);
+            }
+        }
+    }
+
     /**
      * <p>A Pool entry that holds metadata and a pooled object.</p>
      */
@@ -577,6 +913,8 @@ public class Pool<T> implements AutoCloseable, Dumpable
         // Other threads accessing must check the state field above first, so a good before/after
         // relationship exists to make a memory barrier.
         private T pooled;
+        // The index of the slot that stores this Entry, set once when the entry is reserved.
+        private int slot = -1;
 
         /**
          * <p>Enables this, previously {@link #reserve() reserved}, Entry.</p>
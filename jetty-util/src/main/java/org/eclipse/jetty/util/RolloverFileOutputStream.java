@@ -17,6 +17,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.ZonedDateTime;
@@ -57,7 +59,7 @@ public class RolloverFileOutputStream extends OutputStream
     });
 
     private final AutoLock _lock = new AutoLock();
-    private OutputStream _out;
+    private FileOutputStream _out;
     private ScheduledFuture<?> _rollTask;
     private final SimpleDateFormat _fileBackupFormat;
     private final SimpleDateFormat _fileDateFormat;
@@ -345,7 +347,7 @@ public class RolloverFileOutputStream extends OutputStream
     {
         try (AutoLock l = _lock.lock())
         {
-            _out.write(b);
+            getOutputStream().write(b);
         }
     }
 
@@ -354,7 +356,7 @@ public class RolloverFileOutputStream extends OutputStream
     {
         try (AutoLock l = _lock.lock())
         {
-            _out.write(buf);
+            getOutputStream().write(buf);
         }
     }
 
@@ -363,7 +365,36 @@ public class RolloverFileOutputStream extends OutputStream
     {
         try (AutoLock l = _lock.lock())
         {
-            _out.write(buf, off, len);
+            getOutputStream().write(buf, off, len);
+        }
+    }
+
+    /**
+     * <p>Writes the given buffers to the current file with gathering writes.</p>
+     *
+     * @param buffers the buffers to write
+     * @param offset the index of the first buffer to write
+     * @param length the number of buffers to write
+     * @return the number of bytes written
+     * @throws IOException if the buffers cannot be written
+     * @see FileChannel#write(ByteBuffer[], int, int)
+     */
+    public long write(ByteBuffer[] buffers, int offset, int length) throws IOException
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            FileChannel channel = getOutputStream().getChannel();
+            long written = 0;
+            int end = offset + length;
+            while (offset < end)
+            {
+                written += channel.write(buffers, offset, end - offset);
+                while (offset < end && !buffers[offset].hasRemaining())
+                {
+                    offset++;
+                }
+            }
+            return written;
         }
     }
 
@@ -372,10 +403,19 @@ public class RolloverFileOutputStream extends OutputStream
     {
         try (AutoLock l = _lock.lock())
         {
-            _out.flush();
+            getOutputStream().flush();
         }
     }
 
+    private FileOutputStream getOutputStream() throws IOException
+    {
+        assert _lock.isHeldByCurrentThread();
+        FileOutputStream out = _out;
+        if (out == null)
+            throw new IOException("Closed");
+        return out;
+    }
+
     @Override
     public void close() throws IOException
     {
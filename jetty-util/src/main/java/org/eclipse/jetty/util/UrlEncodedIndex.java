@@ -0,0 +1,330 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>An index of the fields of {@code x-www-form-urlencoded} bytes.</p>
+ * <p>The bytes are scanned once to record the offsets of the names and values
+ * of the fields in a flat {@code int} array, and the names and values are only
+ * decoded when they are looked up, so that reading a few fields does not require
+ * the creation of a {@link MultiMap} with a String for every name and value.</p>
+ * <p>The fields are decoded with the same rules as {@link UrlEncoded}, into which
+ * {@link #decodeTo(MultiMap, int)} materializes all the fields.
+ * Only the UTF-8 and ISO-8859-1 charsets are supported.</p>
+ */
+public class UrlEncodedIndex
+{
+    // Per field: name start, name end, value start (-1 if there is no '='), value end.
+    private static final int FIELD_INTS = 4;
+
+    private final byte[] _bytes;
+    private final Charset _charset;
+    private int[] _fields;
+    private int _size;
+
+    private UrlEncodedIndex(byte[] bytes, Charset charset)
+    {
+        _bytes = bytes;
+        _charset = StandardCharsets.UTF_8.equals(charset) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        _fields = new int[FIELD_INTS * 8];
+    }
+
+    /**
+     * @param charset the charset of the encoded fields
+     * @return whether the fields encoded in the given charset can be indexed
+     */
+    public static boolean isSupported(Charset charset)
+    {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * <p>Indexes a query string, if it only contains US-ASCII characters.</p>
+     *
+     * @param query the query string
+     * @param charset the charset of the encoded fields
+     * @return the index of the query fields, or null if the query cannot be indexed
+     * @throws IllegalArgumentException if the query has an invalid % encoding
+     */
+    public static UrlEncodedIndex parse(String query, Charset charset)
+    {
+        if (!isSupported(charset))
+            return null;
+        int length = query.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            char c = query.charAt(i);
+            if (c > 0x7F)
+                return null;
+            bytes[i] = (byte)c;
+        }
+        return parse(bytes, length, charset);
+    }
+
+    /**
+     * <p>Indexes the fields of the given bytes, which are not copied.</p>
+     *
+     * @param bytes the encoded fields
+     * @param length the number of bytes
+     * @param charset the charset of the encoded fields
+     * @return the index of the fields
+     * @throws IllegalArgumentException if the charset is not supported, or the bytes have an invalid % encoding
+     */
+    public static UrlEncodedIndex parse(byte[] bytes, int length, Charset charset)
+    {
+        if (!isSupported(charset))
+            throw new IllegalArgumentException("Unsupported charset " + charset);
+
+        UrlEncodedIndex index = new UrlEncodedIndex(bytes, charset);
+        int start = 0;
+        int equals = -1;
+        boolean nonAscii = false;
+        for (int i = 0; i < length; i++)
+        {
+            byte b = bytes[i];
+            switch (b)
+            {
+                case '&':
+                    index.add(start, equals, i, nonAscii);
+                    start = i + 1;
+                    equals = -1;
+                    nonAscii = false;
+                    break;
+
+                case '=':
+                    if (equals < 0)
+                        equals = i;
+                    break;
+
+                case '%':
+                    // Validate the encoding now, as UrlEncoded does, rather than when decoding.
+                    if (i + 2 >= length)
+                        throw new Utf8Appendable.NotUtf8Exception("Incomplete % encoding");
+                    nonAscii |= checkHex(bytes[i + 1], bytes[i + 2]) > 0x7F;
+                    i += 2;
+                    break;
+
+                default:
+                    nonAscii |= b < 0;
+                    break;
+            }
+        }
+        index.add(start, equals, length, nonAscii);
+        return index;
+    }
+
+    private static int checkHex(byte hi, byte lo)
+    {
+        try
+        {
+            return (TypeUtil.convertHexDigit(hi) << 4) + TypeUtil.convertHexDigit(lo);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Not valid encoding '%" + (char)hi + (char)lo + "'");
+        }
+    }
+
+    private void add(int start, int equals, int end, boolean nonAscii)
+    {
+        // Fields without '=' and without a name are ignored.
+        if (equals < 0 && start == end)
+            return;
+        int offset = _size * FIELD_INTS;
+        if (offset == _fields.length)
+            _fields = Arrays.copyOf(_fields, _fields.length * 2);
+        _fields[offset] = start;
+        _fields[offset + 1] = equals < 0 ? end : equals;
+        _fields[offset + 2] = equals < 0 ? -1 : equals + 1;
+        _fields[offset + 3] = end;
+        _size++;
+
+        // Invalid UTF-8 sequences are rejected by UrlEncoded, so decode the
+        // fields that may have one, rather than failing later on lookup.
+        if (nonAscii && _charset == StandardCharsets.UTF_8)
+        {
+            decode(_fields[offset], _fields[offset + 1]);
+            value(_size - 1);
+        }
+    }
+
+    /**
+     * @return the number of fields, which may have the same name
+     */
+    public int getFieldCount()
+    {
+        return _size;
+    }
+
+    /**
+     * @param name the name of the field
+     * @return the decoded value of the first field with the given name, or null if there is no such field
+     */
+    public String getValue(String name)
+    {
+        for (int f = 0; f < _size; f++)
+        {
+            if (nameEquals(f, name))
+                return value(f);
+        }
+        return null;
+    }
+
+    /**
+     * @param name the name of the fields
+     * @return the decoded values of the fields with the given name, or null if there is no such field
+     */
+    public List<String> getValues(String name)
+    {
+        List<String> values = null;
+        for (int f = 0; f < _size; f++)
+        {
+            if (nameEquals(f, name))
+            {
+                if (values == null)
+                    values = new ArrayList<>(2);
+                values.add(value(f));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * <p>Decodes all the fields into the given map.</p>
+     *
+     * @param map the map to add the fields to
+     * @param maxKeys the max number of keys of the map, or -1 for no limit
+     * @throws IllegalStateException if the map has more than {@code maxKeys} keys
+     */
+    public void decodeTo(MultiMap<String> map, int maxKeys)
+    {
+        for (int f = 0; f < _size; f++)
+        {
+            int offset = f * FIELD_INTS;
+            map.add(decode(_fields[offset], _fields[offset + 1]), value(f));
+            if (maxKeys >= 0 && map.size() > maxKeys)
+                throw new IllegalStateException(String.format("Form with too many keys [%d > %d]", map.size(), maxKeys));
+        }
+    }
+
+    private boolean nameEquals(int field, String name)
+    {
+        int offset = field * FIELD_INTS;
+        int start = _fields[offset];
+        int end = _fields[offset + 1];
+        int length = end - start;
+        if (length < name.length())
+            return false;
+
+        // Compare the bytes of names that need no decoding.
+        boolean plain = true;
+        for (int i = start; i < end; i++)
+        {
+            byte b = _bytes[i];
+            if (b == '%' || b == '+' || b < 0)
+            {
+                plain = false;
+                break;
+            }
+        }
+        if (plain)
+        {
+            if (length != name.length())
+                return false;
+            for (int i = 0; i < length; i++)
+            {
+                if (_bytes[start + i] != name.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+
+        return name.equals(decode(start, end));
+    }
+
+    private String value(int field)
+    {
+        int offset = field * FIELD_INTS;
+        int start = _fields[offset + 2];
+        if (start < 0)
+            return "";
+        return decode(start, _fields[offset + 3]);
+    }
+
+    private String decode(int start, int end)
+    {
+        if (start == end)
+            return "";
+
+        boolean encoded = false;
+        boolean ascii = true;
+        for (int i = start; i < end; i++)
+        {
+            byte b = _bytes[i];
+            if (b == '%' || b == '+')
+                encoded = true;
+            else if (b < 0)
+                ascii = false;
+        }
+
+        if (!encoded && (ascii || _charset == StandardCharsets.ISO_8859_1))
+            return new String(_bytes, start, end - start, StandardCharsets.ISO_8859_1);
+
+        byte[] decoded = _bytes;
+        int length = end - start;
+        if (encoded)
+        {
+            decoded = new byte[length];
+            length = 0;
+            for (int i = start; i < end; i++)
+            {
+                byte b = _bytes[i];
+                if (b == '+')
+                {
+                    decoded[length++] = ' ';
+                }
+                else if (b == '%')
+                {
+                    decoded[length++] = (byte)((TypeUtil.convertHexDigit(_bytes[i + 1]) << 4) + TypeUtil.convertHexDigit(_bytes[i + 2]));
+                    i += 2;
+                }
+                else
+                {
+                    decoded[length++] = b;
+                }
+            }
+            start = 0;
+        }
+
+        if (_charset == StandardCharsets.ISO_8859_1)
+            return new String(decoded, start, length, StandardCharsets.ISO_8859_1);
+
+        Utf8StringBuilder utf8 = new Utf8StringBuilder(length);
+        utf8.append(decoded, start, length);
+        return utf8.toReplacedString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,fields=%d}", getClass().getSimpleName(), hashCode(), _charset, _size);
+    }
+}
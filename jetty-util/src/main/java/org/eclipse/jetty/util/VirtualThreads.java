@@ -0,0 +1,199 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Utility class to use virtual threads in a way that allows to compile
+ * and run this code on JVMs that do not support virtual threads.</p>
+ * <p>Virtual threads are accessed via reflection, so this class works
+ * with any Java version, and {@link #areSupported()} reports whether
+ * the current JVM can actually create virtual threads.</p>
+ */
+public class VirtualThreads
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Executor executor = probeVirtualThreadExecutor();
+    private static final Method isVirtualThread = probeIsVirtualThread();
+
+    private static Executor probeVirtualThreadExecutor()
+    {
+        try
+        {
+            return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    private static Method probeIsVirtualThread()
+    {
+        try
+        {
+            return Thread.class.getMethod("isVirtual");
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    private static void warn()
+    {
+        LOG.warn("Virtual thread support is not available (or not enabled via --enable-preview) in the current Java runtime ({})", System.getProperty("java.version"));
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean areSupported()
+    {
+        return executor != null;
+    }
+
+    /**
+     * <p>Starts a virtual thread to execute the given task, or throws
+     * {@link UnsupportedOperationException} if virtual threads are not
+     * supported.</p>
+     *
+     * @param task the task to execute in a virtual thread
+     * @see #areSupported()
+     */
+    public static void executeOnVirtualThread(Runnable task)
+    {
+        if (executor == null)
+        {
+            warn();
+            throw new UnsupportedOperationException();
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * @return whether the current thread is a virtual thread
+     */
+    public static boolean isVirtualThread()
+    {
+        try
+        {
+            return isVirtualThread != null && (Boolean)isVirtualThread.invoke(Thread.currentThread());
+        }
+        catch (Throwable x)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return a default virtual thread per task {@code Executor},
+     * or null if virtual threads are not supported
+     */
+    public static Executor getDefaultVirtualThreadsExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * @param executor the {@code Executor} to obtain a virtual threads {@code Executor} from
+     * @return a virtual threads {@code Executor} obtained from the given {@code Executor},
+     * or null if the given {@code Executor} is not configured to use virtual threads
+     * @see Configurable#getVirtualThreadsExecutor()
+     */
+    public static Executor getVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof Configurable)
+            return ((Configurable)executor).getVirtualThreadsExecutor();
+        return null;
+    }
+
+    /**
+     * <p>Tests whether the given executor is configured to use virtual threads.</p>
+     *
+     * @param executor the executor to test
+     * @return whether the given executor is configured to use virtual threads
+     */
+    public static boolean isUseVirtualThreads(Executor executor)
+    {
+        return getVirtualThreadsExecutor(executor) != null;
+    }
+
+    /**
+     * <p>Implementations of this interface execute {@link org.eclipse.jetty.util.thread.Invocable.InvocationType#BLOCKING blocking}
+     * tasks in virtual threads, while still executing internal tasks such as
+     * selecting and producing in their own platform threads.</p>
+     */
+    public interface Configurable
+    {
+        /**
+         * @return the {@code Executor} to use to execute tasks in virtual threads,
+         * or null if virtual threads are not used
+         */
+        default Executor getVirtualThreadsExecutor()
+        {
+            return null;
+        }
+
+        /**
+         * <p>Sets the {@code Executor} used to execute tasks in virtual threads.</p>
+         * <p>The executor must start a new virtual thread for each task,
+         * and is typically {@link #getDefaultVirtualThreadsExecutor()}.</p>
+         *
+         * @param executor the {@code Executor} to use to execute tasks in virtual threads,
+         * or null to not use virtual threads
+         */
+        default void setVirtualThreadsExecutor(Executor executor)
+        {
+            if (executor != null)
+                throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @return whether to use virtual threads
+         */
+        default boolean isUseVirtualThreads()
+        {
+            return getVirtualThreadsExecutor() != null;
+        }
+
+        /**
+         * <p>Sets whether to use virtual threads, with the
+         * {@link #getDefaultVirtualThreadsExecutor() default virtual threads executor}.</p>
+         * <p>If virtual threads are not supported by the runtime, a warning is logged
+         * and virtual threads are not used.</p>
+         *
+         * @param useVirtualThreads whether to use virtual threads
+         */
+        default void setUseVirtualThreads(boolean useVirtualThreads)
+        {
+            if (useVirtualThreads && !areSupported())
+            {
+                warn();
+                return;
+            }
+            setVirtualThreadsExecutor(useVirtualThreads ? getDefaultVirtualThreadsExecutor() : null);
+        }
+    }
+
+    private VirtualThreads()
+    {
+    }
+}
@@ -18,12 +18,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
@@ -34,7 +36,7 @@ import org.eclipse.jetty.util.component.DumpableCollection;
  * A {@link org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool} wrapper around {@link ThreadPoolExecutor}.
  */
 @ManagedObject("A thread pool")
-public class ExecutorThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor
+public class ExecutorThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor, VirtualThreads.Configurable
 {
     private final ThreadPoolExecutor _executor;
     private final ThreadPoolBudget _budget;
@@ -46,6 +48,7 @@ public class ExecutorThreadPool extends ContainerLifeCycle implements ThreadPool
     private int _priority = Thread.NORM_PRIORITY;
     private boolean _daemon;
     private boolean _detailedDump;
+    private Executor _virtualThreadsExecutor;
 
     public ExecutorThreadPool()
     {
@@ -234,6 +237,31 @@ public class ExecutorThreadPool extends ContainerLifeCycle implements ThreadPool
         _detailedDump = detailedDump;
     }
 
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _virtualThreadsExecutor;
+    }
+
+    @Override
+    public void setVirtualThreadsExecutor(Executor executor)
+    {
+        _virtualThreadsExecutor = executor;
+    }
+
+    @Override
+    @ManagedAttribute("whether blocking tasks are executed in virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return VirtualThreads.Configurable.super.isUseVirtualThreads();
+    }
+
+    @Override
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        VirtualThreads.Configurable.super.setUseVirtualThreads(useVirtualThreads);
+    }
+
     @Override
     @ManagedAttribute("number of threads in the pool")
     public int getThreads()
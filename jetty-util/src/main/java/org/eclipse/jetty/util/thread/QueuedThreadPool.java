@@ -20,14 +20,17 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.util.AtomicBiInteger;
 import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -72,9 +75,14 @@ import org.slf4j.LoggerFactory;
  *   <li>{@link #getBusyThreads() busyThreads} = utilizedThreads + leasedThreads</li>
  *   <li>{@link #getIdleThreads()} idleThreads} = readyThreads - availableReservedThreads</li>
  * </ul>
+ * <p>QueuedThreadPool may be configured to {@link #setUseVirtualThreads(boolean) use virtual threads},
+ * in which case {@link Invocable.InvocationType#BLOCKING blocking} tasks produced by execution strategies
+ * are executed in virtual threads obtained from {@link #getVirtualThreadsExecutor()}, while internal jobs
+ * such as selecting and producing still run in the pool threads.
+ * Virtual threads are not counted in the values above, but in {@link #getVirtualThreads() virtualThreads}.</p>
  */
 @ManagedObject("A thread pool")
-public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor
+public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor, VirtualThreads.Configurable
 {
     private static final Logger LOG = LoggerFactory.getLogger(QueuedThreadPool.class);
     private static final Runnable NOOP = () ->
@@ -92,6 +100,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
      */
     private final AtomicBiInteger _counts = new AtomicBiInteger(Integer.MIN_VALUE, 0);
     private final AtomicLong _lastShrink = new AtomicLong();
+    private final AtomicInteger _virtualThreads = new AtomicInteger();
     private final Set<Thread> _threads = ConcurrentHashMap.newKeySet();
     private final AutoLock.WithCondition _joinLock = new AutoLock.WithCondition();
     private final BlockingQueue<Runnable> _jobs;
@@ -109,6 +118,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
     private int _lowThreadsThreshold = 1;
     private ThreadPoolBudget _budget;
     private long _stopTimeout;
+    private Executor _virtualThreadsExecutor;
 
     public QueuedThreadPool()
     {
@@ -494,6 +504,43 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         _lowThreadsThreshold = lowThreadsThreshold;
     }
 
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _virtualThreadsExecutor;
+    }
+
+    @Override
+    public void setVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof VirtualThreadsExecutor)
+            executor = ((VirtualThreadsExecutor)executor)._executor;
+        _virtualThreadsExecutor = executor == null ? null : new VirtualThreadsExecutor(executor);
+    }
+
+    @Override
+    @ManagedAttribute("whether blocking tasks are executed in virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return VirtualThreads.Configurable.super.isUseVirtualThreads();
+    }
+
+    @Override
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        VirtualThreads.Configurable.super.setUseVirtualThreads(useVirtualThreads);
+    }
+
+    /**
+     * @return the number of tasks currently executing in virtual threads
+     * @see #getVirtualThreadsExecutor()
+     */
+    @ManagedAttribute("number of tasks executing in virtual threads")
+    public int getVirtualThreads()
+    {
+        return _virtualThreads.get();
+    }
+
     /**
      * @return the number of jobs in the queue waiting for a thread
      */
@@ -952,7 +999,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         int idle = Math.max(0, AtomicBiInteger.getLo(count));
         int queue = getQueueSize();
 
-        return String.format("%s[%s]@%x{%s,%d<=%d<=%d,i=%d,r=%d,q=%d}[%s]",
+        return String.format("%s[%s]@%x{%s,%d<=%d<=%d,i=%d,r=%d,q=%d%s}[%s]",
             getClass().getSimpleName(),
             _name,
             hashCode(),
@@ -963,9 +1010,54 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
             idle,
             getReservedThreads(),
             queue,
+            isUseVirtualThreads() ? ",v=" + getVirtualThreads() : "",
             _tryExecutor);
     }
 
+    /**
+     * <p>Executes tasks in virtual threads, counting the tasks that are executing.</p>
+     */
+    private class VirtualThreadsExecutor implements Executor
+    {
+        private final Executor _executor;
+
+        private VirtualThreadsExecutor(Executor executor)
+        {
+            _executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task)
+        {
+            _virtualThreads.incrementAndGet();
+            try
+            {
+                _executor.execute(() ->
+                {
+                    try
+                    {
+                        task.run();
+                    }
+                    finally
+                    {
+                        _virtualThreads.decrementAndGet();
+                    }
+                });
+            }
+            catch (Throwable x)
+            {
+                _virtualThreads.decrementAndGet();
+                throw x;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), _executor);
+        }
+    }
+
     private class Runner implements Runnable
     {
         private Runnable idleJobPoll(long idleTimeout) throws InterruptedException
@@ -21,6 +21,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -69,6 +70,10 @@ import org.slf4j.LoggerFactory;
  *     <dd>Otherwise.</dd>
  * </dl>
  *
+ * <p>If the {@link Executor} is configured to {@link VirtualThreads.Configurable use virtual threads},
+ * then {@link Invocable.InvocationType#BLOCKING} tasks always use PEC and are executed in a virtual thread,
+ * so that the producing thread keeps producing and blocking tasks do not consume the executor threads.</p>
+ *
  * <p>Because of the preference for {@code PC} mode, on a multicore machine with many
  * many {@link Invocable.InvocationType#NON_BLOCKING} tasks, multiple instances of the strategy may be
  * required to keep all CPUs on the system busy.</p>
@@ -132,6 +137,7 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
     private final LongAdder _picMode = new LongAdder();
     private final LongAdder _pecMode = new LongAdder();
     private final LongAdder _epcMode = new LongAdder();
+    private final LongAdder _pvecMode = new LongAdder();
     private final Producer _producer;
     private final Executor _executor;
     private final TryExecutor _tryExecutor;
@@ -321,6 +327,11 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
             case BLOCKING:
                 // The produced task may block.
 
+                // If blocking tasks are executed in virtual threads, use PEC:
+                // the task is executed in a virtual thread and the producer continues to produce.
+                if (VirtualThreads.isUseVirtualThreads(_executor))
+                    return SubStrategy.PRODUCE_EXECUTE_CONSUME;
+
                 // If the calling producing thread may also block
                 if (!nonBlocking)
                 {
@@ -453,7 +464,9 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
     }
 
     /**
-     * Executes a task via the {@link Executor} used to construct this strategy.
+     * Executes a task via the {@link Executor} used to construct this strategy,
+     * or in a virtual thread if the {@link Executor} is configured to use virtual threads
+     * and the task is {@link Invocable.InvocationType#BLOCKING}.
      * If the execution is rejected and the task is a Closeable, then it is closed.
      *
      * @param task The task to execute.
@@ -462,7 +475,16 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
     {
         try
         {
-            _executor.execute(task);
+            Executor virtualExecutor = VirtualThreads.getVirtualThreadsExecutor(_executor);
+            if (virtualExecutor != null && Invocable.getInvocationType(task) == Invocable.InvocationType.BLOCKING)
+            {
+                _pvecMode.increment();
+                virtualExecutor.execute(task);
+            }
+            else
+            {
+                _executor.execute(task);
+            }
         }
         catch (RejectedExecutionException e)
         {
@@ -500,6 +522,12 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
         return _epcMode.longValue();
     }
 
+    @ManagedAttribute(value = "number of tasks executed with PEC mode in virtual threads", readonly = true)
+    public long getVirtualThreadTasksExecuted()
+    {
+        return _pvecMode.longValue();
+    }
+
     @ManagedAttribute(value = "whether this execution strategy is idle", readonly = true)
     public boolean isIdle()
     {
@@ -516,6 +544,7 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
         _epcMode.reset();
         _pecMode.reset();
         _picMode.reset();
+        _pvecMode.reset();
     }
 
     @Override
@@ -560,6 +589,8 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
         builder.append(getPECTasksExecuted());
         builder.append(",epc=");
         builder.append(getEPCTasksConsumed());
+        builder.append(",pvec=");
+        builder.append(getVirtualThreadTasksExecuted());
         builder.append("]");
         builder.append("@");
         builder.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(ZonedDateTime.now()));
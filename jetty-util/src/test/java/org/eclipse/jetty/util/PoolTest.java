@@ -16,9 +16,12 @@ package org.eclipse.jetty.util;
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
@@ -41,6 +44,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PoolTest
 {
@@ -690,4 +694,134 @@ public class PoolTest
         assertThat(e3.getPooled().get(), greaterThan(10));
         assertThat(e4.getPooled().get(), greaterThan(10));
     }
+
+    @Test
+    public void testRemovedSlotIsReused()
+    {
+        Pool<String> pool = new Pool<>(FIRST, 4);
+        Pool<String>.Entry e1 = pool.acquire(e -> "a");
+        Pool<String>.Entry e2 = pool.acquire(e -> "b");
+        Pool<String>.Entry e3 = pool.acquire(e -> "c");
+
+        assertThat(pool.remove(e2), is(true));
+        assertThat(pool.remove(e2), is(false));
+        assertThat(pool.size(), is(2));
+        assertThat(pool.values().stream().map(Pool.Entry::getPooled).collect(toList()), equalTo(Arrays.asList("a", "c")));
+
+        // The empty slot left by the removed entry is filled first.
+        Pool<String>.Entry e4 = pool.acquire(e -> "d");
+        assertThat(pool.values().stream().map(Pool.Entry::getPooled).collect(toList()), equalTo(Arrays.asList("a", "d", "c")));
+
+        Pool<String>.Entry e5 = pool.acquire(e -> "e");
+        assertThat(e5, notNullValue());
+        assertNull(pool.reserve());
+        assertThat(pool.size(), is(4));
+
+        pool.release(e1);
+        pool.release(e3);
+        pool.release(e4);
+        pool.release(e5);
+        pool.close();
+        assertThat(pool.size(), is(0));
+        assertThat(pool.values().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testLargeMaxEntries()
+    {
+        // Slots are allocated lazily, so a very large capacity is allowed.
+        Pool<String> pool = new Pool<>(FIRST, Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++)
+        {
+            pool.reserve().enable(Integer.toString(i), false);
+        }
+        assertThat(pool.size(), is(1000));
+        assertThat(pool.getIdleCount(), is(1000));
+
+        Pool<String>.Entry entry = pool.acquire();
+        assertThat(entry.getPooled(), is("0"));
+        assertThat(pool.getInUseCount(), is(1));
+    }
+
+    @Test
+    public void testConcurrentReserveRemove() throws Exception
+    {
+        int maxEntries = 16;
+        Pool<String> pool = new Pool<>(RANDOM, maxEntries);
+        int threads = 8;
+        int iterations = 10_000;
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < iterations; i++)
+                    {
+                        Pool<String>.Entry entry = pool.acquire(e -> "x");
+                        if (entry == null)
+                            continue;
+                        if (pool.size() > maxEntries)
+                            failures.incrementAndGet();
+                        if (i % 2 == 0)
+                        {
+                            if (!pool.remove(entry))
+                                failures.incrementAndGet();
+                        }
+                        else if (!pool.release(entry))
+                        {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+        assertThat(failures.get(), is(0));
+        assertThat(pool.size(), lessThanOrEqualTo(maxEntries));
+        assertThat(pool.values().size(), is(pool.size()));
+        assertThat(pool.getInUseCount(), is(0));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "strategy")
+    public void testAcquireWithComparator(Factory factory)
+    {
+        Pool<CloseableHolder> pool = factory.getPool(2);
+        pool.setMaxMultiplex(2);
+        Comparator<CloseableHolder> comparator = Comparator.comparing((CloseableHolder holder) -> holder.value).reversed();
+        pool.reserve().enable(new CloseableHolder("aaa"), false);
+        // A reserved entry that is not enabled yet is skipped.
+        Pool<CloseableHolder>.Entry reserved = pool.reserve();
+        Pool<CloseableHolder>.Entry e0 = pool.acquire(comparator);
+        assertThat(e0.getPooled().value, equalTo("aaa"));
+        assertTrue(e0.release());
+        reserved.enable(new CloseableHolder("bbb"), false);
+
+        // The preferred entry is acquired until it is fully multiplexed.
+        Pool<CloseableHolder>.Entry e1 = pool.acquire(comparator);
+        Pool<CloseableHolder>.Entry e2 = pool.acquire(comparator);
+        assertThat(e1.getPooled().value, equalTo("bbb"));
+        assertThat(e2.getPooled().value, equalTo("bbb"));
+
+        // Then the other entry is acquired.
+        Pool<CloseableHolder>.Entry e3 = pool.acquire(comparator);
+        Pool<CloseableHolder>.Entry e4 = pool.acquire(comparator);
+        assertThat(e3.getPooled().value, equalTo("aaa"));
+        assertThat(e4.getPooled().value, equalTo("aaa"));
+        assertNull(pool.acquire(comparator));
+
+        assertTrue(e1.release());
+        assertThat(pool.acquire(comparator), sameInstance(e1));
+
+        pool.close();
+        assertNull(pool.acquire(comparator));
+    }
 }
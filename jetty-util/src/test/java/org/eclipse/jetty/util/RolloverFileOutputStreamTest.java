@@ -15,6 +15,8 @@ package org.eclipse.jetty.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
@@ -37,6 +39,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @ExtendWith(WorkDirExtension.class)
 public class RolloverFileOutputStreamTest
@@ -364,6 +367,27 @@ public class RolloverFileOutputStreamTest
         }
     }
 
+    @Test
+    public void testGatheringWrite() throws Exception
+    {
+        Path testPath = testingDir.getEmptyPathDir();
+        Path file = testPath.resolve("gathering.log");
+
+        RolloverFileOutputStream rofos = new RolloverFileOutputStream(file.toString());
+        ByteBuffer[] buffers = {
+            ByteBuffer.wrap("A".getBytes(StandardCharsets.US_ASCII)),
+            ByteBuffer.wrap("BC".getBytes(StandardCharsets.US_ASCII)),
+            ByteBuffer.wrap("DEF".getBytes(StandardCharsets.US_ASCII))
+        };
+        assertThat(rofos.write(buffers, 1, 2), is(5L));
+        rofos.close();
+        assertThat(readPath(file), is("BCDEF"));
+
+        // Writes after close fail like the other write paths.
+        assertThrows(IOException.class, () -> rofos.write(buffers, 0, 1));
+        assertThrows(IOException.class, () -> rofos.write(1));
+    }
+
     private String readPath(Path path) throws IOException
     {
         try (BufferedReader reader = Files.newBufferedReader(path))
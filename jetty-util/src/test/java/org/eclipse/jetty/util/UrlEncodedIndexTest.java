@@ -0,0 +1,139 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// @checkstyle-disable-check : AvoidEscapedUnicodeCharactersCheck
+public class UrlEncodedIndexTest
+{
+    public static Stream<Arguments> forms()
+    {
+        return Stream.of(
+            "",
+            "name=value",
+            "name=",
+            "name",
+            "=value",
+            "=",
+            "a=1&b=2&a=3",
+            "a=1&&b=2&",
+            "&a=1",
+            "a=1=2",
+            "a+b=c+d",
+            "a%20b=%41%42%43",
+            "a%3Db=c%26d",
+            "caf%C3%A9=cr%C3%A8me",
+            "bad=%C3%28",
+            "raw=été"
+        ).flatMap(form -> Stream.of(
+            Arguments.of(form, StandardCharsets.UTF_8),
+            Arguments.of(form, StandardCharsets.ISO_8859_1)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("forms")
+    public void testDecodeToAsUrlEncoded(String form, Charset charset) throws Exception
+    {
+        byte[] bytes = form.getBytes(charset);
+
+        MultiMap<String> expected = new MultiMap<>();
+        try
+        {
+            UrlEncoded.decodeTo(new ByteArrayInputStream(bytes), expected, charset, -1, -1);
+        }
+        catch (IllegalArgumentException x)
+        {
+            // Invalid content is rejected when indexed.
+            assertThrows(x.getClass(), () -> UrlEncodedIndex.parse(bytes, bytes.length, charset));
+            return;
+        }
+
+        UrlEncodedIndex index = UrlEncodedIndex.parse(bytes, bytes.length, charset);
+        MultiMap<String> actual = new MultiMap<>();
+        index.decodeTo(actual, -1);
+
+        assertThat(actual, is(expected));
+        for (String name : expected.keySet())
+        {
+            assertThat(index.getValue(name), is(expected.getValue(name, 0)));
+            assertThat(index.getValues(name), is(expected.getValues(name)));
+        }
+    }
+
+    @Test
+    public void testLookup()
+    {
+        byte[] bytes = "id=42&tag=a&tag=b&na%6De=x%2By&empty=&flag".getBytes(StandardCharsets.US_ASCII);
+        UrlEncodedIndex index = UrlEncodedIndex.parse(bytes, bytes.length, StandardCharsets.UTF_8);
+
+        assertThat(index.getFieldCount(), is(6));
+        assertThat(index.getValue("id"), is("42"));
+        assertThat(index.getValues("tag"), is(List.of("a", "b")));
+        assertThat(index.getValue("name"), is("x+y"));
+        assertThat(index.getValue("empty"), is(""));
+        assertThat(index.getValue("flag"), is(""));
+        assertThat(index.getValue("missing"), nullValue());
+        assertThat(index.getValues("missing"), nullValue());
+    }
+
+    @Test
+    public void testQuery()
+    {
+        UrlEncodedIndex index = UrlEncodedIndex.parse("q=jetty+server&page=2", StandardCharsets.UTF_8);
+        assertThat(index.getValue("q"), is("jetty server"));
+        assertThat(index.getValue("page"), is("2"));
+
+        // Raw non US-ASCII queries and other charsets are not indexed.
+        assertThat(UrlEncodedIndex.parse("q=été", StandardCharsets.UTF_8), nullValue());
+        assertThat(UrlEncodedIndex.parse("q=x", StandardCharsets.UTF_16), nullValue());
+    }
+
+    @Test
+    public void testBadEncoding()
+    {
+        byte[] bytes = "a=%4G".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IllegalArgumentException.class, () -> UrlEncodedIndex.parse(bytes, bytes.length, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> UrlEncodedIndex.parse("a=b&c=%4", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMaxKeys()
+    {
+        byte[] bytes = "a=1&b=2&a=3".getBytes(StandardCharsets.US_ASCII);
+        UrlEncodedIndex index = UrlEncodedIndex.parse(bytes, bytes.length, StandardCharsets.UTF_8);
+        assertThat(index.getFieldCount(), is(3));
+
+        // Only distinct keys count.
+        MultiMap<String> map = new MultiMap<>();
+        index.decodeTo(map, 2);
+        assertThat(map.size(), is(2));
+
+        assertThrows(IllegalStateException.class, () -> index.decodeTo(new MultiMap<>(), 1));
+    }
+}
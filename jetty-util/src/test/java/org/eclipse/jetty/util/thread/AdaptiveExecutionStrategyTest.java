@@ -13,18 +13,28 @@
 
 package org.eclipse.jetty.util.thread;
 
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.logging.StacklessLogging;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AdaptiveExecutionStrategyTest
 {
@@ -117,4 +127,60 @@ public class AdaptiveExecutionStrategyTest
             assertNull(detector.get());
         }
     }
+
+    @Test
+    public void testBlockingTasksExecutedInVirtualThreads() throws Exception
+    {
+        // Simulate virtual threads with a thread per task executor,
+        // so that the test runs on any Java version.
+        AtomicInteger virtualTasks = new AtomicInteger();
+        Executor virtualExecutor = task ->
+        {
+            virtualTasks.incrementAndGet();
+            new Thread(task, "virtual-" + virtualTasks.get()).start();
+        };
+        QueuedThreadPool executor = new QueuedThreadPool();
+        executor.setVirtualThreadsExecutor(virtualExecutor);
+        assertTrue(executor.isUseVirtualThreads());
+
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        aes = new AdaptiveExecutionStrategy(tasks::poll, executor);
+        aes.start();
+
+        AtomicReference<String> blockingThread = new AtomicReference<>();
+        AtomicReference<String> nonBlockingThread = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        tasks.offer(new Invocable.ReadyTask(Invocable.InvocationType.BLOCKING, () ->
+        {
+            blockingThread.set(Thread.currentThread().getName());
+            latch.countDown();
+        }));
+        tasks.offer(new Invocable.ReadyTask(Invocable.InvocationType.NON_BLOCKING, () ->
+        {
+            nonBlockingThread.set(Thread.currentThread().getName());
+            latch.countDown();
+        }));
+
+        aes.produce();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(blockingThread.get(), startsWith("virtual-"));
+        assertThat(nonBlockingThread.get(), is(Thread.currentThread().getName()));
+        assertThat(virtualTasks.get(), is(1));
+        assertThat(aes.getVirtualThreadTasksExecuted(), is(1L));
+        assertThat(aes.getPCTasksConsumed(), is(1L));
+    }
+
+    @Test
+    public void testUseVirtualThreadsWhenNotSupported() throws Exception
+    {
+        QueuedThreadPool executor = new QueuedThreadPool();
+        try (StacklessLogging ignored = new StacklessLogging(VirtualThreads.class))
+        {
+            executor.setUseVirtualThreads(true);
+        }
+        assertThat(executor.isUseVirtualThreads(), is(VirtualThreads.areSupported()));
+        executor.setUseVirtualThreads(false);
+        assertFalse(executor.isUseVirtualThreads());
+    }
 }
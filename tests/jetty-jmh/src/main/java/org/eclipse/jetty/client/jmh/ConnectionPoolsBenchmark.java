@@ -24,6 +24,7 @@ import org.eclipse.jetty.client.HttpConversation;
 import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.client.HttpRequest;
+import org.eclipse.jetty.client.LeastLoadedConnectionPool;
 import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.RoundRobinConnectionPool;
@@ -50,7 +51,7 @@ public class ConnectionPoolsBenchmark
 {
     private ConnectionPool pool;
 
-    @Param({"round-robin", "cached/multiplex", "uncached/multiplex", "cached/duplex", "uncached/duplex"})
+    @Param({"round-robin", "cached/multiplex", "uncached/multiplex", "cached/duplex", "uncached/duplex", "least-loaded/multiplex", "least-loaded/duplex"})
     public static String POOL_TYPE;
 
     @Setup
@@ -93,6 +94,14 @@ public class ConnectionPoolsBenchmark
                 pool = new MultiplexConnectionPool(httpDestination, maxConnections, true, Callback.NOOP, 12);
                 pool.preCreateConnections(initialConnections).get();
                 break;
+            case "least-loaded/duplex":
+                pool = new LeastLoadedConnectionPool(httpDestination, maxConnections, Callback.NOOP);
+                pool.preCreateConnections(initialConnections).get();
+                break;
+            case "least-loaded/multiplex":
+                pool = new LeastLoadedConnectionPool(httpDestination, maxConnections, Callback.NOOP, 12);
+                pool.preCreateConnections(initialConnections).get();
+                break;
             case "round-robin":
                 pool = new RoundRobinConnectionPool(httpDestination, maxConnections, Callback.NOOP);
                 pool.preCreateConnections(maxConnections).get();
@@ -0,0 +1,105 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the generation of the headers of typical JSON API responses,
+ * with and without a cache of encoded header blocks.
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpGeneratorBenchmark
+{
+    private static final HttpGenerator.HeaderCache CACHE = new HttpGenerator.HeaderCache(64);
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    HttpGenerator generator;
+    ByteBuffer header;
+    long contentLength;
+
+    @Setup
+    public void setUp()
+    {
+        generator = new HttpGenerator(true, false);
+        if (cached)
+            generator.setHeaderCache(CACHE);
+        header = BufferUtil.allocate(4096);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testGenerateResponse() throws Exception
+    {
+        // Build the fields as an application would do for every response.
+        HttpFields.Mutable fields = HttpFields.build();
+        fields.put(new PreEncodedHttpField(HttpHeader.DATE, DateGenerator.formatDate(0)));
+        fields.put(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8");
+        fields.put(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+        fields.put(HttpHeader.VARY, "Accept-Encoding, Origin");
+        fields.put("Strict-Transport-Security", "max-age=31536000; includeSubDomains");
+        fields.put("X-Content-Type-Options", "nosniff");
+        fields.put("X-Frame-Options", "DENY");
+        fields.put("Access-Control-Allow-Origin", "https://app.example.com");
+        fields.put("Access-Control-Allow-Credentials", "true");
+        fields.put("Content-Security-Policy", "default-src 'none'; frame-ancestors 'none'");
+        MetaData.Response info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, fields, 128 + (++contentLength & 0xFF));
+
+        generator.reset();
+        BufferUtil.clear(header);
+        HttpGenerator.Result result = generator.generateResponse(info, false, header, null, null, false);
+        if (result != HttpGenerator.Result.FLUSH)
+            throw new IllegalStateException(result.toString());
+        return header;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpGeneratorBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,117 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.http.pathmap.PathMappings;
+import org.eclipse.jetty.http.pathmap.PathSpec;
+import org.eclipse.jetty.http.pathmap.RegexPathSpec;
+import org.eclipse.jetty.http.pathmap.UriTemplatePathSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the compiled matching of URI template and regex path specs with
+ * the one by one search, that is used for subclasses of these path specs.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class PathMappingsBenchmark
+{
+    @Param({"10", "100", "1000"})
+    int routes;
+
+    @Param({"TEMPLATE", "REGEX"})
+    String type;
+
+    @Param({"true", "false"})
+    boolean compiled;
+
+    PathMappings<String> mappings;
+    String[] paths;
+
+    @Setup
+    public void setUp()
+    {
+        mappings = new PathMappings<>();
+        for (int i = 0; i < routes; i++)
+        {
+            mappings.put(newPathSpec("/api/v" + (i % 3) + "/resource" + i + "/{id}", "^/api/v" + (i % 3) + "/resource" + i + "/[^/]+$"), "resource" + i);
+            mappings.put(newPathSpec("/api/v" + (i % 3) + "/resource" + i + "/{id}/items/{item}", "^/api/v" + (i % 3) + "/resource" + i + "/[^/]+/items/[^/]+$"), "items" + i);
+        }
+
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; i++)
+        {
+            int r = ThreadLocalRandom.current().nextInt(routes);
+            if (i % 2 == 0)
+                paths[i] = "/api/v" + (r % 3) + "/resource" + r + "/" + i;
+            else
+                paths[i] = "/api/v" + (r % 3) + "/resource" + r + "/" + i + "/items/" + r;
+        }
+        // Compile the mappings.
+        mappings.getMatch(paths[0]);
+    }
+
+    private PathSpec newPathSpec(String template, String regex)
+    {
+        switch (type)
+        {
+            case "TEMPLATE":
+                return compiled ? new UriTemplatePathSpec(template) : new UriTemplatePathSpec(template) {};
+            case "REGEX":
+                return compiled ? new RegexPathSpec(regex) : new RegexPathSpec(regex) {};
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MappedResource<String> testGetMatch()
+    {
+        String path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+        MappedResource<String> match = mappings.getMatch(path);
+        if (match == null)
+            throw new IllegalStateException("No match for " + path);
+        return match;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(PathMappingsBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
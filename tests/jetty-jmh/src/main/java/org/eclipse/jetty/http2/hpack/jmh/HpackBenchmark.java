@@ -0,0 +1,137 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Encodes and decodes the headers of a sequence of requests on the same
+ * connection, as a browser or a gateway would send them, so that most
+ * fields are found in the dynamic table.
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HpackBenchmark
+{
+    @Param({"4096", "65536"})
+    int tableSize;
+
+    @Param({"10", "40"})
+    int headers;
+
+    MetaData.Request[] requests;
+    ByteBuffer[] encoded;
+    HpackEncoder encoder;
+    HpackDecoder decoder;
+    ByteBuffer buffer;
+    int index;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        requests = new MetaData.Request[64];
+        for (int i = 0; i < requests.length; i++)
+        {
+            HttpFields.Mutable fields = HttpFields.build()
+                .add(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                .add(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br")
+                .add(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5")
+                .add(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:94.0) Gecko/20100101 Firefox/94.0")
+                .add(HttpHeader.COOKIE, "session=" + (i % 4) + "a1b2c3d4e5f6")
+                .add(HttpHeader.CACHE_CONTROL, "no-cache")
+                .add("X-Request-Id", "req-" + i)
+                .add("X-Forwarded-For", "192.168.0." + (i % 16))
+                .add("X-Forwarded-Proto", "https");
+            for (int h = fields.size(); h < headers; h++)
+            {
+                fields.add("X-Custom-Header-" + h, (h % 3 == 0) ? "value-" + i : "constant-value-" + h);
+            }
+            requests[i] = new MetaData.Request("GET", HttpScheme.HTTPS.asString(), new HostPortHttpField("localhost:8443"),
+                "/path/to/resource/" + (i % 8) + "?query=" + i, HttpVersion.HTTP_2, fields, -1);
+        }
+
+        buffer = BufferUtil.allocate(64 * 1024);
+        encoder = new HpackEncoder(tableSize, tableSize);
+        encoded = new ByteBuffer[requests.length];
+        for (int i = 0; i < requests.length; i++)
+        {
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, requests[i]);
+            BufferUtil.flipToFlush(buffer, 0);
+            encoded[i] = BufferUtil.copy(buffer);
+        }
+
+        encoder = new HpackEncoder(tableSize, tableSize);
+        decoder = new HpackDecoder(tableSize, 64 * 1024);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public int testEncode() throws Exception
+    {
+        MetaData.Request request = requests[index++ % requests.length];
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, request);
+        return buffer.position();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public MetaData testDecode() throws Exception
+    {
+        int i = index++ % encoded.length;
+        // Restart from an empty table at each round, as the encoded
+        // requests depend on the dynamic table of the encoding round.
+        if (i == 0)
+            decoder = new HpackDecoder(tableSize, 64 * 1024);
+        return decoder.decode(encoded[i].slice());
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -16,16 +16,23 @@ package org.eclipse.jetty.requestlog.jmh;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.server.AsyncRequestLogWriter;
+import org.eclipse.jetty.server.ByteBufferRequestLogWriter;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.TypeUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.profile.GCProfiler;
@@ -75,6 +82,9 @@ public class RequestLogBenchmark
     private ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
     MethodHandle logHandle;
     Object[] iteratedLog;
+    Path logDirectory;
+    AsyncRequestLogWriter stringWriter;
+    ByteBufferRequestLogWriter bufferWriter;
 
     public RequestLogBenchmark()
     {
@@ -113,6 +123,24 @@ public class RequestLogBenchmark
         }
     }
 
+    @Setup
+    public void setUp() throws Exception
+    {
+        logDirectory = Files.createTempDirectory(RequestLogBenchmark.class.getSimpleName());
+        stringWriter = new AsyncRequestLogWriter(logDirectory.resolve("string.log").toString());
+        stringWriter.start();
+        bufferWriter = new ByteBufferRequestLogWriter(logDirectory.resolve("buffer.log").toString());
+        bufferWriter.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        stringWriter.stop();
+        bufferWriter.stop();
+        IO.delete(logDirectory.toFile());
+    }
+
     public String logFixed(String request)
     {
         StringBuilder b = buffers.get();
@@ -191,6 +219,25 @@ public class RequestLogBenchmark
         return logMethodHandle(Long.toString(ThreadLocalRandom.current().nextLong()));
     }
 
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testStringWriter() throws Exception
+    {
+        // Format to a String that is queued and encoded by the writer thread.
+        stringWriter.write(logMethodHandle(Long.toString(ThreadLocalRandom.current().nextLong())));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testByteBufferWriter() throws Throwable
+    {
+        // Format to a reused StringBuilder that is encoded into a pooled buffer.
+        StringBuilder b = buffers.get();
+        b.setLength(0);
+        logHandle.invoke(b, Long.toString(ThreadLocalRandom.current().nextLong()));
+        bufferWriter.write(b);
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
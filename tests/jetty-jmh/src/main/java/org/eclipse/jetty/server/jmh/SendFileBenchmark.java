@@ -0,0 +1,135 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares static file serving through ByteBuffer copies with
+ * file transfers directly to the network.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class SendFileBenchmark
+{
+    @Param({"false", "true"})
+    boolean useSendFile;
+
+    @Param({"65536", "1048576", "16777216"})
+    int fileSize;
+
+    Server server;
+    ServerConnector connector;
+    Path directory;
+    byte[] request;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory(SendFileBenchmark.class.getSimpleName());
+        byte[] bytes = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        Files.write(directory.resolve("file.bin"), bytes);
+
+        server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setUseSendFile(useSendFile);
+        connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        server.addConnector(connector);
+        ResourceHandler resourceHandler = new ResourceHandler();
+        resourceHandler.setBaseResource(new PathResource(directory));
+        server.setHandler(resourceHandler);
+        server.start();
+
+        request = ("GET /file.bin HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: close\r\n" +
+            "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        server.stop();
+        IO.delete(directory.toFile());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public long testGetFile() throws Exception
+    {
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write(request);
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            while (true)
+            {
+                int read = input.read(buffer);
+                if (read < 0)
+                    break;
+                total += read;
+            }
+            if (total < fileSize)
+                throw new IllegalStateException("Short response " + total);
+            return total;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SendFileBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
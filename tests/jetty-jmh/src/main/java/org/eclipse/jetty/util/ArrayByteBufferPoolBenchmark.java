@@ -16,12 +16,16 @@ package org.eclipse.jetty.util;
 import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ArrayRetainableByteBufferPool;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
@@ -31,17 +35,27 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 public class ArrayByteBufferPoolBenchmark
 {
     private ByteBufferPool pool;
+    private ArrayRetainableByteBufferPool retainablePool;
+
+    @Param({"0", "16"})
+    int magazineSize;
+
+    @Param({"4096", "32768"})
+    int size;
 
     @Setup
     public void setUp() throws Exception
     {
         pool = new ArrayByteBufferPool();
+        retainablePool = new ArrayRetainableByteBufferPool();
+        retainablePool.setMagazineSize(magazineSize);
     }
 
     @TearDown
     public void tearDown()
     {
         pool = null;
+        retainablePool = null;
     }
 
     @Benchmark
@@ -51,6 +65,22 @@ public class ArrayByteBufferPoolBenchmark
         pool.release(buffer);
     }
 
+    @Benchmark
+    @Threads(4)
+    public void testRetainableAcquireRelease()
+    {
+        RetainableByteBuffer buffer = retainablePool.acquire(size, true);
+        buffer.release();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void testRetainableAcquireReleaseContended()
+    {
+        RetainableByteBuffer buffer = retainablePool.acquire(size, true);
+        buffer.release();
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
@@ -49,7 +49,9 @@ public class PoolStrategyBenchmark
 
     @Param({
         "4",
-        "16"
+        "16",
+        "256",
+        "4096"
     })
     public static int SIZE;
 
@@ -116,6 +118,28 @@ public class PoolStrategyBenchmark
         entry.release();
     }
 
+    @Benchmark
+    public void testChurnPoolWithStrategy()
+    {
+        // Replace an entry, as done when pooled connections or buffers are discarded.
+        Pool<String>.Entry entry = pool.acquire();
+        if (entry == null)
+        {
+            misses.increment();
+            Blackhole.consumeCPU(20);
+            return;
+        }
+        hits.increment();
+        total.add(Long.parseLong(entry.getPooled()));
+        String pooled = entry.getPooled();
+        if (entry.remove())
+        {
+            Pool<String>.Entry reserved = pool.reserve();
+            if (reserved != null)
+                reserved.enable(pooled, false);
+        }
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
@@ -123,7 +147,7 @@ public class PoolStrategyBenchmark
             .warmupIterations(3)
             .measurementIterations(3)
             .forks(1)
-            .threads(8)
+            .threads(Math.max(8, Runtime.getRuntime().availableProcessors()))
             .resultFormat(ResultFormatType.JSON)
             .result("/tmp/poolStrategy-" + System.currentTimeMillis() + ".json")
             // .addProfiler(GCProfiler.class)
@@ -15,10 +15,12 @@ package org.eclipse.jetty.util.thread.jmh;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -46,16 +48,17 @@ public class ThreadPoolBenchmark
 {
     public enum Type
     {
-        QTP, ETP, LQTP, LETP, AQTP, AETP;
+        QTP, ETP, LQTP, LETP, AQTP, AETP, VQTP;
     }
 
-    @Param({"QTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
+    @Param({"QTP", "ETP", "VQTP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
     Type type;
 
     @Param({"200"})
     int size;
 
     ThreadPool pool;
+    Executor executor;
 
     @Setup // (Level.Iteration)
     public void buildPool()
@@ -98,10 +101,21 @@ public class ThreadPoolBenchmark
                 pool = new ExecutorThreadPool(size, size, new ArrayBlockingQueue<>(32768));
                 break;
 
+            case VQTP:
+            {
+                // Jobs are executed in virtual threads, if supported by the runtime.
+                QueuedThreadPool qtp = new QueuedThreadPool(size, size, new BlockingArrayQueue<>(32768, 32768));
+                qtp.setReservedThreads(0);
+                qtp.setUseVirtualThreads(true);
+                pool = qtp;
+                break;
+            }
+
             default:
                 throw new IllegalStateException();
         }
         LifeCycle.start(pool);
+        executor = VirtualThreads.isUseVirtualThreads(pool) ? VirtualThreads.getVirtualThreadsExecutor(pool) : pool;
     }
 
     @Benchmark
@@ -133,12 +147,13 @@ public class ThreadPoolBenchmark
     {
         LifeCycle.stop(pool);
         pool = null;
+        executor = null;
     }
 
     void doJob() throws Exception
     {
         CountDownLatch latch = new CountDownLatch(1);
-        pool.execute(latch::countDown);
+        executor.execute(latch::countDown);
         latch.await();
     }
 